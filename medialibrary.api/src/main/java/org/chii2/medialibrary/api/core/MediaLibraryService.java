@@ -1,8 +1,12 @@
 package org.chii2.medialibrary.api.core;
 
 import org.chii2.medialibrary.api.persistence.entity.Image;
+import org.chii2.medialibrary.api.persistence.entity.ImageAlbum;
 import org.chii2.medialibrary.api.persistence.entity.ImageFile;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
 
 import java.util.List;
 import java.util.Map;
@@ -97,6 +101,58 @@ public interface MediaLibraryService {
      */
     public List<? extends Movie> getMoviesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Search movies by titles, original and alternative names, overview and release date, best matches first
+     * Every word of the query must match, a word also matches the words it starts.
+     *
+     * @param query       Query Text
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @return Movie List
+     */
+    public List<? extends Movie> searchMovies(String query, int firstResult, int maxResults);
+
+    /**
+     * Count the movies matching a search
+     *
+     * @param query Query Text
+     * @return Movie Count
+     */
+    public long searchMoviesCount(String query);
+
+    /**
+     * Get movie summaries for browsing, lighter than movies as no files, information or images are loaded
+     * The Sort Field must prefix with "file." or "info."
+     *
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return Movie Summary List
+     */
+    public List<? extends MovieSummary> getMovieSummaries(int firstResult, int maxResults, Map<String, String> sorts);
+
+    /**
+     * Get a page of movie summaries after the cursor, the cost does not grow with the position
+     * The Sort Field of the cursor must prefix with "file." or "info."
+     *
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Movie summaries and the next cursor
+     */
+    public Page<? extends MovieSummary> getMovieSummaries(PageCursor cursor, int maxResults);
+
+    /**
+     * Get movie summaries by movie name for searching, lighter than movies as no files, information or images are loaded
+     * The Sort Field must prefix with "file." or "info."
+     *
+     * @param movieName   Movie Name
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return Movie Summary List
+     */
+    public List<? extends MovieSummary> getMovieSummariesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts);
+
     /**
      * Get Movie default thumbnail
      *
@@ -105,6 +161,14 @@ public interface MediaLibraryService {
      */
     public byte[] getMovieThumbnailById(String movieId);
 
+    /**
+     * Get the file and entity tag of Movie default thumbnail, to be sent without loading it into memory
+     *
+     * @param movieId Movie ID
+     * @return Thumbnail, null if the movie has no thumbnail
+     */
+    public Thumbnail getMovieThumbnail(String movieId);
+
     /**
      * Get Movies Count
      *
@@ -145,6 +209,15 @@ public interface MediaLibraryService {
      */
     public List<? extends Image> getImages(int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get a page of images after the cursor, the cost does not grow with the position
+     *
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Images and the next cursor
+     */
+    public Page<? extends Image> getImages(PageCursor cursor, int maxResults);
+
     /**
      * Get Image by Image ID
      *
@@ -191,6 +264,38 @@ public interface MediaLibraryService {
      */
     public List<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get a page of images by specific image field after the cursor, the cost does not grow with the position
+     * Add "file." before ImageFile field
+     *
+     * @param fieldName  Field Name
+     * @param fieldValue Field Value
+     * @param strict     Strict compare field value equal, else will use %fieldValue%
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Images and the next cursor
+     */
+    public Page<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, PageCursor cursor, int maxResults);
+
+    /**
+     * Search images by title, album, camera, comment and date taken, best matches first
+     * Every word of the query must match, a word also matches the words it starts.
+     *
+     * @param query       Query Text
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @return Image List
+     */
+    public List<? extends Image> searchImages(String query, int firstResult, int maxResults);
+
+    /**
+     * Count the images matching a search
+     *
+     * @param query Query Text
+     * @return Image Count
+     */
+    public long searchImagesCount(String query);
+
     /**
      * Get image albums from index with max limit
      *
@@ -217,6 +322,26 @@ public interface MediaLibraryService {
      */
     public List<String> getImageAlbums(int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get image albums with their statistics (images count, newest date, cover image)
+     * Read from the album statistics table, no image is aggregated.
+     * Sort Fields are "name", "imageCount" and "newestDate".
+     *
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return Image Albums
+     */
+    public List<? extends ImageAlbum> getImageAlbumList(int firstResult, int maxResults, Map<String, String> sorts);
+
+    /**
+     * Get the statistics of an image album
+     *
+     * @param album Album Name
+     * @return Image Album, null if no image in the album
+     */
+    public ImageAlbum getImageAlbum(String album);
+
     /**
      * Get the count of total images
      *
@@ -240,6 +365,13 @@ public interface MediaLibraryService {
      */
     public long getImagesCountByAlbum(String album);
 
+    /**
+     * Get the statistics of the movie and image caches, like "movie.hits" or "image.misses"
+     *
+     * @return Statistics by name
+     */
+    public Map<String, Long> getCacheStatistics();
+
     /**
      * Get Image File by ID
      *
@@ -0,0 +1,43 @@
+package org.chii2.medialibrary.api.core;
+
+import java.nio.file.Path;
+
+/**
+ * Thumbnail File
+ * The file in the image store with its entity tag, looked up together so they always match.
+ */
+public class Thumbnail {
+    // Thumbnail File
+    private final Path file;
+    // Quoted Entity Tag
+    private final String etag;
+
+    /**
+     * Constructor
+     *
+     * @param file Thumbnail File
+     * @param etag Quoted Entity Tag
+     */
+    public Thumbnail(Path file, String etag) {
+        this.file = file;
+        this.etag = etag;
+    }
+
+    /**
+     * Get the thumbnail file, to be sent without loading it into memory
+     *
+     * @return Thumbnail File
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Get the entity tag, changes when the thumbnail content changes
+     *
+     * @return Quoted Entity Tag
+     */
+    public String getETag() {
+        return etag;
+    }
+}
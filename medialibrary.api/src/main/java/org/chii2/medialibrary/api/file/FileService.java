@@ -1,6 +1,7 @@
 package org.chii2.medialibrary.api.file;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * FileService provide watcher and scanner functionality
@@ -14,6 +15,14 @@ public interface FileService {
     public final static String MOVIE_SCAN_PROVIDED_TOPIC = "org/chii2/medialibrary/file/movie/SCAN_PROVIDED";
     // Event Topic for image scan
     public final static String IMAGE_SCAN_PROVIDED_TOPIC = "org/chii2/medialibrary/file/image/SCAN_PROVIDED";
+    // Event Topic for movie scan complete, sent after the last movie scan event of a scan
+    public final static String MOVIE_SCAN_COMPLETE_TOPIC = "org/chii2/medialibrary/file/movie/SCAN_COMPLETE";
+    // Event Topic for image scan complete, sent after the last image scan event of a scan
+    public final static String IMAGE_SCAN_COMPLETE_TOPIC = "org/chii2/medialibrary/file/image/SCAN_COMPLETE";
+    // Event Topic for movie files synchronized to the library, scanned files are only skipped by later scans once synchronized
+    public final static String MOVIE_SYNCHRONIZED_TOPIC = "org/chii2/medialibrary/file/movie/SYNCHRONIZED";
+    // Event Topic for image files synchronized to the library, scanned files are only skipped by later scans once synchronized
+    public final static String IMAGE_SYNCHRONIZED_TOPIC = "org/chii2/medialibrary/file/image/SYNCHRONIZED";
     // Event Topic for movie watch create
     public final static String MOVIE_WATCH_CREATE_TOPIC = "org/chii2/medialibrary/file/movie/WATCH_CREATE";
     // Event Topic for movie watch modify
@@ -32,8 +41,20 @@ public interface FileService {
     public final static String FILTER_PROPERTY = "filter";
     // Topic property in the internal event
     public final static String TOPIC_PROPERTY = "topic";
-    // File information property in the scan provided event, which should contains the scanned file list
+    // File count property in the scan request event, files known by the library, all files are sent again if the scan manifest remembers more, may be absent
+    public final static String LIBRARY_COUNT_PROPERTY = "library_count";
+    // File information property in the scan provided event, which should contains a chunk of the scanned file list (only files added or changed since the last scan)
     public final static String SCAN_PATH_PROPERTY = "scan_files";
+    // Removed file property in the scan complete event, files found by the last scan but gone now, may be absent
+    public final static String SCAN_REMOVED_PATH_PROPERTY = "scan_removed_files";
+    // File count property in the scan complete event, all files found by the scan
+    public final static String SCAN_FOUND_COUNT_PROPERTY = "scan_found_count";
+    // File count property in the scan complete event, files sent in the scan provided events
+    public final static String SCAN_PROVIDED_COUNT_PROPERTY = "scan_provided_count";
+    // Synchronized file property in the synchronized event, absolute paths of the files saved to the library, may be absent
+    public final static String SYNCHRONIZED_PATH_PROPERTY = "synchronized_files";
+    // Removed file property in the synchronized event, absolute paths of the files or directories removed from the library, may be absent
+    public final static String SYNCHRONIZED_REMOVED_PATH_PROPERTY = "synchronized_removed_files";
     // File information property in the watch event, which should contains the single file
     public final static String WATCH_PATH_PROPERTY = "watch_file";
 
@@ -76,4 +97,11 @@ public interface FileService {
      * @param extensions  File extensions to be accepted, like " .jpg .png "
      */
     public void scanImages(List<String> directories, List<String> extensions);
+
+    /**
+     * Get the statistics of the movie and image watchers, like "movie.processed" or "image.dropped"
+     *
+     * @return Statistics by name
+     */
+    public Map<String, Long> getWatchStatistics();
 }
@@ -1,7 +1,11 @@
 package org.chii2.medialibrary.api.persistence;
 
 import org.chii2.medialibrary.api.persistence.entity.*;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +40,14 @@ public interface PersistenceService {
      */
     public Movie getMovieByMovieFile(MovieFile movieFile);
 
+    /**
+     * Get Movies by Movie IDs
+     *
+     * @param ids Movie IDs
+     * @return Movies in ID order, missing movies are left out
+     */
+    public List<? extends Movie> getMoviesByIds(List<String> ids);
+
     /**
      * Get all possible movie records by movie name
      * The Sort Field must prefix with "file." or "info."
@@ -50,6 +62,40 @@ public interface PersistenceService {
      */
     public List<? extends Movie> getMoviesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get movie summaries for browsing, without loading files, information or images
+     * The Sort Field must prefix with "file." or "info."
+     *
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return List of movie summaries
+     */
+    public List<? extends MovieSummary> getMovieSummaries(int firstResult, int maxResults, Map<String, String> sorts);
+
+    /**
+     * Get a page of movie summaries after the cursor, seeking on the sort keys instead of skipping rows
+     * The Sort Field of the cursor must prefix with "file." or "info."
+     * A movie is sorted by the smallest value of its files or information ascending and by the largest descending.
+     *
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Movie summaries and the next cursor
+     */
+    public Page<? extends MovieSummary> getMovieSummaries(PageCursor cursor, int maxResults);
+
+    /**
+     * Get movie summaries by movie name for searching, without loading files, information or images
+     * The Sort Field must prefix with "file." or "info."
+     *
+     * @param movieName   Movie Name
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return List of movie summaries
+     */
+    public List<? extends MovieSummary> getMovieSummariesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts);
+
     /**
      * Get Movie Files from database
      * The Sort Field must prefix with "file." or "info."
@@ -95,6 +141,14 @@ public interface PersistenceService {
      */
     public byte[] getMovieThumbnailById(String movieId);
 
+    /**
+     * Get the file of Movie default thumbnail
+     *
+     * @param movieId Movie ID
+     * @return Thumbnail File, null if the movie has no thumbnail
+     */
+    public Path getMovieThumbnailFile(String movieId);
+
     /**
      * Get Movies Count
      *
@@ -133,6 +187,15 @@ public interface PersistenceService {
      */
     public List<? extends Image> getImages(int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get a page of images after the cursor, seeking on the sort keys instead of skipping rows
+     *
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Images and the next cursor
+     */
+    public Page<? extends Image> getImages(PageCursor cursor, int maxResults);
+
     /**
      * Get Image by Image ID
      *
@@ -141,6 +204,22 @@ public interface PersistenceService {
      */
     public Image getImageById(String id);
 
+    /**
+     * Get Images by Image IDs
+     *
+     * @param ids Image IDs
+     * @return Images in ID order, missing images are left out
+     */
+    public List<? extends Image> getImagesByIds(List<String> ids);
+
+    /**
+     * Get Images by the absolute paths of their files
+     *
+     * @param paths Absolute Paths
+     * @return Images
+     */
+    public List<? extends Image> getImagesByPaths(List<String> paths);
+
     /**
      * Get all possible image records by specific image field
      * Add "file." before ImageFile field
@@ -155,6 +234,19 @@ public interface PersistenceService {
      */
     public List<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get a page of images by specific image field after the cursor, seeking on the sort keys instead of skipping rows
+     * Add "file." before ImageFile field
+     *
+     * @param fieldName  Field Name
+     * @param fieldValue Field Value
+     * @param strict     Strict compare field value equal, else will use %fieldValue%
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Images and the next cursor
+     */
+    public Page<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, PageCursor cursor, int maxResults);
+
     /**
      * Get image albums from index with max limit
      *
@@ -165,6 +257,26 @@ public interface PersistenceService {
      */
     public List<String> getImageAlbums(int firstResult, int maxResults, Map<String, String> sorts);
 
+    /**
+     * Get image albums with their statistics (images count, newest date, cover image)
+     * Read from the album statistics table, no image is aggregated.
+     * Sort Fields are "name", "imageCount" and "newestDate".
+     *
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @param sorts       Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return Image Albums
+     */
+    public List<? extends ImageAlbum> getImageAlbumList(int firstResult, int maxResults, Map<String, String> sorts);
+
+    /**
+     * Get the statistics of an image album
+     *
+     * @param album Album Name
+     * @return Image Album, null if no image in the album
+     */
+    public ImageAlbum getImageAlbum(String album);
+
     /**
      * Get the count of total images
      *
@@ -216,6 +328,14 @@ public interface PersistenceService {
      */
     public void synchronizeMovie(MovieFile movieFile);
 
+    /**
+     * Synchronize Movie Files to database in one transaction
+     * Same as synchronizeMovie for each file, but empty movies are only cleaned once
+     *
+     * @param movieFiles Movie Files
+     */
+    public void synchronizeMovies(List<MovieFile> movieFiles);
+
     /**
      * Synchronize Movie Information to database
      *
@@ -233,6 +353,15 @@ public interface PersistenceService {
      */
     public void synchronizeImage(ImageFile imageFile);
 
+    /**
+     * Synchronize ImageFiles to database in one transaction
+     * Same as synchronizeImage for each file, but existing files are looked up and deleted
+     * with one query per chunk, and empty Images are only cleaned once
+     *
+     * @param imageFiles ImageFiles
+     */
+    public void synchronizeImages(List<ImageFile> imageFiles);
+
     /**
      * Persis entity into database, proxy to EntityManager.persist
      * If A is a new entity, it becomes managed.
@@ -0,0 +1,38 @@
+package org.chii2.medialibrary.api.persistence.entity;
+
+import java.util.Date;
+
+/**
+ * Represent the statistics of an image album
+ * Maintained by the library whenever images are synchronized or deleted, read only for clients.
+ */
+public interface ImageAlbum {
+
+    /**
+     * Get Album Name
+     *
+     * @return Name
+     */
+    public String getName();
+
+    /**
+     * Get images count in the album
+     *
+     * @return Images Count
+     */
+    public long getImageCount();
+
+    /**
+     * Get the newest date taken of the images in the album
+     *
+     * @return Newest Date, null if no image has a date
+     */
+    public Date getNewestDate();
+
+    /**
+     * Get the cover image id, the newest image in the album
+     *
+     * @return Cover Image ID
+     */
+    public String getCoverImageId();
+}
@@ -1,5 +1,7 @@
 package org.chii2.medialibrary.api.persistence.entity;
 
+import java.nio.file.Path;
+
 /**
  * Represent Movie Poster
  */
@@ -140,6 +142,13 @@ public interface MovieImage {
      */
     public void setImage(byte[] image);
 
+    /**
+     * Get the file holding the real Image
+     *
+     * @return Image File, null if the image is not stored
+     */
+    public Path getImageFile();
+
     /**
      * Get MovieInfo this image belong to
      *
@@ -0,0 +1,44 @@
+package org.chii2.medialibrary.api.persistence.page;
+
+import java.util.List;
+
+/**
+ * One page of a keyset browse
+ *
+ * @param <T> Item Type
+ */
+public class Page<T> {
+    // Items
+    private final List<T> items;
+    // Cursor after the last item
+    private final PageCursor next;
+
+    /**
+     * Constructor
+     *
+     * @param items Items
+     * @param next  Cursor after the last item, the requested cursor if the page is empty
+     */
+    public Page(List<T> items, PageCursor next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    /**
+     * Get the items
+     *
+     * @return Items
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the cursor after the last item
+     *
+     * @return Next Cursor
+     */
+    public PageCursor getNext() {
+        return next;
+    }
+}
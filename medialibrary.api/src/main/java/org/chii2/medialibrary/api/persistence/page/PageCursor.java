@@ -0,0 +1,99 @@
+package org.chii2.medialibrary.api.persistence.page;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keyset Page Cursor
+ * Remembers the sort values and the ID of the last row returned, the next page seeks right after that row.
+ * Unlike an offset, the cost of the next page does not grow with the position.
+ * A cursor without keys starts at its position by offset, used for the first page and for random jumps.
+ * Cursors are immutable, the next cursor comes with every page.
+ */
+public class PageCursor {
+    // Sort (by <field, sortType>) in key order
+    private final Map<String, String> sorts;
+    // Sort values of the last row, followed by its ID, null to start by offset
+    private final Object[] keys;
+    // Index of the next row
+    private final long position;
+
+    /**
+     * Constructor, cursor before the first row
+     *
+     * @param sorts Sort (by <field, sortType>, sort type maybe "asc" or "desc"), may be null
+     */
+    public PageCursor(Map<String, String> sorts) {
+        this(sorts, null, 0);
+    }
+
+    /**
+     * Constructor, cursor starting at the position by offset
+     *
+     * @param sorts    Sort (by <field, sortType>, sort type maybe "asc" or "desc"), may be null
+     * @param position Index of the next row
+     */
+    public PageCursor(Map<String, String> sorts, long position) {
+        this(sorts, null, position);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sorts    Sort (by <field, sortType>, sort type maybe "asc" or "desc"), may be null
+     * @param keys     Sort values of the last row, followed by its ID
+     * @param position Index of the next row
+     */
+    public PageCursor(Map<String, String> sorts, Object[] keys, long position) {
+        if (sorts == null) {
+            this.sorts = Collections.emptyMap();
+        } else {
+            this.sorts = Collections.unmodifiableMap(new LinkedHashMap<>(sorts));
+        }
+        this.keys = keys == null ? null : keys.clone();
+        this.position = position;
+    }
+
+    /**
+     * Get the sort, the iteration order is the key order
+     *
+     * @return Sort (by <field, sortType>)
+     */
+    public Map<String, String> getSorts() {
+        return sorts;
+    }
+
+    /**
+     * Get the sort values of the last row, followed by its ID
+     *
+     * @return Keys, null if the cursor starts by offset
+     */
+    public Object[] getKeys() {
+        return keys == null ? null : keys.clone();
+    }
+
+    /**
+     * Get the index of the next row
+     *
+     * @return Position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Whether the cursor seeks after a row, else it starts by offset
+     *
+     * @return True if seeks
+     */
+    public boolean isSeek() {
+        return keys != null;
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor{position=" + position + ", sorts=" + sorts + ", keys=" + Arrays.toString(keys) + "}";
+    }
+}
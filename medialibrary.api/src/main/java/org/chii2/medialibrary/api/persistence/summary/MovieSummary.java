@@ -0,0 +1,213 @@
+package org.chii2.medialibrary.api.persistence.summary;
+
+import java.util.Date;
+
+/**
+ * Read only view of a movie for browsing
+ * Only the columns shown in a browse result are loaded, no files, information or images are attached.
+ */
+public interface MovieSummary {
+
+    /**
+     * Get the id
+     *
+     * @return id Id
+     */
+    public String getId();
+
+    /**
+     * Get number of files included
+     *
+     * @return Files count
+     */
+    public int getFilesCount();
+
+    /**
+     * Get default movie title (movie name)
+     *
+     * @return Movie Title
+     */
+    public String getTitle();
+
+    /**
+     * Get movie released date
+     *
+     * @return Movie Released Date
+     */
+    public Date getReleasedDate();
+
+    /**
+     * Get movie overview
+     *
+     * @return Overview
+     */
+    public String getOverview();
+
+    /**
+     * Get movie rating
+     *
+     * @return Rating
+     */
+    public double getRating();
+
+    /**
+     * Get movie certification
+     *
+     * @return Certification
+     */
+    public String getCertification();
+
+    /**
+     * Get movie language
+     *
+     * @return Language
+     */
+    public String getLanguage();
+
+    /**
+     * Get movie format
+     *
+     * @return Format
+     */
+    public String getFormat();
+
+    /**
+     * Get movie duration in milliseconds
+     *
+     * @return Duration
+     */
+    public long getDuration();
+
+    /**
+     * Get movie size in bytes
+     *
+     * @return Size
+     */
+    public long getSize();
+
+    /**
+     * Get movie bit rate in bytes
+     *
+     * @return Bit Rate
+     */
+    public long getBitRate();
+
+    /**
+     * Get MIME
+     *
+     * @return MIME
+     */
+    public String getMIME();
+
+    /**
+     * Get video width
+     *
+     * @return Video Width
+     */
+    public int getVideoWidth();
+
+    /**
+     * Get video height
+     *
+     * @return Video Height
+     */
+    public int getVideoHeight();
+
+    /**
+     * Get video format
+     *
+     * @return Video Format
+     */
+    public String getVideoFormat();
+
+    /**
+     * Get video format profile
+     *
+     * @return Video Format Profile
+     */
+    public String getVideoFormatProfile();
+
+    /**
+     * Get video format version
+     *
+     * @return Video Format Version
+     */
+    public int getVideoFormatVersion();
+
+    /**
+     * Get video codec
+     *
+     * @return Video Codec
+     */
+    public String getVideoCodec();
+
+    /**
+     * Get video bit rate
+     *
+     * @return Video BitRate
+     */
+    public long getVideoBitRate();
+
+    /**
+     * Get video fps
+     *
+     * @return Video FPS
+     */
+    public float getVideoFps();
+
+    /**
+     * Get audio format
+     *
+     * @return Audio Format
+     */
+    public String getAudioFormat();
+
+    /**
+     * Get audio format profile
+     *
+     * @return Audio Format Profile
+     */
+    public String getAudioFormatProfile();
+
+    /**
+     * Get audio format version
+     *
+     * @return Audio Format Version
+     */
+    public int getAudioFormatVersion();
+
+    /**
+     * Get audio codec
+     *
+     * @return Audio Codec
+     */
+    public String getAudioCodec();
+
+    /**
+     * Get movie audio channels number
+     *
+     * @return Channels Number
+     */
+    public int getAudioChannels();
+
+    /**
+     * Get audio bit rate
+     *
+     * @return Audio BitRate
+     */
+    public long getAudioBitRate();
+
+    /**
+     * Get movie audio sample frequency in HZ (sample bit rate)
+     *
+     * @return Sample Frequency
+     */
+    public long getAudioSampleBitRate();
+
+    /**
+     * Get movie audio bits per sample (bit depth)
+     *
+     * @return Bits per Sample
+     */
+    public int getAudioBitDepth();
+}
@@ -1,18 +1,35 @@
 package org.chii2.medialibrary;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
 import org.chii2.medialibrary.api.core.MediaLibraryService;
+import org.chii2.medialibrary.api.core.Thumbnail;
 import org.chii2.medialibrary.api.file.FileService;
 import org.chii2.medialibrary.api.persistence.entity.Image;
+import org.chii2.medialibrary.api.persistence.entity.ImageAlbum;
 import org.chii2.medialibrary.api.persistence.entity.ImageFile;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
 import org.chii2.medialibrary.api.persistence.PersistenceService;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
+import org.chii2.medialibrary.cache.EntityCache;
+import org.chii2.medialibrary.cache.ThumbnailCache;
+import org.chii2.medialibrary.search.MediaIndex;
+import org.chii2.util.ConfigUtils;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,10 +37,22 @@ import java.util.Map;
  * Media Library Core Interface, provide major functionality & operations.
  */
 public class MediaLibraryServiceImpl implements MediaLibraryService {
+    // Injected ConfigAdmin Service
+    private ConfigurationAdmin configAdmin;
     // Persistence Service
     private PersistenceService persistenceService;
     // Injected EventAdmin Service
     private EventAdmin eventAdmin;
+    //Configuration FIle
+    private final static String CONFIG_FILE = "org.chii2.medialibrary.core";
+    // Movie Thumbnail Cache Size (MB) Config Key
+    private final static String MOVIE_THUMBNAIL_CACHE_SIZE = "movie.thumbnail.cache.size";
+    // Movie Cache Size Config Key
+    private final static String MOVIE_CACHE_SIZE = "movie.cache.size";
+    // Image Cache Size Config Key
+    private final static String IMAGE_CACHE_SIZE = "image.cache.size";
+    // Entities read at once while rebuilding the search index
+    private final static int INDEX_REBUILD_BATCH = 500;
     // Logger
     private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.core");
 
@@ -33,6 +62,51 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
     @SuppressWarnings("unused")
     public void init() {
         logger.debug("Chii2 Media Library MediaLibraryService (Core) init.");
+        Dictionary props = null;
+        // Read properties from ConfigAdmin Service
+        try {
+            Configuration config = configAdmin.getConfiguration(CONFIG_FILE);
+            props = config.getProperties();
+        } catch (IOException e) {
+            logger.error("MediaLibraryService fail to load configuration with exception: {}.", ExceptionUtils.getMessage(e));
+        }
+        // Load each configuration
+        if (props == null || props.isEmpty()) {
+            logger.error("MediaLibraryService load configuration <{}> with error.", CONFIG_FILE);
+        } else {
+            // Load thumbnail cache size
+            String thumbnailCacheSize = ConfigUtils.loadConfiguration(props, MOVIE_THUMBNAIL_CACHE_SIZE);
+            if (StringUtils.isNumeric(thumbnailCacheSize) && StringUtils.isNotBlank(thumbnailCacheSize)) {
+                ThumbnailCache.getInstance().setMaxSize(Long.parseLong(thumbnailCacheSize) * 1024 * 1024);
+                logger.debug("MediaLibraryService configuration <{}> loaded.", MOVIE_THUMBNAIL_CACHE_SIZE);
+            } else {
+                logger.error("MediaLibraryService configuration <{}> is not valid.", MOVIE_THUMBNAIL_CACHE_SIZE);
+            }
+            // Load entity cache sizes
+            String movieCacheSize = ConfigUtils.loadConfiguration(props, MOVIE_CACHE_SIZE);
+            if (StringUtils.isNumeric(movieCacheSize) && StringUtils.isNotBlank(movieCacheSize)) {
+                EntityCache.getMovieCache().setMaxEntries(Integer.parseInt(movieCacheSize));
+                logger.debug("MediaLibraryService configuration <{}> loaded.", MOVIE_CACHE_SIZE);
+            } else {
+                logger.error("MediaLibraryService configuration <{}> is not valid.", MOVIE_CACHE_SIZE);
+            }
+            String imageCacheSize = ConfigUtils.loadConfiguration(props, IMAGE_CACHE_SIZE);
+            if (StringUtils.isNumeric(imageCacheSize) && StringUtils.isNotBlank(imageCacheSize)) {
+                EntityCache.getImageCache().setMaxEntries(Integer.parseInt(imageCacheSize));
+                logger.debug("MediaLibraryService configuration <{}> loaded.", IMAGE_CACHE_SIZE);
+            } else {
+                logger.error("MediaLibraryService configuration <{}> is not valid.", IMAGE_CACHE_SIZE);
+            }
+        }
+        // Load the search index aside, searches use the database until it is ready
+        Thread indexer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loadSearchIndex();
+            }
+        }, "Chii2 Search Index");
+        indexer.setDaemon(true);
+        indexer.start();
     }
 
     /**
@@ -41,6 +115,13 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Chii2 Media Library MediaLibraryService (Core) destroy.");
+        ThumbnailCache.getInstance().logStatistics();
+        ThumbnailCache.getInstance().invalidateAll();
+        EntityCache.getMovieCache().logStatistics();
+        EntityCache.getMovieCache().invalidateAll();
+        EntityCache.getImageCache().logStatistics();
+        EntityCache.getImageCache().invalidateAll();
+        MediaIndex.getInstance().save();
     }
 
     @Override
@@ -53,6 +134,8 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
     public void scanMovies() {
         // Prepare properties
         Dictionary<String, Object> properties = new Hashtable<>();
+        // Files the scan manifest should remember at most
+        properties.put(FileService.LIBRARY_COUNT_PROPERTY, this.persistenceService.getMovieFilesCount());
         // Send a event
         Event event = new Event(FileService.MOVIE_SCAN_REQUEST_TOPIC, properties);
         logger.debug("Send a movie scan request event.");
@@ -63,6 +146,8 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
     public void scanImages() {
         // Prepare properties
         Dictionary<String, Object> properties = new Hashtable<>();
+        // Files the scan manifest should remember at most
+        properties.put(FileService.LIBRARY_COUNT_PROPERTY, this.persistenceService.getImagesCount());
         // Send a event
         Event event = new Event(FileService.IMAGE_SCAN_REQUEST_TOPIC, properties);
         logger.debug("Send a image scan request event.");
@@ -86,7 +171,14 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
 
     @Override
     public Movie getMovieById(String id) {
-        return this.persistenceService.getMovieById(id);
+        EntityCache<Movie> cache = EntityCache.getMovieCache();
+        Movie movie = cache.get(id);
+        if (movie == null) {
+            long generation = cache.getGeneration();
+            movie = this.persistenceService.getMovieById(id);
+            cache.put(id, movie, generation);
+        }
+        return movie;
     }
 
     @Override
@@ -104,9 +196,61 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         return this.persistenceService.getMoviesByName(movieName, firstResult, maxResults, sorts);
     }
 
+    @Override
+    public List<? extends Movie> searchMovies(String query, int firstResult, int maxResults) {
+        MediaIndex index = MediaIndex.getInstance();
+        if (!index.isReady()) {
+            return this.persistenceService.getMoviesByName(query, firstResult, maxResults, null);
+        }
+        return this.persistenceService.getMoviesByIds(index.searchMovies(query, firstResult, maxResults));
+    }
+
+    @Override
+    public long searchMoviesCount(String query) {
+        MediaIndex index = MediaIndex.getInstance();
+        if (!index.isReady()) {
+            return this.persistenceService.getMoviesByName(query, -1, -1, null).size();
+        }
+        return index.searchMoviesCount(query);
+    }
+
+    @Override
+    public List<? extends MovieSummary> getMovieSummaries(int firstResult, int maxResults, Map<String, String> sorts) {
+        return this.persistenceService.getMovieSummaries(firstResult, maxResults, sorts);
+    }
+
+    @Override
+    public Page<? extends MovieSummary> getMovieSummaries(PageCursor cursor, int maxResults) {
+        return this.persistenceService.getMovieSummaries(cursor, maxResults);
+    }
+
+    @Override
+    public List<? extends MovieSummary> getMovieSummariesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts) {
+        return this.persistenceService.getMovieSummariesByName(movieName, firstResult, maxResults, sorts);
+    }
+
     @Override
     public byte[] getMovieThumbnailById(String movieId) {
-        return this.persistenceService.getMovieThumbnailById(movieId);
+        Thumbnail thumbnail = this.getMovieThumbnail(movieId);
+        if (thumbnail != null) {
+            try {
+                return Files.readAllBytes(thumbnail.getFile());
+            } catch (IOException e) {
+                logger.error("Read movie {} thumbnail error: {}.", movieId, ExceptionUtils.getMessage(e));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Thumbnail getMovieThumbnail(String movieId) {
+        ThumbnailCache cache = ThumbnailCache.getInstance();
+        ThumbnailCache.Entry entry = cache.get(movieId);
+        if (entry != null) {
+            return entry.getThumbnail();
+        }
+        long generation = cache.getGeneration();
+        return cache.put(movieId, this.persistenceService.getMovieThumbnailFile(movieId), generation);
     }
 
     @Override
@@ -134,9 +278,21 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         return this.persistenceService.getImages(firstResult, maxResults, sorts);
     }
 
+    @Override
+    public Page<? extends Image> getImages(PageCursor cursor, int maxResults) {
+        return this.persistenceService.getImages(cursor, maxResults);
+    }
+
     @Override
     public Image getImageById(String id) {
-        return this.persistenceService.getImageById(id);
+        EntityCache<Image> cache = EntityCache.getImageCache();
+        Image image = cache.get(id);
+        if (image == null) {
+            long generation = cache.getGeneration();
+            image = this.persistenceService.getImageById(id);
+            cache.put(id, image, generation);
+        }
+        return image;
     }
 
     @Override
@@ -154,6 +310,29 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         return this.persistenceService.getImagesByField(fieldName, fieldValue, strict, firstResult, maxResults, sorts);
     }
 
+    @Override
+    public Page<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, PageCursor cursor, int maxResults) {
+        return this.persistenceService.getImagesByField(fieldName, fieldValue, strict, cursor, maxResults);
+    }
+
+    @Override
+    public List<? extends Image> searchImages(String query, int firstResult, int maxResults) {
+        MediaIndex index = MediaIndex.getInstance();
+        if (!index.isReady()) {
+            return this.persistenceService.getImagesByField("title", query, false, firstResult, maxResults, null);
+        }
+        return this.persistenceService.getImagesByIds(index.searchImages(query, firstResult, maxResults));
+    }
+
+    @Override
+    public long searchImagesCount(String query) {
+        MediaIndex index = MediaIndex.getInstance();
+        if (!index.isReady()) {
+            return this.persistenceService.getImagesByField("title", query, false, -1, -1, null).size();
+        }
+        return index.searchImagesCount(query);
+    }
+
     @Override
     public List<String> getImageAlbums() {
         return this.persistenceService.getImageAlbums(-1, -1, null);
@@ -169,6 +348,16 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         return this.persistenceService.getImageAlbums(firstResult, maxResults, sorts);
     }
 
+    @Override
+    public List<? extends ImageAlbum> getImageAlbumList(int firstResult, int maxResults, Map<String, String> sorts) {
+        return this.persistenceService.getImageAlbumList(firstResult, maxResults, sorts);
+    }
+
+    @Override
+    public ImageAlbum getImageAlbum(String album) {
+        return this.persistenceService.getImageAlbum(album);
+    }
+
     @Override
     public long getImagesCount() {
         return this.persistenceService.getImagesCount();
@@ -184,11 +373,66 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         return this.persistenceService.getImagesCountByAlbum(album);
     }
 
+    @Override
+    public Map<String, Long> getCacheStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : EntityCache.getMovieCache().getStatistics().entrySet()) {
+            statistics.put("movie." + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : EntityCache.getImageCache().getStatistics().entrySet()) {
+            statistics.put("image." + entry.getKey(), entry.getValue());
+        }
+        return statistics;
+    }
+
     @Override
     public ImageFile getImageFileById(String id) {
         return this.persistenceService.getImageFileById(id);
     }
 
+    /**
+     * Load the search index, rebuild it from the database when it is missing, misses library changes or does not match the library
+     */
+    private void loadSearchIndex() {
+        MediaIndex index = MediaIndex.getInstance();
+        try {
+            index.load();
+            // Movies
+            if (!index.isMoviesLoaded() || index.getMoviesCount() != this.persistenceService.getMoviesCount()) {
+                logger.info("Rebuild movie search index.");
+                index.clearMovies();
+                PageCursor cursor = new PageCursor(null);
+                Page<? extends MovieSummary> page;
+                do {
+                    page = this.persistenceService.getMovieSummaries(cursor, INDEX_REBUILD_BATCH);
+                    List<String> ids = new ArrayList<>();
+                    for (MovieSummary summary : page.getItems()) {
+                        ids.add(summary.getId());
+                    }
+                    index.addMovies(this.persistenceService.getMoviesByIds(ids));
+                    cursor = page.getNext();
+                } while (page.getItems().size() == INDEX_REBUILD_BATCH);
+            }
+            // Images
+            if (!index.isImagesLoaded() || index.getImagesCount() != this.persistenceService.getImagesCount()) {
+                logger.info("Rebuild image search index.");
+                index.clearImages();
+                PageCursor cursor = new PageCursor(null);
+                Page<? extends Image> page;
+                do {
+                    page = this.persistenceService.getImages(cursor, INDEX_REBUILD_BATCH);
+                    index.addImages(page.getItems());
+                    cursor = page.getNext();
+                } while (page.getItems().size() == INDEX_REBUILD_BATCH);
+            }
+            index.setReady(true);
+            index.save();
+            logger.info("Search index ready with {} movies and {} images.", index.getMoviesCount(), index.getImagesCount());
+        } catch (Exception e) {
+            logger.error("Search index load with error: {}, searches use the database.", ExceptionUtils.getMessage(e));
+        }
+    }
+
     /**
      * Inject PersistenceService
      *
@@ -199,6 +443,16 @@ public class MediaLibraryServiceImpl implements MediaLibraryService {
         this.persistenceService = persistenceService;
     }
 
+    /**
+     * Inject ConfigAdmin service
+     *
+     * @param configAdmin ConfigAdmin service
+     */
+    @SuppressWarnings("unused")
+    public void setConfigAdmin(ConfigurationAdmin configAdmin) {
+        this.configAdmin = configAdmin;
+    }
+
     /**
      * Inject EventAdmin service
      *
@@ -0,0 +1,212 @@
+package org.chii2.medialibrary.cache;
+
+import org.chii2.medialibrary.api.persistence.entity.Image;
+import org.chii2.medialibrary.api.persistence.entity.Movie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Entity Cache
+ * Keeps the most recently requested movies and images by ID, so the repeated lookups of a playback
+ * (every Range request looks the movie up again) do not query the database.
+ * Entities are invalidated by the event handlers when they are synchronized or deleted.
+ *
+ * @param <T> Entity Type
+ */
+public class EntityCache<T> {
+    // Movie Cache
+    private static final EntityCache<Movie> MOVIE_CACHE = new EntityCache<>("Movie");
+    // Image Cache
+    private static final EntityCache<Image> IMAGE_CACHE = new EntityCache<>("Image");
+    // Cache Name
+    private final String name;
+    // Entities in access order
+    private final LinkedHashMap<String, T> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Max Entries
+    private int maxEntries = 1000;
+    // Invalidation Generation
+    private long generation = 0;
+    // Hits
+    private long hits = 0;
+    // Misses
+    private long misses = 0;
+    // Evictions
+    private long evictions = 0;
+    // Invalidations
+    private long invalidations = 0;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.core");
+
+    /**
+     * Constructor
+     *
+     * @param name Cache Name
+     */
+    EntityCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get Movie Cache Instance
+     *
+     * @return Movie Cache
+     */
+    public static EntityCache<Movie> getMovieCache() {
+        return MOVIE_CACHE;
+    }
+
+    /**
+     * Get Image Cache Instance
+     *
+     * @return Image Cache
+     */
+    public static EntityCache<Image> getImageCache() {
+        return IMAGE_CACHE;
+    }
+
+    /**
+     * Set the max entries, least recently used entries over it are removed
+     *
+     * @param maxEntries Max Entries, 0 disables the cache
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        trim();
+    }
+
+    /**
+     * Get a cached entity
+     *
+     * @param id Entity ID
+     * @return Entity, null if not cached
+     */
+    public synchronized T get(String id) {
+        T entity = entries.get(id);
+        if (entity == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entity;
+    }
+
+    /**
+     * Get the invalidation generation, taken before loading an entity
+     *
+     * @return Generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Put an entity into the cache
+     * Ignored if an invalidation happened since the entity was loaded, it may be stale.
+     *
+     * @param id         Entity ID
+     * @param entity     Entity, null is not cached
+     * @param generation Generation taken before loading
+     */
+    public synchronized void put(String id, T entity, long generation) {
+        if (entity == null || generation != this.generation) {
+            return;
+        }
+        entries.put(id, entity);
+        trim();
+    }
+
+    /**
+     * Remove an entity from the cache, it may have changed
+     *
+     * @param id Entity ID
+     */
+    public synchronized void invalidate(String id) {
+        generation++;
+        if (entries.remove(id) != null) {
+            invalidations++;
+            logger.debug("{} {} removed from cache.", name, id);
+        }
+    }
+
+    /**
+     * Remove all entities from the cache
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations = invalidations + entries.size();
+        entries.clear();
+        logger.debug("All {} entities removed from cache.", name.toLowerCase());
+    }
+
+    /**
+     * Get cached entity count
+     *
+     * @return Size
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get max entries
+     *
+     * @return Max Entries
+     */
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get hits
+     *
+     * @return Hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get misses
+     *
+     * @return Misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get cache statistics
+     *
+     * @return Statistics by name, in a stable order
+     */
+    public synchronized Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("size", (long) entries.size());
+        statistics.put("max", (long) maxEntries);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+        statistics.put("invalidations", invalidations);
+        return statistics;
+    }
+
+    /**
+     * Log cache statistics
+     */
+    public synchronized void logStatistics() {
+        long lookups = hits + misses;
+        logger.info("{} cache: {} entries, {} hits, {} misses ({}% hit), {} evictions, {} invalidations.",
+                new Object[]{name, entries.size(), hits, misses, lookups == 0 ? 0 : hits * 100 / lookups, evictions, invalidations});
+    }
+
+    private void trim() {
+        while (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictions++;
+        }
+    }
+}
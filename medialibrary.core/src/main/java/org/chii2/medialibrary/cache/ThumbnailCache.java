@@ -0,0 +1,184 @@
+package org.chii2.medialibrary.cache;
+
+import org.chii2.medialibrary.api.core.Thumbnail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Movie Thumbnail Cache
+ * Keeps the thumbnail file and entity tag of browsed movies, bounded by the accounted entry size.
+ * The bytes stay in the image store and are sent from disk.
+ * Movies without thumbnail are cached too, so browsing never queries the database twice.
+ */
+public class ThumbnailCache {
+    // Singleton
+    private static final ThumbnailCache INSTANCE = new ThumbnailCache();
+    // Accounted size of an entry besides the file path
+    private final static int ENTRY_OVERHEAD = 128;
+    // Entries in access order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Max Size in bytes
+    private long maxSize = 32L * 1024 * 1024;
+    // Current Size in bytes
+    private long currentSize = 0;
+    // Invalidation Generation
+    private long generation = 0;
+    // Hits
+    private long hits = 0;
+    // Misses
+    private long misses = 0;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.core");
+
+    /**
+     * Get Thumbnail Cache Instance
+     *
+     * @return Thumbnail Cache Instance
+     */
+    public static ThumbnailCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the max size, entries over the size are removed
+     *
+     * @param maxSize Max Size in bytes
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    /**
+     * Get the cached entry, counted as one hit or miss
+     *
+     * @param movieId Movie ID
+     * @return Cached Entry, null if not cached
+     */
+    public synchronized Entry get(String movieId) {
+        Entry entry = entries.get(movieId);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Get the invalidation generation, taken before loading a thumbnail
+     *
+     * @return Generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Put a thumbnail file into the cache
+     * Ignored if an invalidation happened since the file was looked up, it may be stale.
+     *
+     * @param movieId    Movie ID
+     * @param file       Thumbnail File, null if the movie has no thumbnail
+     * @param generation Generation taken before loading
+     * @return Thumbnail, null if the movie has no thumbnail
+     */
+    public synchronized Thumbnail put(String movieId, Path file, long generation) {
+        Entry entry = new Entry(file == null ? null : new Thumbnail(file, createETag(file)));
+        if (generation != this.generation) {
+            return entry.getThumbnail();
+        }
+        remove(movieId);
+        entries.put(movieId, entry);
+        currentSize = currentSize + entry.getSize();
+        trim();
+        return entry.getThumbnail();
+    }
+
+    /**
+     * Remove a movie from the cache, its thumbnail may have changed
+     *
+     * @param movieId Movie ID
+     */
+    public synchronized void invalidate(String movieId) {
+        generation++;
+        if (remove(movieId)) {
+            logger.debug("Movie {} thumbnail removed from cache.", movieId);
+        }
+    }
+
+    /**
+     * Remove all movies from the cache
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        currentSize = 0;
+        logger.debug("All movie thumbnails removed from cache.");
+    }
+
+    /**
+     * Log cache statistics
+     */
+    public synchronized void logStatistics() {
+        logger.info("Movie thumbnail cache: {} entries, {} bytes, {} hits, {} misses.", new Object[]{entries.size(), currentSize, hits, misses});
+    }
+
+    private boolean remove(String movieId) {
+        Entry entry = entries.remove(movieId);
+        if (entry != null) {
+            currentSize = currentSize - entry.getSize();
+        }
+        return entry != null;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentSize > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            currentSize = currentSize - entry.getSize();
+        }
+    }
+
+    /**
+     * Entity tag from the thumbnail file, the image store names files by their content hash,
+     * so it stays the same when the same poster is synchronized again
+     *
+     * @param file Thumbnail File
+     * @return Quoted Entity Tag
+     */
+    private String createETag(Path file) {
+        return "\"" + file.getFileName().toString() + "\"";
+    }
+
+    /**
+     * Cached thumbnail, no thumbnail if the movie has none
+     */
+    public static class Entry {
+        // Thumbnail
+        private final Thumbnail thumbnail;
+
+        Entry(Thumbnail thumbnail) {
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * Get the cached thumbnail
+         *
+         * @return Thumbnail, null if the movie has no thumbnail
+         */
+        public Thumbnail getThumbnail() {
+            return thumbnail;
+        }
+
+        long getSize() {
+            return ENTRY_OVERHEAD + (thumbnail == null ? 0 : thumbnail.getFile().toString().length() * 2);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package org.chii2.medialibrary.event;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.chii2.medialibrary.api.file.FileService;
 import org.chii2.medialibrary.api.persistence.PersistenceService;
+import org.chii2.medialibrary.api.persistence.entity.Image;
 import org.chii2.medialibrary.api.persistence.entity.ImageFile;
 import org.chii2.medialibrary.api.provider.ImageFileInfoProviderService;
+import org.chii2.medialibrary.cache.EntityCache;
+import org.chii2.medialibrary.search.MediaIndex;
+import org.chii2.util.ConfigUtils;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.event.Event;
@@ -19,6 +24,8 @@ import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Image Event Handler handle all kinds of event related to images.
@@ -30,8 +37,18 @@ public class ImageHandler implements EventHandler {
     private EventAdmin eventAdmin;
     // Injected Persistence Service
     private PersistenceService persistenceService;
+    // Images synchronized in one transaction
+    private int batchSize = 500;
+    // Delay before a partial batch is synchronized (ms)
+    private final static long BATCH_DELAY = 2000;
+    // Synchronize Executor
+    private ScheduledExecutorService executor;
+    // Provided ImageFiles waiting to be synchronized
+    private SynchronizeBuffer<ImageFile> buffer;
     //Configuration FIle
     private final static String CONFIG_FILE = "org.chii2.medialibrary.core";
+    // Synchronize Batch Size Config Key
+    private final static String IMAGE_SYNCHRONIZE_BATCH = "image.synchronize.batch";
     // Logger
     private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.event");
 
@@ -53,7 +70,23 @@ public class ImageHandler implements EventHandler {
         if (props == null || props.isEmpty()) {
             logger.error("ImageHandler load configuration <{}> with error.", CONFIG_FILE);
         } else {
+            // Load synchronize batch size
+            String batchSize = ConfigUtils.loadConfiguration(props, IMAGE_SYNCHRONIZE_BATCH);
+            if (StringUtils.isNumeric(batchSize) && StringUtils.isNotBlank(batchSize)) {
+                this.batchSize = Integer.parseInt(batchSize);
+                logger.debug("ImageHandler configuration <{}> loaded.", IMAGE_SYNCHRONIZE_BATCH);
+            } else {
+                logger.error("ImageHandler configuration <{}> is not valid.", IMAGE_SYNCHRONIZE_BATCH);
+            }
         }
+        // Provided images are synchronized in batches
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.buffer = new SynchronizeBuffer<>(this.batchSize, BATCH_DELAY, this.executor, new SynchronizeBuffer.Synchronizer<ImageFile>() {
+            @Override
+            public void synchronize(List<ImageFile> imageFiles) {
+                synchronizeImages(imageFiles);
+            }
+        });
     }
 
     /**
@@ -62,6 +95,9 @@ public class ImageHandler implements EventHandler {
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Chii2 Media Library ImageHandler destroy.");
+        // Synchronize what is left
+        this.executor.shutdown();
+        this.buffer.flush();
     }
 
     @Override
@@ -71,6 +107,13 @@ public class ImageHandler implements EventHandler {
             List<Path> files = (List<Path>) event.getProperty(FileService.SCAN_PATH_PROPERTY);
             logger.debug("Receive a image scan event with {} records.", files.size());
             this.postImageFileInfoRequestEvent(files);
+        } else if (FileService.IMAGE_SCAN_COMPLETE_TOPIC.equals(event.getTopic())) {
+            List<Path> removed = (List<Path>) event.getProperty(FileService.SCAN_REMOVED_PATH_PROPERTY);
+            logger.debug("Receive a image scan complete event with {} found and {} provided records.", event.getProperty(FileService.SCAN_FOUND_COUNT_PROPERTY), event.getProperty(FileService.SCAN_PROVIDED_COUNT_PROPERTY));
+            if (removed != null && !removed.isEmpty()) {
+                logger.debug("Receive a image scan complete event with {} removed records.", removed.size());
+                this.deleteImages(removed);
+            }
         } else if (FileService.IMAGE_WATCH_CREATE_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(FileService.WATCH_PATH_PROPERTY);
             List<Path> files = new ArrayList<>();
@@ -80,7 +123,9 @@ public class ImageHandler implements EventHandler {
         } else if (FileService.IMAGE_WATCH_DELETE_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(FileService.WATCH_PATH_PROPERTY);
             logger.debug("Receive a image watch delete event for: {}.", path);
-            this.persistenceService.deleteImage(path.toString());
+            List<Path> files = new ArrayList<>();
+            files.add(path);
+            this.deleteImages(files);
         } else if (FileService.IMAGE_WATCH_MODIFY_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(FileService.WATCH_PATH_PROPERTY);
             List<Path> files = new ArrayList<>();
@@ -91,14 +136,95 @@ public class ImageHandler implements EventHandler {
             Path path = (Path) event.getProperty(ImageFileInfoProviderService.IMAGE_PATH_PROPERTY);
             ImageFile imageFile = (ImageFile) event.getProperty(ImageFileInfoProviderService.IMAGE_FILE_INFO_PROPERTY);
             logger.debug("Receive a image file information provided event for {}.", path);
-            // Synchronize to DB
-            this.persistenceService.synchronizeImage(imageFile);
+            // Synchronize to DB with the next batch
+            this.buffer.add(imageFile);
         } else if (ImageFileInfoProviderService.IMAGE_FILE_INFO_FAILED_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(ImageFileInfoProviderService.IMAGE_PATH_PROPERTY);
             logger.debug("Receive a image file information failed event for: {}.", path);
         }
     }
 
+    /**
+     * Delete the images under deleted paths
+     *
+     * @param paths Deleted File or Directory Paths
+     */
+    private void deleteImages(List<Path> paths) {
+        // The files may still wait to be synchronized
+        this.buffer.flush();
+        MediaIndex.getInstance().beginImageChange();
+        try {
+            for (Path path : paths) {
+                this.persistenceService.deleteImage(path.toString());
+                MediaIndex.getInstance().removeImages(path.toString());
+            }
+        } finally {
+            MediaIndex.getInstance().endImageChange();
+        }
+        List<String> removed = new ArrayList<>();
+        for (Path path : paths) {
+            removed.add(path.toAbsolutePath().toString());
+        }
+        this.postSynchronizedEvent(null, removed);
+        // Deleted images are not known by id here
+        EntityCache.getImageCache().invalidateAll();
+    }
+
+    /**
+     * Synchronize a batch of ImageFiles, one by one if the batch fails
+     *
+     * @param imageFiles ImageFiles
+     */
+    private void synchronizeImages(List<ImageFile> imageFiles) {
+        MediaIndex.getInstance().beginImageChange();
+        try {
+            synchronizeAndIndexImages(imageFiles);
+        } finally {
+            MediaIndex.getInstance().endImageChange();
+        }
+    }
+
+    /**
+     * Synchronize a batch of ImageFiles and index the synchronized images
+     *
+     * @param imageFiles ImageFiles
+     */
+    private void synchronizeAndIndexImages(List<ImageFile> imageFiles) {
+        List<String> synchronizedPaths = new ArrayList<>();
+        try {
+            this.persistenceService.synchronizeImages(imageFiles);
+            for (ImageFile imageFile : imageFiles) {
+                synchronizedPaths.add(imageFile.getAbsolutePath());
+            }
+            logger.debug("Synchronize {} images to database.", imageFiles.size());
+        } catch (Exception e) {
+            logger.warn("Synchronize {} images with error: {}, retry one by one.", imageFiles.size(), ExceptionUtils.getMessage(e));
+            for (ImageFile imageFile : imageFiles) {
+                try {
+                    this.persistenceService.synchronizeImage(imageFile);
+                    synchronizedPaths.add(imageFile.getAbsolutePath());
+                } catch (Exception ex) {
+                    logger.error("Synchronize image {} with error: {}.", imageFile.getAbsolutePath(), ExceptionUtils.getMessage(ex));
+                }
+            }
+        }
+        if (!synchronizedPaths.isEmpty()) {
+            // The scan manifest remembers the synchronized files
+            this.postSynchronizedEvent(synchronizedPaths, null);
+            // Index the synchronized images, read back for their IDs
+            try {
+                List<? extends Image> images = this.persistenceService.getImagesByPaths(synchronizedPaths);
+                for (Image image : images) {
+                    EntityCache.getImageCache().invalidate(image.getId());
+                }
+                MediaIndex.getInstance().addImages(images);
+            } catch (Exception e) {
+                EntityCache.getImageCache().invalidateAll();
+                logger.error("Index {} images with error: {}.", synchronizedPaths.size(), ExceptionUtils.getMessage(e));
+            }
+        }
+    }
+
     /**
      * Send a image information request event
      *
@@ -114,6 +240,25 @@ public class ImageHandler implements EventHandler {
         this.eventAdmin.postEvent(event);
     }
 
+    /**
+     * Send a image files synchronized event, acknowledging the scanned files to the file service
+     *
+     * @param synchronizedPaths Synchronized File Paths, null if none
+     * @param removed           Removed File or Directory Paths, null if none
+     */
+    private void postSynchronizedEvent(List<String> synchronizedPaths, List<String> removed) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        if (synchronizedPaths != null) {
+            properties.put(FileService.SYNCHRONIZED_PATH_PROPERTY, synchronizedPaths);
+        }
+        if (removed != null) {
+            properties.put(FileService.SYNCHRONIZED_REMOVED_PATH_PROPERTY, removed);
+        }
+        Event event = new Event(FileService.IMAGE_SYNCHRONIZED_TOPIC, properties);
+        logger.debug("Send a image files synchronized event.");
+        this.eventAdmin.postEvent(event);
+    }
+
     /**
      * Inject Config Admin
      *
@@ -10,6 +10,9 @@ import org.chii2.medialibrary.api.persistence.entity.MovieInfo;
 import org.chii2.medialibrary.api.persistence.factory.MovieFactory;
 import org.chii2.medialibrary.api.provider.MovieFileInfoProviderService;
 import org.chii2.medialibrary.api.provider.MovieInfoProviderService;
+import org.chii2.medialibrary.cache.EntityCache;
+import org.chii2.medialibrary.cache.ThumbnailCache;
+import org.chii2.medialibrary.search.MediaIndex;
 import org.chii2.util.ConfigUtils;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
@@ -22,6 +25,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Movie Event Handler handle all kinds of event related to movies.
@@ -42,6 +47,14 @@ public class MovieHandler implements EventHandler {
     private int posterCount = 3;
     // Backdrop fetch count
     private int backdropCount = 3;
+    // Movie files synchronized in one transaction
+    private int batchSize = 50;
+    // Delay before a partial batch is synchronized (ms)
+    private final static long BATCH_DELAY = 2000;
+    // Synchronize Executor
+    private ScheduledExecutorService executor;
+    // Provided MovieFiles waiting to be synchronized
+    private SynchronizeBuffer<MovieFile> buffer;
     //Configuration FIle
     private final static String CONFIG_FILE = "org.chii2.medialibrary.core";
     // Force to refresh/update movie's information Config Key
@@ -50,6 +63,8 @@ public class MovieHandler implements EventHandler {
     private final static String MOVIE_POSTER_COUNT = "movie.poster.count";
     // Backdrop Fetch Count Config Key
     private final static String MOVIE_BACKDROP_COUNT = "movie.backdrop.count";
+    // Synchronize Batch Size Config Key
+    private final static String MOVIE_SYNCHRONIZE_BATCH = "movie.synchronize.batch";
     // Logger
     private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.event");
 
@@ -97,7 +112,24 @@ public class MovieHandler implements EventHandler {
             } else {
                 logger.error("MovieHandler configuration <{}> is not valid.", MOVIE_BACKDROP_COUNT);
             }
+
+            // Load synchronize batch size
+            String batchSize = ConfigUtils.loadConfiguration(props, MOVIE_SYNCHRONIZE_BATCH);
+            if (StringUtils.isNumeric(batchSize) && StringUtils.isNotBlank(batchSize)) {
+                this.batchSize = Integer.parseInt(batchSize);
+                logger.debug("MovieHandler configuration <{}> loaded.", MOVIE_SYNCHRONIZE_BATCH);
+            } else {
+                logger.error("MovieHandler configuration <{}> is not valid.", MOVIE_SYNCHRONIZE_BATCH);
+            }
         }
+        // Provided movie files are synchronized in batches
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.buffer = new SynchronizeBuffer<>(this.batchSize, BATCH_DELAY, this.executor, new SynchronizeBuffer.Synchronizer<MovieFile>() {
+            @Override
+            public void synchronize(List<MovieFile> movieFiles) {
+                synchronizeMovies(movieFiles);
+            }
+        });
     }
 
     /**
@@ -106,6 +138,9 @@ public class MovieHandler implements EventHandler {
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Chii2 Media Library MovieHandler destroy.");
+        // Synchronize what is left
+        this.executor.shutdown();
+        this.buffer.flush();
     }
 
     @Override
@@ -117,6 +152,15 @@ public class MovieHandler implements EventHandler {
             logger.debug("Receive a movie scan event with {} records.", files.size());
             this.postMovieFileInfoRequestEvent(files);
         }
+        // Movie Scan Complete Event
+        else if (FileService.MOVIE_SCAN_COMPLETE_TOPIC.equals(event.getTopic())) {
+            List<Path> removed = (List<Path>) event.getProperty(FileService.SCAN_REMOVED_PATH_PROPERTY);
+            logger.debug("Receive a movie scan complete event with {} found and {} provided records.", event.getProperty(FileService.SCAN_FOUND_COUNT_PROPERTY), event.getProperty(FileService.SCAN_PROVIDED_COUNT_PROPERTY));
+            if (removed != null && !removed.isEmpty()) {
+                logger.debug("Receive a movie scan complete event with {} removed records.", removed.size());
+                this.deleteMovies(removed);
+            }
+        }
         // Movie Watch Create Event
         else if (FileService.MOVIE_WATCH_CREATE_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(FileService.WATCH_PATH_PROPERTY);
@@ -129,7 +173,9 @@ public class MovieHandler implements EventHandler {
         else if (FileService.MOVIE_WATCH_DELETE_TOPIC.equals(event.getTopic())) {
             Path path = (Path) event.getProperty(FileService.WATCH_PATH_PROPERTY);
             logger.debug("Receive a movie watch delete event for: {}.", path);
-            this.persistenceService.deleteMovie(path.toString());
+            List<Path> files = new ArrayList<>();
+            files.add(path);
+            this.deleteMovies(files);
         }
         // Movie Watch Modify Event
         else if (FileService.MOVIE_WATCH_MODIFY_TOPIC.equals(event.getTopic())) {
@@ -144,14 +190,8 @@ public class MovieHandler implements EventHandler {
             Path path = (Path) event.getProperty(MovieFileInfoProviderService.MOVIE_PATH_PROPERTY);
             MovieFile movieFile = (MovieFile) event.getProperty(MovieFileInfoProviderService.MOVIE_FILE_INFO_PROPERTY);
             logger.debug("Receive a movie file information provided event for: {}.", path);
-            // Synchronize
-            this.persistenceService.synchronizeMovie(movieFile);
-            // Get Movie (since it is lazy loading)
-            Movie movie = this.persistenceService.getMovieByMovieFile(movieFile);
-            // Request movie information
-            if (forceInfoUpdate || movie.getInfoCount() == 0) {
-                this.postMovieInfoRequestEvent(movie.getId(), movieFile.getMovieName(), movieFile.getYear(), 1, this.posterCount, this.backdropCount);
-            }
+            // Synchronize with the next batch
+            this.buffer.add(movieFile);
         }
         // Movie File Information Failed Event
         else if (MovieFileInfoProviderService.MOVIE_FILE_INFO_FAILED_TOPIC.equals(event.getTopic())) {
@@ -164,7 +204,17 @@ public class MovieHandler implements EventHandler {
             List<MovieInfo> info = (List<MovieInfo>) event.getProperty(MovieInfoProviderService.MOVIE_INFO_PROPERTY);
             logger.debug("Receive a movie information provided event with {} information.", info.size());
             // Synchronize
-            this.persistenceService.synchronizeMovie(movieId, info);
+            MediaIndex.getInstance().beginMovieChange();
+            try {
+                this.persistenceService.synchronizeMovie(movieId, info);
+                ThumbnailCache.getInstance().invalidate(movieId);
+                EntityCache.getMovieCache().invalidate(movieId);
+                MediaIndex.getInstance().addMovie(this.persistenceService.getMovieById(movieId));
+            } catch (Exception e) {
+                logger.error("Synchronize movie {} information with error: {}.", movieId, ExceptionUtils.getMessage(e));
+            } finally {
+                MediaIndex.getInstance().endMovieChange();
+            }
         }
         // Movie Information provided Failed Event
         else if (MovieInfoProviderService.MOVIE_INFO_FAILED_TOPIC.equals(event.getTopic())) {
@@ -173,6 +223,121 @@ public class MovieHandler implements EventHandler {
         }
     }
 
+    /**
+     * Delete the movie files under deleted paths, movies without files left are deleted
+     *
+     * @param paths Deleted File or Directory Paths
+     */
+    private void deleteMovies(List<Path> paths) {
+        // The files may still wait to be synchronized
+        this.buffer.flush();
+        MediaIndex.getInstance().beginMovieChange();
+        try {
+            for (Path path : paths) {
+                this.persistenceService.deleteMovie(path.toString());
+                MediaIndex.getInstance().removeMovies(path.toString());
+            }
+        } finally {
+            MediaIndex.getInstance().endMovieChange();
+        }
+        List<String> removed = new ArrayList<>();
+        for (Path path : paths) {
+            removed.add(path.toAbsolutePath().toString());
+        }
+        this.postSynchronizedEvent(null, removed);
+        // Deleted movies are not known by id here
+        ThumbnailCache.getInstance().invalidateAll();
+        EntityCache.getMovieCache().invalidateAll();
+    }
+
+    /**
+     * Synchronize a batch of MovieFiles, one by one if the batch fails, then request movie information
+     *
+     * @param movieFiles MovieFiles
+     */
+    private void synchronizeMovies(List<MovieFile> movieFiles) {
+        MediaIndex.getInstance().beginMovieChange();
+        try {
+            synchronizeAndIndexMovies(movieFiles);
+        } finally {
+            MediaIndex.getInstance().endMovieChange();
+        }
+    }
+
+    /**
+     * Synchronize a batch of MovieFiles, request movie information and index the synchronized movies
+     *
+     * @param movieFiles MovieFiles
+     */
+    private void synchronizeAndIndexMovies(List<MovieFile> movieFiles) {
+        List<MovieFile> synchronizedFiles = new ArrayList<>();
+        try {
+            this.persistenceService.synchronizeMovies(movieFiles);
+            synchronizedFiles.addAll(movieFiles);
+            logger.debug("Synchronize {} movie files to database.", movieFiles.size());
+        } catch (Exception e) {
+            logger.warn("Synchronize {} movie files with error: {}, retry one by one.", movieFiles.size(), ExceptionUtils.getMessage(e));
+            for (MovieFile movieFile : movieFiles) {
+                try {
+                    this.persistenceService.synchronizeMovie(movieFile);
+                    synchronizedFiles.add(movieFile);
+                } catch (Exception ex) {
+                    logger.error("Synchronize movie file {} with error: {}.", movieFile.getAbsolutePath(), ExceptionUtils.getMessage(ex));
+                }
+            }
+        }
+        // The scan manifest remembers the synchronized files
+        List<String> synchronizedPaths = new ArrayList<>();
+        for (MovieFile movieFile : synchronizedFiles) {
+            synchronizedPaths.add(movieFile.getAbsolutePath());
+        }
+        if (!synchronizedPaths.isEmpty()) {
+            this.postSynchronizedEvent(synchronizedPaths, null);
+        }
+        // CD1 CD2 files of one movie only request its information once
+        Set<String> movieIds = new HashSet<>();
+        for (MovieFile movieFile : synchronizedFiles) {
+            // Get Movie (since it is lazy loading)
+            Movie movie = this.persistenceService.getMovieByMovieFile(movieFile);
+            if (!movieIds.add(movie.getId())) {
+                continue;
+            }
+            ThumbnailCache.getInstance().invalidate(movie.getId());
+            EntityCache.getMovieCache().invalidate(movie.getId());
+            // Request movie information
+            if (forceInfoUpdate || movie.getInfoCount() == 0) {
+                this.postMovieInfoRequestEvent(movie.getId(), movieFile.getMovieName(), movieFile.getYear(), 1, this.posterCount, this.backdropCount);
+            }
+        }
+        // Index the synchronized movies with all their files
+        if (!movieIds.isEmpty()) {
+            try {
+                MediaIndex.getInstance().addMovies(this.persistenceService.getMoviesByIds(new ArrayList<>(movieIds)));
+            } catch (Exception e) {
+                logger.error("Index {} movies with error: {}.", movieIds.size(), ExceptionUtils.getMessage(e));
+            }
+        }
+    }
+
+    /**
+     * Send a movie files synchronized event, acknowledging the scanned files to the file service
+     *
+     * @param synchronizedPaths Synchronized File Paths, null if none
+     * @param removed           Removed File or Directory Paths, null if none
+     */
+    private void postSynchronizedEvent(List<String> synchronizedPaths, List<String> removed) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        if (synchronizedPaths != null) {
+            properties.put(FileService.SYNCHRONIZED_PATH_PROPERTY, synchronizedPaths);
+        }
+        if (removed != null) {
+            properties.put(FileService.SYNCHRONIZED_REMOVED_PATH_PROPERTY, removed);
+        }
+        Event event = new Event(FileService.MOVIE_SYNCHRONIZED_TOPIC, properties);
+        logger.debug("Send a movie files synchronized event.");
+        this.eventAdmin.postEvent(event);
+    }
+
     /**
      * Send a movie file information request event
      *
@@ -0,0 +1,105 @@
+package org.chii2.medialibrary.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer of provided files waiting to be synchronized into the database
+ * Files are synchronized in chunks, when a chunk is full or shortly after the last file arrived.
+ * Chunks are synchronized one after another, so a file provided twice keeps its order.
+ *
+ * @param <T> File Type
+ */
+public class SynchronizeBuffer<T> {
+    // Buffered Files
+    private List<T> items = new ArrayList<>();
+    // Chunk Size
+    private final int chunkSize;
+    // Delay before a partial chunk is synchronized (ms)
+    private final long delay;
+    // Executor for delayed synchronization
+    private final ScheduledExecutorService executor;
+    // Synchronizer
+    private final Synchronizer<T> synchronizer;
+    // Pending delayed synchronization
+    private ScheduledFuture<?> pending;
+    // Serializes chunks
+    private final Object flushLock = new Object();
+
+    /**
+     * Constructor
+     *
+     * @param chunkSize    Chunk Size
+     * @param delay        Delay before a partial chunk is synchronized (ms)
+     * @param executor     Executor for delayed synchronization
+     * @param synchronizer Synchronizer
+     */
+    public SynchronizeBuffer(int chunkSize, long delay, ScheduledExecutorService executor, Synchronizer<T> synchronizer) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.delay = delay;
+        this.executor = executor;
+        this.synchronizer = synchronizer;
+    }
+
+    /**
+     * Add a file, the chunk is synchronized in the calling thread when it is full
+     *
+     * @param item File
+     */
+    public void add(T item) {
+        boolean full;
+        synchronized (this) {
+            items.add(item);
+            full = items.size() >= chunkSize;
+            if (!full && pending == null && !executor.isShutdown()) {
+                pending = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Synchronize the buffered files now
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<T> chunk;
+            synchronized (this) {
+                chunk = items;
+                items = new ArrayList<>();
+                if (pending != null) {
+                    pending.cancel(false);
+                    pending = null;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                synchronizer.synchronize(chunk);
+            }
+        }
+    }
+
+    /**
+     * Synchronizer of a chunk
+     *
+     * @param <T> File Type
+     */
+    public interface Synchronizer<T> {
+
+        /**
+         * Synchronize a chunk of files
+         *
+         * @param items Files
+         */
+        public void synchronize(List<T> items);
+    }
+}
@@ -0,0 +1,578 @@
+package org.chii2.medialibrary.search;
+
+import org.apache.commons.lang.StringUtils;
+import org.chii2.medialibrary.api.persistence.entity.Image;
+import org.chii2.medialibrary.api.persistence.entity.Movie;
+import org.chii2.medialibrary.api.persistence.entity.MovieFile;
+import org.chii2.medialibrary.api.persistence.entity.MovieInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full text index of the media library
+ * Movies are indexed by titles, original and alternative names, overview and release date,
+ * images by title, album, camera and the date taken.
+ * The index is fed by the event handlers after each synchronization and answers searches without the database.
+ * Changes are saved a few seconds after they are made. A pending file marks an index whose library changes
+ * are not all saved yet, it is written before the database is changed and deleted once a save covers them,
+ * so an index left behind by a crash is rebuilt even if the counts still match.
+ */
+public class MediaIndex {
+    // Singleton
+    private static final MediaIndex INSTANCE = new MediaIndex();
+    // Default Index Directory, next to the database
+    private final static String DEFAULT_DIRECTORY = "data/SearchIndex";
+    // Movie Index File
+    private final static String MOVIE_INDEX_FILE = "movie.idx";
+    // Image Index File
+    private final static String IMAGE_INDEX_FILE = "image.idx";
+    // Pending Changes File Suffix
+    private final static String PENDING_SUFFIX = ".pending";
+    // Delay before changes are saved (s)
+    private final static int SAVE_DELAY = 10;
+    // Movie Names Field
+    private final static String NAME_FIELD = "name";
+    // Overview Field
+    private final static String OVERVIEW_FIELD = "overview";
+    // Date Field
+    private final static String DATE_FIELD = "date";
+    // Album Field
+    private final static String ALBUM_FIELD = "album";
+    // Camera Field
+    private final static String CAMERA_FIELD = "camera";
+    // Image Comment Field
+    private final static String COMMENT_FIELD = "comment";
+    // Movie Index
+    private final SearchIndex movieIndex;
+    // Image Index
+    private final SearchIndex imageIndex;
+    // Index Directory
+    private File directory = new File(DEFAULT_DIRECTORY);
+    // Indexes are complete and can answer searches
+    private volatile boolean ready = false;
+    // Movie Index Changes
+    private final Changes movieChanges = new Changes(MOVIE_INDEX_FILE);
+    // Image Index Changes
+    private final Changes imageChanges = new Changes(IMAGE_INDEX_FILE);
+    // Delayed Save Timer
+    private final ScheduledExecutorService timer;
+    // Delayed save is scheduled
+    private boolean saveScheduled = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.search");
+
+    /**
+     * Constructor
+     */
+    private MediaIndex() {
+        Map<String, Float> movieWeights = new HashMap<>();
+        movieWeights.put(SearchIndex.TITLE_FIELD, 4f);
+        movieWeights.put(NAME_FIELD, 3f);
+        movieWeights.put(DATE_FIELD, 1f);
+        movieWeights.put(OVERVIEW_FIELD, 1f);
+        this.movieIndex = new SearchIndex(movieWeights);
+        Map<String, Float> imageWeights = new HashMap<>();
+        imageWeights.put(SearchIndex.TITLE_FIELD, 4f);
+        imageWeights.put(ALBUM_FIELD, 3f);
+        imageWeights.put(CAMERA_FIELD, 2f);
+        imageWeights.put(DATE_FIELD, 2f);
+        imageWeights.put(COMMENT_FIELD, 1f);
+        this.imageIndex = new SearchIndex(imageWeights);
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Chii2 Search Index Saver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Get Media Index Instance
+     *
+     * @return Media Index Instance
+     */
+    public static MediaIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the index directory
+     *
+     * @param directory Index Directory
+     */
+    public synchronized void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load the indexes from the index directory
+     * An index with library changes not saved before the last stop is not loaded.
+     *
+     * @return True if both indexes loaded
+     */
+    public boolean load() {
+        boolean movies = load(movieIndex, movieChanges);
+        boolean images = load(imageIndex, imageChanges);
+        logger.debug("Search index loaded with {} movies and {} images.", movieIndex.size(), imageIndex.size());
+        return movies && images;
+    }
+
+    /**
+     * Whether the movie index is loaded with all library changes
+     *
+     * @return True if loaded
+     */
+    public boolean isMoviesLoaded() {
+        return movieChanges.loaded;
+    }
+
+    /**
+     * Whether the image index is loaded with all library changes
+     *
+     * @return True if loaded
+     */
+    public boolean isImagesLoaded() {
+        return imageChanges.loaded;
+    }
+
+    /**
+     * Save the changed indexes to the index directory
+     */
+    public void save() {
+        save(movieIndex, movieChanges);
+        save(imageIndex, imageChanges);
+    }
+
+    /**
+     * Movies in the library are about to change, must be followed by {@link #endMovieChange()}
+     */
+    public void beginMovieChange() {
+        begin(movieChanges);
+    }
+
+    /**
+     * Movie changes are made in the library and the index
+     */
+    public void endMovieChange() {
+        end(movieChanges);
+    }
+
+    /**
+     * Images in the library are about to change, must be followed by {@link #endImageChange()}
+     */
+    public void beginImageChange() {
+        begin(imageChanges);
+    }
+
+    /**
+     * Image changes are made in the library and the index
+     */
+    public void endImageChange() {
+        end(imageChanges);
+    }
+
+    /**
+     * Whether the indexes are complete and can answer searches
+     *
+     * @return True if ready
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Mark the indexes complete, or not while they are rebuilt
+     *
+     * @param ready Ready
+     */
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Add or replace a movie
+     *
+     * @param movie Movie
+     */
+    public void addMovie(Movie movie) {
+        if (movie == null) {
+            return;
+        }
+        begin(movieChanges);
+        try {
+            putMovie(movie);
+        } finally {
+            end(movieChanges);
+        }
+    }
+
+    /**
+     * Add or replace a movie in the movie index
+     *
+     * @param movie Movie
+     */
+    private void putMovie(Movie movie) {
+        List<String> paths = new ArrayList<>();
+        for (MovieFile file : movie.getFiles()) {
+            paths.add(file.getAbsolutePath());
+        }
+        // All names from all providers, and the name guessed from the file
+        Set<String> names = new LinkedHashSet<>();
+        for (MovieInfo info : movie.getInfo()) {
+            names.add(info.getName());
+            names.add(info.getOriginalName());
+            names.add(info.getAlternativeName());
+        }
+        for (MovieFile file : movie.getFiles()) {
+            names.add(file.getMovieName());
+        }
+        names.remove(null);
+        Map<String, String> fields = new HashMap<>();
+        fields.put(SearchIndex.TITLE_FIELD, movie.getTitle());
+        fields.put(NAME_FIELD, StringUtils.join(names, "\n"));
+        fields.put(OVERVIEW_FIELD, movie.getOverview());
+        fields.put(DATE_FIELD, SearchIndex.formatDate(movie.getReleasedDate()));
+        movieIndex.put(movie.getId(), paths, fields);
+    }
+
+    /**
+     * Add or replace movies
+     *
+     * @param movies Movies
+     */
+    public void addMovies(List<? extends Movie> movies) {
+        for (Movie movie : movies) {
+            addMovie(movie);
+        }
+    }
+
+    /**
+     * Add or replace an image
+     *
+     * @param image Image
+     */
+    public void addImage(Image image) {
+        if (image == null) {
+            return;
+        }
+        begin(imageChanges);
+        try {
+            putImage(image);
+        } finally {
+            end(imageChanges);
+        }
+    }
+
+    /**
+     * Add or replace an image in the image index
+     *
+     * @param image Image
+     */
+    private void putImage(Image image) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(SearchIndex.TITLE_FIELD, image.getTitle());
+        fields.put(ALBUM_FIELD, image.getAlbum());
+        fields.put(CAMERA_FIELD, StringUtils.join(new Object[]{image.getCameraMaker(), image.getCameraModel()}, " "));
+        fields.put(DATE_FIELD, SearchIndex.formatDate(image.getDateTaken()));
+        fields.put(COMMENT_FIELD, image.getUserComment());
+        imageIndex.put(image.getId(), Collections.singletonList(image.getAbsolutePath()), fields);
+    }
+
+    /**
+     * Add or replace images
+     *
+     * @param images Images
+     */
+    public void addImages(List<? extends Image> images) {
+        for (Image image : images) {
+            addImage(image);
+        }
+    }
+
+    /**
+     * Remove a movie
+     *
+     * @param movieId Movie ID
+     */
+    public void removeMovie(String movieId) {
+        begin(movieChanges);
+        try {
+            movieIndex.remove(movieId);
+        } finally {
+            end(movieChanges);
+        }
+    }
+
+    /**
+     * Remove the movie files under a deleted path, movies without files left are removed
+     *
+     * @param path File or Directory Path
+     */
+    public void removeMovies(String path) {
+        begin(movieChanges);
+        try {
+            movieIndex.removePath(path, isDirectory(path));
+        } finally {
+            end(movieChanges);
+        }
+    }
+
+    /**
+     * Remove the images under a deleted path
+     *
+     * @param path File or Directory Path
+     */
+    public void removeImages(String path) {
+        begin(imageChanges);
+        try {
+            imageIndex.removePath(path, isDirectory(path));
+        } finally {
+            end(imageChanges);
+        }
+    }
+
+    /**
+     * Remove all movies
+     */
+    public void clearMovies() {
+        begin(movieChanges);
+        try {
+            movieIndex.clear();
+        } finally {
+            end(movieChanges);
+        }
+    }
+
+    /**
+     * Remove all images
+     */
+    public void clearImages() {
+        begin(imageChanges);
+        try {
+            imageIndex.clear();
+        } finally {
+            end(imageChanges);
+        }
+    }
+
+    /**
+     * Search movies
+     *
+     * @param query       Query Text
+     * @param firstResult First Result
+     * @param maxResults  Max Results, minus number means all
+     * @return Movie IDs, best first
+     */
+    public List<String> searchMovies(String query, int firstResult, int maxResults) {
+        return movieIndex.search(query, firstResult, maxResults);
+    }
+
+    /**
+     * Count the movies matching a query
+     *
+     * @param query Query Text
+     * @return Count
+     */
+    public long searchMoviesCount(String query) {
+        return movieIndex.count(query);
+    }
+
+    /**
+     * Search images
+     *
+     * @param query       Query Text
+     * @param firstResult First Result
+     * @param maxResults  Max Results, minus number means all
+     * @return Image IDs, best first
+     */
+    public List<String> searchImages(String query, int firstResult, int maxResults) {
+        return imageIndex.search(query, firstResult, maxResults);
+    }
+
+    /**
+     * Count the images matching a query
+     *
+     * @param query Query Text
+     * @return Count
+     */
+    public long searchImagesCount(String query) {
+        return imageIndex.count(query);
+    }
+
+    /**
+     * Get indexed movie count
+     *
+     * @return Movie Count
+     */
+    public int getMoviesCount() {
+        return movieIndex.size();
+    }
+
+    /**
+     * Get indexed image count
+     *
+     * @return Image Count
+     */
+    public int getImagesCount() {
+        return imageIndex.size();
+    }
+
+    /**
+     * A deleted path without file extension should be a directory, like in the database
+     *
+     * @param path Path
+     * @return True if directory
+     */
+    private boolean isDirectory(String path) {
+        String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+        return name.indexOf('.') < 0;
+    }
+
+    /**
+     * Index file in the index directory
+     *
+     * @param name File Name
+     * @return Index File
+     */
+    private synchronized File getIndexFile(String name) {
+        return new File(directory, name);
+    }
+
+    /**
+     * Load an index, unless its library changes were not all saved
+     *
+     * @param index   Index
+     * @param changes Index Changes
+     * @return True if loaded
+     */
+    private boolean load(SearchIndex index, Changes changes) {
+        File pending = getIndexFile(changes.name + PENDING_SUFFIX);
+        boolean loaded;
+        if (pending.exists()) {
+            logger.info("Search index {} misses library changes made before the last stop, ignored.", changes.name);
+            loaded = false;
+        } else {
+            loaded = index.load(getIndexFile(changes.name));
+        }
+        synchronized (this) {
+            changes.loaded = loaded;
+            // Still pending until the index is rebuilt and saved
+            changes.marked = pending.exists();
+        }
+        return loaded;
+    }
+
+    /**
+     * Save an index, the pending file is deleted if no change was made or started meanwhile
+     *
+     * @param index   Index
+     * @param changes Index Changes
+     */
+    private void save(SearchIndex index, Changes changes) {
+        long generation;
+        synchronized (this) {
+            generation = changes.generation;
+        }
+        if (!index.save(getIndexFile(changes.name))) {
+            return;
+        }
+        synchronized (this) {
+            if (changes.marked && changes.active == 0 && changes.generation == generation) {
+                File pending = getIndexFile(changes.name + PENDING_SUFFIX);
+                if (!pending.delete() && pending.exists()) {
+                    logger.warn("Can not delete search index pending file {}.", pending);
+                } else {
+                    changes.marked = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a change, the pending file is written before the first change after a save
+     *
+     * @param changes Index Changes
+     */
+    private synchronized void begin(Changes changes) {
+        changes.active++;
+        changes.generation++;
+        if (!changes.marked) {
+            File pending = getIndexFile(changes.name + PENDING_SUFFIX);
+            try {
+                File parent = pending.getAbsoluteFile().getParentFile();
+                if (parent.isDirectory() || parent.mkdirs()) {
+                    changes.marked = pending.createNewFile() || pending.exists();
+                }
+            } catch (IOException e) {
+                logger.warn("Can not write search index pending file {}: {}.", pending, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * End a change and save a while later
+     *
+     * @param changes Index Changes
+     */
+    private synchronized void end(Changes changes) {
+        changes.active--;
+        if (!saveScheduled && ready) {
+            try {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (MediaIndex.this) {
+                            saveScheduled = false;
+                        }
+                        save();
+                    }
+                }, SAVE_DELAY, TimeUnit.SECONDS);
+                saveScheduled = true;
+            } catch (RejectedExecutionException e) {
+                logger.warn("Can not schedule search index save: {}.", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Library changes of one index
+     */
+    private static class Changes {
+        // Index File Name
+        private final String name;
+        // Changes started, increased for every change
+        private long generation = 0;
+        // Changes started and not ended
+        private int active = 0;
+        // Pending file is written
+        private boolean marked = false;
+        // Index loaded with all library changes
+        private boolean loaded = false;
+
+        /**
+         * Constructor
+         *
+         * @param name Index File Name
+         */
+        private Changes(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package org.chii2.medialibrary.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded full text index
+ * Every document is a few weighted text fields, every token points to the documents containing it with a score.
+ * A search matches documents containing all the query tokens, a query token also matches the tokens it starts,
+ * so typing the beginning of a title is enough. Results are ranked by the summed field weights.
+ * The documents are kept in one file, the postings are rebuilt when the file is loaded.
+ */
+public class SearchIndex {
+    // Title Field, ties are ranked by it
+    public final static String TITLE_FIELD = "title";
+    // Index File Version
+    private final static int VERSION = 1;
+    // Score factor of a prefix match
+    private final static float PREFIX_FACTOR = 0.5f;
+    // Most postings probed for a query token, a document is scanned instead when its prefix starts more tokens
+    private final static int MAX_PROBES = 32;
+    // Longest indexed field (chars), keeps long overviews storable
+    private final static int MAX_FIELD_LENGTH = 8192;
+    // Dates written in a query, indexed as yyyyMMdd
+    private final static Pattern DATE_PATTERN = Pattern.compile("\\b(\\d{4})[-/.:](\\d{1,2})(?:[-/.:](\\d{1,2}))?\\b");
+    // Field Weights
+    private final Map<String, Float> weights;
+    // Documents by ID
+    private final Map<String, Document> documents = new HashMap<>();
+    // Postings, token -> <document ID, score>, sorted for prefix lookups
+    private final TreeMap<String, Map<String, Float>> postings = new TreeMap<>();
+    // Changed since loaded or saved
+    private boolean dirty = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.search");
+
+    /**
+     * Constructor
+     *
+     * @param weights Field Weights, fields without weight are not indexed
+     */
+    public SearchIndex(Map<String, Float> weights) {
+        this.weights = new HashMap<>(weights);
+    }
+
+    /**
+     * Add or replace a document
+     *
+     * @param id     Document ID
+     * @param paths  Files of the document
+     * @param fields Field Values <field, text>
+     */
+    public synchronized void put(String id, Collection<String> paths, Map<String, String> fields) {
+        remove(id);
+        Document document = new Document(id);
+        for (String path : paths) {
+            if (path != null) {
+                document.paths.add(normalizePath(path));
+            }
+        }
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (field.getValue() != null && weights.containsKey(field.getKey())) {
+                String value = field.getValue();
+                if (value.length() > MAX_FIELD_LENGTH) {
+                    value = value.substring(0, MAX_FIELD_LENGTH);
+                }
+                document.fields.put(field.getKey(), value);
+            }
+        }
+        addDocument(document);
+        dirty = true;
+    }
+
+    /**
+     * Remove a document
+     *
+     * @param id Document ID
+     * @return True if the document was indexed
+     */
+    public synchronized boolean remove(String id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return false;
+        }
+        for (String token : document.tokens.keySet()) {
+            Map<String, Float> posting = postings.get(token);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Remove a deleted file or directory from the documents, documents without files left are removed
+     *
+     * @param path      File or Directory Path
+     * @param directory Whether the path is a directory
+     * @return Removed Document Count
+     */
+    public synchronized int removePath(String path, boolean directory) {
+        String removed = normalizePath(path);
+        if (directory && !removed.endsWith("/")) {
+            removed = removed + "/";
+        }
+        List<String> empty = new ArrayList<>();
+        for (Document document : documents.values()) {
+            boolean changed = false;
+            Iterator<String> paths = document.paths.iterator();
+            while (paths.hasNext()) {
+                String documentPath = paths.next();
+                if (directory ? documentPath.startsWith(removed) : documentPath.equals(removed)) {
+                    paths.remove();
+                    changed = true;
+                }
+            }
+            if (changed && document.paths.isEmpty()) {
+                empty.add(document.id);
+            } else if (changed) {
+                dirty = true;
+            }
+        }
+        for (String id : empty) {
+            remove(id);
+        }
+        return empty.size();
+    }
+
+    /**
+     * Search documents
+     *
+     * @param query       Query Text
+     * @param firstResult First Result
+     * @param maxResults  Max Results, minus number means all
+     * @return Document IDs, best first
+     */
+    public synchronized List<String> search(String query, int firstResult, int maxResults) {
+        Map<String, Float> scores = match(query);
+        int from = Math.min(Math.max(firstResult, 0), scores.size());
+        int to = maxResults < 0 ? scores.size() : (int) Math.min((long) from + maxResults, scores.size());
+        // Only the requested page is ranked, in a heap holding the best matches so far
+        Comparator<Map.Entry<String, Float>> comparator = new RankComparator();
+        PriorityQueue<Map.Entry<String, Float>> best = new PriorityQueue<>(Math.max(to, 1), Collections.reverseOrder(comparator));
+        for (Map.Entry<String, Float> score : scores.entrySet()) {
+            if (best.size() < to) {
+                best.add(score);
+            } else if (to > 0 && comparator.compare(score, best.peek()) < 0) {
+                best.poll();
+                best.add(score);
+            }
+        }
+        List<Map.Entry<String, Float>> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, comparator);
+        List<String> ids = new ArrayList<>(to - from);
+        for (Map.Entry<String, Float> entry : ranked.subList(from, to)) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Count the documents matching a query
+     *
+     * @param query Query Text
+     * @return Count
+     */
+    public synchronized long count(String query) {
+        return match(query).size();
+    }
+
+    /**
+     * Remove all documents
+     */
+    public synchronized void clear() {
+        documents.clear();
+        postings.clear();
+        dirty = true;
+    }
+
+    /**
+     * Get document count
+     *
+     * @return Size
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * Get indexed token count
+     *
+     * @return Token Count
+     */
+    public synchronized int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * Load the documents from the index file, replacing the current ones
+     *
+     * @param file Index File
+     * @return True if loaded
+     */
+    public synchronized boolean load(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        Map<String, Document> loaded = new HashMap<>();
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != VERSION) {
+                logger.warn("Search index {} is written by another version, ignored.", file);
+                return false;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                Document document = new Document(input.readUTF());
+                int pathCount = input.readInt();
+                for (int j = 0; j < pathCount; j++) {
+                    document.paths.add(input.readUTF());
+                }
+                int fieldCount = input.readInt();
+                for (int j = 0; j < fieldCount; j++) {
+                    document.fields.put(input.readUTF(), input.readUTF());
+                }
+                loaded.put(document.id, document);
+            }
+        } catch (IOException e) {
+            logger.warn("Can not load search index {}: {}.", file, e.getMessage());
+            return false;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        documents.clear();
+        postings.clear();
+        for (Document document : loaded.values()) {
+            addDocument(document);
+        }
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Save the documents to the index file if they changed
+     *
+     * @param file Index File
+     * @return True if saved or nothing changed
+     */
+    public synchronized boolean save(File file) {
+        if (!dirty && file.isFile()) {
+            return true;
+        }
+        File temp = null;
+        DataOutputStream output = null;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            // Write aside and move, a crash never leaves a partial index
+            temp = File.createTempFile(file.getName(), ".tmp", parent);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeInt(documents.size());
+            for (Document document : documents.values()) {
+                output.writeUTF(document.id);
+                output.writeInt(document.paths.size());
+                for (String path : document.paths) {
+                    output.writeUTF(path);
+                }
+                output.writeInt(document.fields.size());
+                for (Map.Entry<String, String> field : document.fields.entrySet()) {
+                    output.writeUTF(field.getKey());
+                    output.writeUTF(field.getValue());
+                }
+            }
+            output.close();
+            output = null;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            return true;
+        } catch (IOException e) {
+            logger.error("Can not save search index {}: {}.", file, e.getMessage());
+            return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (temp != null && temp.exists() && !temp.delete()) {
+                logger.warn("Can not delete temporary search index {}.", temp);
+            }
+        }
+    }
+
+    /**
+     * Index text of a date, matched by queries like 2012, 2012-05 or 2012-05-17
+     *
+     * @param date Date
+     * @return Date Text, null if no date
+     */
+    public static String formatDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return new SimpleDateFormat("yyyyMMdd").format(date);
+    }
+
+    /**
+     * Split text into tokens
+     * Tokens are lower case letters and digits without accents, every CJK character is a token by itself.
+     *
+     * @param text Text
+     * @return Tokens in text order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        // Dates are one token
+        Matcher matcher = DATE_PATTERN.matcher(text);
+        StringBuffer dated = new StringBuffer();
+        while (matcher.find()) {
+            String date = matcher.group(1) + pad(matcher.group(2)) + (matcher.group(3) == null ? "" : pad(matcher.group(3)));
+            matcher.appendReplacement(dated, date);
+        }
+        matcher.appendTail(dated);
+        // Accents are ignored
+        String normalized = Normalizer.normalize(dated, Normalizer.Form.NFD).toLowerCase(Locale.ENGLISH);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (isIdeographic(codePoint)) {
+                flush(token, tokens);
+                tokens.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                token.appendCodePoint(codePoint);
+            } else {
+                flush(token, tokens);
+            }
+        }
+        flush(token, tokens);
+        return tokens;
+    }
+
+    /**
+     * Score the documents matching all the query tokens
+     * The candidates come from the rarest token, the other tokens are only checked on them.
+     *
+     * @param query Query Text
+     * @return Scores <document ID, score>
+     */
+    private Map<String, Float> match(String query) {
+        Map<String, Float> scores = new HashMap<>();
+        Set<String> tokens = new LinkedHashSet<>(tokenize(query));
+        if (tokens.isEmpty()) {
+            return scores;
+        }
+        // Rarest token
+        String rarest = null;
+        long rarestCount = Long.MAX_VALUE;
+        for (String token : tokens) {
+            long count = 0;
+            for (Map<String, Float> posting : getPostings(token).values()) {
+                count = count + posting.size();
+            }
+            if (count < rarestCount) {
+                rarest = token;
+                rarestCount = count;
+            }
+        }
+        if (rarestCount == 0) {
+            return scores;
+        }
+        for (Map.Entry<String, Map<String, Float>> posting : getPostings(rarest).entrySet()) {
+            float factor = posting.getKey().equals(rarest) ? 1 : PREFIX_FACTOR;
+            for (Map.Entry<String, Float> match : posting.getValue().entrySet()) {
+                Float score = scores.get(match.getKey());
+                float matchScore = match.getValue() * factor;
+                if (score == null || score < matchScore) {
+                    scores.put(match.getKey(), matchScore);
+                }
+            }
+        }
+        tokens.remove(rarest);
+        // Every other token must match too
+        for (String token : tokens) {
+            SortedMap<String, Map<String, Float>> matches = getPostings(token);
+            boolean probe = matches.size() <= MAX_PROBES;
+            Iterator<Map.Entry<String, Float>> iterator = scores.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Float> score = iterator.next();
+                float best = probe ? probePostings(score.getKey(), token, matches) : scanDocument(score.getKey(), token);
+                if (best == 0) {
+                    iterator.remove();
+                } else {
+                    score.setValue(score.getValue() + best);
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Best score of a query token in a document, looked up in the postings of the tokens it starts
+     *
+     * @param id       Document ID
+     * @param token    Query Token
+     * @param postings Postings of the tokens the query token starts
+     * @return Score, 0 if not matched
+     */
+    private float probePostings(String id, String token, SortedMap<String, Map<String, Float>> postings) {
+        float best = 0;
+        for (Map.Entry<String, Map<String, Float>> posting : postings.entrySet()) {
+            Float score = posting.getValue().get(id);
+            if (score != null) {
+                best = Math.max(best, posting.getKey().equals(token) ? score : score * PREFIX_FACTOR);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Best score of a query token in a document, looked up in the document tokens
+     * Used when the query token starts too many tokens to probe their postings.
+     *
+     * @param id    Document ID
+     * @param token Query Token
+     * @return Score, 0 if not matched
+     */
+    private float scanDocument(String id, String token) {
+        float best = 0;
+        for (Map.Entry<String, Float> documentToken : documents.get(id).tokens.entrySet()) {
+            if (documentToken.getKey().startsWith(token)) {
+                best = Math.max(best, documentToken.getKey().equals(token) ? documentToken.getValue() : documentToken.getValue() * PREFIX_FACTOR);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Postings of the token and of the tokens it starts
+     *
+     * @param token Query Token
+     * @return Postings
+     */
+    private SortedMap<String, Map<String, Float>> getPostings(String token) {
+        return postings.subMap(token, token + Character.MAX_VALUE);
+    }
+
+    /**
+     * Tokenize a document and add it to the postings
+     *
+     * @param document Document
+     */
+    private void addDocument(Document document) {
+        String title = document.fields.get(TITLE_FIELD);
+        document.title = title == null ? "" : title.toLowerCase(Locale.ENGLISH);
+        for (Map.Entry<String, String> field : document.fields.entrySet()) {
+            float weight = weights.get(field.getKey());
+            // A token counts once per field
+            for (String token : new LinkedHashSet<>(tokenize(field.getValue()))) {
+                Float score = document.tokens.get(token);
+                document.tokens.put(token, score == null ? weight : score + weight);
+            }
+        }
+        for (Map.Entry<String, Float> token : document.tokens.entrySet()) {
+            Map<String, Float> posting = postings.get(token.getKey());
+            if (posting == null) {
+                posting = new HashMap<>();
+                postings.put(token.getKey(), posting);
+            }
+            posting.put(document.id, token.getValue());
+        }
+        documents.put(document.id, document);
+    }
+
+    /**
+     * Paths are compared with unix separators, like in the database
+     *
+     * @param path Path
+     * @return Normalized Path
+     */
+    private static String normalizePath(String path) {
+        return path.replace('\\', '/');
+    }
+
+    /**
+     * Whether the character is a CJK ideograph or syllable, these are not separated by spaces
+     *
+     * @param codePoint Character
+     * @return True if ideographic
+     */
+    private static boolean isIdeographic(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * Add the pending token
+     *
+     * @param token  Pending Token
+     * @param tokens Tokens
+     */
+    private static void flush(StringBuilder token, List<String> tokens) {
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+            token.setLength(0);
+        }
+    }
+
+    /**
+     * Two digits month or day
+     *
+     * @param value Month or Day
+     * @return Padded Value
+     */
+    private static String pad(String value) {
+        return value.length() == 1 ? "0" + value : value;
+    }
+
+    /**
+     * Best score first, then by title and ID
+     */
+    private class RankComparator implements Comparator<Map.Entry<String, Float>> {
+        @Override
+        public int compare(Map.Entry<String, Float> o1, Map.Entry<String, Float> o2) {
+            int result = Float.compare(o2.getValue(), o1.getValue());
+            if (result == 0) {
+                result = documents.get(o1.getKey()).title.compareTo(documents.get(o2.getKey()).title);
+            }
+            if (result == 0) {
+                result = o1.getKey().compareTo(o2.getKey());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Indexed Document
+     */
+    private static class Document {
+        // Document ID
+        private final String id;
+        // Files of the document
+        private final List<String> paths = new ArrayList<>();
+        // Field Values
+        private final Map<String, String> fields = new LinkedHashMap<>();
+        // Token Scores
+        private final Map<String, Float> tokens = new HashMap<>();
+        // Lower case title for ordering ties
+        private String title = "";
+
+        /**
+         * Constructor
+         *
+         * @param id Document ID
+         */
+        private Document(String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.chii2.medialibrary.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+/**
+ * Test for Entity Cache
+ */
+public class EntityCacheTest {
+
+    @Test
+    public void CacheTest() {
+        EntityCache<String> cache = new EntityCache<>("Test");
+        cache.setMaxEntries(2);
+        assert cache.get("1") == null;
+        cache.put("1", "one", cache.getGeneration());
+        cache.put("2", "two", cache.getGeneration());
+        assert "one".equals(cache.get("1"));
+        // Least recently used is evicted
+        cache.put("3", "three", cache.getGeneration());
+        assert cache.get("2") == null;
+        assert "one".equals(cache.get("1"));
+        assert "three".equals(cache.get("3"));
+
+        // Loaded before an invalidation, may be stale
+        long generation = cache.getGeneration();
+        cache.invalidate("1");
+        cache.put("1", "stale", generation);
+        assert cache.get("1") == null;
+        cache.put("1", "fresh", cache.getGeneration());
+        assert "fresh".equals(cache.get("1"));
+
+        cache.invalidateAll();
+        assert cache.getSize() == 0;
+
+        Map<String, Long> statistics = cache.getStatistics();
+        assert statistics.get("hits") == 4;
+        assert statistics.get("misses") == 3;
+        assert statistics.get("evictions") == 1;
+        assert statistics.get("invalidations") == 3;
+    }
+
+    @Test
+    public void DisabledTest() {
+        EntityCache<String> cache = new EntityCache<>("Test");
+        cache.setMaxEntries(0);
+        cache.put("1", "one", cache.getGeneration());
+        assert cache.get("1") == null;
+        // Missing entities are not cached
+        cache.setMaxEntries(10);
+        cache.put("1", null, cache.getGeneration());
+        assert cache.getSize() == 0;
+    }
+}
@@ -0,0 +1,48 @@
+package org.chii2.medialibrary.search;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test for Media Index
+ */
+public class MediaIndexTest {
+
+    @Test
+    public void PendingChangesTest() throws IOException {
+        File directory = new File(FileUtils.getTempDirectory(), "chii2-media-index-test");
+        FileUtils.deleteQuietly(directory);
+        FileUtils.forceMkdir(directory);
+        try {
+            MediaIndex index = MediaIndex.getInstance();
+            index.setDirectory(directory);
+            index.clearMovies();
+            index.clearImages();
+            index.save();
+            File pending = new File(directory, "movie.idx.pending");
+            assert !pending.exists();
+            assert index.load();
+
+            // A change not saved yet, as if stopped in the middle of a synchronization
+            index.beginMovieChange();
+            assert pending.exists();
+            index.save();
+            assert pending.exists();
+            assert !index.load();
+            assert !index.isMoviesLoaded();
+            assert index.isImagesLoaded();
+
+            // Saved once the change is done
+            index.endMovieChange();
+            index.save();
+            assert !pending.exists();
+            assert index.load();
+            assert index.isMoviesLoaded();
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.chii2.medialibrary.search;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for Search Index
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void TokenizeTest() {
+        assert SearchIndex.tokenize("The Lord of the Rings: Return").equals(Arrays.asList("the", "lord", "of", "the", "rings", "return"));
+        // Accents are ignored
+        assert SearchIndex.tokenize("Amélie").equals(Collections.singletonList("amelie"));
+        // Every ideograph is a token
+        assert SearchIndex.tokenize("千与千寻 2001").equals(Arrays.asList("千", "与", "千", "寻", "2001"));
+        // Dates are one token
+        assert SearchIndex.tokenize("2012:05:07 10:30:00").equals(Arrays.asList("20120507", "10", "30", "00"));
+        assert SearchIndex.tokenize("2012-5").equals(Collections.singletonList("201205"));
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2012, Calendar.MAY, 7);
+        assert "20120507".equals(SearchIndex.formatDate(calendar.getTime()));
+    }
+
+    @Test
+    public void SearchTest() {
+        SearchIndex index = createIndex();
+        index.put("1", Collections.singletonList("/movies/Rings/Rings.mkv"), createFields("The Lord of the Rings", "A hobbit carries a ring", "20011219"));
+        index.put("2", Collections.singletonList("/movies/Hobbit/Hobbit.mkv"), createFields("The Hobbit", "Bilbo joins the dwarves, finds the ring", "20121214"));
+        index.put("3", Arrays.asList("/movies/Spirited/CD1.avi", "/movies/Spirited/CD2.avi"), createFields("千与千寻", "Spirited Away", "20010720"));
+
+        // Title matches rank before overview matches, a prefix of the title before the word in the overview
+        assert index.search("hobbit", 0, -1).equals(Arrays.asList("2", "1"));
+        assert index.search("ring", 0, -1).equals(Arrays.asList("1", "2"));
+        // Prefix matches
+        assert index.search("lord rin", 0, -1).equals(Collections.singletonList("1"));
+        // Every word must match
+        assert index.search("hobbit dwarves", 0, -1).equals(Collections.singletonList("2"));
+        assert index.search("hobbit matrix", 0, -1).isEmpty();
+        // Dates
+        assert index.search("2001", 0, -1).equals(Arrays.asList("1", "3"));
+        assert index.search("2012-12", 0, -1).equals(Collections.singletonList("2"));
+        // CJK
+        assert index.search("千寻", 0, -1).equals(Collections.singletonList("3"));
+        // Paging and count
+        assert index.search("the", 1, 1).equals(Collections.singletonList("1"));
+        assert index.count("the") == 2;
+        assert index.search("", 0, -1).isEmpty();
+
+        // Replaced document
+        index.put("2", Collections.singletonList("/movies/Hobbit/Hobbit.mkv"), createFields("The Hobbit: An Unexpected Journey", null, null));
+        assert index.search("journey", 0, -1).equals(Collections.singletonList("2"));
+        assert index.search("dwarves", 0, -1).isEmpty();
+
+        // Deleted files
+        index.removePath("/movies/Spirited/CD1.avi", false);
+        assert index.size() == 3;
+        index.removePath("/movies/Spirited", true);
+        assert index.size() == 2;
+        assert index.search("spirited", 0, -1).isEmpty();
+        index.remove("2");
+        assert index.size() == 1;
+        assert index.search("journey", 0, -1).isEmpty();
+    }
+
+    @Test
+    public void SaveLoadTest() throws IOException {
+        File file = File.createTempFile("chii2-search-index", ".idx");
+        try {
+            SearchIndex index = createIndex();
+            index.put("1", Collections.singletonList("C:\\Photos\\Singapore\\IMG_0001.jpg"), createFields("IMG_0001", "Marina Bay", "20100101"));
+            assert index.save(file);
+
+            SearchIndex loaded = createIndex();
+            assert loaded.load(file);
+            assert loaded.size() == 1;
+            assert loaded.getTokenCount() == index.getTokenCount();
+            assert loaded.search("marina img", 0, -1).equals(Collections.singletonList("1"));
+            // Paths are compared with unix separators
+            loaded.removePath("C:/Photos/Singapore", true);
+            assert loaded.size() == 0;
+        } finally {
+            assert file.delete();
+        }
+    }
+
+    /**
+     * Create an index with title, overview and date fields
+     *
+     * @return Search Index
+     */
+    private SearchIndex createIndex() {
+        Map<String, Float> weights = new HashMap<>();
+        weights.put(SearchIndex.TITLE_FIELD, 4f);
+        weights.put("overview", 1f);
+        weights.put("date", 1f);
+        return new SearchIndex(weights);
+    }
+
+    /**
+     * Create document fields
+     *
+     * @param title    Title
+     * @param overview Overview
+     * @param date     Date
+     * @return Fields
+     */
+    private Map<String, String> createFields(String title, String overview, String date) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(SearchIndex.TITLE_FIELD, title);
+        fields.put("overview", overview);
+        fields.put("date", date);
+        return fields;
+    }
+}
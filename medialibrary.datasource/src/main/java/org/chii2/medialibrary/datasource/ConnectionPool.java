@@ -0,0 +1,358 @@
+package org.chii2.medialibrary.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of physical database connections
+ * Opening an embedded connection boots a connection context inside the engine, concurrent requests used to wait on it.
+ * Connections are opened once and handed out again, the most recently used first so the idle ones keep warm.
+ * A connection reported broken is closed instead of returned.
+ *
+ * @param <T> Physical Connection Type
+ */
+public class ConnectionPool<T extends PooledConnection> {
+    // Pool Name
+    private final String name;
+    // Physical Connection Factory
+    private final Factory<T> factory;
+    // Connections kept open when idle
+    private final int minIdle;
+    // Max connections in use
+    private final int maxActive;
+    // Max wait for a connection (ms)
+    private final long maxWait;
+    // Permits for connections in use
+    private final Semaphore permits;
+    // Idle Connections, most recently used first
+    private final Deque<T> idle = new ArrayDeque<>();
+    // Connections in use
+    private final Set<T> active = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    // Pool closed
+    private boolean closed = false;
+    // Connections opened
+    private long created = 0;
+    // Time spent opening connections (ns)
+    private long createTime = 0;
+    // Connections handed out
+    private long borrowed = 0;
+    // Borrows which had to wait for a connection in use
+    private long waited = 0;
+    // Connections closed because they were broken
+    private long invalidated = 0;
+    // Most connections in use at once
+    private int peakActive = 0;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.datasource");
+
+    /**
+     * Constructor
+     *
+     * @param name      Pool Name
+     * @param factory   Physical Connection Factory
+     * @param minIdle   Connections kept open when idle
+     * @param maxActive Max connections in use
+     * @param maxWait   Max wait for a connection (ms)
+     */
+    public ConnectionPool(String name, Factory<T> factory, int minIdle, int maxActive, long maxWait) {
+        this.name = name;
+        this.factory = factory;
+        this.maxActive = Math.max(1, maxActive);
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxActive));
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(this.maxActive, true);
+    }
+
+    /**
+     * Open the idle connections up front, so the first requests do not pay for them
+     *
+     * @throws SQLException Connection can not be opened
+     */
+    public void prefill() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (closed || idle.size() + active.size() >= minIdle) {
+                    return;
+                }
+            }
+            T connection = create();
+            synchronized (this) {
+                idle.push(connection);
+            }
+        }
+    }
+
+    /**
+     * Borrow a connection, waits when all connections are in use
+     *
+     * @return Physical Connection
+     * @throws SQLException Connection can not be opened or none became free in time
+     */
+    public T borrow() throws SQLException {
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            synchronized (this) {
+                waited++;
+            }
+            try {
+                acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!acquired) {
+                throw new SQLException(String.format("No connection free in %s pool after %d ms.", name, maxWait), "08004");
+            }
+        }
+        T connection;
+        synchronized (this) {
+            if (closed) {
+                permits.release();
+                throw new SQLException(String.format("Connection pool %s is closed.", name), "08003");
+            }
+            connection = idle.poll();
+        }
+        if (connection == null) {
+            try {
+                connection = create();
+            } catch (SQLException e) {
+                permits.release();
+                throw e;
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        synchronized (this) {
+            active.add(connection);
+            borrowed++;
+            peakActive = Math.max(peakActive, active.size());
+        }
+        return connection;
+    }
+
+    /**
+     * Return a borrowed connection, returning it twice has no effect
+     *
+     * @param connection Physical Connection
+     */
+    public void release(T connection) {
+        boolean keep;
+        synchronized (this) {
+            if (!active.remove(connection)) {
+                return;
+            }
+            keep = !closed;
+            if (keep) {
+                idle.push(connection);
+            }
+        }
+        permits.release();
+        if (!keep) {
+            close(connection);
+        }
+    }
+
+    /**
+     * Close a broken connection instead of returning it
+     *
+     * @param connection Physical Connection
+     */
+    public void invalidate(T connection) {
+        boolean borrowedConnection;
+        synchronized (this) {
+            borrowedConnection = active.remove(connection);
+            boolean idleConnection = idle.remove(connection);
+            if (!borrowedConnection && !idleConnection) {
+                return;
+            }
+            invalidated++;
+        }
+        if (borrowedConnection) {
+            permits.release();
+        }
+        logger.warn("Close broken connection of {} pool.", name);
+        close(connection);
+    }
+
+    /**
+     * Close the pool and the idle connections, borrowed connections are closed when returned
+     */
+    public void close() {
+        Deque<T> connections;
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayDeque<>(idle);
+            idle.clear();
+        }
+        for (T connection : connections) {
+            close(connection);
+        }
+    }
+
+    /**
+     * Get pool name
+     *
+     * @return Name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get connections in use
+     *
+     * @return Active Count
+     */
+    public synchronized int getActive() {
+        return active.size();
+    }
+
+    /**
+     * Get idle connections
+     *
+     * @return Idle Count
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Get max connections in use
+     *
+     * @return Max Active
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * Get connections opened
+     *
+     * @return Created Count
+     */
+    public synchronized long getCreated() {
+        return created;
+    }
+
+    /**
+     * Get connections handed out
+     *
+     * @return Borrowed Count
+     */
+    public synchronized long getBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * Get borrows which had to wait for a connection in use
+     *
+     * @return Waited Count
+     */
+    public synchronized long getWaited() {
+        return waited;
+    }
+
+    /**
+     * Get most connections in use at once
+     *
+     * @return Peak Active
+     */
+    public synchronized int getPeakActive() {
+        return peakActive;
+    }
+
+    /**
+     * Get average time to open a connection
+     *
+     * @return Average Create Time (ms)
+     */
+    public synchronized double getAverageCreateTime() {
+        return created == 0 ? 0 : createTime / 1000000.0 / created;
+    }
+
+    /**
+     * Log pool statistics
+     */
+    public void logStatistics() {
+        synchronized (this) {
+            logger.info("Connection pool {}: {} active, {} idle, {} max, peak {}, {} opened ({} ms each), {} borrowed, {} waited, {} broken.",
+                    new Object[]{name, active.size(), idle.size(), maxActive, peakActive, created, String.format("%.1f", getAverageCreateTime()), borrowed, waited, invalidated});
+        }
+    }
+
+    /**
+     * Open a physical connection, broken connections are reported by the driver
+     *
+     * @return Physical Connection
+     * @throws SQLException Connection can not be opened
+     */
+    private T create() throws SQLException {
+        long start = System.nanoTime();
+        final T connection = factory.create();
+        connection.addConnectionEventListener(new ConnectionEventListener() {
+            @Override
+            public void connectionClosed(ConnectionEvent event) {
+                factory.closed(ConnectionPool.this, connection);
+            }
+
+            @Override
+            public void connectionErrorOccurred(ConnectionEvent event) {
+                invalidate(connection);
+            }
+        });
+        synchronized (this) {
+            created++;
+            createTime += System.nanoTime() - start;
+        }
+        return connection;
+    }
+
+    /**
+     * Close a physical connection
+     *
+     * @param connection Physical Connection
+     */
+    private void close(T connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Close connection of {} pool with error: {}.", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Physical Connection Factory
+     *
+     * @param <T> Physical Connection Type
+     */
+    public interface Factory<T extends PooledConnection> {
+
+        /**
+         * Open a physical connection
+         *
+         * @return Physical Connection
+         * @throws SQLException Connection can not be opened
+         */
+        public T create() throws SQLException;
+
+        /**
+         * The logical connection handed out by the physical connection is closed
+         *
+         * @param pool       Connection Pool
+         * @param connection Physical Connection
+         */
+        public void closed(ConnectionPool<T> pool, T connection);
+    }
+}
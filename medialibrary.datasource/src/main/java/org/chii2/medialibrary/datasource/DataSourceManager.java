@@ -0,0 +1,299 @@
+package org.chii2.medialibrary.datasource;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.derby.jdbc.EmbeddedConnectionPoolDataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.apache.derby.jdbc.EmbeddedXADataSource;
+import org.chii2.util.ConfigUtils;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import javax.sql.XADataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Media Library Data Sources
+ * Creates the embedded database data sources, pooled or not, and tunes the Derby engine before it boots.
+ */
+public class DataSourceManager {
+    // Injected ConfigAdmin Service
+    private ConfigurationAdmin configAdmin;
+    // Database Name
+    private String databaseName = "data/MediaLibrary";
+    // Pool connections
+    private boolean poolEnabled = true;
+    // Connections kept open when idle
+    private int poolMin = 2;
+    // Max connections in use, for each data source
+    private int poolMax = 10;
+    // Max wait for a connection (ms)
+    private long poolWait = 10000;
+    // Derby Page Cache Size (pages)
+    private int pageCacheSize = 4000;
+    // Derby Page Size for new tables (bytes), 0 means Derby decides
+    private int pageSize = 0;
+    // Derby Compiled Statement Cache Size
+    private int statementCacheSize = 200;
+    // Derby Log written between checkpoints (bytes), 0 means Derby default
+    private int checkpointInterval = 0;
+    // Derby Log File Size (bytes), 0 means Derby default
+    private int logSwitchInterval = 0;
+    // JTA Data Source
+    private XADataSource xaDataSource;
+    // Data Source
+    private DataSource dataSource;
+    // Configuration File
+    private final static String CONFIG_FILE = "org.chii2.medialibrary.datasource";
+    // Database Name Config Key
+    private final static String DATABASE_NAME = "database.name";
+    // Pool Enabled Config Key
+    private final static String POOL_ENABLED = "datasource.pool.enabled";
+    // Pool Min Idle Config Key
+    private final static String POOL_MIN = "datasource.pool.min";
+    // Pool Max Active Config Key
+    private final static String POOL_MAX = "datasource.pool.max";
+    // Pool Max Wait Config Key
+    private final static String POOL_WAIT = "datasource.pool.wait";
+    // Page Cache Size Config Key
+    private final static String PAGE_CACHE_SIZE = "derby.page.cache.size";
+    // Page Size Config Key
+    private final static String PAGE_SIZE = "derby.page.size";
+    // Statement Cache Size Config Key
+    private final static String STATEMENT_CACHE_SIZE = "derby.statement.cache.size";
+    // Checkpoint Interval Config Key
+    private final static String CHECKPOINT_INTERVAL = "derby.log.checkpoint.interval";
+    // Log Switch Interval Config Key
+    private final static String LOG_SWITCH_INTERVAL = "derby.log.switch.interval";
+    // System Property listing the Derby properties set by this bundle, kept across bundle restarts
+    private final static String DERBY_PROPERTIES_SET = "org.chii2.medialibrary.datasource.derby.properties";
+    // Derby Default Page Size (bytes)
+    private final static int DEFAULT_PAGE_SIZE = 4096;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.datasource");
+
+    /**
+     * Life Cycle Init
+     */
+    @SuppressWarnings("unused")
+    public void init() {
+        logger.debug("Chii2 Media Library DataSource init.");
+        Dictionary props = null;
+        // Read properties from ConfigAdmin Service
+        try {
+            Configuration config = configAdmin.getConfiguration(CONFIG_FILE);
+            props = config.getProperties();
+        } catch (IOException e) {
+            logger.error("DataSource fail to load configuration with exception: {}.", ExceptionUtils.getMessage(e));
+        }
+        // Load each configuration
+        if (props == null || props.isEmpty()) {
+            logger.error("DataSource load configuration <{}> with error.", CONFIG_FILE);
+        } else {
+            String name = ConfigUtils.loadConfiguration(props, DATABASE_NAME);
+            if (StringUtils.isNotBlank(name)) {
+                this.databaseName = name;
+                logger.debug("DataSource configuration <{}> loaded.", DATABASE_NAME);
+            } else {
+                logger.debug("DataSource load default <{}>.", DATABASE_NAME);
+            }
+
+            String enabled = ConfigUtils.loadConfiguration(props, POOL_ENABLED);
+            if (StringUtils.isNotBlank(enabled)) {
+                this.poolEnabled = Boolean.parseBoolean(enabled);
+                logger.debug("DataSource configuration <{}> loaded.", POOL_ENABLED);
+            } else {
+                logger.debug("DataSource load default <{}>.", POOL_ENABLED);
+            }
+
+            poolMin = loadNumber(props, POOL_MIN, poolMin, 0);
+            poolMax = loadNumber(props, POOL_MAX, poolMax, 1);
+            poolWait = loadNumber(props, POOL_WAIT, (int) poolWait, 0);
+            pageCacheSize = loadNumber(props, PAGE_CACHE_SIZE, pageCacheSize, 40);
+            pageSize = loadNumber(props, PAGE_SIZE, pageSize, 0);
+            statementCacheSize = loadNumber(props, STATEMENT_CACHE_SIZE, statementCacheSize, 0);
+            checkpointInterval = loadNumber(props, CHECKPOINT_INTERVAL, checkpointInterval, 0);
+            logSwitchInterval = loadNumber(props, LOG_SWITCH_INTERVAL, logSwitchInterval, 0);
+        }
+
+        // Engine settings are read when the database boots, which is the first connection
+        setDerbyProperty("derby.storage.pageCacheSize", pageCacheSize);
+        setDerbyProperty("derby.storage.pageSize", pageSize);
+        setDerbyProperty("derby.language.statementCacheSize", statementCacheSize);
+        setDerbyProperty("derby.storage.checkpointInterval", checkpointInterval);
+        setDerbyProperty("derby.storage.logSwitchInterval", logSwitchInterval);
+
+        EmbeddedXADataSource derbyXADataSource = new EmbeddedXADataSource();
+        derbyXADataSource.setDatabaseName(databaseName);
+        derbyXADataSource.setCreateDatabase("create");
+        if (poolEnabled) {
+            EmbeddedConnectionPoolDataSource derbyDataSource = new EmbeddedConnectionPoolDataSource();
+            derbyDataSource.setDatabaseName(databaseName);
+            derbyDataSource.setCreateDatabase("create");
+            xaDataSource = new PooledXADataSource("jdbc/medialibrary", derbyXADataSource, poolMin, poolMax, poolWait);
+            dataSource = new PooledDataSource("jdbc/medialibrarynojta", derbyDataSource, poolMin, poolMax, poolWait);
+        } else {
+            EmbeddedDataSource derbyDataSource = new EmbeddedDataSource();
+            derbyDataSource.setDatabaseName(databaseName);
+            derbyDataSource.setCreateDatabase("create");
+            xaDataSource = derbyXADataSource;
+            dataSource = derbyDataSource;
+        }
+
+        selfCheck();
+    }
+
+    /**
+     * Life Cycle Destroy
+     */
+    @SuppressWarnings("unused")
+    public void destroy() {
+        logger.debug("Chii2 Media Library DataSource destroy.");
+        if (xaDataSource instanceof PooledXADataSource) {
+            ConnectionPool pool = ((PooledXADataSource) xaDataSource).getPool();
+            pool.logStatistics();
+            pool.close();
+        }
+        if (dataSource instanceof PooledDataSource) {
+            ConnectionPool pool = ((PooledDataSource) dataSource).getPool();
+            pool.logStatistics();
+            pool.close();
+        }
+    }
+
+    /**
+     * Get the JTA data source
+     *
+     * @return XA Data Source
+     */
+    public XADataSource getXADataSource() {
+        return xaDataSource;
+    }
+
+    /**
+     * Get the data source
+     *
+     * @return Data Source
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Inject ConfigAdmin Service
+     *
+     * @param configAdmin ConfigAdmin Service
+     */
+    @SuppressWarnings("unused")
+    public void setConfigAdmin(ConfigurationAdmin configAdmin) {
+        this.configAdmin = configAdmin;
+    }
+
+    /**
+     * Boot the database and fill the pools, then report the pool and cache settings.
+     * A failure is logged only, the persistence unit will report it again when it connects.
+     */
+    private void selfCheck() {
+        long start = System.nanoTime();
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                long boot = (System.nanoTime() - start) / 1000000;
+                int statements = -1;
+                Statement statement = connection.createStatement();
+                try {
+                    ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM SYSCS_DIAG.STATEMENT_CACHE");
+                    if (result.next()) {
+                        statements = result.getInt(1);
+                    }
+                    result.close();
+                } finally {
+                    statement.close();
+                }
+                int size = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+                logger.info("Database <{}> ready in {} ms, page cache {} pages (about {} MB), {} of {} compiled statements cached.",
+                        new Object[]{databaseName, boot, pageCacheSize, (long) pageCacheSize * size / (1024 * 1024), statements, statementCacheSize});
+            } finally {
+                connection.close();
+            }
+            if (xaDataSource instanceof PooledXADataSource) {
+                ConnectionPool pool = ((PooledXADataSource) xaDataSource).getPool();
+                pool.prefill();
+                pool.logStatistics();
+            }
+            if (dataSource instanceof PooledDataSource) {
+                ConnectionPool pool = ((PooledDataSource) dataSource).getPool();
+                pool.prefill();
+                pool.logStatistics();
+            } else {
+                logger.info("Database <{}> connection pool disabled.", databaseName);
+            }
+        } catch (SQLException e) {
+            logger.error("Database <{}> self check failed with exception: {}.", databaseName, ExceptionUtils.getMessage(e));
+        }
+    }
+
+    /**
+     * Load a number configuration
+     *
+     * @param props        Configuration
+     * @param key          Config Key
+     * @param defaultValue Default Value
+     * @param min          Min Valid Value
+     * @return Number
+     */
+    private int loadNumber(Dictionary props, String key, int defaultValue, int min) {
+        String value = ConfigUtils.loadConfiguration(props, key);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int number = Integer.parseInt(value.trim());
+                if (number >= min) {
+                    logger.debug("DataSource configuration <{}> loaded.", key);
+                    return number;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+            logger.error("DataSource configuration <{}> is not valid.", key);
+        } else {
+            logger.debug("DataSource load default <{}>.", key);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Set a Derby engine property, unless set on the command line
+     * Values set by this bundle before are overwritten, so configuration changes apply after a restart of the bundle.
+     *
+     * @param key   Derby Property
+     * @param value Value, 0 keeps Derby default
+     */
+    private void setDerbyProperty(String key, int value) {
+        Set<String> keys = new TreeSet<>();
+        String setKeys = System.getProperty(DERBY_PROPERTIES_SET);
+        if (StringUtils.isNotBlank(setKeys)) {
+            keys.addAll(Arrays.asList(StringUtils.split(setKeys, ',')));
+        }
+        if (System.getProperty(key) != null && !keys.contains(key)) {
+            return;
+        }
+        if (value <= 0) {
+            System.clearProperty(key);
+            keys.remove(key);
+        } else {
+            System.setProperty(key, String.valueOf(value));
+            keys.add(key);
+        }
+        System.setProperty(DERBY_PROPERTIES_SET, StringUtils.join(keys, ','));
+    }
+}
@@ -0,0 +1,104 @@
+package org.chii2.medialibrary.datasource;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * Data Source handing out connections of a connection pool
+ * Closing a connection returns the physical connection to the pool,
+ * the driver resets it before handing out the next logical connection.
+ */
+public class PooledDataSource implements DataSource {
+    // Connection Pool
+    private final ConnectionPool<PooledConnection> pool;
+
+    /**
+     * Constructor
+     *
+     * @param name       Pool Name
+     * @param dataSource Driver Data Source
+     * @param minIdle    Connections kept open when idle
+     * @param maxActive  Max connections in use
+     * @param maxWait    Max wait for a connection (ms)
+     */
+    public PooledDataSource(String name, final ConnectionPoolDataSource dataSource, int minIdle, int maxActive, long maxWait) {
+        this.pool = new ConnectionPool<>(name, new ConnectionPool.Factory<PooledConnection>() {
+            @Override
+            public PooledConnection create() throws SQLException {
+                return dataSource.getPooledConnection();
+            }
+
+            @Override
+            public void closed(ConnectionPool<PooledConnection> pool, PooledConnection connection) {
+                pool.release(connection);
+            }
+        }, minIdle, maxActive, maxWait);
+    }
+
+    /**
+     * Get the connection pool
+     *
+     * @return Connection Pool
+     */
+    public ConnectionPool<PooledConnection> getPool() {
+        return pool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        PooledConnection connection = pool.borrow();
+        try {
+            return connection.getConnection();
+        } catch (SQLException e) {
+            pool.invalidate(connection);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured user.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,313 @@
+package org.chii2.medialibrary.datasource;
+
+import javax.sql.ConnectionEventListener;
+import javax.sql.StatementEventListener;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * XA Data Source handing out connections of a connection pool
+ * The transaction wrapper only closes the logical connection once the transaction is completed,
+ * the XA connection itself is never closed. The physical connection is returned to the pool
+ * when the logical connection is closed and the XA branch has ended, whichever comes last,
+ * or when the XA connection is closed.
+ */
+public class PooledXADataSource implements XADataSource {
+    // Connection Pool
+    private final ConnectionPool<XAConnection> pool;
+    // Handles by the physical connection they use
+    private final Map<XAConnection, PooledXAConnection> handles = Collections.synchronizedMap(new IdentityHashMap<XAConnection, PooledXAConnection>());
+
+    /**
+     * Constructor
+     *
+     * @param name       Pool Name
+     * @param dataSource Driver XA Data Source
+     * @param minIdle    Connections kept open when idle
+     * @param maxActive  Max connections in use
+     * @param maxWait    Max wait for a connection (ms)
+     */
+    public PooledXADataSource(String name, final XADataSource dataSource, int minIdle, int maxActive, long maxWait) {
+        this.pool = new ConnectionPool<>(name, new ConnectionPool.Factory<XAConnection>() {
+            @Override
+            public XAConnection create() throws SQLException {
+                return dataSource.getXAConnection();
+            }
+
+            @Override
+            public void closed(ConnectionPool<XAConnection> pool, XAConnection connection) {
+                PooledXAConnection handle = handles.get(connection);
+                if (handle != null) {
+                    handle.logicalClosed();
+                }
+            }
+        }, minIdle, maxActive, maxWait);
+    }
+
+    /**
+     * Get the connection pool
+     *
+     * @return Connection Pool
+     */
+    public ConnectionPool<XAConnection> getPool() {
+        return pool;
+    }
+
+    @Override
+    public XAConnection getXAConnection() throws SQLException {
+        XAConnection connection = pool.borrow();
+        PooledXAConnection handle = new PooledXAConnection(connection);
+        handles.put(connection, handle);
+        return handle;
+    }
+
+    @Override
+    public XAConnection getXAConnection(String user, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured user.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Handle of a pooled XA connection, returns the physical connection once it is no longer used
+     */
+    private class PooledXAConnection implements XAConnection {
+        // Physical Connection
+        private final XAConnection connection;
+        // Listeners added through this handle
+        private final List<ConnectionEventListener> connectionListeners = new ArrayList<>();
+        // Statement listeners added through this handle
+        private final List<StatementEventListener> statementListeners = new ArrayList<>();
+        // Physical connection returned
+        private boolean closed = false;
+        // Logical connection handed out and not closed yet
+        private boolean logicalOpen = false;
+        // XA branch started and not ended yet, a suspended branch still uses the connection
+        private boolean branchActive = false;
+
+        /**
+         * Constructor
+         *
+         * @param connection Physical Connection
+         */
+        private PooledXAConnection(XAConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public synchronized XAResource getXAResource() throws SQLException {
+            checkClosed();
+            return new PooledXAResource(this, connection.getXAResource());
+        }
+
+        @Override
+        public synchronized Connection getConnection() throws SQLException {
+            checkClosed();
+            Connection logical = connection.getConnection();
+            logicalOpen = true;
+            return logical;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            release();
+        }
+
+        /**
+         * The logical connection is closed, return the physical connection unless the XA branch is still active
+         */
+        private synchronized void logicalClosed() {
+            logicalOpen = false;
+            if (!branchActive) {
+                release();
+            }
+        }
+
+        /**
+         * An XA branch is started on the connection
+         */
+        private synchronized void branchStarted() {
+            branchActive = true;
+        }
+
+        /**
+         * The XA branch is ended, return the physical connection if the logical connection is closed already
+         */
+        private synchronized void branchEnded() {
+            branchActive = false;
+            if (!logicalOpen && !closed) {
+                release();
+            }
+        }
+
+        /**
+         * Return the physical connection to the pool, returning it twice has no effect
+         */
+        private synchronized void release() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (ConnectionEventListener listener : connectionListeners) {
+                connection.removeConnectionEventListener(listener);
+            }
+            for (StatementEventListener listener : statementListeners) {
+                connection.removeStatementEventListener(listener);
+            }
+            connectionListeners.clear();
+            statementListeners.clear();
+            handles.remove(connection);
+            pool.release(connection);
+        }
+
+        @Override
+        public synchronized void addConnectionEventListener(ConnectionEventListener listener) {
+            connectionListeners.add(listener);
+            connection.addConnectionEventListener(listener);
+        }
+
+        @Override
+        public synchronized void removeConnectionEventListener(ConnectionEventListener listener) {
+            connectionListeners.remove(listener);
+            connection.removeConnectionEventListener(listener);
+        }
+
+        @Override
+        public synchronized void addStatementEventListener(StatementEventListener listener) {
+            statementListeners.add(listener);
+            connection.addStatementEventListener(listener);
+        }
+
+        @Override
+        public synchronized void removeStatementEventListener(StatementEventListener listener) {
+            statementListeners.remove(listener);
+            connection.removeStatementEventListener(listener);
+        }
+
+        /**
+         * Fail on a closed handle, the physical connection may belong to someone else now
+         *
+         * @throws SQLException Handle Closed
+         */
+        private void checkClosed() throws SQLException {
+            if (closed) {
+                throw new SQLException("XA connection is closed.", "08003");
+            }
+        }
+    }
+
+    /**
+     * XA Resource of a pooled XA connection, tracks whether the XA branch is still active
+     */
+    private static class PooledXAResource implements XAResource {
+        // Handle
+        private final PooledXAConnection handle;
+        // Physical XA Resource
+        private final XAResource resource;
+
+        /**
+         * Constructor
+         *
+         * @param handle   Handle
+         * @param resource Physical XA Resource
+         */
+        private PooledXAResource(PooledXAConnection handle, XAResource resource) {
+            this.handle = handle;
+            this.resource = resource;
+        }
+
+        @Override
+        public void start(Xid xid, int flags) throws XAException {
+            resource.start(xid, flags);
+            handle.branchStarted();
+        }
+
+        @Override
+        public void end(Xid xid, int flags) throws XAException {
+            try {
+                resource.end(xid, flags);
+            } finally {
+                if (flags != TMSUSPEND) {
+                    handle.branchEnded();
+                }
+            }
+        }
+
+        @Override
+        public int prepare(Xid xid) throws XAException {
+            return resource.prepare(xid);
+        }
+
+        @Override
+        public void commit(Xid xid, boolean onePhase) throws XAException {
+            resource.commit(xid, onePhase);
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException {
+            resource.rollback(xid);
+        }
+
+        @Override
+        public void forget(Xid xid) throws XAException {
+            resource.forget(xid);
+        }
+
+        @Override
+        public Xid[] recover(int flag) throws XAException {
+            return resource.recover(flag);
+        }
+
+        @Override
+        public boolean isSameRM(XAResource other) throws XAException {
+            if (other instanceof PooledXAResource) {
+                other = ((PooledXAResource) other).resource;
+            }
+            return resource.isSameRM(other);
+        }
+
+        @Override
+        public int getTransactionTimeout() throws XAException {
+            return resource.getTransactionTimeout();
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) throws XAException {
+            return resource.setTransactionTimeout(seconds);
+        }
+    }
+}
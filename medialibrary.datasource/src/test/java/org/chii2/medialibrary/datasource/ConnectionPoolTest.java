@@ -0,0 +1,158 @@
+package org.chii2.medialibrary.datasource;
+
+import org.apache.derby.jdbc.EmbeddedConnectionPoolDataSource;
+import org.apache.derby.jdbc.EmbeddedXADataSource;
+import org.testng.annotations.Test;
+
+import javax.sql.PooledConnection;
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Test for Connection Pool
+ */
+public class ConnectionPoolTest {
+
+    @Test
+    public void PooledDataSourceTest() throws SQLException {
+        EmbeddedConnectionPoolDataSource derby = new EmbeddedConnectionPoolDataSource();
+        derby.setDatabaseName("memory:PooledDataSourceTest");
+        derby.setCreateDatabase("create");
+        PooledDataSource dataSource = new PooledDataSource("test", derby, 1, 2, 100);
+        ConnectionPool<PooledConnection> pool = dataSource.getPool();
+        pool.prefill();
+        assert pool.getIdle() == 1;
+
+        Connection first = dataSource.getConnection();
+        first.setAutoCommit(false);
+        Statement statement = first.createStatement();
+        statement.executeUpdate("CREATE TABLE POOL_TEST (ID INT)");
+        statement.close();
+        assert pool.getActive() == 1;
+        assert pool.getIdle() == 0;
+        first.rollback();
+        // Closing returns the physical connection, the driver resets it
+        first.close();
+        assert pool.getActive() == 0;
+        assert pool.getIdle() == 1;
+
+        Connection second = dataSource.getConnection();
+        assert second.getAutoCommit();
+        ResultSet tables = second.getMetaData().getTables(null, null, "POOL_TEST", null);
+        assert !tables.next();
+        tables.close();
+        Connection third = dataSource.getConnection();
+        // Pool is exhausted
+        try {
+            dataSource.getConnection();
+            assert false;
+        } catch (SQLException e) {
+            assert "08004".equals(e.getSQLState());
+        }
+        second.close();
+        // Closed twice is returned once
+        second.close();
+        third.close();
+        assert pool.getCreated() == 2;
+        assert pool.getBorrowed() == 3;
+        assert pool.getWaited() == 1;
+        assert pool.getPeakActive() == 2;
+        assert pool.getIdle() == 2;
+
+        pool.close();
+        assert pool.getIdle() == 0;
+        try {
+            dataSource.getConnection();
+            assert false;
+        } catch (SQLException e) {
+            assert "08003".equals(e.getSQLState());
+        }
+    }
+
+    @Test
+    public void PooledXADataSourceTest() throws SQLException, XAException {
+        EmbeddedXADataSource derby = new EmbeddedXADataSource();
+        derby.setDatabaseName("memory:PooledXADataSourceTest");
+        derby.setCreateDatabase("create");
+        PooledXADataSource dataSource = new PooledXADataSource("test", derby, 0, 1, 100);
+        ConnectionPool<XAConnection> pool = dataSource.getPool();
+
+        // Enlisted, the transaction wrapper closes the logical connection after completion and never the XA connection
+        XAConnection first = dataSource.getXAConnection();
+        XAResource resource = first.getXAResource();
+        Xid xid = createXid(1);
+        resource.start(xid, XAResource.TMNOFLAGS);
+        Connection connection = first.getConnection();
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("CREATE TABLE POOL_TEST (ID INT)");
+        statement.close();
+        resource.end(xid, XAResource.TMSUCCESS);
+        resource.commit(xid, true);
+        assert pool.getActive() == 1;
+        connection.close();
+        assert pool.getActive() == 0;
+        try {
+            first.getConnection();
+            assert false;
+        } catch (SQLException e) {
+            assert "08003".equals(e.getSQLState());
+        }
+
+        // Logical connection closed while the branch is active, returned once the branch is ended
+        XAConnection second = dataSource.getXAConnection();
+        resource = second.getXAResource();
+        xid = createXid(2);
+        resource.start(xid, XAResource.TMNOFLAGS);
+        connection = second.getConnection();
+        statement = connection.createStatement();
+        statement.executeUpdate("INSERT INTO POOL_TEST VALUES (1)");
+        statement.close();
+        connection.close();
+        assert pool.getActive() == 1;
+        resource.end(xid, XAResource.TMSUCCESS);
+        assert pool.getActive() == 0;
+        resource.commit(xid, true);
+
+        // Not enlisted and the XA connection closed
+        XAConnection third = dataSource.getXAConnection();
+        connection = third.getConnection();
+        ResultSet rows = connection.createStatement().executeQuery("SELECT ID FROM POOL_TEST");
+        assert rows.next() && rows.getInt(1) == 1;
+        rows.close();
+        third.close();
+        assert pool.getActive() == 0;
+        // Closing the logical connection afterwards has no effect
+        connection.close();
+        third.close();
+
+        assert pool.getCreated() == 1;
+        assert pool.getBorrowed() == 3;
+        assert pool.getWaited() == 0;
+        pool.close();
+    }
+
+    private Xid createXid(final int id) {
+        return new Xid() {
+            @Override
+            public int getFormatId() {
+                return 1;
+            }
+
+            @Override
+            public byte[] getGlobalTransactionId() {
+                return new byte[]{(byte) id};
+            }
+
+            @Override
+            public byte[] getBranchQualifier() {
+                return new byte[]{1};
+            }
+        };
+    }
+}
@@ -18,6 +18,7 @@ import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -45,6 +46,20 @@ public class FileServiceImpl implements FileService, EventHandler {
     private static final String IMAGE_DIRECTORY = "image.directory";
     // Image File Extension Configuration Key
     private static final String IMAGE_EXTENSION = "image.extension";
+    // Incremental Scan Configuration Key
+    private static final String SCAN_INCREMENTAL = "scan.incremental";
+    // Scan Manifest Directory Configuration Key
+    private static final String SCAN_MANIFEST_DIRECTORY = "scan.manifest.directory";
+    // Scan Threads for each disk Configuration Key
+    private static final String SCAN_PARALLELISM = "scan.parallelism";
+    // Scan Batch Size Configuration Key
+    private static final String SCAN_BATCH_SIZE = "scan.batch.size";
+    // Watch Quiet Period Configuration Key
+    private static final String WATCH_QUIET_PERIOD = "watch.quiet.period";
+    // Movie Scan Manifest File
+    private static final String MOVIE_MANIFEST_FILE = "movie.manifest";
+    // Image Scan Manifest File
+    private static final String IMAGE_MANIFEST_FILE = "image.manifest";
     // Movie directories
     private List<String> movieDirectories = Arrays.asList(System.getProperty("user.home") + SystemUtils.FILE_SEPARATOR + "Movies");
     // Movie file extension filter
@@ -53,6 +68,16 @@ public class FileServiceImpl implements FileService, EventHandler {
     private List<String> imageDirectories = Arrays.asList(System.getProperty("user.home") + SystemUtils.FILE_SEPARATOR + "Pictures");
     // Image file extension filter
     private List<String> imageExtFilters = Arrays.asList(".jpg", ".jpeg", ".tiff", ".tif", ".png", ".gif", ".bmp");
+    // Send only files changed since the last scan
+    private boolean incremental = true;
+    // Scan manifest directory, next to the database
+    private File manifestDirectory = new File("data/ScanManifest");
+    // Scan threads for each disk
+    private int scanParallelism = 2;
+    // Files handed over by the scan threads at once
+    private int scanBatchSize = 500;
+    // Seconds a watched file must be quiet before its change is sent
+    private int watchQuietPeriod = 5;
     // File Scanner
     private FileScanner fileScanner;
     // Movie Watcher
@@ -114,23 +139,55 @@ public class FileServiceImpl implements FileService, EventHandler {
             } else {
                 logger.error("FileService configuration <{}> is not valid.", IMAGE_EXTENSION);
             }
+
+            // Load incremental scan configuration
+            String incremental = ConfigUtils.loadConfiguration(props, SCAN_INCREMENTAL);
+            if (StringUtils.isNotBlank(incremental)) {
+                this.incremental = Boolean.parseBoolean(StringUtils.trim(incremental));
+                logger.debug("FileService configuration <{}> loaded.", SCAN_INCREMENTAL);
+            } else {
+                logger.debug("FileService load default <{}>.", SCAN_INCREMENTAL);
+            }
+
+            // Load scan manifest directory configuration
+            String manifestDirectory = ConfigUtils.loadConfiguration(props, SCAN_MANIFEST_DIRECTORY);
+            if (StringUtils.isNotBlank(manifestDirectory)) {
+                this.manifestDirectory = new File(StringUtils.trim(manifestDirectory));
+                logger.debug("FileService configuration <{}> loaded.", SCAN_MANIFEST_DIRECTORY);
+            } else {
+                logger.debug("FileService load default <{}>.", SCAN_MANIFEST_DIRECTORY);
+            }
+
+            // Load scan threads and batch size configuration
+            this.scanParallelism = this.loadNumber(props, SCAN_PARALLELISM, this.scanParallelism);
+            this.scanBatchSize = this.loadNumber(props, SCAN_BATCH_SIZE, this.scanBatchSize);
+
+            // Load watch quiet period configuration
+            this.watchQuietPeriod = this.loadNumber(props, WATCH_QUIET_PERIOD, this.watchQuietPeriod);
         }
 
         // Init Scanner Queue
         this.scannerQueue = new LinkedBlockingQueue<>();
 
         // Start File Scanner
-        this.fileScanner = new FileScanner(this.scannerQueue, this.eventAdmin);
+        this.fileScanner = new FileScanner(this.scannerQueue, this.eventAdmin, this.scanParallelism, this.scanBatchSize);
         Thread scanner = new Thread(this.fileScanner);
         scanner.setDaemon(false);
         scanner.start();
 
         // New Movie Watcher
+        AbstractFileWatcher.OverflowListener movieOverflowListener = new AbstractFileWatcher.OverflowListener() {
+            @Override
+            public void overflow(List<Path> directories) {
+                // Rescan the directories, diffed with the scan manifest when incremental
+                scanFiles(directories, createFilter(movieExtFilters), FileService.MOVIE_SCAN_PROVIDED_TOPIC, FileService.MOVIE_SCAN_COMPLETE_TOPIC, MOVIE_MANIFEST_FILE);
+            }
+        };
         try {
             if (SystemUtils.IS_OS_WINDOWS) {
-                this.movieWatcher = new WinFileWatcher(this.movieDirectories, true, this.createFilter(this.movieExtFilters), FileService.MOVIE_WATCH_CREATE_TOPIC, FileService.MOVIE_WATCH_MODIFY_TOPIC, FileService.MOVIE_WATCH_DELETE_TOPIC, this.eventAdmin);
+                this.movieWatcher = new WinFileWatcher(this.movieDirectories, true, this.createFilter(this.movieExtFilters), FileService.MOVIE_WATCH_CREATE_TOPIC, FileService.MOVIE_WATCH_MODIFY_TOPIC, FileService.MOVIE_WATCH_DELETE_TOPIC, this.eventAdmin, this.watchQuietPeriod * 1000L, movieOverflowListener);
             } else {
-                this.movieWatcher = new FileWatcher(this.movieDirectories, true, this.createFilter(this.movieExtFilters), FileService.MOVIE_WATCH_CREATE_TOPIC, FileService.MOVIE_WATCH_MODIFY_TOPIC, FileService.MOVIE_WATCH_DELETE_TOPIC, this.eventAdmin);
+                this.movieWatcher = new FileWatcher(this.movieDirectories, true, this.createFilter(this.movieExtFilters), FileService.MOVIE_WATCH_CREATE_TOPIC, FileService.MOVIE_WATCH_MODIFY_TOPIC, FileService.MOVIE_WATCH_DELETE_TOPIC, this.eventAdmin, this.watchQuietPeriod * 1000L, movieOverflowListener);
             }
             Thread watcher = new Thread(this.movieWatcher);
             watcher.setDaemon(false);
@@ -140,11 +197,18 @@ public class FileServiceImpl implements FileService, EventHandler {
         }
 
         // New Image Watcher
+        AbstractFileWatcher.OverflowListener imageOverflowListener = new AbstractFileWatcher.OverflowListener() {
+            @Override
+            public void overflow(List<Path> directories) {
+                // Rescan the directories, diffed with the scan manifest when incremental
+                scanFiles(directories, createFilter(imageExtFilters), FileService.IMAGE_SCAN_PROVIDED_TOPIC, FileService.IMAGE_SCAN_COMPLETE_TOPIC, IMAGE_MANIFEST_FILE);
+            }
+        };
         try {
             if (SystemUtils.IS_OS_WINDOWS) {
-                this.imageWatcher = new WinFileWatcher(this.imageDirectories, true, this.createFilter(this.imageExtFilters), FileService.IMAGE_WATCH_CREATE_TOPIC, FileService.IMAGE_WATCH_MODIFY_TOPIC, FileService.IMAGE_WATCH_DELETE_TOPIC, this.eventAdmin);
+                this.imageWatcher = new WinFileWatcher(this.imageDirectories, true, this.createFilter(this.imageExtFilters), FileService.IMAGE_WATCH_CREATE_TOPIC, FileService.IMAGE_WATCH_MODIFY_TOPIC, FileService.IMAGE_WATCH_DELETE_TOPIC, this.eventAdmin, this.watchQuietPeriod * 1000L, imageOverflowListener);
             } else {
-                this.imageWatcher = new FileWatcher(this.imageDirectories, true, this.createFilter(this.imageExtFilters), FileService.IMAGE_WATCH_CREATE_TOPIC, FileService.IMAGE_WATCH_MODIFY_TOPIC, FileService.IMAGE_WATCH_DELETE_TOPIC, this.eventAdmin);
+                this.imageWatcher = new FileWatcher(this.imageDirectories, true, this.createFilter(this.imageExtFilters), FileService.IMAGE_WATCH_CREATE_TOPIC, FileService.IMAGE_WATCH_MODIFY_TOPIC, FileService.IMAGE_WATCH_DELETE_TOPIC, this.eventAdmin, this.watchQuietPeriod * 1000L, imageOverflowListener);
             }
             Thread watcher = new Thread(this.imageWatcher);
             watcher.setDaemon(false);
@@ -164,6 +228,8 @@ public class FileServiceImpl implements FileService, EventHandler {
         this.fileScanner.shouldStop = true;
         this.movieWatcher.shouldStop = true;
         this.imageWatcher.shouldStop = true;
+        this.fileScanner.saveManifests();
+        logger.info("File watcher statistics: {}.", this.getWatchStatistics());
     }
 
     @Override
@@ -175,7 +241,7 @@ public class FileServiceImpl implements FileService, EventHandler {
                     directoryList.add(Paths.get(StringUtils.trim(directory)));
                 }
             }
-            this.scanFiles(directoryList, createFilter(this.movieExtFilters), FileService.MOVIE_SCAN_PROVIDED_TOPIC);
+            this.scanFiles(directoryList, createFilter(this.movieExtFilters), FileService.MOVIE_SCAN_PROVIDED_TOPIC, FileService.MOVIE_SCAN_COMPLETE_TOPIC, MOVIE_MANIFEST_FILE, (Long) event.getProperty(FileService.LIBRARY_COUNT_PROPERTY));
         } else if (FileService.IMAGE_SCAN_REQUEST_TOPIC.equals(event.getTopic())) {
             List<Path> directoryList = new ArrayList<>();
             for (String directory : this.imageDirectories) {
@@ -183,10 +249,30 @@ public class FileServiceImpl implements FileService, EventHandler {
                     directoryList.add(Paths.get(StringUtils.trim(directory)));
                 }
             }
-            this.scanFiles(directoryList, createFilter(this.imageExtFilters), FileService.IMAGE_SCAN_PROVIDED_TOPIC);
+            this.scanFiles(directoryList, createFilter(this.imageExtFilters), FileService.IMAGE_SCAN_PROVIDED_TOPIC, FileService.IMAGE_SCAN_COMPLETE_TOPIC, IMAGE_MANIFEST_FILE, (Long) event.getProperty(FileService.LIBRARY_COUNT_PROPERTY));
+        } else if (FileService.MOVIE_SYNCHRONIZED_TOPIC.equals(event.getTopic())) {
+            this.commitFiles(event, MOVIE_MANIFEST_FILE);
+        } else if (FileService.IMAGE_SYNCHRONIZED_TOPIC.equals(event.getTopic())) {
+            this.commitFiles(event, IMAGE_MANIFEST_FILE);
         }
     }
 
+    @Override
+    public Map<String, Long> getWatchStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        if (this.movieWatcher != null) {
+            for (Map.Entry<String, Long> entry : this.movieWatcher.getStatistics().entrySet()) {
+                statistics.put("movie." + entry.getKey(), entry.getValue());
+            }
+        }
+        if (this.imageWatcher != null) {
+            for (Map.Entry<String, Long> entry : this.imageWatcher.getStatistics().entrySet()) {
+                statistics.put("image." + entry.getKey(), entry.getValue());
+            }
+        }
+        return statistics;
+    }
+
     @Override
     public void scanMovies() {
         this.scanMovies(movieDirectories);
@@ -212,7 +298,7 @@ public class FileServiceImpl implements FileService, EventHandler {
             } else {
                 filter = createFilter(this.movieExtFilters);
             }
-            this.scanFiles(directoryList, filter, FileService.MOVIE_SCAN_PROVIDED_TOPIC);
+            this.scanFiles(directoryList, filter, FileService.MOVIE_SCAN_PROVIDED_TOPIC, FileService.MOVIE_SCAN_COMPLETE_TOPIC, MOVIE_MANIFEST_FILE);
         }
     }
 
@@ -241,22 +327,45 @@ public class FileServiceImpl implements FileService, EventHandler {
             } else {
                 filter = createFilter(this.imageExtFilters);
             }
-            this.scanFiles(directoryList, filter, FileService.IMAGE_SCAN_PROVIDED_TOPIC);
+            this.scanFiles(directoryList, filter, FileService.IMAGE_SCAN_PROVIDED_TOPIC, FileService.IMAGE_SCAN_COMPLETE_TOPIC, IMAGE_MANIFEST_FILE);
         }
     }
 
     /**
      * Start a new thread to scanAll files
      *
-     * @param directories Directories to be scanned
-     * @param filter      File name filter
-     * @param topic       Event topic
+     * @param directories   Directories to be scanned
+     * @param filter        File name filter
+     * @param topic         Event topic
+     * @param completeTopic Scan complete event topic
+     * @param manifest      Scan manifest file name
+     */
+    private void scanFiles(List<Path> directories, FileExtensionFilter filter, String topic, String completeTopic, String manifest) {
+        this.scanFiles(directories, filter, topic, completeTopic, manifest, null);
+    }
+
+    /**
+     * Start a new thread to scanAll files
+     *
+     * @param directories   Directories to be scanned
+     * @param filter        File name filter
+     * @param topic         Event topic
+     * @param completeTopic Scan complete event topic
+     * @param manifest      Scan manifest file name
+     * @param libraryCount  Files known by the library, null if not known
      */
-    private void scanFiles(List<Path> directories, FileExtensionFilter filter, String topic) {
+    private void scanFiles(List<Path> directories, FileExtensionFilter filter, String topic, String completeTopic, String manifest, Long libraryCount) {
         Map<String, Object> properties = new Hashtable<>();
         properties.put(FileService.DIRECTORY_PROPERTY, directories);
         properties.put(FileService.FILTER_PROPERTY, filter);
         properties.put(FileService.TOPIC_PROPERTY, topic);
+        properties.put(FileScanner.COMPLETE_TOPIC_PROPERTY, completeTopic);
+        if (this.incremental) {
+            properties.put(FileScanner.MANIFEST_PROPERTY, new File(this.manifestDirectory, manifest));
+            if (libraryCount != null) {
+                properties.put(FileService.LIBRARY_COUNT_PROPERTY, libraryCount);
+            }
+        }
         // Add request to scannerQueue
         try {
             this.scannerQueue.put(properties);
@@ -265,6 +374,47 @@ public class FileServiceImpl implements FileService, EventHandler {
         }
     }
 
+    /**
+     * Remember the files acknowledged by a synchronized event in the scan manifest
+     *
+     * @param event    Synchronized Event
+     * @param manifest Scan manifest file name
+     */
+    @SuppressWarnings("unchecked")
+    private void commitFiles(Event event, String manifest) {
+        if (this.incremental) {
+            List<String> synchronizedPaths = (List<String>) event.getProperty(FileService.SYNCHRONIZED_PATH_PROPERTY);
+            List<String> removed = (List<String>) event.getProperty(FileService.SYNCHRONIZED_REMOVED_PATH_PROPERTY);
+            this.fileScanner.commit(new File(this.manifestDirectory, manifest), synchronizedPaths, removed);
+        }
+    }
+
+    /**
+     * Load a positive number configuration
+     *
+     * @param props        Configuration
+     * @param key          Configuration Key
+     * @param defaultValue Default Value
+     * @return Number
+     */
+    private int loadNumber(Dictionary props, String key, int defaultValue) {
+        String value = ConfigUtils.loadConfiguration(props, key);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int number = Integer.parseInt(StringUtils.trim(value));
+                if (number > 0) {
+                    logger.debug("FileService configuration <{}> loaded.", key);
+                    return number;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+            logger.error("FileService configuration <{}> is not valid.", key);
+        } else {
+            logger.debug("FileService load default <{}>.", key);
+        }
+        return defaultValue;
+    }
+
     /**
      * Create a FileExtensionFilter based on given extension list
      *
@@ -7,18 +7,42 @@ import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * FileScanner is used to scan all directories for a give type of file
+ * Files are sent in chunks while the directories are walked, followed by a scan complete event.
+ * With a manifest in the request, only the files added, changed or removed since the last scan are sent.
+ * Sent files are remembered in the manifest once the library acknowledges them with {@link #commit}.
  */
 public class FileScanner implements Runnable {
+    // Manifest file property in the request, scans without it send all files
+    public final static String MANIFEST_PROPERTY = "manifest";
+    // Scan complete event topic property in the request
+    public final static String COMPLETE_TOPIC_PROPERTY = "complete_topic";
     // Flag
     public volatile boolean shouldStop = false;
+    // Delay before committed files are saved to the manifest (s)
+    private final static int MANIFEST_SAVE_DELAY = 10;
+    // Loaded Manifests by File
+    private final Map<File, ScanManifest> manifests = new HashMap<>();
+    // Manifests with a save scheduled
+    private final Set<File> savesScheduled = new HashSet<>();
+    // Directory Walker
+    private final ParallelWalker walker;
+    // Files in a scan event
+    private final int batchSize;
+    // Event Publisher, keeps the events of a scan in order, also saves the manifests
+    private final ScheduledExecutorService publisher;
     // Request queue
     private final BlockingQueue<Map<String, Object>> queue;
     // EventAdmin
@@ -29,12 +53,24 @@ public class FileScanner implements Runnable {
     /**
      * Constructor
      *
-     * @param queue      Request Queue
-     * @param eventAdmin EventAdmin
+     * @param queue       Request Queue
+     * @param eventAdmin  EventAdmin
+     * @param parallelism Walker threads for each disk
+     * @param batchSize   Files in a scan event
      */
-    public FileScanner(BlockingQueue<Map<String, Object>> queue, EventAdmin eventAdmin) {
+    public FileScanner(BlockingQueue<Map<String, Object>> queue, EventAdmin eventAdmin, int parallelism, int batchSize) {
         this.queue = queue;
         this.eventAdmin = eventAdmin;
+        this.walker = new ParallelWalker(parallelism, batchSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.publisher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Chii2 File Scanner Publisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     @Override
@@ -44,63 +80,82 @@ public class FileScanner implements Runnable {
                 // Read request
                 Map<String, Object> request = this.queue.take();
                 @SuppressWarnings("unchecked")
-                List<Path> requestDirectories = (List<Path>) request.get(FileService.DIRECTORY_PROPERTY);
+                List<Path> directories = (List<Path>) request.get(FileService.DIRECTORY_PROPERTY);
+                // Absolute as the paths synchronized to the library
+                List<Path> requestDirectories = new ArrayList<>();
+                if (directories != null) {
+                    for (Path directory : directories) {
+                        requestDirectories.add(directory.toAbsolutePath());
+                    }
+                }
                 @SuppressWarnings("unchecked")
                 final DirectoryStream.Filter<Path> filter = (DirectoryStream.Filter<Path>) request.get(FileService.FILTER_PROPERTY);
-                String topic = (String) request.get(FileService.TOPIC_PROPERTY);
-                // Result
-                final List<Path> files = new ArrayList<>();
+                final String topic = (String) request.get(FileService.TOPIC_PROPERTY);
+                String completeTopic = (String) request.get(COMPLETE_TOPIC_PROPERTY);
+                File manifestFile = (File) request.get(MANIFEST_PROPERTY);
+                final ScanManifest manifest = manifestFile == null ? null : getManifest(manifestFile);
+                Long libraryCount = (Long) request.get(FileService.LIBRARY_COUNT_PROPERTY);
+                if (manifest != null && libraryCount != null && manifest.size() > libraryCount) {
+                    // The library lost files the manifest remembers, like a new database, send all files again
+                    logger.info("Scan manifest {} remembers {} files but the library knows {}, all files will be scanned.",
+                            new Object[]{manifestFile, manifest.size(), libraryCount});
+                    manifest.clear();
+                }
+                // All files found, only kept to find the removed files
+                final Set<Path> found = new HashSet<>();
+                // Files waiting to be sent
+                final List<Path> chunk = new ArrayList<>();
+                // Files found, added, changed
+                final int[] counts = {0, 0, 0};
+                // Directories or files which could not be read
+                final List<Path> unreadable = new ArrayList<>();
                 // Scan
                 logger.debug("File Scanner process start.");
-                if (requestDirectories != null && !requestDirectories.isEmpty()) {
-                    for (Path directory : requestDirectories) {
-                        // Register directory and sub-directories
-                        try {
-                            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
-                                @Override
-                                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
-                                    // TODO: Hidden or SymbolicLink
-                                    return FileVisitResult.CONTINUE;
-                                }
-
-                                @Override
-                                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
-                                    try {
-                                        if (filter.accept(file)) {
-                                            // Add to result list
-                                            files.add(file);
-                                        }
-                                    } catch (IOException e) {
-                                        logger.error("I/O error when filter file {}: {}, UNEXPECTED BEHAVIOR! PLEASE REPORT THIS BUG!", file, ExceptionUtils.getMessage(e));
-                                    }
-                                    return FileVisitResult.CONTINUE;
-                                }
-
-                                @Override
-                                public FileVisitResult visitFileFailed(Path path, IOException e) {
-                                    // Log error, not throw exception
-                                    logger.warn("I/O error when walk file tree: {}.", ExceptionUtils.getMessage(e));
-                                    return FileVisitResult.CONTINUE;
+                if (!requestDirectories.isEmpty()) {
+                    // Files are sent in chunks while the walk goes on, so analysis starts at once
+                    this.walker.walk(requestDirectories, filter, new ParallelWalker.Listener() {
+                        @Override
+                        public void found(Map<Path, BasicFileAttributes> files) {
+                            counts[0] = counts[0] + files.size();
+                            if (manifest == null) {
+                                chunk.addAll(files.keySet());
+                                counts[1] = counts[1] + files.size();
+                            } else {
+                                found.addAll(files.keySet());
+                                Map<Path, ScanManifest.FileState> states = new LinkedHashMap<>();
+                                for (Map.Entry<Path, BasicFileAttributes> entry : files.entrySet()) {
+                                    states.put(entry.getKey(), new ScanManifest.FileState(entry.getValue()));
                                 }
+                                ScanManifest.Delta delta = manifest.compare(states);
+                                chunk.addAll(delta.getAdded());
+                                chunk.addAll(delta.getChanged());
+                                counts[1] = counts[1] + delta.getAdded().size();
+                                counts[2] = counts[2] + delta.getChanged().size();
+                            }
+                            while (chunk.size() >= batchSize) {
+                                List<Path> full = new ArrayList<>(chunk.subList(0, batchSize));
+                                chunk.subList(0, batchSize).clear();
+                                postEvent(full, topic);
+                            }
+                        }
 
-                                @Override
-                                public FileVisitResult postVisitDirectory(Path path, IOException e) {
-                                    // Log error, not throw exception
-                                    if (e != null) {
-                                        logger.warn("I/O error when walk file tree: {}.", ExceptionUtils.getMessage(e));
-                                    }
-                                    return FileVisitResult.CONTINUE;
-                                }
-                            });
-                        } catch (SecurityException e) {
-                            logger.error("Security error when walk file tree: {}, please check access permission.", ExceptionUtils.getMessage(e));
-                        } catch (IOException e) {
-                            // Should not been here
-                            logger.error("I/O error when walk file tree: {}, UNEXPECTED BEHAVIOR! PLEASE REPORT THIS BUG!", ExceptionUtils.getMessage(e));
+                        @Override
+                        public void failed(Path path) {
+                            unreadable.add(path);
                         }
+                    });
+                    if (!chunk.isEmpty()) {
+                        postEvent(new ArrayList<>(chunk), topic);
+                    }
+                    List<Path> removed = null;
+                    if (manifest != null) {
+                        removed = manifest.removeMissing(requestDirectories, filter, found, unreadable);
+                        manifest.save(manifestFile);
                     }
-                    if (!files.isEmpty()) {
-                        postEvent(files, topic);
+                    logger.info("File Scanner found {} files: {} added, {} changed, {} removed.",
+                            new Object[]{counts[0], counts[1], counts[2], removed == null ? 0 : removed.size()});
+                    if (completeTopic != null) {
+                        postCompleteEvent(counts[0], counts[1] + counts[2], removed, completeTopic);
                     }
                 }
                 logger.debug("File Scanner process stop.");
@@ -111,7 +166,77 @@ public class FileScanner implements Runnable {
     }
 
     /**
-     * Send a scanAll event asynchronously
+     * Remember the scanned files synchronized to the library and forget the files removed from it
+     * The manifest is saved a while later, so the acknowledgements of a scan are written at once.
+     *
+     * @param file              Manifest File
+     * @param synchronizedPaths Synchronized File Paths
+     * @param removed           Removed File or Directory Paths
+     */
+    public void commit(final File file, Collection<String> synchronizedPaths, Collection<String> removed) {
+        ScanManifest manifest = getManifest(file);
+        int count = 0;
+        if (synchronizedPaths != null) {
+            count = manifest.commit(synchronizedPaths);
+        }
+        if (removed != null) {
+            manifest.remove(removed);
+        }
+        logger.debug("Scan manifest {} commit {} files, {} files still pending.", new Object[]{file, count, manifest.getPendingCount()});
+        synchronized (this.savesScheduled) {
+            if (!this.savesScheduled.add(file)) {
+                return;
+            }
+        }
+        this.publisher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (savesScheduled) {
+                    savesScheduled.remove(file);
+                }
+                getManifest(file).save(file);
+            }
+        }, MANIFEST_SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Save the loaded manifests, the files committed since the last save are written
+     */
+    public void saveManifests() {
+        Map<File, ScanManifest> loaded;
+        synchronized (this.manifests) {
+            loaded = new HashMap<>(this.manifests);
+        }
+        for (Map.Entry<File, ScanManifest> entry : loaded.entrySet()) {
+            entry.getValue().save(entry.getKey());
+        }
+    }
+
+    /**
+     * Get a manifest, loaded from its file the first time
+     *
+     * @param file Manifest File
+     * @return Manifest, empty if the file does not exist yet
+     */
+    private ScanManifest getManifest(File file) {
+        synchronized (this.manifests) {
+            ScanManifest manifest = this.manifests.get(file);
+            if (manifest == null) {
+                manifest = new ScanManifest();
+                if (manifest.load(file)) {
+                    logger.debug("Scan manifest {} loaded with {} files.", file, manifest.size());
+                } else {
+                    logger.info("Scan manifest {} not found, all files will be scanned.", file);
+                }
+                this.manifests.put(file, manifest);
+            }
+            return manifest;
+        }
+    }
+
+    /**
+     * Send a chunk of a scan asynchronously
+     * Events are posted by one thread, so they are delivered in the order they were sent.
      *
      * @param files Files discovered
      * @param topic Event topic
@@ -119,8 +244,38 @@ public class FileScanner implements Runnable {
     private void postEvent(List<Path> files, String topic) {
         Dictionary<String, Object> properties = new Hashtable<>();
         properties.put(FileService.SCAN_PATH_PROPERTY, files);
-        Event event = new Event(topic, properties);
+        final Event event = new Event(topic, properties);
         logger.debug("Send a file scan event with {} records to topic {}.", files.size(), topic);
-        this.eventAdmin.postEvent(event);
+        this.publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                eventAdmin.postEvent(event);
+            }
+        });
+    }
+
+    /**
+     * Send a scan complete event asynchronously, after the chunks of the scan
+     *
+     * @param foundCount    Files found
+     * @param providedCount Files sent in chunks
+     * @param removed       Files removed since the last scan, null if not known
+     * @param topic         Event topic
+     */
+    private void postCompleteEvent(int foundCount, int providedCount, List<Path> removed, String topic) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(FileService.SCAN_FOUND_COUNT_PROPERTY, foundCount);
+        properties.put(FileService.SCAN_PROVIDED_COUNT_PROPERTY, providedCount);
+        if (removed != null) {
+            properties.put(FileService.SCAN_REMOVED_PATH_PROPERTY, removed);
+        }
+        final Event event = new Event(topic, properties);
+        logger.debug("Send a file scan complete event with {} removed records to topic {}.", removed == null ? 0 : removed.size(), topic);
+        this.publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                eventAdmin.postEvent(event);
+            }
+        });
     }
 }
@@ -0,0 +1,328 @@
+package org.chii2.medialibrary.file.scanner;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel Directory Walker
+ * Directories on the same file store (disk or mount) are walked by a limited number of threads,
+ * each listing one directory at a time and sharing the sub-directories found, so a single disk is not thrashed
+ * while directories on different disks or network mounts are walked at the same time.
+ * Accepted files are handed to the listener in batches while the walk goes on.
+ * Like {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}, symbolic links are not followed.
+ */
+public class ParallelWalker {
+    // Threads for each file store
+    private final int parallelism;
+    // Max files in a batch
+    private final int batchSize;
+    // Wait for more directories before a worker checks if the walk is done (ms)
+    private final static long POLL_INTERVAL = 50;
+    // Thread Number
+    private final static AtomicInteger threadNumber = new AtomicInteger();
+    // Logger
+    private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.file.scanner");
+
+    /**
+     * Constructor
+     *
+     * @param parallelism Threads for each file store
+     * @param batchSize   Max files in a batch
+     */
+    public ParallelWalker(int parallelism, int batchSize) {
+        this.parallelism = Math.max(1, parallelism);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Walk the directories, returns when all are walked
+     *
+     * @param directories Directories
+     * @param filter      File Filter
+     * @param listener    Listener, called by one thread at a time
+     * @throws InterruptedException Interrupted while walking
+     */
+    public void walk(List<Path> directories, DirectoryStream.Filter<Path> filter, Listener listener) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        // Group the directories by file store, each gets its own threads
+        Map<Object, Walk> walks = new LinkedHashMap<>();
+        for (Path directory : directories) {
+            Object store;
+            try {
+                store = getStore(directory);
+            } catch (IOException | SecurityException e) {
+                logger.warn("I/O error when walk file tree: {}.", ExceptionUtils.getMessage(e));
+                listener.failed(directory);
+                continue;
+            }
+            Walk walk = walks.get(store);
+            if (walk == null) {
+                walk = new Walk(filter, listener);
+                walks.put(store, walk);
+            }
+            walk.add(directory);
+        }
+        if (walks.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(walks.size() * parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Chii2 File Walker " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Walk walk : walks.values()) {
+                for (int i = 0; i < parallelism; i++) {
+                    futures.add(executor.submit(walk));
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.error("File walker failed with error: {}, UNEXPECTED BEHAVIOR! PLEASE REPORT THIS BUG!", ExceptionUtils.getMessage(e.getCause()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long directoryCount = 0;
+        long fileCount = 0;
+        for (Walk walk : walks.values()) {
+            directoryCount = directoryCount + walk.directoryCount.get();
+            fileCount = fileCount + walk.fileCount.get();
+        }
+        logger.debug("File walker listed {} directories on {} file stores and accepted {} files in {} ms.",
+                new Object[]{directoryCount, walks.size(), fileCount, System.currentTimeMillis() - start});
+    }
+
+    /**
+     * File store of a directory, directories on the same store share the threads
+     *
+     * @param directory Directory
+     * @return File Store, or the directory itself if the store is unknown
+     * @throws IOException Directory can not be read
+     */
+    private Object getStore(Path directory) throws IOException {
+        Files.readAttributes(directory, BasicFileAttributes.class);
+        try {
+            return Files.getFileStore(directory);
+        } catch (IOException e) {
+            return directory.toAbsolutePath();
+        }
+    }
+
+    /**
+     * Walk of the directories on one file store, run by several workers
+     */
+    private class Walk implements Runnable {
+        // File Filter
+        private final DirectoryStream.Filter<Path> filter;
+        // Listener
+        private final Listener listener;
+        // Directories waiting to be listed, sub-directories are taken first
+        private final LinkedBlockingDeque<Path> directories = new LinkedBlockingDeque<>();
+        // Directories waiting or being listed
+        private final AtomicInteger pending = new AtomicInteger();
+        // Directories listed
+        private final AtomicLong directoryCount = new AtomicLong();
+        // Files accepted
+        private final AtomicLong fileCount = new AtomicLong();
+
+        /**
+         * Constructor
+         *
+         * @param filter   File Filter
+         * @param listener Listener
+         */
+        private Walk(DirectoryStream.Filter<Path> filter, Listener listener) {
+            this.filter = filter;
+            this.listener = listener;
+        }
+
+        /**
+         * Add a directory to walk
+         *
+         * @param directory Directory
+         */
+        private void add(Path directory) {
+            pending.incrementAndGet();
+            directories.addFirst(directory);
+        }
+
+        @Override
+        public void run() {
+            Map<Path, BasicFileAttributes> batch = new LinkedHashMap<>();
+            try {
+                while (pending.get() > 0) {
+                    Path directory = directories.pollFirst(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (directory == null) {
+                        continue;
+                    }
+                    try {
+                        list(directory, batch);
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                deliver(batch);
+            }
+        }
+
+        /**
+         * List a directory, accepted files go into the batch and sub-directories are shared with the other workers
+         *
+         * @param directory Directory
+         * @param batch     Current Batch
+         */
+        private void list(Path directory, Map<Path, BasicFileAttributes> batch) {
+            directoryCount.incrementAndGet();
+            DirectoryStream<Path> stream = null;
+            try {
+                stream = Files.newDirectoryStream(directory);
+                for (Path path : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        logger.warn("I/O error when walk file tree: {}.", ExceptionUtils.getMessage(e));
+                        failed(path);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        add(path);
+                    } else {
+                        visit(path, attributes, batch);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                if (stream == null && Files.isRegularFile(directory)) {
+                    // A file given as directory
+                    visitRoot(directory, batch);
+                } else {
+                    logger.warn("I/O error when walk file tree: {}.", ExceptionUtils.getMessage(e));
+                    failed(directory);
+                }
+            } finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        /**
+         * Visit a file given as directory
+         *
+         * @param file  File
+         * @param batch Current Batch
+         */
+        private void visitRoot(Path file, Map<Path, BasicFileAttributes> batch) {
+            try {
+                visit(file, Files.readAttributes(file, BasicFileAttributes.class), batch);
+            } catch (IOException e) {
+                failed(file);
+            }
+        }
+
+        /**
+         * Visit a file, accepted files go into the batch
+         *
+         * @param file       File
+         * @param attributes File Attributes
+         * @param batch      Current Batch
+         */
+        private void visit(Path file, BasicFileAttributes attributes, Map<Path, BasicFileAttributes> batch) {
+            try {
+                if (filter.accept(file)) {
+                    fileCount.incrementAndGet();
+                    batch.put(file, attributes);
+                    if (batch.size() >= batchSize) {
+                        deliver(batch);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("I/O error when filter file {}: {}, UNEXPECTED BEHAVIOR! PLEASE REPORT THIS BUG!", file, ExceptionUtils.getMessage(e));
+            }
+        }
+
+        /**
+         * Hand a batch to the listener and start a new one
+         *
+         * @param batch Current Batch
+         */
+        private void deliver(Map<Path, BasicFileAttributes> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            synchronized (listener) {
+                listener.found(new LinkedHashMap<>(batch));
+            }
+            batch.clear();
+        }
+
+        /**
+         * Report a directory or file which could not be read
+         *
+         * @param path Path
+         */
+        private void failed(Path path) {
+            synchronized (listener) {
+                listener.failed(path);
+            }
+        }
+    }
+
+    /**
+     * Walk Listener
+     */
+    public interface Listener {
+
+        /**
+         * A batch of accepted files is found
+         *
+         * @param files Files with their attributes
+         */
+        public void found(Map<Path, BasicFileAttributes> files);
+
+        /**
+         * A directory or file could not be read
+         *
+         * @param path Path
+         */
+        public void failed(Path path);
+    }
+}
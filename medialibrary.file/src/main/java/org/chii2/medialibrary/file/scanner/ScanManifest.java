@@ -0,0 +1,427 @@
+package org.chii2.medialibrary.file.scanner;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scan Manifest
+ * Remembers the size, modified time and file key (the inode on Unix) of every file found by the last scans,
+ * so a rescan only reports the files added, changed or removed since.
+ * A file found added or changed is pending until the library acknowledges it is synchronized, only then it is
+ * remembered. A file whose analysis failed or was lost in a stop is therefore reported again by the next scan.
+ * Likewise a file found removed is remembered until the library acknowledges the removal.
+ */
+public class ScanManifest {
+    // Manifest Format Version
+    private final static int VERSION = 1;
+    // File States by Path
+    private final Map<String, FileState> files = new HashMap<>();
+    // File States by Path, found but not synchronized yet
+    private final Map<String, FileState> pending = new HashMap<>();
+    // Changed since loaded or saved
+    private boolean dirty = false;
+    // Logger
+    private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.file.scanner");
+
+    /**
+     * Compare the files found by a scan and report the files removed
+     * Only files under the scanned directories and accepted by the filter can be removed,
+     * files under directories which could not be read are kept as they were.
+     *
+     * @param directories Scanned Directories
+     * @param filter      Scan Filter
+     * @param found       Files found with their state
+     * @param unreadable  Directories or files which could not be read
+     * @return Files added, changed and removed
+     */
+    public synchronized Delta update(List<Path> directories, DirectoryStream.Filter<Path> filter, Map<Path, FileState> found, Collection<Path> unreadable) {
+        Delta delta = compare(found);
+        delta.removed.addAll(removeMissing(directories, filter, found.keySet(), unreadable));
+        return delta;
+    }
+
+    /**
+     * Compare a part of the files found by a scan, the files added and changed are pending until committed
+     *
+     * @param found Files found with their state
+     * @return Files added and changed
+     */
+    public synchronized Delta compare(Map<Path, FileState> found) {
+        Delta delta = new Delta();
+        for (Map.Entry<Path, FileState> entry : found.entrySet()) {
+            String path = entry.getKey().toString();
+            FileState state = files.get(path);
+            if (state == null) {
+                delta.added.add(entry.getKey());
+                pending.put(path, entry.getValue());
+            } else if (!state.equals(entry.getValue())) {
+                delta.changed.add(entry.getKey());
+                pending.put(path, entry.getValue());
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Remember the pending files synchronized to the library
+     * Files not pending, like files sent by the watchers, are ignored and sent by the next scan once.
+     *
+     * @param paths Synchronized File Paths
+     * @return Files remembered
+     */
+    public synchronized int commit(Collection<String> paths) {
+        int count = 0;
+        for (String path : paths) {
+            FileState state = pending.remove(path);
+            if (state != null) {
+                files.put(path, state);
+                count++;
+            }
+        }
+        if (count > 0) {
+            dirty = true;
+        }
+        return count;
+    }
+
+    /**
+     * Forget the files removed from the library
+     *
+     * @param paths Removed File or Directory Paths
+     */
+    public synchronized void remove(Collection<String> paths) {
+        List<Path> removed = new ArrayList<>();
+        for (String path : paths) {
+            removed.add(Paths.get(path));
+        }
+        if (removeUnder(files, removed) | removeUnder(pending, removed)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forget all files, the next scan reports every file as added
+     */
+    public synchronized void clear() {
+        files.clear();
+        pending.clear();
+        dirty = true;
+    }
+
+    /**
+     * Report the files not found by a scan once it is done
+     * Only files under the scanned directories and accepted by the filter can be removed,
+     * files under directories which could not be read are kept as they were.
+     * Removed files are remembered until the library acknowledges the removal, so the next scan reports them again
+     * if the removal was lost.
+     *
+     * @param directories Scanned Directories
+     * @param filter      Scan Filter
+     * @param found       All files found by the scan
+     * @param unreadable  Directories or files which could not be read
+     * @return Files removed
+     */
+    public synchronized List<Path> removeMissing(List<Path> directories, DirectoryStream.Filter<Path> filter, Set<Path> found, Collection<Path> unreadable) {
+        List<Path> removed = new ArrayList<>();
+        for (String name : files.keySet()) {
+            Path path = Paths.get(name);
+            if (found.contains(path)) {
+                continue;
+            }
+            if (isUnder(path, directories) && !isUnder(path, unreadable) && accept(filter, path)) {
+                removed.add(path);
+            }
+        }
+        // Pending files gone before they were synchronized
+        Iterator<String> pendingIterator = pending.keySet().iterator();
+        while (pendingIterator.hasNext()) {
+            Path path = Paths.get(pendingIterator.next());
+            if (!found.contains(path) && isUnder(path, directories) && !isUnder(path, unreadable)) {
+                pendingIterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the remembered file count
+     *
+     * @return File Count
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * Get the count of files found but not synchronized yet
+     *
+     * @return File Count
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Load the manifest file, replacing the current states
+     *
+     * @param file Manifest File
+     * @return True if loaded
+     */
+    public synchronized boolean load(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        Map<String, FileState> loaded = new HashMap<>();
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != VERSION) {
+                logger.warn("Scan manifest {} is written by another version, ignored.", file);
+                return false;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = input.readUTF();
+                long size = input.readLong();
+                long modified = input.readLong();
+                String key = input.readUTF();
+                loaded.put(path, new FileState(size, modified, key.isEmpty() ? null : key));
+            }
+        } catch (IOException e) {
+            logger.warn("Can not load scan manifest {}: {}.", file, ExceptionUtils.getMessage(e));
+            return false;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        files.clear();
+        files.putAll(loaded);
+        pending.clear();
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Save the manifest file if it changed
+     *
+     * @param file Manifest File
+     * @return True if saved or nothing changed
+     */
+    public synchronized boolean save(File file) {
+        if (!dirty && file.isFile()) {
+            return true;
+        }
+        File temp = null;
+        DataOutputStream output = null;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            // Write aside and move, a crash never leaves a partial manifest
+            temp = File.createTempFile(file.getName(), ".tmp", parent);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeInt(files.size());
+            for (Map.Entry<String, FileState> entry : files.entrySet()) {
+                FileState state = entry.getValue();
+                output.writeUTF(entry.getKey());
+                output.writeLong(state.size);
+                output.writeLong(state.modified);
+                output.writeUTF(state.key == null ? "" : state.key);
+            }
+            output.close();
+            output = null;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            return true;
+        } catch (IOException e) {
+            logger.error("Can not save scan manifest {}: {}.", file, ExceptionUtils.getMessage(e));
+            return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (temp != null && temp.exists()) {
+                if (!temp.delete()) {
+                    logger.warn("Can not delete temporary scan manifest {}.", temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the states of the paths under one of the directories
+     *
+     * @param states      File States by Path
+     * @param directories Files or Directories
+     * @return True if removed
+     */
+    private boolean removeUnder(Map<String, FileState> states, Collection<Path> directories) {
+        boolean removed = false;
+        Iterator<String> iterator = states.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (isUnder(Paths.get(iterator.next()), directories)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Whether the path is under one of the directories
+     *
+     * @param path        Path
+     * @param directories Directories
+     * @return True if under
+     */
+    private boolean isUnder(Path path, Collection<Path> directories) {
+        for (Path directory : directories) {
+            if (path.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the filter accepts a path which may not exist any more
+     *
+     * @param filter Scan Filter
+     * @param path   Path
+     * @return True if accepted
+     */
+    private boolean accept(DirectoryStream.Filter<Path> filter, Path path) {
+        try {
+            return filter.accept(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * State of a file when it was scanned
+     */
+    public static class FileState {
+        // File Size
+        private final long size;
+        // Last Modified Time (ms)
+        private final long modified;
+        // File Key, the device and inode on Unix, null if the file system has none
+        private final String key;
+
+        /**
+         * Constructor
+         *
+         * @param size     File Size
+         * @param modified Last Modified Time (ms)
+         * @param key      File Key
+         */
+        public FileState(long size, long modified, String key) {
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+        }
+
+        /**
+         * Constructor
+         *
+         * @param attributes File Attributes read by the scan
+         */
+        public FileState(BasicFileAttributes attributes) {
+            this(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey() == null ? null : attributes.fileKey().toString());
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof FileState)) {
+                return false;
+            }
+            FileState state = (FileState) object;
+            return size == state.size && modified == state.modified && ObjectUtils.equals(key, state.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (size ^ (size >>> 32)) * 31 + (int) (modified ^ (modified >>> 32));
+        }
+    }
+
+    /**
+     * Files added, changed and removed since the last scan
+     */
+    public static class Delta {
+        // Added Files
+        private final List<Path> added = new ArrayList<>();
+        // Changed Files
+        private final List<Path> changed = new ArrayList<>();
+        // Removed Files
+        private final List<Path> removed = new ArrayList<>();
+
+        /**
+         * Get added files
+         *
+         * @return Added Files
+         */
+        public List<Path> getAdded() {
+            return added;
+        }
+
+        /**
+         * Get changed files
+         *
+         * @return Changed Files
+         */
+        public List<Path> getChanged() {
+            return changed;
+        }
+
+        /**
+         * Get removed files
+         *
+         * @return Removed Files
+         */
+        public List<Path> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Whether nothing changed
+         *
+         * @return True if empty
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+}
@@ -1,9 +1,112 @@
 package org.chii2.medialibrary.file.watcher;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * File Watcher
  */
 public abstract class AbstractFileWatcher implements Runnable {
     // Flag
     public volatile boolean shouldStop = false;
+    // Wait for other watch keys to overflow before rescanning (ms)
+    protected final static long OVERFLOW_DELAY = 1000;
+    // Events handled
+    protected final AtomicLong processedCount = new AtomicLong();
+    // Events lost by the watch service or received for a directory no longer watched
+    protected final AtomicLong droppedCount = new AtomicLong();
+    // Directories rescanned after events were lost
+    protected final AtomicLong rescanCount = new AtomicLong();
+    // Overflow Listener
+    private final OverflowListener overflowListener;
+    // Logger
+    private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.file.watcher");
+
+    /**
+     * Constructor
+     *
+     * @param overflowListener Listener to rescan directories whose events were lost
+     */
+    protected AbstractFileWatcher(OverflowListener overflowListener) {
+        this.overflowListener = overflowListener;
+    }
+
+    /**
+     * Get the number of events merged into an earlier event of the same file
+     *
+     * @return Coalesced Events
+     */
+    public abstract long getCoalescedCount();
+
+    /**
+     * Get the watcher statistics, processed, dropped and coalesced events and rescanned directories
+     *
+     * @return Statistics by name
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("processed", processedCount.get());
+        statistics.put("dropped", droppedCount.get());
+        statistics.put("coalesced", getCoalescedCount());
+        statistics.put("rescans", rescanCount.get());
+        return statistics;
+    }
+
+    /**
+     * Rescan the directories whose events were lost
+     * Sub-directories are rescanned with their parent, so each file is scanned once
+     * when the watch service overflows for all directories at the same time.
+     *
+     * @param directories Directories whose events were lost
+     */
+    protected void rescan(Collection<Path> directories) {
+        List<Path> rescan = new ArrayList<>();
+        for (Path directory : directories) {
+            boolean nested = false;
+            for (Path other : directories) {
+                if (!other.equals(directory) && directory.startsWith(other)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) {
+                rescan.add(directory);
+            }
+        }
+        for (Path directory : rescan) {
+            rewatch(directory);
+        }
+        rescanCount.addAndGet(rescan.size());
+        logger.warn("Watch events lost, rescan directories {}.", rescan);
+        overflowListener.overflow(rescan);
+    }
+
+    /**
+     * Watch the sub-directories created while the events were lost, before the directory is rescanned
+     *
+     * @param directory Directory
+     */
+    protected void rewatch(Path directory) {
+    }
+
+    /**
+     * Overflow Listener
+     */
+    public interface OverflowListener {
+
+        /**
+         * Events for the directories were lost, they need to be rescanned
+         *
+         * @param directories Directories
+         */
+        public void overflow(List<Path> directories);
+    }
 }
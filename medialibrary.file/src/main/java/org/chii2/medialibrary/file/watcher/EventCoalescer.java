@@ -0,0 +1,309 @@
+package org.chii2.medialibrary.file.watcher;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watch Event Coalescer
+ * Watch events are kept by path until the file has been quiet, no new event and the same size and modified time,
+ * for the quiet period. Only the final state is then sent to the listener:
+ * create + modify* becomes one create, modify* one modify, delete + create one modify,
+ * and a file created and deleted again is never sent at all.
+ * Copying a large movie produces hundreds of modify events, but only one create is sent once the copy is done.
+ */
+public class EventCoalescer {
+    // Quiet Period (ms)
+    private final long quietPeriod;
+    // Listener
+    private final Listener listener;
+    // Pending Changes by Path
+    private final Map<Path, Change> changes = new HashMap<>();
+    // Timer
+    private final ScheduledExecutorService timer;
+    // Events merged into an earlier event of the same path
+    private final AtomicLong coalescedCount = new AtomicLong();
+    // Thread Number
+    private final static AtomicInteger threadNumber = new AtomicInteger();
+    // Logger
+    private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.file.watcher");
+
+    /**
+     * Constructor
+     *
+     * @param quietPeriod Quiet Period (ms)
+     * @param listener    Listener, called by the timer thread
+     */
+    public EventCoalescer(long quietPeriod, Listener listener) {
+        this.quietPeriod = Math.max(1, quietPeriod);
+        this.listener = listener;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Chii2 File Watcher Coalescer " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Check several times in a quiet period, at most every second
+        long interval = Math.max(1, Math.min(1000, this.quietPeriod / 4));
+        this.timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    logger.error("Watch event coalescer failed with error: {}, UNEXPECTED BEHAVIOR! PLEASE REPORT THIS BUG!", ExceptionUtils.getMessage(e));
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A file is created
+     *
+     * @param path Path
+     */
+    public void created(Path path) {
+        this.add(path, false, readAttributes(path));
+    }
+
+    /**
+     * A file is modified
+     *
+     * @param path Path
+     */
+    public void modified(Path path) {
+        this.add(path, true, readAttributes(path));
+    }
+
+    /**
+     * A file is deleted
+     *
+     * @param path Path
+     */
+    public void deleted(Path path) {
+        this.add(path, true, null);
+    }
+
+    /**
+     * Get the number of pending paths
+     *
+     * @return Pending Paths
+     */
+    public synchronized int getPendingCount() {
+        return changes.size();
+    }
+
+    /**
+     * Get the number of events merged into an earlier event of the same path
+     *
+     * @return Coalesced Events
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Stop the timer, pending changes are dropped
+     */
+    public void close() {
+        timer.shutdownNow();
+        int pending;
+        synchronized (this) {
+            pending = changes.size();
+            changes.clear();
+        }
+        if (pending > 0) {
+            logger.info("File watcher stopped with {} pending changes, the next scan will pick them up.", pending);
+        }
+    }
+
+    /**
+     * Record an event, restarting the quiet period of the path
+     *
+     * @param path       Path
+     * @param existed    Whether the file existed before the event
+     * @param attributes File Attributes after the event, null if deleted
+     */
+    private synchronized void add(Path path, boolean existed, BasicFileAttributes attributes) {
+        Change change = changes.get(path);
+        if (change == null) {
+            change = new Change(existed);
+            changes.put(path, change);
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+        change.update(attributes);
+    }
+
+    /**
+     * Send the changes which have been quiet for the quiet period
+     */
+    private void flush() {
+        long now = System.currentTimeMillis();
+        // Changes due, checked without holding the lock as reading attributes may be slow on network mounts
+        Map<Path, Change> due = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<Path, Change> entry : changes.entrySet()) {
+                if (now - entry.getValue().time >= quietPeriod) {
+                    due.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<Path> created = new ArrayList<>();
+        List<Path> modified = new ArrayList<>();
+        List<Path> deleted = new ArrayList<>();
+        for (Map.Entry<Path, Change> entry : due.entrySet()) {
+            Path path = entry.getKey();
+            Change change = entry.getValue();
+            BasicFileAttributes attributes = readAttributes(path);
+            synchronized (this) {
+                // A new event arrived meanwhile, wait for it to be quiet
+                if (changes.get(path) != change || change.time > now) {
+                    continue;
+                }
+                if (attributes != null && !change.isSame(attributes)) {
+                    // Still being written without events, as seen on some network mounts
+                    change.update(attributes);
+                    continue;
+                }
+                changes.remove(path);
+            }
+            if (attributes != null && !attributes.isRegularFile()) {
+                continue;
+            }
+            // The final state decides, the events in between do not matter
+            if (attributes != null) {
+                if (change.existed) {
+                    modified.add(path);
+                } else {
+                    created.add(path);
+                }
+            } else if (change.existed) {
+                deleted.add(path);
+            } else {
+                logger.debug("File {} created and deleted again, ignored.", path);
+            }
+        }
+
+        for (Path path : deleted) {
+            listener.deleted(path);
+        }
+        for (Path path : created) {
+            listener.created(path);
+        }
+        for (Path path : modified) {
+            listener.modified(path);
+        }
+    }
+
+    /**
+     * Read the current attributes of a file
+     *
+     * @param path Path
+     * @return Attributes, null if the file does not exist
+     */
+    private BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.debug("Can not read attributes of {}: {}.", path, ExceptionUtils.getMessage(e));
+            return null;
+        }
+    }
+
+    /**
+     * Pending change of a path
+     */
+    private static class Change {
+        // Whether the file existed before the first event
+        private final boolean existed;
+        // Last Event or Size Change Time (ms)
+        private long time;
+        // Size at the last event or check, -1 if deleted
+        private long size = -1;
+        // Modified Time at the last event or check (ms), -1 if deleted
+        private long modified = -1;
+
+        /**
+         * Constructor
+         *
+         * @param existed Whether the file existed before the first event
+         */
+        private Change(boolean existed) {
+            this.existed = existed;
+        }
+
+        /**
+         * Record the file state and restart the quiet period
+         *
+         * @param attributes File Attributes, null if deleted
+         */
+        private void update(BasicFileAttributes attributes) {
+            this.size = attributes == null ? -1 : attributes.size();
+            this.modified = attributes == null ? -1 : attributes.lastModifiedTime().toMillis();
+            this.time = System.currentTimeMillis();
+        }
+
+        /**
+         * Whether the file state is the same as recorded
+         *
+         * @param attributes File Attributes
+         * @return True if the same
+         */
+        private boolean isSame(BasicFileAttributes attributes) {
+            return attributes.size() == size && attributes.lastModifiedTime().toMillis() == modified;
+        }
+    }
+
+    /**
+     * Coalesced Event Listener
+     */
+    public interface Listener {
+
+        /**
+         * A new file is complete
+         *
+         * @param path Path
+         */
+        public void created(Path path);
+
+        /**
+         * An existing file is modified or replaced
+         *
+         * @param path Path
+         */
+        public void modified(Path path);
+
+        /**
+         * An existing file is deleted
+         *
+         * @param path Path
+         */
+        public void deleted(Path path);
+    }
+}
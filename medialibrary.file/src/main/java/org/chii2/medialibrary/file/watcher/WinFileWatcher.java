@@ -16,6 +16,7 @@ import static java.nio.file.LinkOption.*;
 import java.nio.file.*;
 import java.util.*;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * FileWatcher based on Java WatchService ( From JDK7 ), File/Directory watch service
@@ -40,6 +41,8 @@ public class WinFileWatcher extends AbstractFileWatcher {
     private final WatchService watchService;
     // Key, Path Map
     private final Map<WatchKey, Path> keys;
+    // Coalescer, file events are sent once the file is quiet
+    private final EventCoalescer coalescer;
     // Logger
     private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.file.watcher");
 
@@ -58,9 +61,12 @@ public class WinFileWatcher extends AbstractFileWatcher {
      * @param modifyTopic Modify Event Topic
      * @param deleteTopic Delete Event Topic
      * @param eventAdmin  EventAdmin
+     * @param quietPeriod Time a file must be quiet before its event is sent (ms)
+     * @param overflowListener Listener to rescan directories whose events were lost
      * @throws IOException I/O error when create new WatchService
      */
-    public WinFileWatcher(List<String> directories, boolean recursive, DirectoryStream.Filter<Path> filter, String createTopic, String modifyTopic, String deleteTopic, EventAdmin eventAdmin) throws IOException {
+    public WinFileWatcher(List<String> directories, boolean recursive, final DirectoryStream.Filter<Path> filter, final String createTopic, final String modifyTopic, final String deleteTopic, EventAdmin eventAdmin, long quietPeriod, OverflowListener overflowListener) throws IOException {
+        super(overflowListener);
         this.directories = directories;
         this.recursive = recursive;
         this.filter = filter;
@@ -72,6 +78,27 @@ public class WinFileWatcher extends AbstractFileWatcher {
         // Init
         this.keys = new HashMap<>();
         this.watchService = FileSystems.getDefault().newWatchService();
+        this.coalescer = new EventCoalescer(quietPeriod, new EventCoalescer.Listener() {
+            @Override
+            public void created(Path path) {
+                postEvent(filter, path, createTopic);
+            }
+
+            @Override
+            public void modified(Path path) {
+                postEvent(filter, path, modifyTopic);
+            }
+
+            @Override
+            public void deleted(Path path) {
+                postDeleteEvent(filter, path, deleteTopic);
+            }
+        });
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return this.coalescer.getCoalescedCount();
     }
 
     @Override
@@ -95,12 +122,27 @@ public class WinFileWatcher extends AbstractFileWatcher {
             }
         }
 
+        // Directories whose events were lost
+        Set<Path> overflowed = new HashSet<>();
+        // Time of the first lost events not rescanned yet
+        long overflowTime = 0;
         // Loop event handling
         while (!this.shouldStop) {
+            // The watch service often overflows for all keys at once, they are collected for a while before rescanning
+            if (!overflowed.isEmpty() && System.currentTimeMillis() - overflowTime >= OVERFLOW_DELAY) {
+                this.rescan(overflowed);
+                overflowed.clear();
+            }
+
             WatchKey key;
             try {
-                // take() will block until a file has been created/deleted/modified
-                key = this.watchService.take();
+                if (overflowed.isEmpty()) {
+                    // take() will block until a file has been created/deleted/modified
+                    key = this.watchService.take();
+                } else {
+                    // poll() will block until a file has been created/deleted/modified or it is time to rescan
+                    key = this.watchService.poll(Math.max(0, overflowTime + OVERFLOW_DELAY - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
             } catch (InterruptedException e) {
                 // interrupt
                 logger.error("Watcher thread has been interrupted: {}.", ExceptionUtils.getMessage(e));
@@ -118,10 +160,21 @@ public class WinFileWatcher extends AbstractFileWatcher {
                 for (WatchEvent<?> event : key.pollEvents()) {
                     // Event Kind
                     WatchEvent.Kind eventKind = event.kind();
-                    // TODO: Find out what reason will cause OVERFLOW event and do corresponding handling
+                    // Directory no longer watched
+                    if (directory == null) {
+                        this.droppedCount.addAndGet(event.count());
+                        continue;
+                    }
+                    // Too many events before the key was taken, or the system event queue was full, events are lost
                     if (eventKind == OVERFLOW) {
+                        this.droppedCount.addAndGet(event.count());
+                        if (overflowed.isEmpty()) {
+                            overflowTime = System.currentTimeMillis();
+                        }
+                        overflowed.add(directory);
                         continue;
                     }
+                    this.processedCount.incrementAndGet();
 
                     // Context for directory entry event is the file name of entry
                     WatchEvent<Path> watchEvent = cast(event);
@@ -136,14 +189,14 @@ public class WinFileWatcher extends AbstractFileWatcher {
                     if (eventKind == ENTRY_CREATE) {
                         // File Create Event
                         if (Files.isRegularFile(path)) {
-                            // Post Watch Event
-                            this.postEvent(this.filter, path, this.createTopic);
+                            // Coalesce Event
+                            this.coalescer.created(path);
                         }
                     } else if (eventKind == ENTRY_MODIFY) {
                         // File Modify Event
                         if (Files.isRegularFile(path, NOFOLLOW_LINKS)) {
-                            // Post Event
-                            this.postEvent(this.filter, path, this.modifyTopic);
+                            // Coalesce Event
+                            this.coalescer.modified(path);
                         }
                     } else if (eventKind == ENTRY_DELETE) {
                         // Key-Path Mapping contains this path, this is a directory already registered, cancel it
@@ -152,8 +205,8 @@ public class WinFileWatcher extends AbstractFileWatcher {
                         }
                         // This should a file or directory not in the mapping
                         else {
-                            // Post Event
-                            this.postDeleteEvent(this.filter, path, this.deleteTopic);
+                            // Coalesce Event
+                            this.coalescer.deleted(path);
                         }
                     }
                 }
@@ -169,6 +222,9 @@ public class WinFileWatcher extends AbstractFileWatcher {
                 }
             }
         }
+
+        // Stop sending events
+        this.coalescer.close();
     }
 
     /**
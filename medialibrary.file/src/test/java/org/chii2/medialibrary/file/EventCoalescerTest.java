@@ -0,0 +1,87 @@
+package org.chii2.medialibrary.file;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.medialibrary.file.watcher.EventCoalescer;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test for Watch Event Coalescer
+ */
+public class EventCoalescerTest {
+
+    @Test
+    public void CoalesceTest() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("chii2-coalescer-test");
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        EventCoalescer coalescer = new EventCoalescer(300, new EventCoalescer.Listener() {
+            @Override
+            public void created(Path path) {
+                events.add("create " + path.getFileName());
+            }
+
+            @Override
+            public void modified(Path path) {
+                events.add("modify " + path.getFileName());
+            }
+
+            @Override
+            public void deleted(Path path) {
+                events.add("delete " + path.getFileName());
+            }
+        });
+        try {
+            Path existing = Files.write(root.resolve("existing.avi"), new byte[]{1});
+            Path replaced = Files.write(root.resolve("replaced.avi"), new byte[]{1});
+            Path removed = Files.write(root.resolve("removed.avi"), new byte[]{1});
+
+            // A file being copied, one create once the copy is done
+            Path copied = Files.write(root.resolve("copied.avi"), new byte[]{1});
+            coalescer.created(copied);
+            for (int i = 0; i < 5; i++) {
+                Thread.sleep(100);
+                Files.write(copied, new byte[1024], StandardOpenOption.APPEND);
+                coalescer.modified(copied);
+            }
+            // Still being written
+            assert events.isEmpty();
+
+            // Temporary file
+            Path temporary = Files.write(root.resolve("copied.avi.part"), new byte[]{1});
+            coalescer.created(temporary);
+            coalescer.modified(temporary);
+            Files.delete(temporary);
+            coalescer.deleted(temporary);
+
+            // Modified, replaced and deleted
+            Files.write(existing, new byte[]{2}, StandardOpenOption.APPEND);
+            coalescer.modified(existing);
+            coalescer.modified(existing);
+            Files.delete(replaced);
+            coalescer.deleted(replaced);
+            Files.write(replaced, new byte[]{2});
+            coalescer.created(replaced);
+            coalescer.modified(removed);
+            Files.delete(removed);
+            coalescer.deleted(removed);
+
+            Thread.sleep(1000);
+            assert coalescer.getPendingCount() == 0;
+            List<String> sent = new ArrayList<>(events);
+            Collections.sort(sent);
+            assert sent.equals(Arrays.asList("create copied.avi", "delete removed.avi", "modify existing.avi", "modify replaced.avi"));
+            assert coalescer.getCoalescedCount() == 10;
+        } finally {
+            coalescer.close();
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.chii2.medialibrary.file;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.medialibrary.file.filter.FileExtensionFilter;
+import org.chii2.medialibrary.file.scanner.ParallelWalker;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Test for Parallel Walker
+ */
+public class ParallelWalkerTest {
+
+    @Test
+    public void WalkTest() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("chii2-walker-test");
+        try {
+            Set<Path> expected = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                Path directory = Files.createDirectories(root.resolve("album" + i).resolve("day" + i));
+                for (int j = 0; j < 5; j++) {
+                    expected.add(Files.write(directory.resolve("photo" + j + ".jpg"), new byte[]{1}));
+                }
+                Files.write(directory.resolve("notes.txt"), new byte[]{1});
+            }
+            Path single = Files.write(root.resolve("single.jpg"), new byte[]{1});
+            expected.add(single);
+            Path missing = root.resolve("missing");
+
+            final List<Path> found = new ArrayList<>();
+            final List<Path> failed = new ArrayList<>();
+            final int[] maxBatch = {0};
+            ParallelWalker walker = new ParallelWalker(3, 4);
+            walker.walk(Arrays.asList(root, missing), new FileExtensionFilter(Arrays.asList(".jpg")), new ParallelWalker.Listener() {
+                @Override
+                public void found(Map<Path, BasicFileAttributes> files) {
+                    found.addAll(files.keySet());
+                    maxBatch[0] = Math.max(maxBatch[0], files.size());
+                }
+
+                @Override
+                public void failed(Path path) {
+                    failed.add(path);
+                }
+            });
+            // Every accepted file once, in bounded batches
+            assert found.size() == expected.size();
+            assert new HashSet<>(found).equals(expected);
+            assert maxBatch[0] <= 4;
+            assert failed.equals(Arrays.asList(missing));
+
+            // A file given as directory
+            found.clear();
+            failed.clear();
+            walker.walk(Arrays.asList(single), new FileExtensionFilter(Arrays.asList(".jpg")), new ParallelWalker.Listener() {
+                @Override
+                public void found(Map<Path, BasicFileAttributes> files) {
+                    found.addAll(files.keySet());
+                }
+
+                @Override
+                public void failed(Path path) {
+                    failed.add(path);
+                }
+            });
+            assert found.equals(Arrays.asList(single));
+            assert failed.isEmpty();
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.chii2.medialibrary.file;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.medialibrary.file.filter.FileExtensionFilter;
+import org.chii2.medialibrary.file.scanner.ScanManifest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for Scan Manifest
+ */
+public class ScanManifestTest {
+
+    @Test
+    public void UpdateTest() {
+        ScanManifest manifest = new ScanManifest();
+        FileExtensionFilter filter = new FileExtensionFilter(Arrays.asList(".avi", ".mkv"));
+        List<Path> directories = Arrays.asList(Paths.get("/movies"), Paths.get("/more"));
+        List<Path> none = Collections.emptyList();
+
+        Map<Path, ScanManifest.FileState> found = new HashMap<>();
+        found.put(Paths.get("/movies/a.avi"), new ScanManifest.FileState(100, 1000, "1"));
+        found.put(Paths.get("/movies/b.mkv"), new ScanManifest.FileState(200, 1000, "2"));
+        found.put(Paths.get("/more/c.avi"), new ScanManifest.FileState(300, 1000, "3"));
+        ScanManifest.Delta delta = manifest.update(directories, filter, found, none);
+        assert delta.getAdded().size() == 3;
+        assert manifest.size() == 0;
+        assert manifest.commit(paths(delta.getAdded())) == 3;
+        assert manifest.size() == 3;
+
+        // Nothing changed
+        delta = manifest.update(directories, filter, new HashMap<>(found), none);
+        assert delta.isEmpty();
+
+        // Modified, replaced by another file and deleted
+        found.put(Paths.get("/movies/a.avi"), new ScanManifest.FileState(100, 2000, "1"));
+        found.put(Paths.get("/movies/b.mkv"), new ScanManifest.FileState(200, 1000, "4"));
+        found.remove(Paths.get("/more/c.avi"));
+        delta = manifest.update(directories, filter, found, none);
+        assert delta.getAdded().isEmpty();
+        assert delta.getChanged().size() == 2;
+        assert delta.getRemoved().equals(Collections.singletonList(Paths.get("/more/c.avi")));
+        manifest.commit(paths(delta.getChanged()));
+
+        // Removed files are reported again until the library acknowledges the removal
+        assert manifest.size() == 3;
+        delta = manifest.update(directories, filter, found, none);
+        assert delta.getRemoved().equals(Collections.singletonList(Paths.get("/more/c.avi")));
+        manifest.remove(paths(delta.getRemoved()));
+        assert manifest.size() == 2;
+        assert manifest.update(directories, filter, found, none).isEmpty();
+
+        // Files under directories not scanned, not read or not accepted are kept
+        found.clear();
+        delta = manifest.update(Collections.singletonList(Paths.get("/movies")), filter, found, Collections.singletonList(Paths.get("/movies")));
+        assert delta.isEmpty();
+        delta = manifest.update(directories, new FileExtensionFilter(Collections.singletonList(".mkv")), found, none);
+        assert delta.getRemoved().equals(Collections.singletonList(Paths.get("/movies/b.mkv")));
+        assert manifest.size() == 2;
+        manifest.remove(paths(delta.getRemoved()));
+        assert manifest.size() == 1;
+    }
+
+    @Test
+    public void CommitTest() {
+        ScanManifest manifest = new ScanManifest();
+        FileExtensionFilter filter = new FileExtensionFilter(Collections.singletonList(".avi"));
+        List<Path> directories = Collections.singletonList(Paths.get("/movies"));
+        List<Path> none = Collections.emptyList();
+        Map<Path, ScanManifest.FileState> found = new HashMap<>();
+        found.put(Paths.get("/movies/a.avi"), new ScanManifest.FileState(100, 1000, "1"));
+        found.put(Paths.get("/movies/b.avi"), new ScanManifest.FileState(200, 1000, "2"));
+        found.put(Paths.get("/movies/c/c.avi"), new ScanManifest.FileState(300, 1000, "3"));
+        assert manifest.update(directories, filter, found, none).getAdded().size() == 3;
+        assert manifest.getPendingCount() == 3;
+
+        // Files not synchronized, like a failed analysis, are sent again
+        assert manifest.commit(Arrays.asList("/movies/a.avi", "/movies/c/c.avi", "/movies/unknown.avi")) == 2;
+        ScanManifest.Delta delta = manifest.update(directories, filter, found, none);
+        assert delta.getAdded().equals(Collections.singletonList(Paths.get("/movies/b.avi")));
+        manifest.commit(Collections.singletonList("/movies/b.avi"));
+        assert manifest.update(directories, filter, found, none).isEmpty();
+        assert manifest.getPendingCount() == 0;
+
+        // Files removed from the library are sent again
+        manifest.remove(Collections.singletonList("/movies/c"));
+        assert manifest.size() == 2;
+        delta = manifest.update(directories, filter, found, none);
+        assert delta.getAdded().equals(Collections.singletonList(Paths.get("/movies/c/c.avi")));
+
+        // Forgotten, every file is sent again
+        manifest.clear();
+        assert manifest.update(directories, filter, found, none).getAdded().size() == 3;
+    }
+
+    @Test
+    public void SaveLoadTest() {
+        File file = new File(FileUtils.getTempDirectory(), "chii2-scan-manifest-test/movie.manifest");
+        FileUtils.deleteQuietly(file.getParentFile());
+        try {
+            FileExtensionFilter filter = new FileExtensionFilter(Collections.singletonList(".avi"));
+            List<Path> directories = Collections.singletonList(Paths.get("/movies"));
+            List<Path> none = new ArrayList<>();
+            Map<Path, ScanManifest.FileState> found = new HashMap<>();
+            found.put(Paths.get("/movies/a.avi"), new ScanManifest.FileState(100, 1000, "1"));
+            found.put(Paths.get("/movies/b.avi"), new ScanManifest.FileState(200, 1000, null));
+            ScanManifest manifest = new ScanManifest();
+            assert !manifest.load(file);
+            manifest.commit(paths(manifest.update(directories, filter, found, none).getAdded()));
+            assert manifest.save(file);
+
+            ScanManifest loaded = new ScanManifest();
+            assert loaded.load(file);
+            assert loaded.size() == 2;
+            assert loaded.update(directories, filter, found, none).isEmpty();
+        } finally {
+            FileUtils.deleteQuietly(file.getParentFile());
+        }
+    }
+
+    private List<String> paths(List<Path> paths) {
+        List<String> names = new ArrayList<>();
+        for (Path path : paths) {
+            names.add(path.toString());
+        }
+        return names;
+    }
+}
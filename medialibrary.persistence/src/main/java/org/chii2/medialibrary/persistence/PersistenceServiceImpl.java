@@ -5,16 +5,29 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.chii2.medialibrary.api.persistence.PersistenceService;
 import org.chii2.medialibrary.api.persistence.entity.*;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.persistence.blob.ImageBlobStore;
 import org.chii2.medialibrary.persistence.entity.*;
+import org.chii2.medialibrary.persistence.summary.MovieSummaryImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Persistence layer
@@ -24,6 +37,8 @@ public class PersistenceServiceImpl implements PersistenceService {
     private EntityManager entityManager;
     // CriteriaBuilder
     private CriteriaBuilder builder;
+    // Max values in one IN query
+    private final static int IN_CHUNK_SIZE = 200;
     // Logger
     private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.persistence");
 
@@ -104,6 +119,24 @@ public class PersistenceServiceImpl implements PersistenceService {
         return movieFile.getMovie();
     }
 
+    @Override
+    public List<? extends Movie> getMoviesByIds(List<String> ids) {
+        Map<String, MovieImpl> movies = new HashMap<>();
+        for (List<String> chunk : chunk(ids)) {
+            for (MovieImpl movie : this.entityManager.createQuery("SELECT m FROM MOVIE m WHERE m.id IN :ids", MovieImpl.class).setParameter("ids", chunk).getResultList()) {
+                movies.put(movie.getId(), movie);
+            }
+        }
+        List<MovieImpl> results = new ArrayList<>();
+        for (String id : ids) {
+            MovieImpl movie = movies.get(id);
+            if (movie != null) {
+                results.add(movie);
+            }
+        }
+        return results;
+    }
+
 
     @Override
     public List<? extends Movie> getMoviesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts) {
@@ -153,6 +186,62 @@ public class PersistenceServiceImpl implements PersistenceService {
         return typedQuery.getResultList();
     }
 
+    @Override
+    public List<MovieSummaryImpl> getMovieSummaries(int firstResult, int maxResults, Map<String, String> sorts) {
+        // From Query
+        CriteriaQuery<String> fromQuery = this.builder.createQuery(String.class);
+        Root<MovieImpl> movies = fromQuery.from(MovieImpl.class);
+        // Select Query, only the ID
+        CriteriaQuery<String> selectQuery = fromQuery.select(movies.<String>get("id"));
+        // Order
+        if (sorts != null) {
+            selectQuery.orderBy(forgeMovieOrders(movies, sorts));
+        }
+        return getMovieSummaries(this.entityManager.createQuery(selectQuery), firstResult, maxResults);
+    }
+
+    @Override
+    public Page<MovieSummaryImpl> getMovieSummaries(PageCursor cursor, int maxResults) {
+        // From Query
+        CriteriaQuery<Object[]> fromQuery = this.builder.createQuery(Object[].class);
+        Root<MovieImpl> movies = fromQuery.from(MovieImpl.class);
+        // Keys, files and information are many for a movie, so a movie is sorted by its first value in the sort direction
+        List<Expression<?>> keys = new ArrayList<>();
+        List<Boolean> ascending = new ArrayList<>();
+        for (Map.Entry<String, String> entry : cursor.getSorts().entrySet()) {
+            addKey(keys, ascending, getMovieSortPath(movies, entry.getKey()), entry.getValue());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            keys.set(i, forgeMovieKey(keys.get(i), ascending.get(i)));
+        }
+        // Rows of ID and keys, one for each movie
+        List<Object[]> rows = getKeysetRows(fromQuery, movies.get("id"), keys, ascending, movies.<String>get("id"), null, true, cursor, maxResults);
+        List<String> ids = new ArrayList<>();
+        for (Object[] row : rows) {
+            ids.add((String) row[0]);
+        }
+        List<MovieSummaryImpl> summaries = fillMovieSummaries(ids);
+        return new Page<>(summaries, forgeNextCursor(cursor, rows, rows.size()));
+    }
+
+    @Override
+    public List<MovieSummaryImpl> getMovieSummariesByName(String movieName, int firstResult, int maxResults, Map<String, String> sorts) {
+        // From Query
+        CriteriaQuery<String> fromQuery = this.builder.createQuery(String.class);
+        Root<MovieImpl> movies = fromQuery.from(MovieImpl.class);
+        Path<String> infoMovieNameFiled = movies.join("information", JoinType.LEFT).get("name");
+        Path<String> fileMovieNameFiled = movies.join("files", JoinType.LEFT).get("movieName");
+        // Select Query, only the ID
+        CriteriaQuery<String> selectQuery = fromQuery.select(movies.<String>get("id"));
+        // Where Query
+        selectQuery.where(this.builder.or(this.builder.like(this.builder.lower(infoMovieNameFiled), "%" + movieName.toLowerCase() + "%"), this.builder.like(this.builder.lower(fileMovieNameFiled), "%" + movieName.toLowerCase() + "%")));
+        // Order
+        if (sorts != null) {
+            selectQuery.orderBy(forgeMovieOrders(movies, sorts));
+        }
+        return getMovieSummaries(this.entityManager.createQuery(selectQuery), firstResult, maxResults);
+    }
+
     @Override
     public List<? extends MovieFile> getMovieFiles(int firstResult, int maxResults, Map<String, String> sorts) {
         // From Query
@@ -221,12 +310,36 @@ public class PersistenceServiceImpl implements PersistenceService {
 
     @Override
     public byte[] getMovieThumbnailById(String movieId) {
-        List<? extends MovieInfo> movieInfoList = this.entityManager.createQuery("SELECT i FROM MOVIE_INFO i JOIN i.movie m WHERE m.id = ?1", MovieInfoImpl.class).setParameter(1, movieId).getResultList();
-        if (movieInfoList != null && !movieInfoList.isEmpty()) {
-            for (MovieImage movieImage : movieInfoList.get(0).getPosters()) {
-                if ("thumb".equalsIgnoreCase(movieImage.getSize())) {
-                    return movieImage.getImage();
-                }
+        java.nio.file.Path thumbnail = getMovieThumbnailFile(movieId);
+        if (thumbnail != null) {
+            try {
+                return Files.readAllBytes(thumbnail);
+            } catch (IOException e) {
+                logger.error("Read movie {} thumbnail error: {}.", movieId, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public java.nio.file.Path getMovieThumbnailFile(String movieId) {
+        // Only the hashes of the posters, the images stay on disk
+        CriteriaQuery<Object[]> query = this.builder.createQuery(Object[].class);
+        Root<MovieImageImpl> images = query.from(MovieImageImpl.class);
+        Join<MovieImageImpl, MovieInfoImpl> info = images.join("movieInfo");
+        query.multiselect(images.get("imageHash"), images.get("size"), info.get("id"));
+        query.where(this.builder.equal(info.get("movie").get("id"), movieId), this.builder.equal(this.builder.lower(images.<String>get("contentType")), MovieImage.POSTER_CONTENT_TYPE));
+        query.orderBy(this.builder.asc(info.get("providerName")), this.builder.asc(info.get("id")));
+        String firstInfoId = null;
+        for (Object[] row : this.entityManager.createQuery(query).getResultList()) {
+            // Posters of the first information only
+            if (firstInfoId == null) {
+                firstInfoId = (String) row[2];
+            } else if (!firstInfoId.equals(row[2])) {
+                break;
+            }
+            if ("thumb".equalsIgnoreCase((String) row[1])) {
+                return ImageBlobStore.getInstance().getFile((String) row[0]);
             }
         }
         return null;
@@ -321,6 +434,14 @@ public class PersistenceServiceImpl implements PersistenceService {
         return typedQuery.getResultList();
     }
 
+    @Override
+    public Page<ImageImpl> getImages(PageCursor cursor, int maxResults) {
+        // From Query
+        CriteriaQuery<Object[]> fromQuery = this.builder.createQuery(Object[].class);
+        Root<ImageImpl> images = fromQuery.from(ImageImpl.class);
+        return getImagePage(fromQuery, images, null, cursor, maxResults);
+    }
+
     @Override
     public Image getImageById(String id) {
         List<ImageImpl> images = this.entityManager.createQuery("SELECT i FROM IMAGE i WHERE i.id = ?1", ImageImpl.class).setParameter(1, id).getResultList();
@@ -331,6 +452,33 @@ public class PersistenceServiceImpl implements PersistenceService {
         }
     }
 
+    @Override
+    public List<? extends Image> getImagesByIds(List<String> ids) {
+        Map<String, ImageImpl> images = new HashMap<>();
+        for (List<String> chunk : chunk(ids)) {
+            for (ImageImpl image : this.entityManager.createQuery("SELECT i FROM IMAGE i WHERE i.id IN :ids", ImageImpl.class).setParameter("ids", chunk).getResultList()) {
+                images.put(image.getId(), image);
+            }
+        }
+        List<ImageImpl> results = new ArrayList<>();
+        for (String id : ids) {
+            ImageImpl image = images.get(id);
+            if (image != null) {
+                results.add(image);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<? extends Image> getImagesByPaths(List<String> paths) {
+        List<ImageImpl> images = new ArrayList<>();
+        for (List<String> chunk : chunk(paths)) {
+            images.addAll(this.entityManager.createQuery("SELECT i FROM IMAGE i WHERE i.originalFile.absolutePath IN :paths", ImageImpl.class).setParameter("paths", chunk).getResultList());
+        }
+        return images;
+    }
+
     @Override
     public List<? extends Image> getImagesByField(String fieldName, String fieldValue, boolean strict, int firstResult, int maxResults, Map<String, String> sorts) {
         // From Query
@@ -388,14 +536,34 @@ public class PersistenceServiceImpl implements PersistenceService {
         return typedQuery.getResultList();
     }
 
+    @Override
+    public Page<ImageImpl> getImagesByField(String fieldName, String fieldValue, boolean strict, PageCursor cursor, int maxResults) {
+        // From Query
+        CriteriaQuery<Object[]> fromQuery = this.builder.createQuery(Object[].class);
+        Root<ImageImpl> images = fromQuery.from(ImageImpl.class);
+        Path<String> name;
+        if (fieldName.startsWith("file.")) {
+            name = images.join("originalFile").get(fieldName.substring(5));
+        } else {
+            name = images.get(fieldName);
+        }
+        // Where Query
+        Predicate where;
+        if (strict) {
+            where = this.builder.like(this.builder.lower(name), fieldValue.toLowerCase());
+        } else {
+            where = this.builder.like(this.builder.lower(name), "%" + fieldValue.toLowerCase() + "%");
+        }
+        return getImagePage(fromQuery, images, where, cursor, maxResults);
+    }
+
     @Override
     public List<String> getImageAlbums(int firstResult, int maxResults, Map<String, String> sorts) {
         // From Query
         CriteriaQuery<String> fromQuery = this.builder.createQuery(String.class);
-        Root<ImageImpl> images = fromQuery.from(ImageImpl.class);
-        // Select Query
-        CriteriaQuery<String> selectQuery = fromQuery.multiselect(images.get("album"));
-        selectQuery.distinct(true);
+        Root<ImageAlbumImpl> albums = fromQuery.from(ImageAlbumImpl.class);
+        // Select Query, album names from the statistics table
+        CriteriaQuery<String> selectQuery = fromQuery.select(albums.<String>get("name"));
         if (sorts != null) {
             List<Order> orders = new ArrayList<>();
             for (Map.Entry<String, String> entry : sorts.entrySet()) {
@@ -404,9 +572,9 @@ public class PersistenceServiceImpl implements PersistenceService {
                 if (field != null && sortType != null) {
                     if (field.equals("album")) {
                         if (sortType.equalsIgnoreCase("asc")) {
-                            orders.add(this.builder.asc(images.get(field)));
+                            orders.add(this.builder.asc(albums.get("name")));
                         } else if (sortType.equalsIgnoreCase("desc")) {
-                            orders.add(this.builder.asc(images.get(field)));
+                            orders.add(this.builder.desc(albums.get("name")));
                         }
                     }
                 }
@@ -426,6 +594,50 @@ public class PersistenceServiceImpl implements PersistenceService {
         return typedQuery.getResultList();
     }
 
+    @Override
+    public List<ImageAlbumImpl> getImageAlbumList(int firstResult, int maxResults, Map<String, String> sorts) {
+        // From Query
+        CriteriaQuery<ImageAlbumImpl> fromQuery = this.builder.createQuery(ImageAlbumImpl.class);
+        Root<ImageAlbumImpl> albums = fromQuery.from(ImageAlbumImpl.class);
+        // Select Query
+        CriteriaQuery<ImageAlbumImpl> selectQuery = fromQuery.select(albums);
+        // Order
+        if (sorts != null) {
+            List<Order> orders = new ArrayList<>();
+            for (Map.Entry<String, String> entry : sorts.entrySet()) {
+                String field = entry.getKey();
+                String sortType = entry.getValue();
+                if (field != null && sortType != null) {
+                    if (sortType.equalsIgnoreCase("asc")) {
+                        orders.add(this.builder.asc(albums.get(field)));
+                    } else if (sortType.equalsIgnoreCase("desc")) {
+                        orders.add(this.builder.desc(albums.get(field)));
+                    }
+                }
+            }
+            selectQuery.orderBy(orders);
+        }
+        // Final Query
+        TypedQuery<ImageAlbumImpl> typedQuery = this.entityManager.createQuery(selectQuery);
+        // First Result
+        if (firstResult >= 0) {
+            typedQuery = typedQuery.setFirstResult(firstResult);
+        }
+        // Max Results
+        if (maxResults >= 0) {
+            typedQuery = typedQuery.setMaxResults(maxResults);
+        }
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public ImageAlbum getImageAlbum(String album) {
+        if (album == null) {
+            return null;
+        }
+        return this.entityManager.find(ImageAlbumImpl.class, album);
+    }
+
     @Override
     public long getImagesCount() {
         return this.entityManager.createQuery("SELECT COUNT(i) FROM IMAGE i", Long.class).getSingleResult();
@@ -433,12 +645,13 @@ public class PersistenceServiceImpl implements PersistenceService {
 
     @Override
     public long getImageAlbumsCount() {
-        return this.entityManager.createQuery("SELECT COUNT(DISTINCT i.album) FROM IMAGE i", Long.class).getSingleResult();
+        return this.entityManager.createQuery("SELECT COUNT(a) FROM IMAGE_ALBUM a", Long.class).getSingleResult();
     }
 
     @Override
     public long getImagesCountByAlbum(String album) {
-        return this.entityManager.createQuery("SELECT COUNT(i) FROM IMAGE i WHERE i.album = ?1", Long.class).setParameter(1, album).getSingleResult();
+        ImageAlbum imageAlbum = getImageAlbum(album);
+        return imageAlbum == null ? 0 : imageAlbum.getImageCount();
     }
 
     @Override
@@ -465,52 +678,91 @@ public class PersistenceServiceImpl implements PersistenceService {
 
         // Delete old images
         if (imageFiles != null && !imageFiles.isEmpty()) {
+            Map<String, ImageAlbumImpl> albums = new HashMap<>();
+            Set<String> staleAlbums = new HashSet<>();
             for (ImageFile imageFile : imageFiles) {
                 Image image = imageFile.getImage();
                 if (image != null) {
+                    ImageAlbumImpl album = getAlbumForUpdate(albums, image.getAlbum());
+                    if (album != null && !album.removeImage(image.getId())) {
+                        staleAlbums.add(album.getName());
+                    }
                     this.entityManager.remove(image);
                 } else {
                     this.entityManager.remove(imageFile);
                 }
             }
+            updateAlbums(albums, staleAlbums);
         }
     }
 
     @Override
     public int deleteAllImages() {
+        this.entityManager.createQuery("DELETE FROM IMAGE_ALBUM a").executeUpdate();
         return this.entityManager.createQuery("DELETE FROM IMAGE i").executeUpdate();
     }
 
     @Override
     public void synchronizeMovie(MovieFile movieFile) {
+        List<MovieFile> movieFiles = new ArrayList<>();
+        movieFiles.add(movieFile);
+        this.synchronizeMovies(movieFiles);
+    }
+
+    @Override
+    public void synchronizeMovies(List<MovieFile> movieFiles) {
+        // The last one wins if a file comes twice
+        Map<String, MovieFile> files = new LinkedHashMap<>();
+        for (MovieFile movieFile : movieFiles) {
+            files.put(movieFile.getAbsolutePath(), movieFile);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        List<String> paths = new ArrayList<>(files.keySet());
+
         // If the file already exist in DB, keep current Movie, replace MovieFile
-        List<MovieFileImpl> movieFiles = this.entityManager.createQuery("SELECT m FROM MOVIE_FILE m WHERE m.absolutePath = ?1", MovieFileImpl.class).setParameter(1, movieFile.getAbsolutePath()).getResultList();
-        if (movieFiles != null && movieFiles.size() == 1) {
-            movieFiles.get(0).getMovie().addFile(movieFile);
+        for (List<String> chunk : chunk(paths)) {
+            List<MovieFileImpl> dbMovieFiles = this.entityManager.createQuery("SELECT m FROM MOVIE_FILE m WHERE m.absolutePath IN :paths", MovieFileImpl.class).setParameter("paths", chunk).getResultList();
+            for (MovieFileImpl dbMovieFile : dbMovieFiles) {
+                dbMovieFile.getMovie().addFile(files.get(dbMovieFile.getAbsolutePath()));
+            }
         }
 
         // Delete old MovieFiles
-        this.entityManager.createQuery("DELETE FROM MOVIE_FILE m WHERE m.absolutePath = ?1").setParameter(1, movieFile.getAbsolutePath()).executeUpdate();
+        for (List<String> chunk : chunk(paths)) {
+            this.entityManager.createQuery("DELETE FROM MOVIE_FILE m WHERE m.absolutePath IN :paths").setParameter("paths", chunk).executeUpdate();
+        }
 
         // Merge/Persist Movie/MovieFile into DB
-        if (movieFile.getMovie() != null) {
-            this.entityManager.merge(movieFile.getMovie());
-        } else {
-            // CD1 CD2 Part1 Part2 MovieFiles save into a same Movie
-            List<MovieImpl> dbMovies = this.entityManager.createQuery("SELECT m FROM MOVIE m JOIN m.files f WHERE f.filePath = ?1 AND f.movieName = ?2", MovieImpl.class).setParameter(1, movieFile.getFilePath()).setParameter(2, movieFile.getMovieName()).getResultList();
-            if (dbMovies != null && dbMovies.size() > 0) {
-                Movie movie = dbMovies.get(0);
-                movie.addFile(movieFile);
-                this.entityManager.merge(movie);
+        Map<String, Movie> newMovies = new HashMap<>();
+        for (MovieFile movieFile : files.values()) {
+            if (movieFile.getMovie() != null) {
+                this.entityManager.merge(movieFile.getMovie());
             } else {
-                // TODO: Should use factory here
-                Movie movie = new MovieImpl();
-                movie.addFile(movieFile);
-                this.entityManager.persist(movie);
+                // CD1 CD2 Part1 Part2 MovieFiles save into a same Movie
+                String key = movieFile.getFilePath() + "\n" + movieFile.getMovieName();
+                Movie movie = newMovies.get(key);
+                if (movie == null) {
+                    List<MovieImpl> dbMovies = this.entityManager.createQuery("SELECT m FROM MOVIE m JOIN m.files f WHERE f.filePath = ?1 AND f.movieName = ?2", MovieImpl.class).setParameter(1, movieFile.getFilePath()).setParameter(2, movieFile.getMovieName()).getResultList();
+                    if (dbMovies != null && dbMovies.size() > 0) {
+                        movie = dbMovies.get(0);
+                    }
+                }
+                if (movie != null) {
+                    movie.addFile(movieFile);
+                    this.entityManager.merge(movie);
+                } else {
+                    // TODO: Should use factory here
+                    movie = new MovieImpl();
+                    movie.addFile(movieFile);
+                    this.entityManager.persist(movie);
+                    newMovies.put(key, movie);
+                }
             }
         }
 
-        // Delete empty movies
+        // Delete empty movies, once for the whole batch
         this.entityManager.createQuery("DELETE FROM MOVIE m WHERE SIZE(m.files) = 0").executeUpdate();
     }
 
@@ -528,7 +780,8 @@ public class PersistenceServiceImpl implements PersistenceService {
                         }
                     }
                 }
-                // Not exist in databased
+                // Not exist in databased, images are stored first so the transaction fails if one can not be
+                storeImages(movieInfo);
                 movie.addInfo(movieInfo);
             }
             this.entityManager.merge(movie);
@@ -537,29 +790,78 @@ public class PersistenceServiceImpl implements PersistenceService {
 
     @Override
     public void synchronizeImage(ImageFile imageFile) {
+        List<ImageFile> imageFiles = new ArrayList<>();
+        imageFiles.add(imageFile);
+        this.synchronizeImages(imageFiles);
+    }
+
+    @Override
+    public void synchronizeImages(List<ImageFile> imageFiles) {
+        // The last one wins if a file comes twice
+        Map<String, ImageFile> files = new LinkedHashMap<>();
+        for (ImageFile imageFile : imageFiles) {
+            files.put(imageFile.getAbsolutePath(), imageFile);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        List<String> paths = new ArrayList<>(files.keySet());
+
+        // Albums touched by the batch
+        Map<String, ImageAlbumImpl> albums = new HashMap<>();
+        Set<String> staleAlbums = new HashSet<>();
+
         // If the file already exist in DB, keep current Image, replace ImageFile
-        List<ImageFileImpl> imageFiles = this.entityManager.createQuery("SELECT i FROM IMAGE_FILE i WHERE i.absolutePath = ?1", ImageFileImpl.class).setParameter(1, imageFile.getAbsolutePath()).getResultList();
-        if (imageFiles != null && imageFiles.size() == 1) {
-            imageFiles.get(0).getImage().setOriginalFile(imageFile);
+        for (List<String> chunk : chunk(paths)) {
+            List<ImageFileImpl> dbImageFiles = this.entityManager.createQuery("SELECT i FROM IMAGE_FILE i WHERE i.absolutePath IN :paths", ImageFileImpl.class).setParameter("paths", chunk).getResultList();
+            for (ImageFileImpl dbImageFile : dbImageFiles) {
+                ImageFile imageFile = files.get(dbImageFile.getAbsolutePath());
+                Image image = dbImageFile.getImage();
+                image.setOriginalFile(imageFile);
+                // Same image, the date may have changed
+                ImageAlbumImpl album = getAlbumForUpdate(albums, image.getAlbum());
+                if (album != null && !album.updateImage(image.getId(), imageFile.getDateTaken())) {
+                    staleAlbums.add(album.getName());
+                }
+            }
         }
 
         // Delete old ImageFiles
-        this.entityManager.createQuery("DELETE FROM IMAGE_FILE i WHERE i.absolutePath = ?1").setParameter(1, imageFile.getAbsolutePath()).executeUpdate();
+        for (List<String> chunk : chunk(paths)) {
+            this.entityManager.createQuery("DELETE FROM IMAGE_FILE i WHERE i.absolutePath IN :paths").setParameter("paths", chunk).executeUpdate();
+        }
 
         // Merge/Persist Image/ImageFile into DB
-        if (imageFile.getImage() != null) {
-            this.entityManager.merge(imageFile.getImage());
-        } else {
-            // TODO: Should use factory here
-            Image image = new ImageImpl();
-            image.setOriginalFile(imageFile);
-            image.setAlbum(FilenameUtils.getName(FilenameUtils.getFullPathNoEndSeparator(imageFile.getFilePath())));
-            image.setTitle(FilenameUtils.removeExtension(imageFile.getFileName()));
-            this.entityManager.merge(image);
+        for (ImageFile imageFile : files.values()) {
+            if (imageFile.getImage() != null) {
+                this.entityManager.merge(imageFile.getImage());
+            } else {
+                // TODO: Should use factory here
+                Image image = new ImageImpl();
+                image.setOriginalFile(imageFile);
+                image.setAlbum(FilenameUtils.getName(FilenameUtils.getFullPathNoEndSeparator(imageFile.getFilePath())));
+                image.setTitle(FilenameUtils.removeExtension(imageFile.getFileName()));
+                this.entityManager.merge(image);
+                ImageAlbumImpl album = getAlbumForUpdate(albums, image.getAlbum());
+                if (album != null) {
+                    album.addImage(image.getId(), imageFile.getDateTaken());
+                }
+            }
         }
 
-        // Delete empty Images
-        this.entityManager.createQuery("DELETE FROM IMAGE i WHERE i.originalFile IS NULL").executeUpdate();
+        // Delete empty Images, once for the whole batch
+        List<Object[]> emptyImages = this.entityManager.createQuery("SELECT i.id, i.album FROM IMAGE i WHERE i.originalFile IS NULL", Object[].class).getResultList();
+        for (Object[] emptyImage : emptyImages) {
+            ImageAlbumImpl album = getAlbumForUpdate(albums, (String) emptyImage[1]);
+            if (album != null && !album.removeImage((String) emptyImage[0])) {
+                staleAlbums.add(album.getName());
+            }
+        }
+        if (!emptyImages.isEmpty()) {
+            this.entityManager.createQuery("DELETE FROM IMAGE i WHERE i.originalFile IS NULL").executeUpdate();
+        }
+
+        updateAlbums(albums, staleAlbums);
     }
 
     @Override
@@ -582,6 +884,368 @@ public class PersistenceServiceImpl implements PersistenceService {
         this.entityManager.refresh(entity);
     }
 
+    /**
+     * Store the images of a movie information in the image store
+     *
+     * @param movieInfo Movie Information
+     * @throws PersistenceException If an image can not be stored
+     */
+    private void storeImages(MovieInfo movieInfo) {
+        if (movieInfo.getImages() == null) {
+            return;
+        }
+        for (MovieImage movieImage : movieInfo.getImages()) {
+            if (movieImage instanceof MovieImageImpl) {
+                ((MovieImageImpl) movieImage).storeImage();
+            }
+        }
+    }
+
+    /**
+     * Forge movie orders, the Sort Field must prefix with "file." or "info."
+     *
+     * @param movies Movie Root
+     * @param sorts  Sort (by <field, sortType>, sort type maybe "asc" or "desc")
+     * @return Orders
+     */
+    private List<Order> forgeMovieOrders(Root<MovieImpl> movies, Map<String, String> sorts) {
+        List<Order> orders = new ArrayList<>();
+        for (Map.Entry<String, String> entry : sorts.entrySet()) {
+            String field = entry.getKey();
+            String sortType = entry.getValue();
+            if (field != null && sortType != null) {
+                Path<Object> path = getMovieSortPath(movies, field);
+                if (path != null && sortType.equalsIgnoreCase("asc")) {
+                    orders.add(this.builder.asc(path));
+                } else if (path != null && sortType.equalsIgnoreCase("desc")) {
+                    orders.add(this.builder.desc(path));
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Page the movie IDs and fill their summaries with projection queries
+     * A movie joined to several sort rows is only returned once.
+     *
+     * @param idQuery     Movie ID Query
+     * @param firstResult First Result
+     * @param maxResults  Max Result
+     * @return Movie Summaries in query order
+     */
+    private List<MovieSummaryImpl> getMovieSummaries(TypedQuery<String> idQuery, int firstResult, int maxResults) {
+        // First Result
+        if (firstResult >= 0) {
+            idQuery = idQuery.setFirstResult(firstResult);
+        }
+        // Max Results
+        if (maxResults >= 0) {
+            idQuery = idQuery.setMaxResults(maxResults);
+        }
+        return fillMovieSummaries(idQuery.getResultList());
+    }
+
+    /**
+     * Fill the movie summaries with projection queries
+     *
+     * @param ids Movie IDs, may repeat
+     * @return Movie Summaries in ID order, every movie once
+     */
+    private List<MovieSummaryImpl> fillMovieSummaries(List<String> ids) {
+        Map<String, MovieSummaryImpl> summaries = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (!summaries.containsKey(id)) {
+                summaries.put(id, new MovieSummaryImpl(id));
+            }
+        }
+        for (List<String> chunk : chunk(new ArrayList<>(summaries.keySet()))) {
+            List<Object[]> fileRows = this.entityManager.createQuery("SELECT " + MovieSummaryImpl.FILE_COLUMNS + " FROM MOVIE_FILE f WHERE f.movie.id IN :ids ORDER BY f.diskNum ASC", Object[].class).setParameter("ids", chunk).getResultList();
+            for (Object[] row : fileRows) {
+                summaries.get((String) row[0]).addFile(row);
+            }
+            List<Object[]> infoRows = this.entityManager.createQuery("SELECT " + MovieSummaryImpl.INFO_COLUMNS + " FROM MOVIE_INFO i WHERE i.movie.id IN :ids ORDER BY i.providerName ASC", Object[].class).setParameter("ids", chunk).getResultList();
+            for (Object[] row : infoRows) {
+                summaries.get((String) row[0]).addInfo(row);
+            }
+        }
+        return new ArrayList<>(summaries.values());
+    }
+
+    /**
+     * Get the album statistics to update, created if the album is new
+     *
+     * @param albums Albums already loaded by the batch
+     * @param name   Album Name
+     * @return Album, null if the name is null
+     */
+    private ImageAlbumImpl getAlbumForUpdate(Map<String, ImageAlbumImpl> albums, String name) {
+        if (name == null) {
+            return null;
+        }
+        ImageAlbumImpl album = albums.get(name);
+        if (album == null) {
+            album = this.entityManager.find(ImageAlbumImpl.class, name);
+            if (album == null) {
+                album = new ImageAlbumImpl(name);
+                this.entityManager.persist(album);
+            }
+            albums.put(name, album);
+        }
+        return album;
+    }
+
+    /**
+     * Finish the album statistics updated by a batch
+     * Empty albums are removed, stale ones are recomputed from their images.
+     *
+     * @param albums      Albums updated by the batch
+     * @param staleAlbums Names of the albums whose cover may be gone
+     */
+    private void updateAlbums(Map<String, ImageAlbumImpl> albums, Set<String> staleAlbums) {
+        for (ImageAlbumImpl album : albums.values()) {
+            if (album.getImageCount() <= 0) {
+                this.entityManager.remove(album);
+            } else if (staleAlbums.contains(album.getName())) {
+                recomputeAlbum(album);
+            }
+        }
+    }
+
+    /**
+     * Recompute the album statistics from its images, only the rows of the album are read
+     *
+     * @param album Album
+     */
+    private void recomputeAlbum(ImageAlbumImpl album) {
+        Object[] statistics = this.entityManager.createQuery("SELECT COUNT(i), MAX(f.dateTaken) FROM IMAGE i LEFT JOIN i.originalFile f WHERE i.album = ?1", Object[].class).setParameter(1, album.getName()).getSingleResult();
+        long count = ((Number) statistics[0]).longValue();
+        if (count == 0) {
+            this.entityManager.remove(album);
+            return;
+        }
+        Date newestDate = (Date) statistics[1];
+        TypedQuery<String> coverQuery;
+        if (newestDate == null) {
+            coverQuery = this.entityManager.createQuery("SELECT i.id FROM IMAGE i WHERE i.album = ?1", String.class).setParameter(1, album.getName());
+        } else {
+            coverQuery = this.entityManager.createQuery("SELECT i.id FROM IMAGE i WHERE i.album = ?1 AND i.originalFile.dateTaken = ?2", String.class).setParameter(1, album.getName()).setParameter(2, newestDate);
+        }
+        List<String> covers = coverQuery.setMaxResults(1).getResultList();
+        album.reset(count, newestDate, covers.isEmpty() ? null : covers.get(0));
+    }
+
+    /**
+     * Movie sort path, the Sort Field must prefix with "file." or "info."
+     *
+     * @param movies Movie Root
+     * @param field  Sort Field
+     * @return Path, null if the field is not supported
+     */
+    private Path<Object> getMovieSortPath(Root<MovieImpl> movies, String field) {
+        if (field.startsWith("file.")) {
+            return movies.join("files", JoinType.LEFT).get(field.substring(5));
+        } else if (field.startsWith("info.")) {
+            return movies.join("information", JoinType.LEFT).get(field.substring(5));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Query a page of images after the cursor
+     *
+     * @param fromQuery  From Query
+     * @param images     Image Root
+     * @param where      Restriction, may be null
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Images and the next cursor
+     */
+    private Page<ImageImpl> getImagePage(CriteriaQuery<Object[]> fromQuery, Root<ImageImpl> images, Predicate where, PageCursor cursor, int maxResults) {
+        // Keys
+        List<Expression<?>> keys = new ArrayList<>();
+        List<Boolean> ascending = new ArrayList<>();
+        for (Map.Entry<String, String> entry : cursor.getSorts().entrySet()) {
+            Path<Object> path;
+            if (entry.getKey().startsWith("file.")) {
+                path = images.join("originalFile").get(entry.getKey().substring(5));
+            } else {
+                path = images.get(entry.getKey());
+            }
+            addKey(keys, ascending, path, entry.getValue());
+        }
+        // Rows of image and keys
+        List<Object[]> rows = getKeysetRows(fromQuery, images, keys, ascending, images.<String>get("id"), where, false, cursor, maxResults);
+        List<ImageImpl> results = new ArrayList<>();
+        for (Object[] row : rows) {
+            results.add((ImageImpl) row[0]);
+        }
+        return new Page<>(results, forgeNextCursor(cursor, rows, results.size()));
+    }
+
+    /**
+     * Forge the key of a movie from the values of its files or information
+     * The smallest value sorts the movie ascending and the largest descending, as the movie is first met in a sorted list of its rows.
+     *
+     * @param key       Sort Path
+     * @param ascending Direction of the key
+     * @return Aggregated Key
+     */
+    @SuppressWarnings("unchecked")
+    private Expression<?> forgeMovieKey(Expression<?> key, boolean ascending) {
+        Expression<Comparable> value = (Expression<Comparable>) key;
+        return ascending ? this.builder.least(value) : this.builder.greatest(value);
+    }
+
+    /**
+     * Add a sort key
+     *
+     * @param keys      Keys
+     * @param ascending Directions of the keys
+     * @param path      Sort Path, null is ignored
+     * @param sortType  Sort Type, "asc" or "desc", others are ignored
+     */
+    private void addKey(List<Expression<?>> keys, List<Boolean> ascending, Path<?> path, String sortType) {
+        if (path != null && sortType != null) {
+            if (sortType.equalsIgnoreCase("asc")) {
+                keys.add(path);
+                ascending.add(true);
+            } else if (sortType.equalsIgnoreCase("desc")) {
+                keys.add(path);
+                ascending.add(false);
+            }
+        }
+    }
+
+    /**
+     * Query the rows after the cursor, ordered by the keys and finally the ID
+     * The ID makes the order total, so no row is skipped or repeated between pages.
+     * A cursor without keys skips to its position, the pages after it seek.
+     * Rows hold the selection followed by the key values, the key values of the last row forge the next cursor.
+     * Grouped rows are one for each ID, the keys must then be aggregates and the seek is done on the groups.
+     *
+     * @param fromQuery  From Query
+     * @param selection  Selection
+     * @param keys       Sort Keys
+     * @param ascending  Directions of the keys
+     * @param id         ID Path
+     * @param where      Restriction, may be null
+     * @param grouped    Whether the rows are grouped by ID
+     * @param cursor     Page Cursor
+     * @param maxResults Max Result
+     * @return Rows
+     */
+    private List<Object[]> getKeysetRows(CriteriaQuery<Object[]> fromQuery, Selection<?> selection, List<Expression<?>> keys, List<Boolean> ascending, Path<String> id, Predicate where, boolean grouped, PageCursor cursor, int maxResults) {
+        keys.add(id);
+        ascending.add(true);
+        // Select Query
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(selection);
+        selections.addAll(keys);
+        CriteriaQuery<Object[]> selectQuery = fromQuery.multiselect(selections);
+        // Where Query
+        List<Predicate> restrictions = new ArrayList<>();
+        if (where != null) {
+            restrictions.add(where);
+        }
+        Object[] last = cursor.getKeys();
+        Predicate after = null;
+        if (last != null) {
+            if (last.length != keys.size()) {
+                throw new IllegalArgumentException("Page cursor does not match the sort: " + cursor);
+            }
+            after = forgeAfter(keys, ascending, last);
+        }
+        if (after != null && !grouped) {
+            restrictions.add(after);
+        }
+        selectQuery.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        if (grouped) {
+            selectQuery.groupBy(id);
+            if (after != null) {
+                selectQuery.having(after);
+            }
+        }
+        // Order
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            orders.add(ascending.get(i) ? this.builder.asc(keys.get(i)) : this.builder.desc(keys.get(i)));
+        }
+        selectQuery.orderBy(orders);
+        // Final Query, only the page is read
+        TypedQuery<Object[]> typedQuery = this.entityManager.createQuery(selectQuery);
+        if (last == null && cursor.getPosition() > 0) {
+            typedQuery = typedQuery.setFirstResult((int) cursor.getPosition());
+        }
+        if (maxResults >= 0) {
+            typedQuery = typedQuery.setMaxResults(maxResults);
+        }
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Forge the predicate selecting the rows after the last row
+     * (k1 after v1) or (k1 = v1 and k2 after v2) or ..., nulls sort after values ascending and before them descending.
+     *
+     * @param keys      Sort Keys, the last one is the ID
+     * @param ascending Directions of the keys
+     * @param last      Key values of the last row
+     * @return Predicate
+     */
+    @SuppressWarnings("unchecked")
+    private Predicate forgeAfter(List<Expression<?>> keys, List<Boolean> ascending, Object[] last) {
+        List<Predicate> alternatives = new ArrayList<>();
+        List<Predicate> equals = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Expression<Comparable> key = (Expression<Comparable>) keys.get(i);
+            Comparable value = (Comparable) last[i];
+            Predicate after;
+            if (ascending.get(i)) {
+                after = value == null ? null : this.builder.or(this.builder.greaterThan(key, value), this.builder.isNull(key));
+            } else {
+                after = value == null ? this.builder.isNotNull(key) : this.builder.lessThan(key, value);
+            }
+            if (after != null) {
+                List<Predicate> alternative = new ArrayList<>(equals);
+                alternative.add(after);
+                alternatives.add(this.builder.and(alternative.toArray(new Predicate[alternative.size()])));
+            }
+            equals.add(value == null ? this.builder.isNull(key) : this.builder.equal(key, value));
+        }
+        return this.builder.or(alternatives.toArray(new Predicate[alternatives.size()]));
+    }
+
+    /**
+     * Forge the cursor after the last row
+     *
+     * @param cursor Page Cursor
+     * @param rows   Rows holding the selection followed by the key values
+     * @param count  Items returned from the rows
+     * @return Next Cursor, the given cursor if no row
+     */
+    private PageCursor forgeNextCursor(PageCursor cursor, List<Object[]> rows, int count) {
+        if (rows.isEmpty()) {
+            return cursor;
+        }
+        Object[] row = rows.get(rows.size() - 1);
+        return new PageCursor(cursor.getSorts(), Arrays.copyOfRange(row, 1, row.length), cursor.getPosition() + count);
+    }
+
+    /**
+     * Split paths or IDs into chunks for IN queries, keeps the statements below the database limits
+     *
+     * @param paths Paths or IDs
+     * @return Chunks
+     */
+    private List<List<String>> chunk(List<String> paths) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i = i + IN_CHUNK_SIZE) {
+            chunks.add(paths.subList(i, Math.min(paths.size(), i + IN_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
     /**
      * Inject Entity Manager
      *
@@ -0,0 +1,234 @@
+package org.chii2.medialibrary.persistence.blob;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.chii2.util.ConfigUtils;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Dictionary;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Content addressed store for movie image bytes
+ * Every image is one file named by the SHA-1 of its content, only the hash is kept in the database.
+ * The same poster provided twice is stored once, files are never changed after they are written.
+ * The root directory is configured by the blueprint container before the schema migration moves images into it.
+ */
+public class ImageBlobStore {
+    // Singleton
+    private static final ImageBlobStore INSTANCE = new ImageBlobStore();
+    // Default Root Directory, next to the database
+    private final static String DEFAULT_DIRECTORY = "data/MovieImage";
+    // Valid Hash
+    private final static Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{40}");
+    // Configuration File
+    private final static String CONFIG_FILE = "org.chii2.medialibrary.persistence";
+    // Movie Image Directory Configuration Key
+    private final static String IMAGE_DIRECTORY = "image.directory";
+    // Root Directory
+    private File directory = new File(DEFAULT_DIRECTORY);
+    // Injected ConfigAdmin Service
+    private ConfigurationAdmin configAdmin;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.persistence");
+
+    /**
+     * Get Image Blob Store Instance
+     *
+     * @return Image Blob Store Instance
+     */
+    public static ImageBlobStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Life Cycle Init, load the root directory configuration
+     */
+    @SuppressWarnings("unused")
+    public void init() {
+        logger.debug("Chii2 Media Library ImageBlobStore init.");
+        Dictionary props = null;
+        // Read properties from ConfigAdmin Service
+        try {
+            Configuration config = configAdmin.getConfiguration(CONFIG_FILE);
+            props = config.getProperties();
+        } catch (IOException e) {
+            logger.error("ImageBlobStore fail to load configuration with exception: {}.", ExceptionUtils.getMessage(e));
+        }
+        if (props == null || props.isEmpty()) {
+            logger.error("ImageBlobStore load configuration <{}> with error.", CONFIG_FILE);
+            return;
+        }
+        // Load movie image directory configuration
+        String directory = ConfigUtils.loadConfiguration(props, IMAGE_DIRECTORY);
+        if (StringUtils.isNotBlank(directory)) {
+            setDirectory(new File(StringUtils.trim(directory)));
+            logger.debug("ImageBlobStore configuration <{}> loaded.", IMAGE_DIRECTORY);
+        } else {
+            logger.debug("ImageBlobStore load default <{}>.", IMAGE_DIRECTORY);
+        }
+    }
+
+    /**
+     * Inject ConfigurationAdmin service
+     *
+     * @param configAdmin ConfigurationAdmin service
+     */
+    @SuppressWarnings("unused")
+    public void setConfigAdmin(ConfigurationAdmin configAdmin) {
+        this.configAdmin = configAdmin;
+    }
+
+    /**
+     * Set the root directory
+     *
+     * @param directory Root Directory
+     */
+    public synchronized void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Store image bytes
+     *
+     * @param content Image Bytes
+     * @return Content Hash, null if the image can not be stored
+     */
+    public String put(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        String hash = createHash(content);
+        if (hash == null) {
+            return null;
+        }
+        File file = getBlobFile(hash);
+        // Shared with an older image, keep it young so a running collection leaves it alone
+        if (file.exists() && file.setLastModified(System.currentTimeMillis())) {
+            return hash;
+        }
+        File temp = null;
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            // Write aside and move, readers never see a partial image
+            temp = File.createTempFile(hash, ".tmp", file.getParentFile());
+            FileUtils.writeByteArrayToFile(temp, content);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return hash;
+        } catch (IOException e) {
+            logger.error("Can not store movie image {}: {}.", hash, e.getMessage());
+            if (temp != null) {
+                FileUtils.deleteQuietly(temp);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the stored image file
+     *
+     * @param hash Content Hash
+     * @return Image File, null if not stored
+     */
+    public Path getFile(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+        File file = getBlobFile(hash);
+        return file.isFile() ? file.toPath() : null;
+    }
+
+    /**
+     * Read the stored image bytes
+     *
+     * @param hash Content Hash
+     * @return Image Bytes, null if not stored or not readable
+     */
+    public byte[] read(String hash) {
+        Path file = getFile(hash);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.error("Can not read movie image {}: {}.", hash, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Delete the images not referenced any more
+     * Images stored after the given time are kept, they may belong to entities not saved yet.
+     *
+     * @param hashes Referenced Content Hashes
+     * @param before Only images stored before this time (ms) are deleted
+     * @return Deleted Image Count
+     */
+    public int collect(Set<String> hashes, long before) {
+        File root;
+        synchronized (this) {
+            root = directory;
+        }
+        int deleted = 0;
+        File[] folders = root.listFiles();
+        if (folders == null) {
+            return 0;
+        }
+        for (File folder : folders) {
+            File[] files = folder.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                // Left over temporary files are garbage too
+                if (!hashes.contains(file.getName()) && file.lastModified() < before && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Blob file, spread over 256 folders by the first hash byte
+     *
+     * @param hash Content Hash
+     * @return File
+     */
+    private synchronized File getBlobFile(String hash) {
+        return new File(new File(directory, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * SHA-1 of the content in hex
+     *
+     * @param content Content
+     * @return Hash, null if no digest is available
+     */
+    private String createHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest) {
+                hash.append(String.format("%02x", b & 0xff));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("SHA-1 not available, can not store movie image.");
+            return null;
+        }
+    }
+}
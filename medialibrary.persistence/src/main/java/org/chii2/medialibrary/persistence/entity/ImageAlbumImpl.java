@@ -0,0 +1,124 @@
+package org.chii2.medialibrary.persistence.entity;
+
+import org.chii2.medialibrary.api.persistence.entity.ImageAlbum;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Represent the statistics of an image album
+ * Updated incrementally as images come and go, so browsing albums never aggregates the image table.
+ */
+@Entity(name = "IMAGE_ALBUM")
+@Table(name = "IMAGE_ALBUM")
+public class ImageAlbumImpl implements ImageAlbum {
+
+    // Album Name (Primary Key)
+    @Id
+    @Column(name = "NAME")
+    private String name;
+
+    // Images Count
+    @Column(name = "IMAGE_COUNT")
+    private long imageCount;
+
+    // Newest Date Taken
+    @Column(name = "NEWEST_DATE")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date newestDate;
+
+    // Cover Image ID, the newest image
+    @Column(name = "COVER_IMAGE_ID")
+    private String coverImageId;
+
+    /**
+     * Constructor
+     */
+    public ImageAlbumImpl() {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name Album Name
+     */
+    public ImageAlbumImpl(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getImageCount() {
+        return imageCount;
+    }
+
+    @Override
+    public Date getNewestDate() {
+        return newestDate;
+    }
+
+    @Override
+    public String getCoverImageId() {
+        return coverImageId;
+    }
+
+    /**
+     * An image was added to the album
+     *
+     * @param imageId Image ID
+     * @param date    Date Taken, may be null
+     */
+    public void addImage(String imageId, Date date) {
+        imageCount++;
+        updateImage(imageId, date);
+    }
+
+    /**
+     * The date of an image in the album may have changed
+     *
+     * @param imageId Image ID
+     * @param date    Date Taken, may be null
+     * @return False if the statistics can not be kept incrementally and must be recomputed
+     */
+    public boolean updateImage(String imageId, Date date) {
+        if (coverImageId == null || (date != null && (newestDate == null || date.after(newestDate)))) {
+            coverImageId = imageId;
+            newestDate = date;
+            return true;
+        }
+        // The cover got older, another image may be the newest now
+        return !imageId.equals(coverImageId) || equals(date, newestDate);
+    }
+
+    /**
+     * An image was removed from the album
+     *
+     * @param imageId Image ID
+     * @return False if the statistics can not be kept incrementally and must be recomputed
+     */
+    public boolean removeImage(String imageId) {
+        imageCount--;
+        return !imageId.equals(coverImageId);
+    }
+
+    /**
+     * Replace the statistics with recomputed ones
+     *
+     * @param imageCount   Images Count
+     * @param newestDate   Newest Date Taken
+     * @param coverImageId Cover Image ID
+     */
+    public void reset(long imageCount, Date newestDate, String coverImageId) {
+        this.imageCount = imageCount;
+        this.newestDate = newestDate;
+        this.coverImageId = coverImageId;
+    }
+
+    private static boolean equals(Date a, Date b) {
+        return a == null ? b == null : b != null && a.getTime() == b.getTime();
+    }
+}
@@ -2,6 +2,7 @@ package org.chii2.medialibrary.persistence.entity;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.SystemUtils;
+import org.apache.openjpa.persistence.jdbc.Index;
 import org.chii2.medialibrary.api.persistence.entity.Image;
 import org.chii2.medialibrary.api.persistence.entity.ImageFile;
 
@@ -27,10 +28,12 @@ public class ImageFileImpl implements ImageFile {
 
     // File Parent Path
     @Column(name = "FILE_PATH")
+    @Index(name = "IDX_IMAGE_FILE_PATH")
     private String filePath;
 
     // Absolute File Path
     @Column(name = "ABSOLUTE_PATH")
+    @Index(name = "IDX_IMAGE_FILE_ABS_PATH")
     private String absolutePath;
 
     // File Extension
@@ -1,6 +1,7 @@
 package org.chii2.medialibrary.persistence.entity;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.openjpa.persistence.jdbc.Index;
 import org.chii2.medialibrary.api.persistence.entity.Image;
 import org.chii2.medialibrary.api.persistence.entity.ImageFile;
 
@@ -26,6 +27,7 @@ public class ImageImpl implements Image {
 
     // Image Album
     @Column(name = "ALBUM")
+    @Index(name = "IDX_IMAGE_ALBUM")
     private String album;
 
     // Image Rating
@@ -34,6 +36,7 @@ public class ImageImpl implements Image {
 
     // Original Image File
     @OneToOne(cascade = {CascadeType.ALL}, fetch = FetchType.EAGER)
+    @Index(name = "IDX_IMAGE_ORIGINAL_FILE")
     private ImageFileImpl originalFile;
 
     /**
@@ -2,6 +2,7 @@ package org.chii2.medialibrary.persistence.entity;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.SystemUtils;
+import org.apache.openjpa.persistence.jdbc.Index;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
 import org.chii2.medialibrary.api.persistence.entity.MovieFile;
 
@@ -26,10 +27,12 @@ public class MovieFileImpl implements MovieFile {
 
     // File Path
     @Column(name = "FILE_PATH")
+    @Index(name = "IDX_MOVIE_FILE_PATH")
     private String filePath;
 
     // Absolute File Name
     @Column(name = "ABSOLUTE_PATH")
+    @Index(name = "IDX_MOVIE_FILE_ABS_PATH")
     private String absolutePath;
 
     // File Extension
@@ -164,6 +167,7 @@ public class MovieFileImpl implements MovieFile {
     // Movie
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "MOVIE_ID")
+    @Index(name = "IDX_MOVIE_FILE_MOVIE")
     private MovieImpl movie;
 
     /**
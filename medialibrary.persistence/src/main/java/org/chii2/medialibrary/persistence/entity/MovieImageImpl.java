@@ -2,8 +2,10 @@ package org.chii2.medialibrary.persistence.entity;
 
 import org.chii2.medialibrary.api.persistence.entity.MovieImage;
 import org.chii2.medialibrary.api.persistence.entity.MovieInfo;
+import org.chii2.medialibrary.persistence.blob.ImageBlobStore;
 
 import javax.persistence.*;
+import java.nio.file.Path;
 import java.util.UUID;
 
 @Entity(name = "MOVIE_IMAGE")
@@ -43,10 +45,12 @@ public class MovieImageImpl implements MovieImage {
     @Column(name = "PROVIDER_ID")
     private String providerId;
 
-    // Image binary Content
-    @Lob
-    @Basic(fetch = FetchType.LAZY)
-    @Column(name = "IMAGE")
+    // Image Content Hash in the blob store
+    @Column(name = "IMAGE_HASH")
+    private String imageHash;
+
+    // Image binary Content, kept until the persistence service stores it in the blob store
+    @Transient
     private byte[] image;
 
     // Movie Information
@@ -143,12 +147,48 @@ public class MovieImageImpl implements MovieImage {
 
     @Override
     public byte[] getImage() {
+        if (image == null && imageHash != null) {
+            return ImageBlobStore.getInstance().read(imageHash);
+        }
         return image;
     }
 
     @Override
     public void setImage(byte[] image) {
+        // Stored by the persistence service when the entity is synchronized
         this.image = image;
+        this.imageHash = null;
+    }
+
+    /**
+     * Store the image set since the last store, only the hash goes along when the entity is merged
+     *
+     * @throws PersistenceException If the image can not be stored
+     */
+    public void storeImage() {
+        if (image == null) {
+            return;
+        }
+        String hash = ImageBlobStore.getInstance().put(image);
+        if (hash == null) {
+            throw new PersistenceException("Can not store movie image " + url + " to the image store.");
+        }
+        this.imageHash = hash;
+        this.image = null;
+    }
+
+    @Override
+    public Path getImageFile() {
+        return ImageBlobStore.getInstance().getFile(imageHash);
+    }
+
+    /**
+     * Get Image Content Hash
+     *
+     * @return Content Hash, null if no image stored
+     */
+    public String getImageHash() {
+        return imageHash;
     }
 
     @Override
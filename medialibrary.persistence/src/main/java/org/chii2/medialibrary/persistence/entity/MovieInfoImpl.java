@@ -1,5 +1,6 @@
 package org.chii2.medialibrary.persistence.entity;
 
+import org.apache.openjpa.persistence.jdbc.Index;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
 import org.chii2.medialibrary.api.persistence.entity.MovieImage;
 import org.chii2.medialibrary.api.persistence.entity.MovieInfo;
@@ -101,6 +102,7 @@ public class MovieInfoImpl implements MovieInfo {
     // Movie
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "MOVIE_ID")
+    @Index(name = "IDX_MOVIE_INFO_MOVIE")
     private MovieImpl movie;
 
     /**
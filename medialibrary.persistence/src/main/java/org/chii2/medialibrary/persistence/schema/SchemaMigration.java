@@ -0,0 +1,359 @@
+package org.chii2.medialibrary.persistence.schema;
+
+import org.chii2.medialibrary.persistence.blob.ImageBlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Schema Migration
+ * New databases get their indexes from the entity mapping when the schema is built,
+ * databases created by older versions get the missing ones here before the persistence service starts.
+ * Movie images once stored in the database are moved to the image blob store.
+ * Album statistics are built once from the images already in the library.
+ * The image store is injected configured, before any image is moved to it.
+ */
+public class SchemaMigration {
+    // Indexes on hot lookup columns: Name, Table, Column
+    public final static String[][] INDEXES = {
+            {"IDX_MOVIE_FILE_ABS_PATH", "MOVIE_FILE", "ABSOLUTE_PATH"},
+            {"IDX_MOVIE_FILE_PATH", "MOVIE_FILE", "FILE_PATH"},
+            {"IDX_MOVIE_FILE_MOVIE", "MOVIE_FILE", "MOVIE_ID"},
+            {"IDX_MOVIE_INFO_MOVIE", "MOVIE_INFO", "MOVIE_ID"},
+            {"IDX_IMAGE_FILE_ABS_PATH", "IMAGE_FILE", "ABSOLUTE_PATH"},
+            {"IDX_IMAGE_FILE_PATH", "IMAGE_FILE", "FILE_PATH"},
+            {"IDX_IMAGE_ALBUM", "IMAGE", "ALBUM"},
+            {"IDX_IMAGE_ORIGINAL_FILE", "IMAGE", "ORIGINALFILE_ID"}
+    };
+    // Age of unreferenced images before they are collected (ms)
+    private final static long IMAGE_COLLECT_AGE = 60 * 60 * 1000;
+    // Injected Image Blob Store
+    private ImageBlobStore imageBlobStore = ImageBlobStore.getInstance();
+    // Data Source (non JTA)
+    private DataSource dataSource;
+    // Logger
+    private final Logger logger = LoggerFactory.getLogger("org.chii2.medialibrary.persistence");
+
+    /**
+     * Life Cycle Init, migrate the schema
+     */
+    @SuppressWarnings("unused")
+    public void migrate() {
+        logger.debug("Chii2 Media Library SchemaMigration init.");
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            int created = migrate(connection);
+            if (created > 0) {
+                logger.info("Schema migrated, {} indexes created.", created);
+            }
+            int albums = migrateImageAlbums(connection);
+            if (albums > 0) {
+                logger.info("Schema migrated, statistics of {} image albums built.", albums);
+            }
+            int moved = migrateMovieImages(connection);
+            if (moved > 0) {
+                logger.info("Schema migrated, {} movie images moved to the image store.", moved);
+            }
+            int collected = collectMovieImages(connection);
+            if (collected > 0) {
+                logger.info("{} unreferenced movie images deleted.", collected);
+            }
+        } catch (SQLException e) {
+            // The service still works on the old schema, the next start tries again
+            logger.error("Schema migration failed: {}.", e.getMessage());
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the missing indexes
+     * Tables not created yet are skipped, the mapping declares their indexes.
+     * A column is already indexed when any index starts with it, like the ones backing foreign keys.
+     *
+     * @param connection Connection
+     * @return Created Index Count
+     * @throws SQLException Database Error
+     */
+    public int migrate(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        int created = 0;
+        for (String[] index : INDEXES) {
+            if (!isTableExists(metaData, index[1])) {
+                logger.debug("Table {} not exists, skip index {}.", index[1], index[0]);
+                continue;
+            }
+            if (isColumnIndexed(metaData, index[1], index[2])) {
+                continue;
+            }
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("CREATE INDEX " + index[0] + " ON " + index[1] + " (" + index[2] + ")");
+                created++;
+                logger.debug("Index {} created on {}.{}.", new Object[]{index[0], index[1], index[2]});
+            } finally {
+                statement.close();
+            }
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        return created;
+    }
+
+    /**
+     * Build the album statistics of a library created by an older version
+     * The table is created as the entity mapping does, then filled from the images with one aggregate.
+     *
+     * @param connection Connection
+     * @return Albums Count
+     * @throws SQLException Database Error
+     */
+    public int migrateImageAlbums(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // Fresh database, the mapping will create the table
+        if (!isTableExists(metaData, "IMAGE") || !isTableExists(metaData, "IMAGE_FILE")) {
+            return 0;
+        }
+        if (!isTableExists(metaData, "IMAGE_ALBUM")) {
+            execute(connection, "CREATE TABLE IMAGE_ALBUM (NAME VARCHAR(255) NOT NULL, COVER_IMAGE_ID VARCHAR(255), IMAGE_COUNT BIGINT, NEWEST_DATE TIMESTAMP, PRIMARY KEY (NAME))");
+        } else if (isNotEmpty(connection, "IMAGE_ALBUM")) {
+            return 0;
+        }
+        int albums;
+        Statement statement = connection.createStatement();
+        try {
+            albums = statement.executeUpdate("INSERT INTO IMAGE_ALBUM (NAME, IMAGE_COUNT, NEWEST_DATE) " +
+                    "SELECT i.ALBUM, COUNT(*), MAX(f.DATE_TAKEN) FROM IMAGE i LEFT OUTER JOIN IMAGE_FILE f ON i.ORIGINALFILE_ID = f.ID " +
+                    "WHERE i.ALBUM IS NOT NULL GROUP BY i.ALBUM");
+            // Cover is the newest image, any image if none has a date
+            statement.executeUpdate("UPDATE IMAGE_ALBUM SET COVER_IMAGE_ID = " +
+                    "(SELECT MIN(i.ID) FROM IMAGE i LEFT OUTER JOIN IMAGE_FILE f ON i.ORIGINALFILE_ID = f.ID " +
+                    "WHERE i.ALBUM = IMAGE_ALBUM.NAME AND (IMAGE_ALBUM.NEWEST_DATE IS NULL OR f.DATE_TAKEN = IMAGE_ALBUM.NEWEST_DATE))");
+        } finally {
+            statement.close();
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        return albums;
+    }
+
+    /**
+     * Move movie images from the database into the image blob store
+     * The image column is dropped afterwards and the table compressed, so the database file shrinks.
+     *
+     * @param connection Connection
+     * @return Moved Image Count
+     * @throws SQLException Database Error
+     */
+    public int migrateMovieImages(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        if (!isTableExists(metaData, "MOVIE_IMAGE")) {
+            return 0;
+        }
+        if (!isColumnExists(metaData, "MOVIE_IMAGE", "IMAGE_HASH")) {
+            execute(connection, "ALTER TABLE MOVIE_IMAGE ADD COLUMN IMAGE_HASH VARCHAR(255)");
+        }
+        if (!isColumnExists(metaData, "MOVIE_IMAGE", "IMAGE")) {
+            return 0;
+        }
+        int moved = 0;
+        Statement select = connection.createStatement();
+        PreparedStatement update = connection.prepareStatement("UPDATE MOVIE_IMAGE SET IMAGE_HASH = ? WHERE ID = ?");
+        try {
+            ResultSet images = select.executeQuery("SELECT ID, IMAGE FROM MOVIE_IMAGE WHERE IMAGE IS NOT NULL");
+            try {
+                while (images.next()) {
+                    String hash = imageBlobStore.put(images.getBytes(2));
+                    if (hash == null) {
+                        // Keep the column, the next start tries again
+                        throw new SQLException("Movie image " + images.getString(1) + " can not be stored.");
+                    }
+                    update.setString(1, hash);
+                    update.setString(2, images.getString(1));
+                    update.executeUpdate();
+                    moved++;
+                }
+            } finally {
+                images.close();
+            }
+        } finally {
+            select.close();
+            update.close();
+        }
+        execute(connection, "ALTER TABLE MOVIE_IMAGE DROP COLUMN IMAGE");
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        // Give the space back
+        CallableStatement compress = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_COMPRESS_TABLE(CURRENT SCHEMA, 'MOVIE_IMAGE', 1)");
+        try {
+            compress.execute();
+        } finally {
+            compress.close();
+        }
+        return moved;
+    }
+
+    /**
+     * Delete the stored movie images no row refers to
+     *
+     * @param connection Connection
+     * @return Deleted Image Count
+     * @throws SQLException Database Error
+     */
+    public int collectMovieImages(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> hashes = new HashSet<>();
+        if (isTableExists(metaData, "MOVIE_IMAGE") && isColumnExists(metaData, "MOVIE_IMAGE", "IMAGE_HASH")) {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet images = statement.executeQuery("SELECT DISTINCT IMAGE_HASH FROM MOVIE_IMAGE WHERE IMAGE_HASH IS NOT NULL");
+                try {
+                    while (images.next()) {
+                        hashes.add(images.getString(1));
+                    }
+                } finally {
+                    images.close();
+                }
+            } finally {
+                statement.close();
+            }
+        }
+        return imageBlobStore.collect(hashes, System.currentTimeMillis() - IMAGE_COLLECT_AGE);
+    }
+
+    /**
+     * Execute a statement
+     *
+     * @param connection Connection
+     * @param sql        SQL
+     * @throws SQLException Database Error
+     */
+    private void execute(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Whether the column exists
+     *
+     * @param metaData Database Meta Data
+     * @param table    Table Name
+     * @param column   Column Name
+     * @return True if exists
+     * @throws SQLException Database Error
+     */
+    private boolean isColumnExists(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        ResultSet columns = metaData.getColumns(null, null, table, column);
+        try {
+            return columns.next();
+        } finally {
+            columns.close();
+        }
+    }
+
+    /**
+     * Whether the table has any row
+     *
+     * @param connection Connection
+     * @param table      Table Name
+     * @return True if not empty
+     * @throws SQLException Database Error
+     */
+    private boolean isNotEmpty(Connection connection, String table) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.setMaxRows(1);
+            ResultSet rows = statement.executeQuery("SELECT 1 FROM " + table);
+            try {
+                return rows.next();
+            } finally {
+                rows.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Whether the table exists
+     *
+     * @param metaData Database Meta Data
+     * @param table    Table Name
+     * @return True if exists
+     * @throws SQLException Database Error
+     */
+    private boolean isTableExists(DatabaseMetaData metaData, String table) throws SQLException {
+        ResultSet tables = metaData.getTables(null, null, table, new String[]{"TABLE"});
+        try {
+            return tables.next();
+        } finally {
+            tables.close();
+        }
+    }
+
+    /**
+     * Whether any index starts with the column
+     *
+     * @param metaData Database Meta Data
+     * @param table    Table Name
+     * @param column   Column Name
+     * @return True if indexed
+     * @throws SQLException Database Error
+     */
+    private boolean isColumnIndexed(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        ResultSet indexes = metaData.getIndexInfo(null, null, table, false, true);
+        try {
+            while (indexes.next()) {
+                if (indexes.getShort("ORDINAL_POSITION") == 1 && column.equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            indexes.close();
+        }
+    }
+
+    /**
+     * Inject Data Source
+     *
+     * @param dataSource Data Source
+     */
+    @SuppressWarnings("unused")
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Inject Image Blob Store, configured by its own bean
+     *
+     * @param imageBlobStore Image Blob Store
+     */
+    @SuppressWarnings("unused")
+    public void setImageBlobStore(ImageBlobStore imageBlobStore) {
+        this.imageBlobStore = imageBlobStore;
+    }
+}
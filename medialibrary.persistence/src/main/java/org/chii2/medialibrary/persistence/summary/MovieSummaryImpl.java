@@ -0,0 +1,296 @@
+package org.chii2.medialibrary.persistence.summary;
+
+import org.apache.commons.lang.StringUtils;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
+
+import java.util.Date;
+
+/**
+ * Movie Summary filled from projection rows
+ * Follows the same rules as the movie entity: information comes from the first provider,
+ * stream details from the first disk, duration and size from all disks.
+ */
+public class MovieSummaryImpl implements MovieSummary {
+
+    // Movie File columns read by addFile, rows must be ordered by disk number
+    public final static String FILE_COLUMNS = "f.movie.id, f.fileName, f.movieName, f.audioLanguage, f.format, f.mime, f.duration, f.size, " +
+            "f.videoFormat, f.videoFormatProfile, f.videoFormatVersion, f.videoCodec, f.videoBitRate, f.videoFrameRate, f.videoWidth, f.videoHeight, " +
+            "f.audioFormat, f.audioFormatProfile, f.audioFormatVersion, f.audioCodec, f.audioBitRate, f.audioBitDepth, f.audioChannelCount, f.audioSamplingRate";
+    // Movie Information columns read by addInfo, rows must be ordered by provider name
+    public final static String INFO_COLUMNS = "i.movie.id, i.name, i.releasedDate, i.overview, i.rating, i.certification, i.language";
+
+    // ID
+    private final String id;
+    // Files Count
+    private int filesCount = 0;
+    // Whether information is present
+    private boolean hasInfo = false;
+    // Title
+    private String title;
+    // Released Date
+    private Date releasedDate;
+    // Overview
+    private String overview;
+    // Rating
+    private double rating;
+    // Certification
+    private String certification;
+    // Language
+    private String language;
+    // Format
+    private String format;
+    // MIME
+    private String mime;
+    // Duration of all files
+    private long duration;
+    // Size of all files
+    private long size;
+    // Video Format
+    private String videoFormat;
+    // Video Format Profile
+    private String videoFormatProfile;
+    // Video Format Version
+    private int videoFormatVersion;
+    // Video Codec
+    private String videoCodec;
+    // Video Bit Rate
+    private long videoBitRate;
+    // Video FPS
+    private float videoFps;
+    // Video Width
+    private int videoWidth;
+    // Video Height
+    private int videoHeight;
+    // Audio Format
+    private String audioFormat;
+    // Audio Format Profile
+    private String audioFormatProfile;
+    // Audio Format Version
+    private int audioFormatVersion;
+    // Audio Codec
+    private String audioCodec;
+    // Audio Bit Rate
+    private long audioBitRate;
+    // Audio Bit Depth
+    private int audioBitDepth;
+    // Audio Channels
+    private int audioChannels;
+    // Audio Sample Bit Rate
+    private long audioSampleBitRate;
+
+    /**
+     * Constructor
+     *
+     * @param id Movie ID
+     */
+    public MovieSummaryImpl(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Add a movie file row selected by FILE_COLUMNS
+     *
+     * @param row Movie File Row
+     */
+    public void addFile(Object[] row) {
+        filesCount++;
+        duration += toLong(row[6]);
+        size += toLong(row[7]);
+        if (filesCount > 1) {
+            return;
+        }
+        if (!hasInfo) {
+            title = StringUtils.isNotBlank((String) row[2]) ? (String) row[2] : (String) row[1];
+            language = StringUtils.isNotBlank((String) row[3]) ? (String) row[3] : null;
+        }
+        format = (String) row[4];
+        mime = (String) row[5];
+        videoFormat = (String) row[8];
+        videoFormatProfile = (String) row[9];
+        videoFormatVersion = toInt(row[10]);
+        videoCodec = (String) row[11];
+        videoBitRate = toLong(row[12]);
+        videoFps = row[13] == null ? 0 : ((Number) row[13]).floatValue();
+        videoWidth = toInt(row[14]);
+        videoHeight = toInt(row[15]);
+        audioFormat = (String) row[16];
+        audioFormatProfile = (String) row[17];
+        audioFormatVersion = toInt(row[18]);
+        audioCodec = (String) row[19];
+        audioBitRate = toLong(row[20]);
+        audioBitDepth = toInt(row[21]);
+        audioChannels = toInt(row[22]);
+        audioSampleBitRate = toLong(row[23]);
+    }
+
+    /**
+     * Add a movie information row selected by INFO_COLUMNS
+     *
+     * @param row Movie Information Row
+     */
+    public void addInfo(Object[] row) {
+        if (hasInfo) {
+            return;
+        }
+        hasInfo = true;
+        title = (String) row[1];
+        releasedDate = (Date) row[2];
+        overview = (String) row[3];
+        rating = row[4] == null ? 0 : ((Number) row[4]).doubleValue();
+        certification = (String) row[5];
+        language = (String) row[6];
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static int toInt(Object value) {
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getFilesCount() {
+        return filesCount;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public Date getReleasedDate() {
+        return releasedDate;
+    }
+
+    @Override
+    public String getOverview() {
+        return overview;
+    }
+
+    @Override
+    public double getRating() {
+        return rating;
+    }
+
+    @Override
+    public String getCertification() {
+        return certification;
+    }
+
+    @Override
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getBitRate() {
+        return videoBitRate + audioBitRate;
+    }
+
+    @Override
+    public String getMIME() {
+        return mime;
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return videoWidth;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return videoHeight;
+    }
+
+    @Override
+    public String getVideoFormat() {
+        return videoFormat;
+    }
+
+    @Override
+    public String getVideoFormatProfile() {
+        return videoFormatProfile;
+    }
+
+    @Override
+    public int getVideoFormatVersion() {
+        return videoFormatVersion;
+    }
+
+    @Override
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    @Override
+    public long getVideoBitRate() {
+        return videoBitRate;
+    }
+
+    @Override
+    public float getVideoFps() {
+        return videoFps;
+    }
+
+    @Override
+    public String getAudioFormat() {
+        return audioFormat;
+    }
+
+    @Override
+    public String getAudioFormatProfile() {
+        return audioFormatProfile;
+    }
+
+    @Override
+    public int getAudioFormatVersion() {
+        return audioFormatVersion;
+    }
+
+    @Override
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    @Override
+    public int getAudioChannels() {
+        return audioChannels;
+    }
+
+    @Override
+    public long getAudioBitRate() {
+        return audioBitRate;
+    }
+
+    @Override
+    public long getAudioSampleBitRate() {
+        return audioSampleBitRate;
+    }
+
+    @Override
+    public int getAudioBitDepth() {
+        return audioBitDepth;
+    }
+}
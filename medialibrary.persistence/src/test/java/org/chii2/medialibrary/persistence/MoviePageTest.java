@@ -0,0 +1,91 @@
+package org.chii2.medialibrary.persistence;
+
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
+import org.chii2.medialibrary.persistence.entity.MovieFileImpl;
+import org.chii2.medialibrary.persistence.entity.MovieImpl;
+import org.testng.annotations.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for Movie Keyset Pages
+ */
+public class MoviePageTest {
+
+    @Test
+    public void MultiFilePageTest() {
+        // The unit on a local in memory database instead of the OSGi data sources
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.transactionType", "RESOURCE_LOCAL");
+        properties.put("javax.persistence.jtaDataSource", "");
+        properties.put("javax.persistence.nonJtaDataSource", "");
+        properties.put("openjpa.ConnectionDriverName", "org.apache.derby.jdbc.EmbeddedDriver");
+        properties.put("openjpa.ConnectionURL", "jdbc:derby:memory:MoviePageTest;create=true");
+        properties.put("openjpa.RuntimeUnenhancedClasses", "supported");
+        EntityManagerFactory factory = Persistence.createEntityManagerFactory("MediaLibraryUnit", properties);
+        EntityManager entityManager = factory.createEntityManager();
+        try {
+            // Movie B has two files, sorted by "b" ascending and by "y" descending
+            entityManager.getTransaction().begin();
+            MovieImpl a = createMovie(entityManager, "a");
+            MovieImpl b = createMovie(entityManager, "b", "y");
+            MovieImpl c = createMovie(entityManager, "c");
+            MovieImpl d = createMovie(entityManager, "d");
+            entityManager.getTransaction().commit();
+
+            PersistenceServiceImpl persistenceService = new PersistenceServiceImpl();
+            persistenceService.setEntityManager(entityManager);
+            persistenceService.init();
+
+            // Every page is full and each movie is on one page only
+            List<List<String>> pages = getPages(persistenceService, "asc");
+            assert pages.equals(Arrays.asList(Arrays.asList(a.getId(), b.getId()), Arrays.asList(c.getId(), d.getId()), Collections.<String>emptyList()));
+            pages = getPages(persistenceService, "desc");
+            assert pages.equals(Arrays.asList(Arrays.asList(b.getId(), d.getId()), Arrays.asList(c.getId(), a.getId()), Collections.<String>emptyList()));
+        } finally {
+            entityManager.close();
+            factory.close();
+        }
+    }
+
+    private MovieImpl createMovie(EntityManager entityManager, String... fileNames) {
+        MovieImpl movie = new MovieImpl();
+        int diskNum = 1;
+        for (String fileName : fileNames) {
+            MovieFileImpl file = new MovieFileImpl();
+            file.setFileName(fileName);
+            file.setDiskNum(diskNum++);
+            movie.addFile(file);
+        }
+        entityManager.persist(movie);
+        return movie;
+    }
+
+    private List<List<String>> getPages(PersistenceServiceImpl persistenceService, String sortType) {
+        Map<String, String> sorts = new HashMap<>();
+        sorts.put("file.fileName", sortType);
+        PageCursor cursor = new PageCursor(sorts);
+        List<List<String>> pages = new ArrayList<>();
+        Page<? extends MovieSummary> page;
+        do {
+            page = persistenceService.getMovieSummaries(cursor, 2);
+            List<String> ids = new ArrayList<>();
+            for (MovieSummary summary : page.getItems()) {
+                ids.add(summary.getId());
+            }
+            pages.add(ids);
+            cursor = page.getNext();
+        } while (!page.getItems().isEmpty());
+        return pages;
+    }
+}
@@ -0,0 +1,249 @@
+package org.chii2.medialibrary.persistence.schema;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.medialibrary.persistence.blob.ImageBlobStore;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Test for Schema Migration
+ */
+public class SchemaMigrationTest {
+    // Images per album (directory) of the library used to check the queries
+    private final static int ALBUM_SIZE = 100;
+    // Rows visited in a query plan
+    private final static Pattern ROWS_VISITED = Pattern.compile("Number of rows visited=(\\d+)");
+
+    @Test
+    public void MigrateTest() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:derby:memory:SchemaMigrationTest;create=true");
+        try {
+            SchemaMigration migration = new SchemaMigration();
+            // Fresh database, the mapping will create the indexes
+            assert migration.migrate(connection) == 0;
+
+            // Database created by an older version
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("CREATE TABLE IMAGE_FILE (ID VARCHAR(255) NOT NULL, FILE_PATH VARCHAR(255), ABSOLUTE_PATH VARCHAR(255), PRIMARY KEY (ID))");
+                statement.executeUpdate("CREATE TABLE IMAGE (ID VARCHAR(255) NOT NULL, ALBUM VARCHAR(255), ORIGINALFILE_ID VARCHAR(255), PRIMARY KEY (ID))");
+                statement.executeUpdate("ALTER TABLE IMAGE ADD FOREIGN KEY (ORIGINALFILE_ID) REFERENCES IMAGE_FILE (ID)");
+            } finally {
+                statement.close();
+            }
+            // Foreign key column is indexed already
+            assert migration.migrate(connection) == 3;
+            // Nothing left to do
+            assert migration.migrate(connection) == 0;
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void MigrateImageAlbumsTest() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:derby:memory:MigrateImageAlbumsTest;create=true");
+        try {
+            SchemaMigration migration = new SchemaMigration();
+            // Fresh database, the mapping will create the table
+            assert migration.migrateImageAlbums(connection) == 0;
+
+            // Library created by an older version
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("CREATE TABLE IMAGE_FILE (ID VARCHAR(255) NOT NULL, DATE_TAKEN TIMESTAMP, PRIMARY KEY (ID))");
+                statement.executeUpdate("CREATE TABLE IMAGE (ID VARCHAR(255) NOT NULL, ALBUM VARCHAR(255), ORIGINALFILE_ID VARCHAR(255), PRIMARY KEY (ID))");
+                statement.executeUpdate("INSERT INTO IMAGE_FILE VALUES ('F1', '2010-01-01 00:00:00'), ('F2', '2012-01-01 00:00:00'), ('F3', NULL), ('F4', NULL), ('F5', NULL)");
+                statement.executeUpdate("INSERT INTO IMAGE VALUES ('I1', 'Singapore', 'F1'), ('I2', 'Singapore', 'F2'), ('I3', 'Singapore', 'F3'), ('I4', 'Shanghai', 'F4'), ('I5', NULL, 'F5')");
+            } finally {
+                statement.close();
+            }
+            assert migration.migrateImageAlbums(connection) == 2;
+            // Built once
+            assert migration.migrateImageAlbums(connection) == 0;
+
+            statement = connection.createStatement();
+            try {
+                ResultSet albums = statement.executeQuery("SELECT NAME, IMAGE_COUNT, NEWEST_DATE, COVER_IMAGE_ID FROM IMAGE_ALBUM ORDER BY NAME");
+                assert albums.next();
+                assert "Shanghai".equals(albums.getString(1));
+                assert albums.getLong(2) == 1;
+                assert albums.getTimestamp(3) == null;
+                assert "I4".equals(albums.getString(4));
+                assert albums.next();
+                assert "Singapore".equals(albums.getString(1));
+                assert albums.getLong(2) == 3;
+                assert albums.getTimestamp(3).equals(Timestamp.valueOf("2012-01-01 00:00:00"));
+                assert "I2".equals(albums.getString(4));
+                assert !albums.next();
+                albums.close();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void MigrateMovieImagesTest() throws SQLException, IOException {
+        File directory = new File(FileUtils.getTempDirectory(), "chii2-image-store-test");
+        FileUtils.deleteQuietly(directory);
+        ImageBlobStore store = ImageBlobStore.getInstance();
+        store.setDirectory(directory);
+        Connection connection = DriverManager.getConnection("jdbc:derby:memory:MigrateMovieImagesTest;create=true");
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("CREATE TABLE MOVIE_IMAGE (ID VARCHAR(255) NOT NULL, IMAGE BLOB, PRIMARY KEY (ID))");
+            } finally {
+                statement.close();
+            }
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO MOVIE_IMAGE (ID, IMAGE) VALUES (?, ?)");
+            try {
+                // Same poster twice
+                for (String id : new String[]{"1", "2"}) {
+                    insert.setString(1, id);
+                    insert.setBytes(2, new byte[]{1, 2, 3});
+                    insert.executeUpdate();
+                }
+            } finally {
+                insert.close();
+            }
+
+            SchemaMigration migration = new SchemaMigration();
+            assert migration.migrateMovieImages(connection) == 2;
+            // Image column is gone, nothing left to move
+            assert migration.migrateMovieImages(connection) == 0;
+
+            String hash;
+            statement = connection.createStatement();
+            try {
+                ResultSet hashes = statement.executeQuery("SELECT DISTINCT IMAGE_HASH FROM MOVIE_IMAGE");
+                assert hashes.next();
+                hash = hashes.getString(1);
+                assert !hashes.next();
+                hashes.close();
+            } finally {
+                statement.close();
+            }
+            assert store.read(hash).length == 3;
+
+            // Young images are kept, they may belong to entities not saved yet
+            String orphan = store.put(new byte[]{4, 5, 6});
+            assert migration.collectMovieImages(connection) == 0;
+            // Old unreferenced images are deleted
+            assert store.collect(Collections.singleton(hash), System.currentTimeMillis() + 1000) == 1;
+            assert store.getFile(orphan) == null;
+            assert store.getFile(hash) != null;
+        } finally {
+            connection.close();
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    @Test
+    public void MigratedQueriesTest() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:derby:memory:MigratedQueriesTest;create=true");
+        try {
+            // Library created by an older version, 50 albums
+            int count = 50 * ALBUM_SIZE;
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("CREATE TABLE IMAGE_FILE (ID VARCHAR(255) NOT NULL, FILE_PATH VARCHAR(255), ABSOLUTE_PATH VARCHAR(255), PRIMARY KEY (ID))");
+                statement.executeUpdate("CREATE TABLE IMAGE (ID VARCHAR(255) NOT NULL, ALBUM VARCHAR(255), ORIGINALFILE_ID VARCHAR(255), PRIMARY KEY (ID))");
+            } finally {
+                statement.close();
+            }
+            connection.setAutoCommit(false);
+            PreparedStatement insertFile = connection.prepareStatement("INSERT INTO IMAGE_FILE (ID, FILE_PATH, ABSOLUTE_PATH) VALUES (?, ?, ?)");
+            PreparedStatement insertImage = connection.prepareStatement("INSERT INTO IMAGE (ID, ALBUM, ORIGINALFILE_ID) VALUES (?, ?, ?)");
+            try {
+                for (int i = 0; i < count; i++) {
+                    String album = "Album " + i / ALBUM_SIZE;
+                    insertFile.setString(1, "F" + i);
+                    insertFile.setString(2, "/photos/" + album + "/");
+                    insertFile.setString(3, "/photos/" + album + "/IMG_" + i + ".jpg");
+                    insertFile.addBatch();
+                    insertImage.setString(1, "I" + i);
+                    insertImage.setString(2, album);
+                    insertImage.setString(3, "F" + i);
+                    insertImage.addBatch();
+                }
+                insertFile.executeBatch();
+                insertImage.executeBatch();
+                connection.commit();
+            } finally {
+                insertFile.close();
+                insertImage.close();
+            }
+            connection.setAutoCommit(true);
+
+            String albumCount = "SELECT COUNT(ID) FROM IMAGE WHERE ALBUM = 'Album 7'";
+            String fileByPath = "SELECT ID FROM IMAGE_FILE WHERE ABSOLUTE_PATH = '/photos/Album 7/IMG_700.jpg'";
+            String filesByDirectory = "SELECT ID FROM IMAGE_FILE WHERE FILE_PATH LIKE '/photos/Album 7/%'";
+            // Every lookup reads the whole table
+            assert getRowsVisited(connection, albumCount, null) == count;
+            assert getRowsVisited(connection, fileByPath, null) == count;
+
+            assert new SchemaMigration().migrate(connection) == 4;
+            // Only the rows asked for, plus the one ending the index scan
+            assert getRowsVisited(connection, albumCount, "IDX_IMAGE_ALBUM") <= ALBUM_SIZE + 1;
+            assert getRowsVisited(connection, fileByPath, "IDX_IMAGE_FILE_ABS_PATH") <= 2;
+            assert getRowsVisited(connection, filesByDirectory, "IDX_IMAGE_FILE_PATH") <= ALBUM_SIZE + 1;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Run a query and read the rows it visited from the runtime statistics
+     *
+     * @param connection Connection
+     * @param query      Query
+     * @param index      Index the plan must use, null if it must not use any
+     * @return Rows visited by the scans of the plan
+     * @throws SQLException Database error
+     */
+    private long getRowsVisited(Connection connection, String query, String index) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            ResultSet resultSet = statement.executeQuery(query);
+            while (resultSet.next()) {
+                resultSet.getString(1);
+            }
+            resultSet.close();
+            resultSet = statement.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");
+            assert resultSet.next();
+            String plan = resultSet.getString(1);
+            resultSet.close();
+            statement.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+            if (index == null) {
+                assert !plan.contains("using index") : plan;
+            } else {
+                assert plan.contains("using index " + index) : plan;
+            }
+            long rows = 0;
+            Matcher matcher = ROWS_VISITED.matcher(plan);
+            while (matcher.find()) {
+                rows = rows + Long.parseLong(matcher.group(1));
+            }
+            return rows;
+        } finally {
+            statement.close();
+        }
+    }
+}
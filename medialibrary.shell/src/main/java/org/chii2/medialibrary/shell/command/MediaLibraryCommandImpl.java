@@ -15,6 +15,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Media Library Shell Command
@@ -43,6 +44,7 @@ public class MediaLibraryCommandImpl implements MediaLibraryCommand {
         this.showOptions = new Options();
         this.showOptions.addOption("movie", false, "type option: movie.  show movies in the media library");
         this.showOptions.addOption("image", false, "type option: image.  show images in the media library");
+        this.showOptions.addOption("cache", false, "type option: cache.  show movie and image cache statistics");
         this.showOptions.addOption("help", false, "show this message");
         this.showOptions.addOption(OptionBuilder.withArgName("uuid")
                 .hasArg()
@@ -107,6 +109,8 @@ public class MediaLibraryCommandImpl implements MediaLibraryCommand {
                 } else if (line.hasOption("image")) {
                     List<? extends Image> images = this.mediaLibrary.getImages();
                     this.printImageTable(images);
+                } else if (line.hasOption("cache")) {
+                    this.printCacheTable(this.mediaLibrary.getCacheStatistics());
                 } else if (line.hasOption("help")) {
                     this.helpFormatter.printHelp("show -type_option [-restrict_option]", this.showOptions);
                 } else {
@@ -117,13 +121,13 @@ public class MediaLibraryCommandImpl implements MediaLibraryCommand {
                     Movie movie = this.mediaLibrary.getMovieById(line.getOptionValue("id"));
                     this.printMovieTable(movie);
                 } else if (line.hasOption("movie") && line.hasOption("name") && StringUtils.isNotEmpty(line.getOptionValue("name"))) {
-                    List<? extends Movie> movies = this.mediaLibrary.getMoviesByName(line.getOptionValue("name"));
+                    List<? extends Movie> movies = this.mediaLibrary.searchMovies(line.getOptionValue("name"), -1, -1);
                     this.printMovieTable(movies);
                 } else if (line.hasOption("image") && line.hasOption("id") && StringUtils.isNotEmpty(line.getOptionValue("id"))) {
                     Image image = this.mediaLibrary.getImageById(line.getOptionValue("id"));
                     this.printImageTable(image);
                 } else if (line.hasOption("image") && line.hasOption("name") && StringUtils.isNotEmpty(line.getOptionValue("name"))) {
-                    List<? extends Image> images = mediaLibrary.getImagesByField("title", line.getOptionValue("name"), false);
+                    List<? extends Image> images = mediaLibrary.searchImages(line.getOptionValue("name"), -1, -1);
                     this.printImageTable(images);
                 } else {
                     throw new OptException("Invalid option count.");
@@ -136,6 +140,23 @@ public class MediaLibraryCommandImpl implements MediaLibraryCommand {
         }
     }
 
+    /**
+     * Print cache statistics to command line in table format
+     *
+     * @param statistics Statistics by name
+     */
+    private void printCacheTable(Map<String, Long> statistics) {
+        String[] headers = {"Statistic", "Value"};
+        String[][] content = new String[statistics.size()][2];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : statistics.entrySet()) {
+            content[i][0] = entry.getKey();
+            content[i][1] = String.valueOf(entry.getValue());
+            i++;
+        }
+        printTable(headers, content);
+    }
+
     /**
      * Print movie to command line in table format
      *
@@ -8,6 +8,10 @@ import org.apache.commons.lang.StringUtils;
 public class SearchCriterion {
     // Search Type
     private SearchType searchType;
+    // Search Keywords, from the text properties
+    private String keywords;
+    // Text properties searched by keywords
+    private final static String[] TEXT_PROPERTIES = {"dc:title", "upnp:album", "dc:description", "dc:creator", "upnp:artist", "upnp:genre"};
 
     public SearchType getSearchType() {
         return searchType;
@@ -17,6 +21,14 @@ public class SearchCriterion {
         this.searchType = searchType;
     }
 
+    public String getKeywords() {
+        return keywords;
+    }
+
+    public void setKeywords(String keywords) {
+        this.keywords = keywords;
+    }
+
     /**
      * Parse Search Criterion from String
      * TODO: Not Completed
@@ -27,10 +39,11 @@ public class SearchCriterion {
     public static SearchCriterion parseSearchCriterion(String searchCriterionString) {
         SearchCriterion searchCriterion = new SearchCriterion();
         if (searchCriterionString != null) {
-            String[] factors = searchCriterionString.split("(and|or)");
+            // Split on and/or outside of quoted values
+            String[] factors = searchCriterionString.split("\\s+(?i:and|or)\\s+(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
             for (String factor : factors) {
-                factor = StringUtils.trimToEmpty(factor);
-                String[] subFactors = factor.split("\\s", 3);
+                factor = StringUtils.strip(StringUtils.trimToEmpty(factor), "() ");
+                String[] subFactors = factor.split("\\s+", 3);
                 if (subFactors != null && subFactors.length == 3) {
                     if ("upnp:class".equalsIgnoreCase(subFactors[0]) && ("=".equalsIgnoreCase(subFactors[1]) || "derivedfrom".equalsIgnoreCase(subFactors[1]))) {
                         if ("\"object.item.imageItem\"".equalsIgnoreCase(subFactors[2]) || "\"object.item.imageItem.photo\"".equalsIgnoreCase(subFactors[2])) {
@@ -43,12 +56,34 @@ public class SearchCriterion {
                             searchCriterion.setSearchType(SearchCriterion.SearchType.SEARCH_UNKNOWN);
                         }
                     }
+                    // Text property, the value is searched in the library index
+                    else if (isTextProperty(subFactors[0]) && ("contains".equalsIgnoreCase(subFactors[1]) || "=".equals(subFactors[1]))) {
+                        String value = StringUtils.strip(subFactors[2], "\"").replace("\\\"", "\"");
+                        if (StringUtils.isNotBlank(value)) {
+                            searchCriterion.setKeywords(searchCriterion.getKeywords() == null ? value : searchCriterion.getKeywords() + " " + value);
+                        }
+                    }
                 }
             }
         }
         return searchCriterion;
     }
 
+    /**
+     * Whether the property is a text property searched by keywords
+     *
+     * @param property Property Name
+     * @return True if text property
+     */
+    private static boolean isTextProperty(String property) {
+        for (String textProperty : TEXT_PROPERTIES) {
+            if (textProperty.equalsIgnoreCase(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Search Type
      * TODO: Not Completed
@@ -3,6 +3,9 @@ package org.chii2.mediaserver.content.common;
 import org.apache.commons.lang.StringUtils;
 import org.chii2.medialibrary.api.core.MediaLibraryService;
 import org.chii2.medialibrary.api.persistence.entity.Image;
+import org.chii2.medialibrary.api.persistence.entity.ImageAlbum;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
 import org.chii2.mediaserver.api.content.ContentManager;
 import org.chii2.mediaserver.api.content.container.VisualContainer;
 import org.chii2.mediaserver.api.content.item.VisualPictureItem;
@@ -55,6 +58,8 @@ public class CommonContentManager implements ContentManager {
     protected HttpServerService httpServer;
     // Transcoder
     protected TranscoderService transcoder;
+    // Library cursors of sequential browses
+    protected PageCursorCache cursors = new PageCursorCache();
     // Logger
     protected Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.content");
     // UUID Length
@@ -181,7 +186,7 @@ public class CommonContentManager implements ContentManager {
             if ("dc:title".equalsIgnoreCase(sort.getPropertyName())) {
                 field = "title";
             } else if ("dc:date".equalsIgnoreCase(sort.getPropertyName())) {
-                field = "file.date_taken";
+                field = "file.dateTaken";
             }
             if (field != null) {
                 if (sort.isAscending()) {
@@ -191,17 +196,17 @@ public class CommonContentManager implements ContentManager {
                 }
             }
         }
-        // Get images from library
         List<? extends Image> images;
-
-        int start = -1;
-        int max = -1;
-        try {
-            start = (int) startIndex;
-            max = (int) maxCount;
-        } catch (Exception ignore) {
+        if (StringUtils.isNotBlank(searchCriteria.getKeywords())) {
+            // Search the library index, best matches first
+            images = this.mediaLibrary.searchImages(searchCriteria.getKeywords(), (int) startIndex, (int) maxCount);
+        } else {
+            // Get images from library, a sequential browse continues from the cursor left by the previous page
+            PageCursor cursor = this.cursors.get("images", sorts, startIndex);
+            Page<? extends Image> page = this.mediaLibrary.getImages(cursor, (int) maxCount);
+            this.cursors.put("images", page.getNext());
+            images = page.getItems();
         }
-        images = this.mediaLibrary.getImages(start, max, sorts);
 
         // Results
         List<VisualPictureItem> pictures = new ArrayList<VisualPictureItem>();
@@ -296,6 +301,9 @@ public class CommonContentManager implements ContentManager {
 
     // Search Image Count
     public long searchImageCount(String containerId, SearchCriterion searchCriteria, Filter filter, long startIndex, long requestCount, SortCriterion[] orderBy) {
+        if (StringUtils.isNotBlank(searchCriteria.getKeywords())) {
+            return this.mediaLibrary.searchImagesCount(searchCriteria.getKeywords());
+        }
         return this.mediaLibrary.getImagesCount();
     }
 
@@ -306,7 +314,9 @@ public class CommonContentManager implements ContentManager {
         for (SortCriterion sort : orderBy) {
             String field = null;
             if ("dc:title".equalsIgnoreCase(sort.getPropertyName())) {
-                field = "album";
+                field = "name";
+            } else if ("dc:date".equalsIgnoreCase(sort.getPropertyName())) {
+                field = "newestDate";
             }
             if (field != null) {
                 if (sort.isAscending()) {
@@ -318,20 +328,22 @@ public class CommonContentManager implements ContentManager {
         }
         // Result
         List<PicturesStorageFolderContainer> containers = new ArrayList<PicturesStorageFolderContainer>();
-        // Get image albums from Chii2 Media Library
-        List<String> albums;
+        // Get image albums with their statistics from Chii2 Media Library, one read for all of them
+        List<? extends ImageAlbum> albums;
         try {
-            albums = this.mediaLibrary.getImageAlbums((int) startIndex, (int) maxCount, sorts);
+            albums = this.mediaLibrary.getImageAlbumList((int) startIndex, (int) maxCount, sorts);
         } catch (IllegalArgumentException e) {
-            albums = this.mediaLibrary.getImageAlbums(-1, -1, null);
+            albums = this.mediaLibrary.getImageAlbumList(-1, -1, null);
         }
 
         // Add to result
         if (albums != null) {
-            for (String album : albums) {
-                if (StringUtils.isNotEmpty(album)) {
-                    String id = this.forgeContainerId(album, PICTURES_STORAGE_FOLDER_PREFIX);
-                    containers.add(new PicturesStorageFolderContainer(filter, id, album));
+            for (ImageAlbum album : albums) {
+                if (StringUtils.isNotEmpty(album.getName())) {
+                    String id = this.forgeContainerId(album.getName(), PICTURES_STORAGE_FOLDER_PREFIX);
+                    PicturesStorageFolderContainer container = new PicturesStorageFolderContainer(filter, id, album.getName());
+                    container.setChildCount((int) album.getImageCount());
+                    containers.add(container);
                 }
             }
             return containers;
@@ -354,7 +366,7 @@ public class CommonContentManager implements ContentManager {
             if ("dc:title".equalsIgnoreCase(sort.getPropertyName())) {
                 field = "title";
             } else if ("dc:date".equalsIgnoreCase(sort.getPropertyName())) {
-                field = "file.date_taken";
+                field = "file.dateTaken";
             }
             if (field != null) {
                 if (sort.isAscending()) {
@@ -364,17 +376,11 @@ public class CommonContentManager implements ContentManager {
                 }
             }
         }
-        // Get images from library
-        List<? extends Image> images;
-
-        int start = -1;
-        int max = -1;
-        try {
-            start = (int) startIndex;
-            max = (int) maxCount;
-        } catch (Exception ignore) {
-        }
-        images = this.mediaLibrary.getImagesByField("album", album, true, start, max, sorts);
+        // Get images from library, a sequential browse continues from the cursor left by the previous page
+        PageCursor cursor = this.cursors.get("album:" + album, sorts, startIndex);
+        Page<? extends Image> page = this.mediaLibrary.getImagesByField("album", album, true, cursor, (int) maxCount);
+        this.cursors.put("album:" + album, page.getNext());
+        List<? extends Image> images = page.getItems();
 
         // Results
         List<VisualPictureItem> pictures = new ArrayList<VisualPictureItem>();
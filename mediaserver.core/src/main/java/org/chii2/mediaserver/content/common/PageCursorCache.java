@@ -0,0 +1,125 @@
+package org.chii2.mediaserver.content.common;
+
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Page Cursor Cache
+ * Maps the UPnP start index of a browse to the library cursor left by the previous page,
+ * so a renderer walking a large container sequentially pays the same for every page.
+ * Requests without a cached cursor start by offset, like a jump in the middle of a container.
+ */
+public class PageCursorCache {
+    // Default Max Entries
+    private final static int DEFAULT_MAX_SIZE = 256;
+    // Default Time to Live (ms), positions drift once the library changes
+    private final static long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+    // Entries in access order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Max Entries
+    private final int maxSize;
+    // Time to Live (ms)
+    private final long timeToLive;
+
+    /**
+     * Constructor
+     */
+    public PageCursorCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxSize    Max Entries
+     * @param timeToLive Time to Live (ms)
+     */
+    public PageCursorCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Get the cursor for a browse position
+     * The cursor is created when nothing is cached, starting at the position by offset.
+     *
+     * @param browse     Browse Key (container and query)
+     * @param sorts      Sort (by <field, sortType>)
+     * @param startIndex Start Index
+     * @return Page Cursor
+     */
+    public synchronized PageCursor get(String browse, Map<String, String> sorts, long startIndex) {
+        PageCursor start = new PageCursor(sorts, startIndex);
+        String key = forgeKey(browse, start.getSorts(), startIndex);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires > System.currentTimeMillis()) {
+            return entry.cursor;
+        }
+        if (entry != null) {
+            entries.remove(key);
+        }
+        return start;
+    }
+
+    /**
+     * Remember the cursor after a page, the next sequential browse starts from it
+     *
+     * @param browse Browse Key (container and query)
+     * @param cursor Next Cursor
+     */
+    public synchronized void put(String browse, PageCursor cursor) {
+        if (!cursor.isSeek()) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.cursor = cursor;
+        entry.expires = System.currentTimeMillis() + timeToLive;
+        entries.put(forgeKey(browse, cursor.getSorts(), cursor.getPosition()), entry);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Forget all cursors
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get cached entries count
+     *
+     * @return Size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forge the cache key
+     *
+     * @param browse     Browse Key
+     * @param sorts      Sort
+     * @param startIndex Start Index
+     * @return Cache Key
+     */
+    private String forgeKey(String browse, Map<String, String> sorts, long startIndex) {
+        return browse + "|" + sorts + "|" + startIndex;
+    }
+
+    /**
+     * Cache Entry
+     */
+    private static class Entry {
+        // Cursor
+        private PageCursor cursor;
+        // Expire Time (ms)
+        private long expires;
+    }
+}
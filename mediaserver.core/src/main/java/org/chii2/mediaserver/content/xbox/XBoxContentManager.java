@@ -4,7 +4,9 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DurationFormatUtils;
 import org.chii2.medialibrary.api.core.MediaLibraryService;
 import org.chii2.medialibrary.api.persistence.entity.Image;
-import org.chii2.medialibrary.api.persistence.entity.Movie;
+import org.chii2.medialibrary.api.persistence.page.Page;
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.medialibrary.api.persistence.summary.MovieSummary;
 import org.chii2.mediaserver.api.content.container.VisualContainer;
 import org.chii2.mediaserver.api.content.item.VisualPictureItem;
 import org.chii2.mediaserver.api.content.item.VisualVideoItem;
@@ -140,7 +142,7 @@ public class XBoxContentManager extends CommonContentManager {
             if ("dc:title".equalsIgnoreCase(sort.getPropertyName())) {
                 field = "title";
             } else if ("dc:date".equalsIgnoreCase(sort.getPropertyName())) {
-                field = "file.date_taken";
+                field = "file.dateTaken";
             }
             if (field != null) {
                 if (sort.isAscending()) {
@@ -150,17 +152,11 @@ public class XBoxContentManager extends CommonContentManager {
                 }
             }
         }
-        // Get images from library
-        List<? extends Image> images;
-
-        int start = -1;
-        int max = -1;
-        try {
-            start = (int) startIndex;
-            max = (int) maxCount;
-        } catch (Exception ignore) {
-        }
-        images = this.mediaLibrary.getImagesByField("album", album, true, start, max, sorts);
+        // Get images from library, a sequential browse continues from the cursor left by the previous page
+        PageCursor cursor = this.cursors.get("album:" + album, sorts, startIndex);
+        Page<? extends Image> page = this.mediaLibrary.getImagesByField("album", album, true, cursor, (int) maxCount);
+        this.cursors.put("album:" + album, page.getNext());
+        List<? extends Image> images = page.getItems();
 
         // Results
         List<VisualPictureItem> pictures = new ArrayList<VisualPictureItem>();
@@ -294,17 +290,21 @@ public class XBoxContentManager extends CommonContentManager {
                 }
             }
         }
-        // Get movies from media library
-        List<? extends Movie> movies;
+        // Get movie summaries from media library, only the columns needed here are loaded
+        // A sequential browse continues from the cursor left by the previous page
+        List<? extends MovieSummary> movies;
         try {
-            movies = mediaLibrary.getMovies((int) startIndex, (int) maxCount, sorts);
+            PageCursor cursor = this.cursors.get("movies", sorts, startIndex);
+            Page<? extends MovieSummary> page = mediaLibrary.getMovieSummaries(cursor, (int) maxCount);
+            this.cursors.put("movies", page.getNext());
+            movies = page.getItems();
         } catch (IllegalArgumentException e) {
-            movies = mediaLibrary.getMovies();
+            movies = mediaLibrary.getMovieSummaries(-1, -1, null);
         }
 
         // Create and fill movie information
         List<MovieItem> movieItems = new ArrayList<MovieItem>();
-        for (Movie movie : movies) {
+        for (MovieSummary movie : movies) {
 
             // ID from library
             String libraryId = movie.getId();
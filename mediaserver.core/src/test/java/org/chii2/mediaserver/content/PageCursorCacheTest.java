@@ -0,0 +1,53 @@
+package org.chii2.mediaserver.content;
+
+import org.chii2.medialibrary.api.persistence.page.PageCursor;
+import org.chii2.mediaserver.content.common.PageCursorCache;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test for Page Cursor Cache
+ */
+public class PageCursorCacheTest {
+
+    @Test
+    public void SequentialBrowseTest() {
+        PageCursorCache cache = new PageCursorCache();
+        Map<String, String> sorts = new HashMap<>();
+        sorts.put("title", "asc");
+        // First page starts by offset
+        PageCursor first = cache.get("album:Singapore", sorts, 0);
+        assert !first.isSeek();
+        assert first.getPosition() == 0;
+        // Next page continues from the cursor left by the previous one
+        PageCursor next = new PageCursor(sorts, new Object[]{"IMG_0050", "19f08e4e-b25e-4a2f-9e2b-55d2d40a4261"}, 50);
+        cache.put("album:Singapore", next);
+        assert cache.get("album:Singapore", sorts, 50) == next;
+        // Other containers, sorts and positions start by offset
+        assert !cache.get("album:Shanghai", sorts, 50).isSeek();
+        assert !cache.get("album:Singapore", null, 50).isSeek();
+        PageCursor jump = cache.get("album:Singapore", sorts, 500);
+        assert !jump.isSeek();
+        assert jump.getPosition() == 500;
+        // Offset cursors are not remembered
+        cache.put("album:Singapore", jump);
+        assert cache.size() == 1;
+    }
+
+    @Test
+    public void EvictionTest() throws InterruptedException {
+        PageCursorCache cache = new PageCursorCache(2, 50);
+        for (int i = 1; i <= 3; i++) {
+            cache.put("images", new PageCursor(null, new Object[]{"id" + i}, i * 10));
+        }
+        // The oldest cursor is evicted
+        assert cache.size() == 2;
+        assert !cache.get("images", null, 10).isSeek();
+        assert cache.get("images", null, 30).isSeek();
+        // Cursors expire
+        Thread.sleep(100);
+        assert !cache.get("images", null, 30).isSeek();
+    }
+}
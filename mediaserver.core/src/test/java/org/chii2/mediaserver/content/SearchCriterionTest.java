@@ -13,4 +13,13 @@ public class SearchCriterionTest {
         SearchCriterion searchCriterion = SearchCriterion.parseSearchCriterion("upnp:class derivedfrom \"object.item.imageItem\" and @refID exists false");
         assert SearchCriterion.SearchType.SEARCH_IMAGE == searchCriterion.getSearchType();
     }
+
+    @Test
+    public void parseKeywordsTest() {
+        SearchCriterion searchCriterion = SearchCriterion.parseSearchCriterion("(upnp:class derivedfrom \"object.item.imageItem\") and (dc:title contains \"Tom and Jerry\" or upnp:album contains \"Singapore\")");
+        assert SearchCriterion.SearchType.SEARCH_IMAGE == searchCriterion.getSearchType();
+        assert "Tom and Jerry Singapore".equals(searchCriterion.getKeywords());
+        // No text property
+        assert SearchCriterion.parseSearchCriterion("upnp:class derivedfrom \"object.item.imageItem\" and @refID exists false").getKeywords() == null;
+    }
 }
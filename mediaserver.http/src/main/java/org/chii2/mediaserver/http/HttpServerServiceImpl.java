@@ -5,6 +5,7 @@ import org.chii2.medialibrary.api.core.MediaLibraryService;
 import org.chii2.mediaserver.api.http.HttpServerService;
 import org.chii2.mediaserver.api.http.HttpUrl;
 import org.chii2.mediaserver.http.bio.RequestListenerThread;
+import org.chii2.mediaserver.http.nio.ReactorListenerThread;
 import org.chii2.transcoder.api.core.TranscoderService;
 import org.chii2.util.ConfigUtils;
 import org.osgi.service.cm.Configuration;
@@ -36,12 +37,26 @@ public class HttpServerServiceImpl implements HttpServerService {
     private final static String SERVER_PORT = "http.port";
     // Sever Thread configuration
     private final static String SERVER_THREAD = "http.thread";
+    // Server Worker configuration
+    private final static String SERVER_WORKER = "http.worker";
+    // Server Queue configuration
+    private final static String SERVER_QUEUE = "http.queue";
+    // Server Mode configuration
+    private final static String SERVER_MODE = "http.mode";
     // Server Host
     private InetAddress host;
     // Server Port
     private int port = 8888;
     // Server Thread
     private int threadCount = 2;
+    // Server Worker
+    private int workerCount = 16;
+    // Server Queue, requests waiting for a worker
+    private int queueSize = 16;
+    // Server Mode, "bio" or "nio"
+    private String mode = "bio";
+    // NIO Server Thread
+    private ReactorListenerThread reactorThread;
     // Logger
     private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
 
@@ -99,6 +114,41 @@ public class HttpServerServiceImpl implements HttpServerService {
             } else {
                 logger.debug("HttpServer load default thread count.");
             }
+
+            // Load preferred http server worker number
+            String worker = ConfigUtils.loadConfiguration(props, SERVER_WORKER);
+            if (StringUtils.isNotBlank(worker)) {
+                try {
+                    this.workerCount = Integer.parseInt(worker);
+                    logger.debug("HttpServer configuration <{}> loaded.", SERVER_WORKER);
+                } catch (NumberFormatException e) {
+                    logger.error("HttpServer configuration <{}> is not valid.", SERVER_WORKER);
+                }
+            } else {
+                logger.debug("HttpServer load default worker count.");
+            }
+
+            // Load preferred http server queue size
+            String queue = ConfigUtils.loadConfiguration(props, SERVER_QUEUE);
+            if (StringUtils.isNotBlank(queue)) {
+                try {
+                    this.queueSize = Integer.parseInt(queue);
+                    logger.debug("HttpServer configuration <{}> loaded.", SERVER_QUEUE);
+                } catch (NumberFormatException e) {
+                    logger.error("HttpServer configuration <{}> is not valid.", SERVER_QUEUE);
+                }
+            } else {
+                logger.debug("HttpServer load default queue size.");
+            }
+
+            // Load preferred http server mode
+            String mode = ConfigUtils.loadConfiguration(props, SERVER_MODE);
+            if ("bio".equalsIgnoreCase(mode) || "nio".equalsIgnoreCase(mode)) {
+                this.mode = mode.toLowerCase();
+                logger.debug("HttpServer configuration <{}> loaded.", SERVER_MODE);
+            } else {
+                logger.debug("HttpServer load default mode.");
+            }
         }
 
         // Load default ip address
@@ -110,7 +160,13 @@ public class HttpServerServiceImpl implements HttpServerService {
         // Start Server
         if (this.host != null && this.port > 0) {
             try {
-                Thread thread = new RequestListenerThread(port, host, mediaLibrary, transcoder);
+                Thread thread;
+                if ("nio".equals(this.mode)) {
+                    this.reactorThread = new ReactorListenerThread(port, host, Math.max(1, threadCount), Math.max(1, workerCount), Math.max(1, queueSize), mediaLibrary, transcoder);
+                    thread = this.reactorThread;
+                } else {
+                    thread = new RequestListenerThread(port, host, mediaLibrary, transcoder);
+                }
                 thread.setDaemon(false);
                 thread.start();
             } catch (IOException e) {
@@ -127,6 +183,9 @@ public class HttpServerServiceImpl implements HttpServerService {
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Chii2 Media Server Http Server Service destroy.");
+        if (this.reactorThread != null) {
+            this.reactorThread.shutdown();
+        }
     }
 
     @Override
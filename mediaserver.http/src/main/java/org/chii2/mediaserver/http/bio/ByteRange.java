@@ -0,0 +1,122 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP Byte Range (both ends inclusive)
+ */
+public class ByteRange {
+    // Range Unit
+    private final static String BYTES_UNIT = "bytes=";
+    // Max ranges in one request, more than this and the whole content is served instead
+    private final static int MAX_RANGES = 16;
+    // Range Begin
+    private final long begin;
+    // Range End
+    private final long end;
+
+    /**
+     * Constructor
+     *
+     * @param begin Range Begin
+     * @param end   Range End
+     */
+    public ByteRange(long begin, long end) {
+        this.begin = begin;
+        this.end = end;
+    }
+
+    /**
+     * Parse HTTP Range header value against a content length
+     * Supports "a-b", open "a-" and suffix "-n" specs, comma separated
+     *
+     * @param value      Range Header Value
+     * @param totalSize  Content Length
+     * @return Satisfiable ranges, empty list if none satisfiable, null if the header should be ignored
+     */
+    public static List<ByteRange> parse(String value, long totalSize) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        value = value.trim();
+        if (!StringUtils.startsWithIgnoreCase(value, BYTES_UNIT)) {
+            return null;
+        }
+        String[] specs = StringUtils.split(value.substring(BYTES_UNIT.length()), ',');
+        if (specs == null || specs.length == 0 || specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int index = spec.indexOf('-');
+            if (index < 0) {
+                return null;
+            }
+            String first = spec.substring(0, index).trim();
+            String last = spec.substring(index + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range, the last n bytes
+                long suffix = NumberUtils.toLong(last, -1);
+                if (suffix < 0) {
+                    return null;
+                }
+                if (suffix > 0 && totalSize > 0) {
+                    ranges.add(new ByteRange(Math.max(0, totalSize - suffix), totalSize - 1));
+                }
+            } else {
+                long begin = NumberUtils.toLong(first, -1);
+                long end = last.isEmpty() ? Long.MAX_VALUE : NumberUtils.toLong(last, -1);
+                if (begin < 0 || end < begin) {
+                    return null;
+                }
+                if (begin < totalSize) {
+                    ranges.add(new ByteRange(begin, Math.min(end, totalSize - 1)));
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Get Range Begin
+     *
+     * @return Range Begin
+     */
+    public long getBegin() {
+        return begin;
+    }
+
+    /**
+     * Get Range End
+     *
+     * @return Range End
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Get Range Length
+     *
+     * @return Range Length
+     */
+    public long getLength() {
+        return end - begin + 1;
+    }
+
+    /**
+     * HTTP Content Range Header Value for this range
+     *
+     * @param totalSize Content Length
+     * @return Content Range Header Value
+     */
+    public String toContentRange(long totalSize) {
+        return String.format("bytes %s-%s/%s", begin, end, totalSize);
+    }
+}
@@ -0,0 +1,146 @@
+package org.chii2.mediaserver.http.bio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Segment Index for a movie made of several files (CD1, CD2...)
+ * Files are treated as one continuous content, each file starts at a cumulative offset.
+ */
+public class FileSegmentIndex {
+    // Files
+    private final List<Path> files;
+    // Start offset of each file, the last element is the total size
+    private final long[] offsets;
+    // Created Time
+    private final long created;
+
+    /**
+     * Constructor
+     *
+     * @param files Files
+     * @throws IOException IOException
+     */
+    public FileSegmentIndex(List<Path> files) throws IOException {
+        this.files = new ArrayList<>(files);
+        this.offsets = new long[files.size() + 1];
+        for (int i = 0; i < files.size(); i++) {
+            this.offsets[i + 1] = this.offsets[i] + Files.size(files.get(i));
+        }
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Get Total Size
+     *
+     * @return Total Size
+     */
+    public long getTotalSize() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Get Files
+     *
+     * @return Files
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Get the index of the file which contains position
+     *
+     * @param position Position in the whole content
+     * @return File Index, -1 if out of range
+     */
+    public int getFileIndex(long position) {
+        if (position < 0 || position >= getTotalSize()) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(offsets, position);
+        if (index >= 0) {
+            // Skip empty files which share the same offset
+            while (index + 1 < offsets.length && offsets[index + 1] == position) {
+                index++;
+            }
+            return index;
+        } else {
+            return -index - 2;
+        }
+    }
+
+    /**
+     * Whether this index was built for the same files and is young enough
+     *
+     * @param files  Files
+     * @param maxAge Max Age in milliseconds
+     * @return True if still valid
+     */
+    public boolean isValid(List<Path> files, long maxAge) {
+        return System.currentTimeMillis() - created < maxAge && this.files.equals(files);
+    }
+
+    /**
+     * Transfer a range of the whole content to the target channel.
+     * Each file is positioned directly at the range offset and copied with FileChannel.transferTo,
+     * so the kernel moves the bytes itself when the target is a socket or file channel.
+     *
+     * @param begin  Range Begin
+     * @param end    Range End (inclusive)
+     * @param target Target Channel
+     * @return Bytes actually transferred
+     * @throws IOException IOException
+     */
+    public long transferTo(long begin, long end, WritableByteChannel target) throws IOException {
+        long total = 0;
+        end = Math.min(end, getTotalSize() - 1);
+        int index = getFileIndex(begin);
+        while (index >= 0 && index < files.size() && begin <= end) {
+            long count = Math.min(end + 1, offsets[index + 1]) - begin;
+            long transferred = transferFile(files.get(index), begin - offsets[index], count, target);
+            total = total + transferred;
+            begin = begin + transferred;
+            if (transferred < count) {
+                // File shrunk since the index was built
+                break;
+            }
+            index++;
+        }
+        return total;
+    }
+
+    /**
+     * Transfer part of a file to the target channel
+     *
+     * @param file     File
+     * @param position Position inside the file
+     * @param count    Bytes to transfer
+     * @param target   Target Channel
+     * @return Bytes actually transferred
+     * @throws IOException IOException
+     */
+    private long transferFile(Path file, long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            while (transferred < count) {
+                long l = channel.transferTo(position + transferred, count - transferred, target);
+                if (l <= 0) {
+                    break;
+                }
+                transferred = transferred + l;
+            }
+        } finally {
+            channel.close();
+        }
+        return transferred;
+    }
+}
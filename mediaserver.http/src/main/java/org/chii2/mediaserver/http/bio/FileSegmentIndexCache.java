@@ -0,0 +1,69 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global Cache for movie File Segment Index
+ * A playback produces many Range requests for the same movie, the file sizes are only read once.
+ */
+public class FileSegmentIndexCache {
+    // Singleton
+    private static final FileSegmentIndexCache INSTANCE = new FileSegmentIndexCache();
+    // Max Index Count
+    private final static int MAX_INDEX_COUNT = 64;
+    // Max Index Age (ms), files may be replaced on disk
+    private final static long MAX_INDEX_AGE = 5 * 60 * 1000;
+    // Index Cache in access order
+    private Map<String, FileSegmentIndex> indexCache = Collections.synchronizedMap(new LinkedHashMap<String, FileSegmentIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileSegmentIndex> eldest) {
+            return size() > MAX_INDEX_COUNT;
+        }
+    });
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
+
+    /**
+     * Get File Segment Index Cache Instance
+     *
+     * @return File Segment Index Cache Instance
+     */
+    public static FileSegmentIndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get segment index for movie, build it if not cached or outdated
+     *
+     * @param movieId Movie ID
+     * @param files   Movie Files
+     * @return File Segment Index
+     * @throws IOException IOException
+     */
+    public FileSegmentIndex getIndex(String movieId, List<Path> files) throws IOException {
+        FileSegmentIndex index = indexCache.get(movieId);
+        if (index == null || !index.isValid(files, MAX_INDEX_AGE)) {
+            index = new FileSegmentIndex(files);
+            indexCache.put(movieId, index);
+            logger.debug("Build file segment index for movie {}.", movieId);
+        }
+        return index;
+    }
+
+    /**
+     * Remove segment index for movie
+     *
+     * @param movieId Movie ID
+     */
+    public void invalidate(String movieId) {
+        indexCache.remove(movieId);
+    }
+}
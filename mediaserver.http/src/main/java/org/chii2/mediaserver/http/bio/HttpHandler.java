@@ -2,11 +2,12 @@ package org.chii2.mediaserver.http.bio;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.http.*;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestHandler;
 import org.apache.http.util.EntityUtils;
 import org.chii2.medialibrary.api.core.MediaLibraryService;
+import org.chii2.medialibrary.api.core.Thumbnail;
 import org.chii2.medialibrary.api.persistence.entity.Image;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
 import org.chii2.medialibrary.api.persistence.entity.MovieFile;
@@ -21,8 +22,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -34,6 +37,8 @@ public class HttpHandler implements HttpRequestHandler {
 
     private final MediaLibraryService mediaLibrary;
     private final TranscoderService transcoder;
+    // Seconds a client should wait when transcoding is saturated
+    private final static int RETRY_AFTER = 5;
     // Logger
     private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
 
@@ -97,6 +102,11 @@ public class HttpHandler implements HttpRequestHandler {
                     if (!transcoded) {
                         entity = new ImageEntity(imageFile, mime);
                     } else {
+                        if (!this.transcoder.isImageTranscodingAvailable()) {
+                            setServiceUnavailable(response);
+                            logger.debug("Chii2 Media Server Http Server image transcoding saturated.");
+                            return;
+                        }
                         ImageTranscoderProcess process = this.transcoder.getImageTranscodedProcess(clientProfile, imageFile, image.getType(), image.getWidth(), image.getHeight());
                         entity = new ImageEntity(process, mime);
                     }
@@ -112,25 +122,95 @@ public class HttpHandler implements HttpRequestHandler {
                         for (MovieFile movieFile : movie.getFiles()) {
                             files.add(movieFile.getFile());
                         }
-                        entity = new RangeFileEntity(files, mime, range);
-                        if (range != null) {
+                        FileSegmentIndex segmentIndex = FileSegmentIndexCache.getInstance().getIndex(id, files);
+                        List<ByteRange> ranges = range == null ? null : ByteRange.parse(range.getValue(), segmentIndex.getTotalSize());
+                        if (ranges != null && ranges.isEmpty()) {
+                            // Nothing satisfiable
+                            response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                            response.setHeader("Content-Range", String.format("bytes */%s", segmentIndex.getTotalSize()));
+                            logger.debug("Chii2 Media Server Http Server requested range {} not satisfiable.", range.getValue());
+                            return;
+                        }
+                        RangeFileEntity fileEntity = new RangeFileEntity(segmentIndex, mime, ranges);
+                        fileEntity.setSocketChannel(getSocketChannel(context));
+                        entity = fileEntity;
+                        if (ranges != null) {
                             response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
                         } else {
                             response.setStatusCode(HttpStatus.SC_OK);
                         }
                     } else {
-                        String mime = transcoder.getTranscodedMIME(clientProfile, movie);
-                        List<TranscoderProcess> processes = transcoder.getTranscodedProcesses(clientProfile, movie);
-                        if (range == null) {
-                            entity = new TranscodedEntity(processes, mime);
+                        if (!transcoder.isVideoTranscodingAvailable(clientProfile, movie)) {
+                            setServiceUnavailable(response);
+                            logger.debug("Chii2 Media Server Http Server video transcoding saturated.");
+                            return;
+                        }
+                        if (timeSeek != null) {
+                            // Serve segmented output from the requested time
+                            long start = TimeSeekRange.parseStart(timeSeek.getValue());
+                            if (start < 0 || !transcoder.isTimeSeekSupported(clientProfile, movie)) {
+                                response.setStatusCode(HttpStatus.SC_NOT_ACCEPTABLE);
+                                logger.debug("Chii2 Media Server Http Server time seek {} not acceptable.", timeSeek.getValue());
+                                return;
+                            }
+                            long duration = 0;
+                            for (MovieFile movieFile : movie.getFiles()) {
+                                duration = duration + movieFile.getDuration();
+                            }
+                            long begin = transcoder.getTimeSeekStart(clientProfile, movie, start);
+                            if (begin >= duration) {
+                                response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                                logger.debug("Chii2 Media Server Http Server time seek {} not satisfiable.", timeSeek.getValue());
+                                return;
+                            }
+                            InputStreamEntity timeSeekEntity = new InputStreamEntity(transcoder.getTimeSeekStream(clientProfile, movie, begin), -1);
+                            timeSeekEntity.setContentType(transcoder.getTimeSeekMIME(clientProfile, movie));
+                            entity = timeSeekEntity;
+                            response.setHeader(DLNATransport.TIME_SEEK_RANGE, TimeSeekRange.toHeader(begin, duration));
                             response.setStatusCode(HttpStatus.SC_OK);
                         }
+                        String mime = transcoder.getTranscodedMIME(clientProfile, movie);
+                        List<TranscoderProcess> processes = timeSeek == null ? transcoder.getTranscodedProcesses(clientProfile, movie) : null;
+                        if (processes != null) {
+                            // Ranges are only accepted once the outputs are finished or cached and their size is exact
+                            TranscodedLayout layout = new TranscodedLayout(processes);
+                            response.setHeader("Accept-Ranges", layout.getTotalSize() < 0 ? "none" : "bytes");
+                            List<ByteRange> ranges = range == null || layout.getTotalSize() < 0 ? null : ByteRange.parse(range.getValue(), layout.getTotalSize());
+                            if (ranges != null && ranges.isEmpty()) {
+                                for (TranscoderProcess process : processes) {
+                                    process.cache();
+                                }
+                                response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                                response.setHeader("Content-Range", String.format("bytes */%s", layout.getTotalSize()));
+                                logger.debug("Chii2 Media Server Http Server requested range {} not satisfiable.", range.getValue());
+                                return;
+                            }
+                            if (ranges != null && ranges.size() == 1) {
+                                entity = new RangeTranscodedEntity(layout, mime, ranges.get(0));
+                                response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+                            } else {
+                                // Multiple ranges of a live encode are not served, send the whole content
+                                entity = new TranscodedEntity(layout, mime);
+                                response.setStatusCode(HttpStatus.SC_OK);
+                            }
+                        }
                     }
                 }
             } else if ("moviethumb".equalsIgnoreCase(type)) {
-                byte[] thumb = mediaLibrary.getMovieThumbnailById(id);
+                // Thumbnails are cached in the media library, the client cache is revalidated by entity tag
+                Thumbnail thumb = mediaLibrary.getMovieThumbnail(id);
+                if (thumb != null && matchETag(request.getFirstHeader("If-None-Match"), thumb.getETag())) {
+                    response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+                    response.setHeader("ETag", thumb.getETag());
+                    logger.debug("Chii2 Media Server Http Server movie thumbnail {} not modified.", id);
+                    return;
+                }
+                // Sent straight from the image store file with zero-copy transfer
                 if (thumb != null) {
-                    entity = new ByteArrayEntity(thumb);
+                    RangeFileEntity fileEntity = new RangeFileEntity(new FileSegmentIndex(Collections.singletonList(thumb.getFile())), null, null);
+                    fileEntity.setSocketChannel(getSocketChannel(context));
+                    entity = fileEntity;
+                    response.setHeader("ETag", thumb.getETag());
                     response.setStatusCode(HttpStatus.SC_OK);
                 }
             }
@@ -144,4 +224,53 @@ public class HttpHandler implements HttpRequestHandler {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether an If-None-Match header matches the entity tag
+     *
+     * @param ifNoneMatch If-None-Match Header
+     * @param etag        Quoted Entity Tag
+     * @return True if matched
+     */
+    private boolean matchETag(Header ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.getValue().split(",")) {
+            tag = tag.trim();
+            // Weak comparison is fine for a GET
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ask the client to come back later, transcoding slots are saturated
+     *
+     * @param response Http Response
+     */
+    private void setServiceUnavailable(HttpResponse response) {
+        response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(RETRY_AFTER));
+    }
+
+    /**
+     * Socket channel of the blocking connection serving the request
+     *
+     * @param context Http Context
+     * @return Socket Channel, null if the connection has none (non-blocking server)
+     */
+    private WritableByteChannel getSocketChannel(HttpContext context) {
+        Object channel = context.getAttribute(WorkerThread.SOCKET_CHANNEL);
+        if (channel instanceof WritableByteChannel) {
+            return (WritableByteChannel) channel;
+        } else {
+            return null;
+        }
+    }
+}
@@ -1,69 +1,103 @@
 package org.chii2.mediaserver.http.bio;
 
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.math.NumberUtils;
-import org.apache.http.Header;
-import org.apache.http.HeaderElement;
 import org.apache.http.entity.AbstractHttpEntity;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * FileEntity with Http Range support
+ * A single range is served as is, multiple ranges are served as multipart/byteranges.
  */
 public class RangeFileEntity extends AbstractHttpEntity implements Cloneable {
-    // Buffer Size
-    private final static int BUFFER_SIZE = 4096;
-    // HTTP Range Begin
-    private long rangeBegin;
-    // HTTP Range End
-    private long rangeEnd;
-    // Total Size
-    private long totalSize = 0;
-    // File Index
-    private int fileIndex = 0;
-    // Files
-    private List<Path> files;
+    // Multipart Header Charset
+    private final static Charset ASCII = Charset.forName("US-ASCII");
+    // Line Break
+    private final static String CRLF = "\r\n";
+    // File Segment Index
+    private FileSegmentIndex index;
+    // Requested Ranges, null means the whole content
+    private List<ByteRange> ranges;
+    // Multipart Boundary
+    private String boundary;
+    // Multipart Part Headers
+    private List<byte[]> partHeaders;
+    // Multipart Closing Delimiter
+    private byte[] closingDelimiter;
+    // Socket Channel of the connection, written directly when set
+    private WritableByteChannel socketChannel;
 
     /**
      * Constructor
      *
-     * @param files       Files
+     * @param index       File Segment Index
      * @param contentType Content Type
-     * @param range       HTTP Range Header
-     * @throws java.io.IOException IOException
+     * @param ranges      Satisfiable Ranges, null or empty for the whole content
      */
-    public RangeFileEntity(List<Path> files, String contentType, Header range) throws IOException {
+    public RangeFileEntity(FileSegmentIndex index, String contentType, List<ByteRange> ranges) {
         super();
-        this.files = files;
-        this.rangeBegin = getRangeBegin(range);
-        this.rangeEnd = getRangeEnd(range);
-        for (Path file : files) {
-            this.totalSize = this.totalSize + Files.size(file);
+        this.index = index;
+        if (ranges != null && !ranges.isEmpty()) {
+            this.ranges = ranges;
         }
-        if (this.rangeBegin >= 0 && this.rangeEnd < this.rangeBegin) {
-            this.rangeEnd = this.totalSize - 1;
+        if (isMultipart()) {
+            this.boundary = UUID.randomUUID().toString().replace("-", "");
+            this.partHeaders = new ArrayList<>();
+            for (int i = 0; i < this.ranges.size(); i++) {
+                ByteRange range = this.ranges.get(i);
+                String header = (i == 0 ? "" : CRLF) + "--" + boundary + CRLF +
+                        "Content-Type: " + contentType + CRLF +
+                        "Content-Range: " + range.toContentRange(index.getTotalSize()) + CRLF + CRLF;
+                this.partHeaders.add(header.getBytes(ASCII));
+            }
+            this.closingDelimiter = (CRLF + "--" + boundary + "--" + CRLF).getBytes(ASCII);
+            setContentType("multipart/byteranges; boundary=" + boundary);
+        } else {
+            setContentType(contentType);
         }
-        this.fileIndex = getFileIndex();
-        setContentType(contentType);
     }
 
     /**
      * HTTP Content Range Header Response
      *
-     * @return Content Range Header Value
+     * @return Content Range Header Value, null if not a single range
      */
     public String getContentRange() {
-        if (rangeBegin >= 0 && rangeEnd >= rangeBegin) {
-            return String.format("bytes %s-%s/%s", rangeBegin, rangeEnd, rangeEnd - rangeBegin + 1);
+        if (ranges != null && ranges.size() == 1) {
+            return ranges.get(0).toContentRange(index.getTotalSize());
         } else {
             return null;
         }
     }
 
+    /**
+     * Set the socket channel the output stream ends in.
+     * Ranges are then transferred from the files to the socket without a copy in user space.
+     *
+     * @param socketChannel Socket Channel, null to write through the output stream
+     */
+    public void setSocketChannel(WritableByteChannel socketChannel) {
+        this.socketChannel = socketChannel;
+    }
+
+    /**
+     * Whether the entity is a multipart/byteranges body
+     *
+     * @return True if more than one range requested
+     */
+    public boolean isMultipart() {
+        return ranges != null && ranges.size() > 1;
+    }
+
     @Override
     public boolean isRepeatable() {
         return true;
@@ -71,83 +105,64 @@ public class RangeFileEntity extends AbstractHttpEntity implements Cloneable {
 
     @Override
     public long getContentLength() {
-        if (rangeBegin >= 0 && rangeEnd >= rangeBegin) {
-            return rangeEnd - rangeBegin + 1;
+        if (ranges == null) {
+            return index.getTotalSize();
+        } else if (!isMultipart()) {
+            return ranges.get(0).getLength();
         } else {
-            return totalSize;
+            long length = closingDelimiter.length;
+            for (int i = 0; i < ranges.size(); i++) {
+                length = length + partHeaders.get(i).length + ranges.get(i).getLength();
+            }
+            return length;
         }
     }
 
     @Override
     public InputStream getContent() throws IOException {
-        if (fileIndex < files.size()) {
-            return Files.newInputStream(files.get(fileIndex));
+        if (!index.getFiles().isEmpty()) {
+            return Files.newInputStream(index.getFiles().get(0));
         } else {
             return null;
         }
     }
 
-    @SuppressWarnings({"ConstantConditions"})
     @Override
     public void writeTo(final OutputStream outStream) throws IOException {
         if (outStream == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-
-        byte[] buffer = new byte[BUFFER_SIZE];
-        InputStream inputStream = null;
-        try {
-            inputStream = Files.newInputStream(files.get(fileIndex));
-            if (rangeBegin >= 0 && rangeEnd >= rangeBegin) {
-                long offset = rangeBegin;
-                for (int i = 0; i < fileIndex; i++) {
-                    offset = offset - Files.size(files.get(i));
-                }
-                long realOffset = inputStream.skip(offset);
-                rangeBegin = rangeBegin - (offset - realOffset);
-                long remaining = rangeEnd - rangeBegin + 1;
-                int l;
-                while (remaining > 0) {
-                    l = inputStream.read(buffer, 0, (int) Math.min(BUFFER_SIZE, remaining));
-                    if (l == -1) {
-                        fileIndex++;
-                        if (fileIndex < files.size()) {
-                            if (inputStream != null) {
-                                inputStream.close();
-                            }
-                            inputStream = Files.newInputStream(files.get(fileIndex));
-                            continue;
-                        } else {
-                            break;
-                        }
-                    }
-                    outStream.write(buffer, 0, l);
-                    remaining -= l;
-                }
-            } else {
-                int l;
-                while (true) {
-                    l = inputStream.read(buffer);
-                    if (l == -1) {
-                        fileIndex++;
-                        if (fileIndex < files.size()) {
-                            if (inputStream != null) {
-                                inputStream.close();
-                            }
-                            inputStream = Files.newInputStream(files.get(fileIndex));
-                            continue;
-                        } else {
-                            break;
-                        }
-                    }
-                    outStream.write(buffer, 0, l);
-                }
-            }
+        if (socketChannel != null && socketChannel.isOpen()) {
+            // Push the buffered response head out before writing the body around the stream
+            outStream.flush();
+            writeTo(socketChannel);
+        } else {
+            writeTo(Channels.newChannel(outStream));
             outStream.flush();
-        } finally {
-            if (inputStream != null) {
-                inputStream.close();
+        }
+    }
+
+    /**
+     * Write the requested ranges to the target channel.
+     *
+     * @param target Target Channel
+     * @throws IOException IOException
+     */
+    public void writeTo(final WritableByteChannel target) throws IOException {
+        if (target == null) {
+            throw new IllegalArgumentException("Target channel may not be null");
+        }
+
+        if (ranges == null) {
+            index.transferTo(0, index.getTotalSize() - 1, target);
+        } else if (!isMultipart()) {
+            index.transferTo(ranges.get(0).getBegin(), ranges.get(0).getEnd(), target);
+        } else {
+            for (int i = 0; i < ranges.size(); i++) {
+                writeFully(partHeaders.get(i), target);
+                index.transferTo(ranges.get(i).getBegin(), ranges.get(i).getEnd(), target);
             }
+            writeFully(closingDelimiter, target);
         }
     }
 
@@ -162,45 +177,10 @@ public class RangeFileEntity extends AbstractHttpEntity implements Cloneable {
         return super.clone();
     }
 
-    private int getFileIndex() throws IOException {
-        if (rangeBegin >= 0 && files != null && !files.isEmpty()) {
-            int index;
-            long size = 0;
-            for (index = 0; index < files.size(); index++) {
-                size = size + Files.size(files.get(index));
-                if (rangeBegin < size) {
-                    return index;
-                }
-            }
-        }
-        return 0;
-    }
-
-    private long getRangeBegin(Header range) {
-        if (range != null) {
-            HeaderElement[] elements = range.getElements();
-            if (elements != null && elements.length > 0) {
-                String rangeValue = elements[0].getValue();
-                int index = rangeValue.indexOf("-");
-                if (index > 0) {
-                    return NumberUtils.toLong(StringUtils.trim(rangeValue.substring(0, index)), -1);
-                }
-            }
-        }
-        return -1;
-    }
-
-    private long getRangeEnd(Header range) {
-        if (range != null) {
-            HeaderElement[] elements = range.getElements();
-            if (elements != null && elements.length > 0) {
-                String rangeValue = elements[0].getValue();
-                int index = rangeValue.indexOf("-");
-                if (index > 0 && rangeValue.length() > index + 1) {
-                    return NumberUtils.toLong(StringUtils.trim(rangeValue.substring(index + 1)), -1);
-                }
-            }
+    private void writeFully(byte[] bytes, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
         }
-        return -1;
     }
 }
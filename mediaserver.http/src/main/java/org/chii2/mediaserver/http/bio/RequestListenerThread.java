@@ -17,22 +17,27 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * Request Listener Thread
+ * Connections are accepted through a server socket channel, so file entities can transfer to the socket channel.
  */
 public class RequestListenerThread extends Thread {
 
-    private final ServerSocket serversocket;
+    private final ServerSocketChannel serverchannel;
     private final HttpParams params;
     private final HttpService httpService;
     // Logger
     private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
 
     public RequestListenerThread(int port, InetAddress address, MediaLibraryService library, TranscoderService transcoder) throws IOException {
-        this.serversocket = new ServerSocket(port, 50, address);
+        this.serverchannel = ServerSocketChannel.open();
+        this.serverchannel.socket().bind(new InetSocketAddress(address, port), 50);
         this.params = new SyncBasicHttpParams();
         this.params
                 .setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 5000)
@@ -64,20 +69,21 @@ public class RequestListenerThread extends Thread {
     }
 
     public void run() {
-        logger.debug("Request Listener listening on port {}.", this.serversocket.getLocalPort());
+        logger.debug("Request Listener listening on port {}.", this.serverchannel.socket().getLocalPort());
         while (!Thread.interrupted()) {
             try {
                 // Set up HTTP connection
-                Socket socket = this.serversocket.accept();
+                SocketChannel channel = this.serverchannel.accept();
+                Socket socket = channel.socket();
                 DefaultHttpServerConnection conn = new DefaultHttpServerConnection();
                 logger.info("Incoming connection from " + socket.getInetAddress());
                 conn.bind(socket, this.params);
 
                 // Start worker thread
-                Thread t = new WorkerThread(this.httpService, conn);
+                Thread t = new WorkerThread(this.httpService, conn, channel);
                 t.setDaemon(true);
                 t.start();
-            } catch (InterruptedIOException ex) {
+            } catch (InterruptedIOException | ClosedByInterruptException ex) {
                 break;
             } catch (IOException e) {
                 logger.error("I/O error initialising connection thread: {}", e.getMessage());
@@ -15,11 +15,15 @@ public class ResponseContentRange implements HttpResponseInterceptor {
         if (response == null) {
             throw new IllegalArgumentException("HTTP request may not be null");
         }
+        ProtocolVersion ver = response.getStatusLine().getProtocolVersion();
+        int status = response.getStatusLine().getStatusCode();
+        // Unsatisfiable range responses carry their own Content-Range
+        if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+            return;
+        }
         if (response.containsHeader("Content-Range")) {
             throw new ProtocolException("Content-Range header already present");
         }
-        ProtocolVersion ver = response.getStatusLine().getProtocolVersion();
-        int status = response.getStatusLine().getStatusCode();
         HttpEntity entity = response.getEntity();
         if (ver.compareToVersion(HttpVersion.HTTP_1_1) >= 0 && entity instanceof RangeFileEntity && status == HttpStatus.SC_PARTIAL_CONTENT) {
             RangeFileEntity rangeFileEntity = (RangeFileEntity) entity;
@@ -0,0 +1,68 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * DLNA TimeSeekRange.dlna.org header (npt time)
+ */
+public class TimeSeekRange {
+    // Time Unit
+    private final static String NPT_UNIT = "npt=";
+
+    /**
+     * Parse the start time of a TimeSeekRange header value
+     * Supports seconds "123.45" and "hh:mm:ss.sss", the end time is ignored
+     *
+     * @param value TimeSeekRange Header Value
+     * @return Start Time in milliseconds, -1 if not valid
+     */
+    public static long parseStart(String value) {
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        value = value.trim();
+        if (!StringUtils.startsWithIgnoreCase(value, NPT_UNIT)) {
+            return -1;
+        }
+        value = value.substring(NPT_UNIT.length());
+        int index = value.indexOf('-');
+        if (index <= 0) {
+            return -1;
+        }
+        return parseTime(value.substring(0, index).trim());
+    }
+
+    /**
+     * Format the TimeSeekRange response header value
+     *
+     * @param start    Start Time in milliseconds
+     * @param duration Total Duration in milliseconds
+     * @return Header Value
+     */
+    public static String toHeader(long start, long duration) {
+        return String.format(Locale.ENGLISH, "npt=%.3f-%.3f/%.3f", start / 1000.0, duration / 1000.0, duration / 1000.0);
+    }
+
+    private static long parseTime(String time) {
+        try {
+            String[] parts = StringUtils.split(time, ':');
+            if (parts.length == 1) {
+                return Math.round(Double.parseDouble(parts[0]) * 1000);
+            } else if (parts.length == 3) {
+                long hours = Long.parseLong(parts[0]);
+                long minutes = Long.parseLong(parts[1]);
+                double seconds = Double.parseDouble(parts[2]);
+                if (hours < 0 || minutes < 0 || minutes > 59 || seconds < 0 || seconds >= 60) {
+                    return -1;
+                }
+                return (hours * 3600 + minutes * 60) * 1000 + Math.round(seconds * 1000);
+            } else {
+                return -1;
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
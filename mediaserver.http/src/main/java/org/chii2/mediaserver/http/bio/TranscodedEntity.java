@@ -12,14 +12,11 @@ import java.util.List;
 
 /**
  * Transcoded Entity
+ * Content length is the exact size of finished or cached outputs, outputs still encoding are sent chunked.
  */
 public class TranscodedEntity extends AbstractHttpEntity {
-    // Buffer Size
-    private final static int BUFFER_SIZE = 4096;
-    // Process
-    private List<TranscoderProcess> processes;
-    // Index
-    private int index;
+    // Layout
+    private TranscodedLayout layout;
     // Logger
     private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
 
@@ -29,8 +26,17 @@ public class TranscodedEntity extends AbstractHttpEntity {
      * @param contentType Content Type
      */
     public TranscodedEntity(List<TranscoderProcess> processes, String contentType) {
+        this(new TranscodedLayout(processes), contentType);
+    }
+
+    /**
+     * Constructor
+     * @param layout Transcoded Layout
+     * @param contentType Content Type
+     */
+    public TranscodedEntity(TranscodedLayout layout, String contentType) {
         super();
-        this.processes = processes;
+        this.layout = layout;
         setContentType(contentType);
     }
 
@@ -41,19 +47,20 @@ public class TranscodedEntity extends AbstractHttpEntity {
 
     @Override
     public long getContentLength() {
-        return 17554021;
+        return layout.getTotalSize();
     }
 
     @Override
     public InputStream getContent() throws IOException, IllegalStateException {
-        if (index >= processes.size()) {
+        List<TranscoderProcess> processes = layout.getProcesses();
+        if (processes.isEmpty()) {
             return null;
         }
-        if (!processes.get(index).isStarted()) {
-            processes.get(index).init();
+        if (!processes.get(0).isStarted()) {
+            processes.get(0).init();
         }
-        if (processes.get(index).isStarted() && !processes.get(index).isStopped()) {
-            return processes.get(index).getOutputFileStream();
+        if (processes.get(0).isStarted() && !processes.get(0).isStopped()) {
+            return processes.get(0).getOutputFileStream();
         } else {
             return null;
         }
@@ -65,47 +72,14 @@ public class TranscodedEntity extends AbstractHttpEntity {
             throw new IllegalArgumentException("Output stream may not be null");
         }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
-        InputStream inputStream = null;
         try {
-            if (!processes.get(index).isStarted()) {
-                processes.get(index).init();
-            }
-            if (processes.get(index).isStarted() && !processes.get(index).isStopped()) {
-                inputStream = processes.get(index).getOutputFileStream();
-                {
-                    int l;
-                    while (true) {
-                        l = inputStream.read(buffer);
-                        if (l == -1) {
-                            index++;
-                            if (index < processes.size()) {
-                                inputStream.close();
-                                if (!processes.get(index).isStarted()) {
-                                    processes.get(index).init();
-                                }
-                                if (processes.get(index).isStarted() && !processes.get(index).isStopped()) {
-                                    inputStream = processes.get(index).getOutputFileStream();
-                                    continue;
-                                } else {
-                                    break;
-                                }
-                            } else {
-                                break;
-                            }
-                        }
-                        outStream.write(buffer, 0, l);
-                    }
-                }
-                outStream.flush();
-            }
-        } catch (Exception e) {
+            layout.writeTo(outStream, 0, layout.getTotalSize() - 1);
+        } catch (IOException e) {
+            // Rethrow so the connection is closed instead of left short of the content length
             logger.warn("Transcoded Entity error: {}.", e.getMessage());
+            throw e;
         } finally {
-            if (inputStream != null) {
-                inputStream.close();
-            }
-            for (TranscoderProcess process : processes) {
+            for (TranscoderProcess process : layout.getProcesses()) {
                 process.destroy();
             }
         }
@@ -0,0 +1,148 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Byte layout of transcoded outputs served as one content
+ * The size is only known once every output is finished or cached, it is then exact and taken
+ * when the response is created, so Content-Length and Content-Range always match the bytes sent.
+ * While any output is still encoding the size is unknown, the content is sent as is without ranges.
+ * Media bytes are never cut or padded, a container like MP4 is broken by either.
+ */
+public class TranscodedLayout {
+    // Buffer Size
+    private final static int BUFFER_SIZE = 4096;
+    // Processes
+    private final List<TranscoderProcess> processes;
+    // Output Sizes, -1 if still encoding
+    private final long[] sizes;
+    // Total Size, -1 if any output is still encoding
+    private final long totalSize;
+
+    /**
+     * Constructor
+     *
+     * @param processes Transcoder Processes
+     */
+    public TranscodedLayout(List<TranscoderProcess> processes) {
+        this.processes = processes;
+        this.sizes = new long[processes.size()];
+        long total = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            TranscoderProcess process = processes.get(i);
+            sizes[i] = process.isFinished() ? process.getCurrentSize() : -1;
+            if (sizes[i] < 0 || total < 0) {
+                total = -1;
+            } else {
+                total = total + sizes[i];
+            }
+        }
+        this.totalSize = processes.isEmpty() ? -1 : total;
+    }
+
+    /**
+     * Get Processes
+     *
+     * @return Transcoder Processes
+     */
+    public List<TranscoderProcess> getProcesses() {
+        return processes;
+    }
+
+    /**
+     * Get Total Size
+     *
+     * @return Total Size, -1 if still encoding
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Write a byte range of the content, both ends inclusive
+     * If the total size is unknown, the range is ignored and every output is written as is.
+     *
+     * @param outStream Output Stream
+     * @param begin     Range Begin
+     * @param end       Range End
+     * @throws IOException Output can not be produced or written
+     */
+    public void writeTo(OutputStream outStream, long begin, long end) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long offset = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            if (totalSize < 0) {
+                writeOutput(processes.get(i), 0, -1, outStream, buffer);
+                continue;
+            }
+            long size = sizes[i];
+            if (offset > end) {
+                break;
+            }
+            if (offset + size > begin && size > 0) {
+                long from = Math.max(begin, offset) - offset;
+                long to = Math.min(end, offset + size - 1) - offset;
+                writeOutput(processes.get(i), from, to - from + 1, outStream, buffer);
+            }
+            offset = offset + size;
+        }
+        outStream.flush();
+    }
+
+    /**
+     * Write part of one process output
+     *
+     * @param process   Transcoder Process
+     * @param skip      Bytes to skip
+     * @param length    Bytes to write, -1 to write until the output ends
+     * @param outStream Output Stream
+     * @param buffer    Buffer
+     * @throws IOException Output can not be produced or written, or ended before the length
+     */
+    private void writeOutput(TranscoderProcess process, long skip, long length, OutputStream outStream, byte[] buffer) throws IOException {
+        if (!process.isStarted()) {
+            process.init();
+        }
+        if (!process.isStarted() || (process.isStopped() && !process.isFinished())) {
+            throw new IOException("Transcoder process " + process.getRequestId() + " not running.");
+        }
+        InputStream inputStream = process.getOutputFileStream();
+        if (inputStream == null) {
+            throw new IOException("Transcoder process " + process.getRequestId() + " has no output.");
+        }
+        // Skipping beyond the current end is fine, reads wait until the output gets there
+        long remaining = skip;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                int l = inputStream.read(buffer, 0, (int) Math.min(BUFFER_SIZE, remaining));
+                if (l == -1) {
+                    break;
+                }
+                skipped = l;
+            }
+            remaining = remaining - skipped;
+        }
+        remaining = length < 0 ? Long.MAX_VALUE : length;
+        while (remaining > 0) {
+            int l = inputStream.read(buffer, 0, (int) Math.min(BUFFER_SIZE, remaining));
+            if (l == -1) {
+                break;
+            }
+            outStream.write(buffer, 0, l);
+            remaining = remaining - l;
+        }
+        if (length < 0 && !process.isFinished()) {
+            throw new IOException("Transcoder process " + process.getRequestId() + " stopped before the end.");
+        }
+        if (length >= 0 && remaining > 0) {
+            // The output changed after the size was taken, the connection is closed instead of sending other bytes
+            throw new IOException("Transcoder process " + process.getRequestId() + " output shorter than its size.");
+        }
+    }
+}
@@ -10,28 +10,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.SocketChannel;
 
 /**
  * Worker Thread
  */
 public class WorkerThread extends Thread {
 
+    // Context attribute of the connection socket channel
+    public final static String SOCKET_CHANNEL = "chii2.socket-channel";
+
     private final HttpService httpservice;
     private final HttpServerConnection conn;
+    // Connection Socket Channel
+    private final SocketChannel channel;
     // Logger
     private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
 
     public WorkerThread(
             final HttpService httpservice,
-            final HttpServerConnection conn) {
+            final HttpServerConnection conn,
+            final SocketChannel channel) {
         super();
         this.httpservice = httpservice;
         this.conn = conn;
+        this.channel = channel;
     }
 
     public void run() {
         logger.info("Create a new connection thread.");
         HttpContext context = new BasicHttpContext(null);
+        context.setAttribute(SOCKET_CHANNEL, this.channel);
         try {
             while (!Thread.interrupted() && this.conn.isOpen()) {
                 this.httpservice.handleRequest(this.conn, context);
@@ -0,0 +1,211 @@
+package org.chii2.mediaserver.http.nio;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
+import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
+import org.apache.http.nio.protocol.ThrottlingHttpServiceHandler;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.ListeningIOReactor;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.SyncBasicHttpParams;
+import org.apache.http.protocol.*;
+import org.chii2.medialibrary.api.core.MediaLibraryService;
+import org.chii2.mediaserver.http.bio.HttpHandler;
+import org.chii2.mediaserver.http.bio.ResponseContentRange;
+import org.chii2.transcoder.api.core.TranscoderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactor Listener Thread
+ * Connections are multiplexed on a few I/O reactor threads, while requests are handled by a bounded worker pool.
+ * Idle keep-alive connections no longer hold a thread each.
+ * A running stream holds its worker, requests beyond the bounded queue are answered 503 with Retry-After
+ * by a single rejecter thread instead of waiting behind the streams.
+ * Requests beyond the rejecter queue as well are dropped and their connections time out.
+ */
+public class ReactorListenerThread extends Thread {
+
+    private final InetSocketAddress address;
+    private final HttpParams params;
+    private final ListeningIOReactor ioReactor;
+    private final IOEventDispatch ioEventDispatch;
+    private final ThreadPoolExecutor workers;
+    // Thread answering the requests rejected by the workers
+    private final ThreadPoolExecutor rejecter;
+    // Retry-After of rejected requests (seconds)
+    private final static int RETRY_AFTER = 5;
+    // Logger
+    private static Logger logger = LoggerFactory.getLogger("org.chii2.mediaserver.http");
+
+    /**
+     * Constructor
+     *
+     * @param port         Listen Port
+     * @param address      Listen Address
+     * @param reactorCount I/O Reactor Thread Count
+     * @param workerCount  Request Worker Thread Count
+     * @param queueSize    Requests waiting for a worker
+     * @param library      Media Library Service
+     * @param transcoder   Transcoder Service
+     * @throws IOException IOException
+     */
+    public ReactorListenerThread(int port, InetAddress address, int reactorCount, int workerCount, int queueSize, MediaLibraryService library, TranscoderService transcoder) throws IOException {
+        this.address = new InetSocketAddress(address, port);
+        this.params = new SyncBasicHttpParams();
+        // Socket timeout is the idle timeout of a session, a paused renderer should not drop the stream too soon
+        this.params
+                .setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 30000)
+                .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
+                .setBooleanParameter(CoreConnectionPNames.STALE_CONNECTION_CHECK, false)
+                .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
+                .setParameter(CoreProtocolPNames.ORIGIN_SERVER, "Chii2HTTP/1.1");
+
+        // Set up the HTTP protocol processor
+        HttpProcessor httpproc = new ImmutableHttpProcessor(new HttpResponseInterceptor[]{
+                new ResponseDate(),
+                new ResponseServer(),
+                new ResponseContent(),
+                new ResponseContentRange(),
+                new ResponseConnControl()
+        });
+
+        // Set up request handlers, same handler and url contract as the blocking server
+        HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
+        registry.register("*", new BusyHandler(new HttpHandler(library, transcoder)));
+
+        // Answering 503 takes no time, one thread keeps up and never blocks the reactor, dropped on shutdown
+        this.rejecter = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new WorkerThreadFactory("Chii2 HTTP Rejecter ", true), new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                logger.warn("Chii2 Media Server Http Server rejecter saturated, request dropped.");
+            }
+        });
+        this.rejecter.allowCoreThreadTimeOut(true);
+        // Bounded worker pool and queue for library lookups and entity production
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new WorkerThreadFactory("Chii2 HTTP Worker ", false), new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                rejecter.execute(runnable);
+            }
+        });
+        this.workers.allowCoreThreadTimeOut(true);
+
+        // Entity bodies are produced by the workers into shared buffers, the reactor writes them to the socket
+        ThrottlingHttpServiceHandler handler = new ThrottlingHttpServiceHandler(
+                httpproc,
+                new DefaultHttpResponseFactory(),
+                new DefaultConnectionReuseStrategy(),
+                this.workers,
+                this.params);
+        handler.setHandlerResolver(registry);
+
+        this.ioEventDispatch = new DefaultServerIOEventDispatch(handler, this.params);
+        this.ioReactor = new DefaultListeningIOReactor(reactorCount, this.params);
+        this.ioReactor.listen(this.address);
+    }
+
+    public void run() {
+        logger.debug("Reactor Listener listening on port {}.", this.address.getPort());
+        try {
+            this.ioReactor.execute(this.ioEventDispatch);
+        } catch (InterruptedIOException e) {
+            logger.debug("Reactor Listener interrupted.");
+        } catch (IOException e) {
+            logger.error("I/O reactor error: {}", e.getMessage());
+        } finally {
+            this.workers.shutdownNow();
+            this.rejecter.shutdownNow();
+        }
+    }
+
+    /**
+     * Shutdown the I/O reactor and worker pool
+     */
+    public void shutdown() {
+        try {
+            this.ioReactor.shutdown();
+        } catch (IOException e) {
+            logger.warn("I/O reactor shutdown error: {}", e.getMessage());
+        }
+        this.workers.shutdownNow();
+        this.rejecter.shutdownNow();
+    }
+
+    /**
+     * Request Handler answering 503 when running on a rejecter thread, the request is handled as usual otherwise
+     */
+    private static class BusyHandler implements HttpRequestHandler {
+        // Request Handler
+        private final HttpRequestHandler handler;
+
+        BusyHandler(HttpRequestHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException, IOException {
+            if (Thread.currentThread() instanceof RejecterThread) {
+                response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", String.valueOf(RETRY_AFTER));
+                logger.debug("Chii2 Media Server Http Server workers saturated, request {} rejected.", request.getRequestLine().getUri());
+                return;
+            }
+            handler.handle(request, response, context);
+        }
+    }
+
+    /**
+     * Worker Thread Factory
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+        // Thread Name Prefix
+        private final String name;
+        // Threads answer rejected requests
+        private final boolean rejecting;
+
+        WorkerThreadFactory(String name, boolean rejecting) {
+            this.name = name;
+            this.rejecting = rejecting;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread;
+            if (rejecting) {
+                thread = new RejecterThread(runnable, name + count.incrementAndGet());
+            } else {
+                thread = new Thread(runnable, name + count.incrementAndGet());
+            }
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Thread of the rejecter, requests handled on it are answered 503
+     */
+    private static class RejecterThread extends Thread {
+
+        RejecterThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Test for HTTP Byte Range parsing
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void SingleRangeTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-499", 1000);
+        assert ranges.size() == 1;
+        assert ranges.get(0).getBegin() == 0;
+        assert ranges.get(0).getEnd() == 499;
+        assert "bytes 0-499/1000".equals(ranges.get(0).toContentRange(1000));
+
+        ranges = ByteRange.parse("bytes=500-", 1000);
+        assert ranges.size() == 1;
+        assert ranges.get(0).getEnd() == 999;
+
+        ranges = ByteRange.parse("bytes=900-2000", 1000);
+        assert ranges.get(0).getEnd() == 999;
+        assert ranges.get(0).getLength() == 100;
+    }
+
+    @Test
+    public void SuffixRangeTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=-500", 1000);
+        assert ranges.size() == 1;
+        assert ranges.get(0).getBegin() == 500;
+        assert ranges.get(0).getEnd() == 999;
+
+        ranges = ByteRange.parse("bytes=-5000", 1000);
+        assert ranges.get(0).getBegin() == 0;
+    }
+
+    @Test
+    public void MultiRangeTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99, 200-299,-100", 1000);
+        assert ranges.size() == 3;
+        assert ranges.get(1).getBegin() == 200;
+        assert ranges.get(2).getBegin() == 900;
+    }
+
+    @Test
+    public void UnsatisfiableRangeTest() {
+        assert ByteRange.parse("bytes=1000-", 1000).isEmpty();
+        assert ByteRange.parse("bytes=-0", 1000).isEmpty();
+        assert ByteRange.parse("bytes=2000-3000,1500-", 1000).isEmpty();
+    }
+
+    @Test
+    public void InvalidRangeTest() {
+        assert ByteRange.parse(null, 1000) == null;
+        assert ByteRange.parse("items=0-1", 1000) == null;
+        assert ByteRange.parse("bytes=500-100", 1000) == null;
+        assert ByteRange.parse("bytes=abc", 1000) == null;
+    }
+}
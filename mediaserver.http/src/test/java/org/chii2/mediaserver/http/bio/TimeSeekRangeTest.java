@@ -0,0 +1,31 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test for DLNA TimeSeekRange parsing
+ */
+public class TimeSeekRangeTest {
+
+    @Test
+    public void ParseStartTest() {
+        assert TimeSeekRange.parseStart("npt=335.1-") == 335100;
+        assert TimeSeekRange.parseStart("npt=0-") == 0;
+        assert TimeSeekRange.parseStart("npt=00:05:35.100-00:06:00") == 335100;
+        assert TimeSeekRange.parseStart("npt=1:00:00-") == 3600000;
+    }
+
+    @Test
+    public void InvalidTest() {
+        assert TimeSeekRange.parseStart(null) == -1;
+        assert TimeSeekRange.parseStart("bytes=0-100") == -1;
+        assert TimeSeekRange.parseStart("npt=now-") == -1;
+        assert TimeSeekRange.parseStart("npt=00:61:00-") == -1;
+        assert TimeSeekRange.parseStart("npt=-10") == -1;
+    }
+
+    @Test
+    public void HeaderTest() {
+        assert "npt=330.000-6000.000/6000.000".equals(TimeSeekRange.toHeader(330000, 6000000));
+    }
+}
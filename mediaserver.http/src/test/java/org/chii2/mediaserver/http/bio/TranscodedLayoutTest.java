@@ -0,0 +1,121 @@
+package org.chii2.mediaserver.http.bio;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Test for Transcoded Layout
+ */
+public class TranscodedLayoutTest {
+
+    @Test
+    public void LayoutTest() throws IOException {
+        // Finished outputs have their exact size
+        FakeProcess cd1 = new FakeProcess(new byte[]{1, 2, 3}, true);
+        FakeProcess cd2 = new FakeProcess(new byte[]{4, 5, 6, 7}, true);
+        TranscodedLayout layout = new TranscodedLayout(Arrays.<TranscoderProcess>asList(cd1, cd2));
+        assert layout.getTotalSize() == 7;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        layout.writeTo(out, 2, 4);
+        assert Arrays.equals(out.toByteArray(), new byte[]{3, 4, 5});
+
+        // Still encoding, unknown size and the outputs are sent as they are
+        cd1 = new FakeProcess(new byte[]{1, 2, 3}, true);
+        cd2 = new FakeProcess(new byte[]{4, 5, 6, 7}, false);
+        layout = new TranscodedLayout(Arrays.<TranscoderProcess>asList(cd1, cd2));
+        assert layout.getTotalSize() == -1;
+        out = new ByteArrayOutputStream();
+        cd2.finished = true;
+        layout.writeTo(out, 0, -2);
+        assert Arrays.equals(out.toByteArray(), new byte[]{1, 2, 3, 4, 5, 6, 7});
+
+        // Encode stopped before the end is not sent as complete
+        cd2 = new FakeProcess(new byte[]{4, 5}, false);
+        layout = new TranscodedLayout(Arrays.<TranscoderProcess>asList((TranscoderProcess) cd2));
+        try {
+            layout.writeTo(new ByteArrayOutputStream(), 0, -2);
+            assert false;
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Fake Transcoder Process with an output in memory
+     */
+    private static class FakeProcess implements TranscoderProcess {
+        private final byte[] output;
+        private boolean finished;
+
+        private FakeProcess(byte[] output, boolean finished) {
+            this.output = output;
+            this.finished = finished;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void cache() {
+        }
+
+        @Override
+        public String getRequestId() {
+            return "request";
+        }
+
+        @Override
+        public File getOutputFile() {
+            return null;
+        }
+
+        @Override
+        public InputStream getOutputFileStream() {
+            return new ByteArrayInputStream(output);
+        }
+
+        @Override
+        public long getCurrentSize() {
+            return output.length;
+        }
+
+        @Override
+        public boolean isStarted() {
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return false;
+        }
+
+        @Override
+        public void setStopped(boolean stopped) {
+        }
+
+        @Override
+        public void setFinished(boolean finished) {
+            this.finished = finished;
+        }
+
+        @Override
+        public void setStarted(boolean started) {
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.chii2.transcoder.api.core;
 
+import java.util.List;
+
 /**
  * Background Transcoder Service
  */
@@ -25,82 +27,35 @@ public interface BackgroundTranscoderService {
     public final static String TRANSCODED_FILE_PROPERTY = "transcoded_file";
 
     /**
-     * Get the length of the queue (the number of remaining tasks)
+     * Get the length of the queue (the number of tasks not running yet)
      *
      * @return Length of the Queue
      */
     public int getQueueLength();
 
     /**
-     * Set Current Task
-     *
-     * @param process Current Task
-     */
-    public void setCurrentTask(Process process);
-
-    /**
-     * Get the complement of current task in percent (0 - 100)
-     *
-     * @return Complete percent (0 - 100)
-     */
-    public int getCurrentTaskStatus();
-
-    /**
-     * Set the complement of current task in percent (0 - 100)
-     *
-     * @param percent Complete percent (0 - 100)
-     */
-    public void setCurrentTaskStatus(int percent);
-
-    /**
-     * Get the Current Step of Current Task (current profile in the set)
-     *
-     * @return Current Step
-     */
-    public int getCurrentTaskCurrentStep();
-
-    /**
-     * Set the Current Step of Current Task (current profile in the set)
-     *
-     * @param step Current Step
-     */
-    public void setCurrentTaskCurrentStep(int step);
-
-    /**
-     * Get the Total Steps of Current Task (total profiles in the set)
-     *
-     * @return Total Steps
-     */
-    public int getCurrentTaskTotalSteps();
-
-    /**
-     * Set the Total Steps of Current Task (total profiles in the set)
-     *
-     * @param totalSteps Total Steps
-     */
-    public void setCurrentTaskTotalSteps(int totalSteps);
-
-    /**
-     * Get the current task description
+     * Get queued and running tasks, one task for each profile of a requested profile set
      *
-     * @return Current Task Description
+     * @return Tasks
      */
-    public String getCurrentTaskDescription();
+    public List<BackgroundTranscoderTask> getTasks();
 
     /**
-     * Set the current task description
+     * Stop a queued or running task
      *
-     * @param description Current Task Description
+     * @param taskId Task ID
+     * @return True if the task was found
      */
-    public void setCurrentTaskDescription(String description);
+    public boolean stopTask(String taskId);
 
     /**
-     * Stop Current task
+     * Stop all queued and running tasks
      */
-    public void stopCurrentTask();
+    public void stopAllTasks();
 
     /**
-     * Transcoding video in background thread, based on the Transcoder Profile
+     * Transcoding video in background threads, based on the Transcoder Profile
+     * Profiles of the set are independent and may run in parallel
      *
      * @param profileSet Video Transcoder Profile Set
      */
@@ -0,0 +1,63 @@
+package org.chii2.transcoder.api.core;
+
+/**
+ * Background Transcoder Task, one profile of a Video Transcoder Profile Set
+ */
+public interface BackgroundTranscoderTask {
+
+    /**
+     * Get Task ID
+     *
+     * @return Task ID (UUID String)
+     */
+    public String getTaskId();
+
+    /**
+     * Get the Video ID of the profile set
+     *
+     * @return Video ID
+     */
+    public String getVideoID();
+
+    /**
+     * Get the description of the profile set
+     *
+     * @return Description
+     */
+    public String getDescription();
+
+    /**
+     * Get the Step of this task (profile index in the set, from 1)
+     *
+     * @return Step
+     */
+    public int getStep();
+
+    /**
+     * Get the Total Steps of the profile set
+     *
+     * @return Total Steps
+     */
+    public int getTotalSteps();
+
+    /**
+     * Whether the task is running, false if still queued
+     *
+     * @return True if running
+     */
+    public boolean isRunning();
+
+    /**
+     * Get the complement of the task in percent (0 - 100)
+     *
+     * @return Complete percent (0 - 100)
+     */
+    public int getStatus();
+
+    /**
+     * Set the complement of the task in percent (0 - 100)
+     *
+     * @param percent Complete percent (0 - 100)
+     */
+    public void setStatus(int percent);
+}
@@ -4,6 +4,7 @@ import org.chii2.medialibrary.api.persistence.entity.Movie;
 import org.teleal.cling.support.model.dlna.DLNAProfiles;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -140,6 +141,55 @@ public interface TranscoderService {
      */
     public List<TranscoderProcess> getTranscodedProcesses(String client, Movie movie);
 
+    /**
+     * Whether a transcoded stream of the movie can be started or joined now
+     * Callers should answer with 503 and retry later when this is false
+     *
+     * @param client Client
+     * @param movie  Movie
+     * @return True if not saturated
+     */
+    public boolean isVideoTranscodingAvailable(String client, Movie movie);
+
+    /**
+     * Whether the transcoded movie can be served from a time position (DLNA TimeSeekRange)
+     *
+     * @param client Client
+     * @param movie  Movie
+     * @return True if time seek is supported
+     */
+    public boolean isTimeSeekSupported(String client, Movie movie);
+
+    /**
+     * Get the time a time seek really starts from, the segment boundary at or before the requested time
+     *
+     * @param client    Client
+     * @param movie     Movie
+     * @param startTime Requested Start Time in milliseconds
+     * @return Start Time in milliseconds
+     */
+    public long getTimeSeekStart(String client, Movie movie, long startTime);
+
+    /**
+     * Get the transcoded movie as a stream from a time position
+     * The stream is segmented MPEG-TS output, segments already transcoded are reused.
+     *
+     * @param client    Client
+     * @param movie     Movie
+     * @param startTime Start Time in milliseconds
+     * @return Transcoded Stream, null if time seek is not supported
+     */
+    public InputStream getTimeSeekStream(String client, Movie movie, long startTime);
+
+    /**
+     * Get the MIME of the time seek stream
+     *
+     * @param client Client
+     * @param movie  Movie
+     * @return MIME
+     */
+    public String getTimeSeekMIME(String client, Movie movie);
+
     /**
      * Whether the image is valid for the client
      *
@@ -185,6 +235,13 @@ public interface TranscoderService {
      */
     public ImageTranscoderProcess getImageTranscodedProcess(String client, File imageFile, String imageType, int imageWidth, int imageHeight);
 
+    /**
+     * Whether a new image transcoding can be started now
+     *
+     * @return True if not saturated
+     */
+    public boolean isImageTranscodingAvailable();
+
     /**
      * Get Transcoded Video DLNA Profile
      *
@@ -19,10 +19,10 @@ public interface VideoTranscoderProfile {
      * Please Notice: Each time calling this method will return a new reader instance
      *
      * @param process Process which will invoke Video Transcoder
-     * @param service Background Transcoder Service
+     * @param task    Background Transcoder Task running the process, progress is reported to it
      * @return Process Output Reader
      */
-    public VideoTranscoderOutputReader getOutputReader(Process process, BackgroundTranscoderService service);
+    public VideoTranscoderOutputReader getOutputReader(Process process, BackgroundTranscoderTask task);
 
     /**
      * Get Process Commands
@@ -3,6 +3,7 @@ package org.chii2.transcoder.core;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.BackgroundTranscoderTask;
 import org.chii2.transcoder.api.core.VideoTranscoderProfileSet;
 import org.chii2.util.ConfigUtils;
 import org.osgi.service.cm.Configuration;
@@ -14,26 +15,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Dictionary;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Background Transcoder Service
  */
 public class BackgroundTranscoderServiceImpl implements BackgroundTranscoderService, EventHandler {
-    // Request queue
-    private BlockingQueue<VideoTranscoderProfileSet> queue;
-    // Current Task
-    private volatile Process currentTask;
-    // Current Task Complement
-    private volatile int currentTaskComplement;
-    // Current Task Current Step
-    private volatile int currentTaskCurrentStep;
-    // Current Task Total Steps
-    private volatile int currentTaskTotalSteps;
-    // Current Task Description
-    private volatile String currentTaskDescription;
+    // Worker Pool
+    private ExecutorService workers;
+    // Worker Count
+    private int workerCount = 2;
+    // Queued and Running Tasks
+    private final List<BackgroundVideoTranscoderProcessImpl> tasks = new CopyOnWriteArrayList<>();
     // Injected ConfigAdmin Service
     private ConfigurationAdmin configAdmin;
     // Injected EventAdmin service
@@ -44,6 +43,8 @@ public class BackgroundTranscoderServiceImpl implements BackgroundTranscoderServ
     private final static String CONFIG_FILE = "org.chii2.transcoder.core";
     // Movie Transcoded Cache Directory Configuration Key
     private static final String MOVIE_TRANSCODED_DIRECTORY = "movie.transcoded.directory";
+    // Background Worker Count Configuration Key
+    private static final String BACKGROUND_WORKER = "transcoder.background.worker";
     // Logger
     private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
 
@@ -72,12 +73,22 @@ public class BackgroundTranscoderServiceImpl implements BackgroundTranscoderServ
             } else {
                 logger.error("Background Transcoder Service configuration <{}> is not valid.", MOVIE_TRANSCODED_DIRECTORY);
             }
+
+            String worker = ConfigUtils.loadConfiguration(props, BACKGROUND_WORKER);
+            if (StringUtils.isNotBlank(worker)) {
+                try {
+                    this.workerCount = Math.max(1, Integer.parseInt(worker));
+                    logger.debug("Background Transcoder Service configuration <{}> loaded.", BACKGROUND_WORKER);
+                } catch (NumberFormatException e) {
+                    logger.error("Background Transcoder Service configuration <{}> is not valid.", BACKGROUND_WORKER);
+                }
+            } else {
+                logger.debug("Background Transcoder Service load default worker count.");
+            }
         }
 
-        // Init queue
-        this.queue = new LinkedBlockingQueue<VideoTranscoderProfileSet>();
-        // Start Background Transcoder Process Thread
-        new Thread(new BackgroundVideoTranscoderProcessImpl(this.queue, this.eventAdmin, this)).start();
+        // Start Background Transcoder Workers
+        this.workers = Executors.newFixedThreadPool(workerCount);
     }
 
     /**
@@ -86,72 +97,74 @@ public class BackgroundTranscoderServiceImpl implements BackgroundTranscoderServ
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Background Transcoder Service destroy.");
+        this.stopAllTasks();
+        if (this.workers != null) {
+            this.workers.shutdownNow();
+        }
     }
 
     @Override
     public int getQueueLength() {
-        return this.queue.size();
-    }
-
-    @Override
-    public void setCurrentTask(Process process) {
-        this.currentTask = process;
-    }
-
-    @Override
-    public int getCurrentTaskStatus() {
-        return this.currentTaskComplement;
-    }
-
-    @Override
-    public void setCurrentTaskStatus(int percent) {
-        this.currentTaskComplement = percent;
-    }
-
-    @Override
-    public int getCurrentTaskCurrentStep() {
-        return this.currentTaskCurrentStep;
-    }
-
-    @Override
-    public void setCurrentTaskCurrentStep(int step) {
-        this.currentTaskCurrentStep = step;
-    }
-
-    @Override
-    public int getCurrentTaskTotalSteps() {
-        return this.currentTaskTotalSteps;
-    }
-
-    @Override
-    public void setCurrentTaskTotalSteps(int totalSteps) {
-        this.currentTaskTotalSteps = totalSteps;
+        int count = 0;
+        for (BackgroundVideoTranscoderProcessImpl task : tasks) {
+            if (!task.isRunning()) {
+                count++;
+            }
+        }
+        return count;
     }
 
     @Override
-    public String getCurrentTaskDescription() {
-        return this.currentTaskDescription;
+    public List<BackgroundTranscoderTask> getTasks() {
+        return new ArrayList<BackgroundTranscoderTask>(tasks);
     }
 
     @Override
-    public void setCurrentTaskDescription(String description) {
-        this.currentTaskDescription = description;
+    public boolean stopTask(String taskId) {
+        for (BackgroundVideoTranscoderProcessImpl task : tasks) {
+            if (task.getTaskId().equals(taskId)) {
+                task.stop();
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
-    public void stopCurrentTask() {
-        if (this.currentTask != null) {
-            this.currentTask.destroy();
+    public void stopAllTasks() {
+        for (BackgroundVideoTranscoderProcessImpl task : tasks) {
+            task.stop();
         }
     }
 
     @Override
     public void transcoding(VideoTranscoderProfileSet profileSet) {
-        try {
-            this.queue.put(profileSet);
-        } catch (InterruptedException e) {
-            logger.error("Background Transcoder Service add new task with error: {}", ExceptionUtils.getMessage(e));
+        if (profileSet.getProfiles() == null || profileSet.getProfiles().isEmpty()) {
+            logger.warn("Background Transcoder Service ignore empty task for {}.", profileSet.getVideoID());
+            return;
         }
+        // Each profile (CD1, CD2...) is an independent task
+        BackgroundVideoTranscoderJob job = new BackgroundVideoTranscoderJob(profileSet, this.eventAdmin);
+        for (int i = 0; i < profileSet.getProfiles().size(); i++) {
+            BackgroundVideoTranscoderProcessImpl task = new BackgroundVideoTranscoderProcessImpl(job, profileSet.getProfiles().get(i), i + 1, this);
+            this.tasks.add(task);
+            try {
+                this.workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.error("Background Transcoder Service add new task with error: {}", ExceptionUtils.getMessage(e));
+                this.tasks.remove(task);
+                job.profileFinished(false);
+            }
+        }
+    }
+
+    /**
+     * Remove an ended task
+     *
+     * @param task Background Video Transcoder Process
+     */
+    void removeTask(BackgroundVideoTranscoderProcessImpl task) {
+        this.tasks.remove(task);
     }
 
     @Override
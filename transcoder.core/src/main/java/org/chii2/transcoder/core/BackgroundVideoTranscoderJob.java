@@ -0,0 +1,124 @@
+package org.chii2.transcoder.core;
+
+import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.VideoTranscoderProfileSet;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background Video Transcoder Job, tracks the profiles of one profile set
+ * The result event is sent once every profile has finished, failed or been skipped.
+ */
+public class BackgroundVideoTranscoderJob {
+    // Video Transcoder Profile Set
+    private VideoTranscoderProfileSet profileSet;
+    // Event Admin
+    private EventAdmin eventAdmin;
+    // Remaining Profiles
+    private AtomicInteger remaining;
+    // Any Profile Failed
+    private volatile boolean failed = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Constructor
+     *
+     * @param profileSet Video Transcoder Profile Set
+     * @param eventAdmin Event Admin
+     */
+    public BackgroundVideoTranscoderJob(VideoTranscoderProfileSet profileSet, EventAdmin eventAdmin) {
+        this.profileSet = profileSet;
+        this.eventAdmin = eventAdmin;
+        this.remaining = new AtomicInteger(profileSet.getProfiles().size());
+    }
+
+    /**
+     * Get Video Transcoder Profile Set
+     *
+     * @return Video Transcoder Profile Set
+     */
+    public VideoTranscoderProfileSet getProfileSet() {
+        return profileSet;
+    }
+
+    /**
+     * Whether a profile of the set has failed, queued profiles should be skipped
+     *
+     * @return True if failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * A profile of the set has ended
+     *
+     * @param success True if the profile transcoded successfully
+     */
+    public void profileFinished(boolean success) {
+        if (!success) {
+            this.failed = true;
+        }
+        if (remaining.decrementAndGet() == 0) {
+            // Send Event
+            if (!failed) {
+                this.postBackgroundVideoTranscodedProvidedEvent();
+            } else {
+                this.postBackgroundVideoTranscodedFailedEvent();
+            }
+        }
+    }
+
+    /**
+     * Send Background Video Transcoded Provided Event
+     */
+    private void postBackgroundVideoTranscodedProvidedEvent() {
+        // Prepare properties
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(BackgroundTranscoderService.VIDEO_ID_PROPERTY, profileSet.getVideoID());
+        properties.put(BackgroundTranscoderService.VIDEO_FILE_PROPERTY, profileSet.getVideoFiles());
+        properties.put(BackgroundTranscoderService.TRANSCODED_FILE_PROPERTY, profileSet.getTranscoderFiles());
+        // Event Topic
+        String topic = null;
+        switch (profileSet.getVideoType()) {
+            case MOVIE:
+                topic = BackgroundTranscoderService.MOVIE_TRANSCODED_FILE_PROVIDED_TOPIC;
+                break;
+            // TODO: Add other Video Type support
+        }
+        // Send a event
+        Event event = new Event(topic, properties);
+        logger.debug("Send a {} transcoded file provided event.", profileSet.getVideoType());
+        eventAdmin.postEvent(event);
+    }
+
+    /**
+     * Send Background Video Transcoded Failed Event
+     */
+    private void postBackgroundVideoTranscodedFailedEvent() {
+        // Prepare properties
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(BackgroundTranscoderService.VIDEO_ID_PROPERTY, profileSet.getVideoID());
+        properties.put(BackgroundTranscoderService.VIDEO_FILE_PROPERTY, profileSet.getVideoFiles());
+        properties.put(BackgroundTranscoderService.TRANSCODED_FILE_PROPERTY, profileSet.getTranscoderFiles());
+        // Event Topic
+        String topic = null;
+        switch (profileSet.getVideoType()) {
+            case MOVIE:
+                topic = BackgroundTranscoderService.MOVIE_TRANSCODED_FILE_FAILED_TOPIC;
+                break;
+            // TODO: Add other Video Type support
+        }
+        // Send a event
+        Event event = new Event(topic, properties);
+        logger.debug("Send a {} transcoded file failed event.", profileSet.getVideoType());
+        eventAdmin.postEvent(event);
+    }
+}
@@ -1,172 +1,208 @@
 package org.chii2.transcoder.core;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.BackgroundTranscoderTask;
 import org.chii2.transcoder.api.core.VideoTranscoderOutputReader;
 import org.chii2.transcoder.api.core.VideoTranscoderProfile;
-import org.chii2.transcoder.api.core.VideoTranscoderProfileSet;
-import org.osgi.service.event.Event;
-import org.osgi.service.event.EventAdmin;
+import org.chii2.transcoder.core.scheduler.JobClass;
+import org.chii2.transcoder.core.scheduler.Preemptable;
+import org.chii2.transcoder.core.scheduler.Ticket;
+import org.chii2.transcoder.core.scheduler.TranscodeScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Dictionary;
-import java.util.Hashtable;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.UUID;
 
 /**
- * Background Video Transcoder Process
+ * Background Video Transcoder Process, runs one profile of a profile set in a worker thread
  */
-public class BackgroundVideoTranscoderProcessImpl implements Runnable {
-    // Background Video Transcoder Profile Queue
-    private BlockingQueue<VideoTranscoderProfileSet> queue;
-    // Event Admin
-    private EventAdmin eventAdmin;
+public class BackgroundVideoTranscoderProcessImpl implements Runnable, BackgroundTranscoderTask {
+    // Task ID
+    private final String taskId = UUID.randomUUID().toString();
+    // Background Video Transcoder Job
+    private BackgroundVideoTranscoderJob job;
+    // Video Transcoder Profile
+    private VideoTranscoderProfile profile;
+    // Step (from 1)
+    private int step;
     // Background Transcoder Service
-    private BackgroundTranscoderService service;
+    private BackgroundTranscoderServiceImpl service;
+    // Running
+    private volatile boolean running = false;
+    // Stopped by request
+    private volatile boolean stopped = false;
+    // Complement in percent
+    private volatile int status = 0;
+    // Kill the running process when preempted or stopped
+    private volatile ProcessPreemption preemption;
     // Logger
     private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
 
-
     /**
      * Constructor
      *
-     * @param queue      Background Video Transcoder Profile Queue
-     * @param eventAdmin Event Admin
-     * @param service    Background Transcoder Service
+     * @param job     Background Video Transcoder Job
+     * @param profile Video Transcoder Profile
+     * @param step    Step of the profile in the set (from 1)
+     * @param service Background Transcoder Service
      */
-    public BackgroundVideoTranscoderProcessImpl(BlockingQueue<VideoTranscoderProfileSet> queue, EventAdmin eventAdmin, BackgroundTranscoderService service) {
-        this.queue = queue;
-        this.eventAdmin = eventAdmin;
+    public BackgroundVideoTranscoderProcessImpl(BackgroundVideoTranscoderJob job, VideoTranscoderProfile profile, int step, BackgroundTranscoderServiceImpl service) {
+        this.job = job;
+        this.profile = profile;
+        this.step = step;
         this.service = service;
     }
 
-    @SuppressWarnings({"InfiniteLoopStatement", "NullableProblems", "ConstantConditions"})
     @Override
     public void run() {
+        // Whole Profile Succeed
+        boolean success = false;
         try {
-            while (true) {
-                // Take from queue
-                VideoTranscoderProfileSet profileSet = this.queue.take();
-
-                // Update Description & Total Steps
-                this.service.setCurrentTaskDescription(profileSet.getDescription());
-                this.service.setCurrentTaskTotalSteps(profileSet.getProfiles().size());
-
-                // Current Step
-                int step = 0;
-                // Whole Process Failed
-                boolean failed = false;
-                // Loop Profiles
-                for (VideoTranscoderProfile profile : profileSet.getProfiles()) {
-                    // Current Step + 1
-                    step++;
-                    // Process
-                    Process process = null;
-                    try {
-                        // Commands
-                        List<String> commands = profile.getCommands();
-                        // Log
-                        logger.info("Start a new background video tanscoding process with commands: {}.", commands);
-                        // Start new process
-                        // TODO: Maybe should read the error stream in another reader
-                        process = new ProcessBuilder(commands).redirectErrorStream(true).start();
-
-                        // Update Current Task & Step & Status
-                        this.service.setCurrentTask(process);
-                        this.service.setCurrentTaskStatus(0);
-                        this.service.setCurrentTaskCurrentStep(step);
-
-                        // Start output reader in another thread
-                        VideoTranscoderOutputReader reader = profile.getOutputReader(process, this.service);
-                        Thread thread = new Thread(reader);
-                        thread.setDaemon(false);
-                        thread.start();
-                        // Wait for process end
-                        int exitValue = process.waitFor();
-                        // Deal with Exit Value
-                        if (exitValue != 0) {
-                            failed = true;
-                            break;
-                        }
-                    } catch (IOException e) {
-                        logger.warn("Background Video Transcoding with error: {}.", ExceptionUtils.getMessage(e));
-                    } finally {
-                        // Destroy process
-                        if (process != null) {
-                            process.destroy();
-                        }
+            // Skip if a sibling profile already failed
+            if (job.isFailed() || stopped) {
+                logger.info("Background video transcoding step {} of {} skipped.", step, job.getProfileSet().getVideoID());
+                return;
+            }
+            this.running = true;
+            // A preempted profile is restarted instead of failed
+            while (!stopped) {
+                // Process
+                Process process = null;
+                // Kill the process when a live request needs the slot
+                ProcessPreemption preemption = new ProcessPreemption();
+                this.preemption = preemption;
+                // Wait for a background transcoding slot
+                Ticket ticket = TranscodeScheduler.getInstance().acquire(JobClass.BACKGROUND_VIDEO, -1, preemption);
+                try {
+                    if (stopped) {
+                        break;
                     }
-                }
+                    // Commands
+                    List<String> commands = profile.getCommands();
+                    // Log
+                    logger.info("Start a new background video tanscoding process with commands: {}.", commands);
+                    // Start new process
+                    // TODO: Maybe should read the error stream in another reader
+                    process = new ProcessBuilder(commands).redirectErrorStream(true).start();
+                    preemption.setProcess(process);
+                    this.status = 0;
 
-                // Send Event
-                if (!failed) {
-                    this.postBackgroundVideoTranscodedProvidedEvent(profileSet);
-                } else {
-                    this.postBackgroundVideoTranscodedFailedEvent(profileSet);
+                    // Start output reader in another thread
+                    VideoTranscoderOutputReader reader = profile.getOutputReader(process, this);
+                    Thread thread = new Thread(reader);
+                    thread.setDaemon(false);
+                    thread.start();
+                    // Wait for process end
+                    int exitValue = process.waitFor();
+                    // Preempted, run the same profile again once a slot is free
+                    if (ticket.isPreempted() && !stopped) {
+                        logger.info("Background video transcoding step {} preempted, will restart.", step);
+                        continue;
+                    }
+                    // Deal with Exit Value
+                    success = exitValue == 0 && !stopped;
+                    break;
+                } catch (IOException e) {
+                    logger.warn("Background Video Transcoding with error: {}.", ExceptionUtils.getMessage(e));
+                    break;
+                } finally {
+                    // Destroy process
+                    if (process != null) {
+                        process.destroy();
+                    }
+                    // Free the slot
+                    ticket.release();
                 }
-
-                // Update All
-                this.service.setCurrentTask(null);
-                this.service.setCurrentTaskStatus(0);
-                this.service.setCurrentTaskCurrentStep(0);
-                this.service.setCurrentTaskTotalSteps(0);
-                this.service.setCurrentTaskDescription(null);
             }
         } catch (InterruptedException e) {
             logger.error("Background Video Transcoder Process with error: {}.", ExceptionUtils.getMessage(e));
+        } finally {
+            this.running = false;
+            this.job.profileFinished(success);
+            this.service.removeTask(this);
         }
     }
 
     /**
-     * Send Background Video Transcoded Provided Event
-     *
-     * @param profileSet Transcoder Profile
+     * Stop the task, a queued task will be skipped and a running process destroyed
      */
-    private void postBackgroundVideoTranscodedProvidedEvent(VideoTranscoderProfileSet profileSet) {
-        // Prepare properties
-        Dictionary<String, Object> properties = new Hashtable<String, Object>();
-        properties.put(BackgroundTranscoderService.VIDEO_ID_PROPERTY, profileSet.getVideoID());
-        properties.put(BackgroundTranscoderService.VIDEO_FILE_PROPERTY, profileSet.getVideoFiles());
-        properties.put(BackgroundTranscoderService.TRANSCODED_FILE_PROPERTY, profileSet.getTranscoderFiles());
-        // Event Topic
-        String topic = null;
-        switch (profileSet.getVideoType()) {
-            case MOVIE:
-                topic = BackgroundTranscoderService.MOVIE_TRANSCODED_FILE_PROVIDED_TOPIC;
-                break;
-            // TODO: Add other Video Type support
+    public void stop() {
+        this.stopped = true;
+        ProcessPreemption preemption = this.preemption;
+        if (preemption != null) {
+            preemption.preempt();
         }
-        // Send a event
-        Event event = new Event(topic, properties);
-        logger.debug("Send a {} transcoded file provided event.", profileSet.getVideoType());
-        eventAdmin.postEvent(event);
+    }
+
+    @Override
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public String getVideoID() {
+        return job.getProfileSet().getVideoID();
+    }
+
+    @Override
+    public String getDescription() {
+        return job.getProfileSet().getDescription();
+    }
+
+    @Override
+    public int getStep() {
+        return step;
+    }
+
+    @Override
+    public int getTotalSteps() {
+        return job.getProfileSet().getProfiles().size();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int percent) {
+        this.status = percent;
     }
 
     /**
-     * Send Background Video Transcoded Failed Event
-     *
-     * @param profileSet Transcoder Profile
+     * Destroy the running process when preempted or stopped
      */
-    private void postBackgroundVideoTranscodedFailedEvent(VideoTranscoderProfileSet profileSet) {
-        // Prepare properties
-        Dictionary<String, Object> properties = new Hashtable<String, Object>();
-        properties.put(BackgroundTranscoderService.VIDEO_ID_PROPERTY, profileSet.getVideoID());
-        properties.put(BackgroundTranscoderService.VIDEO_FILE_PROPERTY, profileSet.getVideoFiles());
-        properties.put(BackgroundTranscoderService.TRANSCODED_FILE_PROPERTY, profileSet.getTranscoderFiles());
-        // Event Topic
-        String topic = null;
-        switch (profileSet.getVideoType()) {
-            case MOVIE:
-                topic = BackgroundTranscoderService.MOVIE_TRANSCODED_FILE_FAILED_TOPIC;
-                break;
-            // TODO: Add other Video Type support
+    private static class ProcessPreemption implements Preemptable {
+        // Process
+        private Process process;
+        // Preempted
+        private boolean preempted = false;
+
+        /**
+         * Set the process, destroyed at once if already preempted
+         *
+         * @param process Process
+         */
+        public synchronized void setProcess(Process process) {
+            this.process = process;
+            if (preempted) {
+                process.destroy();
+            }
+        }
+
+        @Override
+        public synchronized void preempt() {
+            preempted = true;
+            if (process != null) {
+                process.destroy();
+            }
         }
-        // Send a event
-        Event event = new Event(topic, properties);
-        logger.debug("Send a {} transcoded file failed event.", profileSet.getVideoType());
-        eventAdmin.postEvent(event);
     }
 }
@@ -1,16 +1,29 @@
 package org.chii2.transcoder.core;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
 import org.chii2.medialibrary.api.persistence.entity.Movie;
+import org.chii2.medialibrary.api.persistence.entity.MovieFile;
 import org.chii2.transcoder.api.core.ImageTranscoderProcess;
 import org.chii2.transcoder.api.core.TranscoderProcess;
 import org.chii2.transcoder.api.core.TranscoderService;
+import org.chii2.transcoder.core.broadcast.TranscodedBroadcaster;
+import org.chii2.transcoder.core.cache.CachedTranscoderProcess;
 import org.chii2.transcoder.core.cache.TranscodedCache;
 import org.chii2.transcoder.core.dlna.catalog.*;
 import org.chii2.transcoder.core.dlna.codec.*;
 import org.chii2.transcoder.core.ffmpeg.FFmpegConverterParameter;
 import org.chii2.transcoder.core.ffmpeg.FFmpegProcess;
 import org.chii2.transcoder.core.im4java.IM4JImageTranscoderProcess;
+import org.chii2.transcoder.core.scheduler.JobClass;
+import org.chii2.transcoder.core.segment.SegmentInputStream;
+import org.chii2.transcoder.core.segment.SegmentParameterFactory;
+import org.chii2.transcoder.core.segment.SegmentedOutput;
+import org.chii2.transcoder.core.segment.SegmentedOutputCache;
+import org.chii2.transcoder.core.scheduler.TranscodeScheduler;
+import org.chii2.util.ConfigUtils;
+import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +31,9 @@ import org.teleal.cling.support.model.dlna.DLNAProfiles;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Dictionary;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,6 +51,36 @@ public class TranscoderServiceImpl implements TranscoderService {
     private List<ImageCatalog> imageCatalogs = new ArrayList<ImageCatalog>();
     // Temp Directory
     private File tempDirectory = new File(System.getProperty("java.io.tmpdir"), "chii2");
+    // Transcoded Cache Directory
+    private File cacheDirectory = new File(tempDirectory, "cache");
+    // Transcoded Cache Size in MB
+    private long cacheSize = 10240;
+    // Segment Duration in seconds for time seek
+    private int segmentTime = 10;
+    // Total Transcoding Slots
+    private int totalSlots = Runtime.getRuntime().availableProcessors();
+    // Live Video Transcoding Slots
+    private int liveSlots = Math.max(1, totalSlots / 2);
+    // Image Transcoding Slots
+    private int imageSlots = Math.max(1, totalSlots / 2);
+    // Background Video Transcoding Slots
+    private int backgroundSlots = Math.max(1, totalSlots / 4);
+    // Configuration FileName
+    private final static String CONFIG_FILE = "org.chii2.transcoder.core";
+    // Cache Directory Configuration Key
+    private static final String CACHE_DIRECTORY = "transcoder.cache.directory";
+    // Cache Size Configuration Key
+    private static final String CACHE_SIZE = "transcoder.cache.size";
+    // Segment Duration Configuration Key
+    private static final String SEGMENT_TIME = "transcoder.segment.time";
+    // Total Slots Configuration Key
+    private static final String SLOTS_TOTAL = "transcoder.slots.total";
+    // Live Video Slots Configuration Key
+    private static final String SLOTS_LIVE = "transcoder.slots.live";
+    // Image Slots Configuration Key
+    private static final String SLOTS_IMAGE = "transcoder.slots.image";
+    // Background Video Slots Configuration Key
+    private static final String SLOTS_BACKGROUND = "transcoder.slots.background";
     // Logger
     private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
 
@@ -63,19 +108,73 @@ public class TranscoderServiceImpl implements TranscoderService {
         imageCatalogs.add(new JPEG());
         imageCatalogs.add(new PNG());
 
-        // Create Temp Directory if not exist
-        if (tempDirectory.exists()) {
-            try {
-                FileUtils.forceDelete(tempDirectory);
-            } catch (IOException e) {
-                logger.warn("Can not delete temp directory: {}.", tempDirectory.getAbsolutePath());
+        // Load Configuration
+        Dictionary props = null;
+        try {
+            Configuration config = configAdmin.getConfiguration(CONFIG_FILE);
+            props = config.getProperties();
+        } catch (IOException e) {
+            logger.error("Transcoder Service fail to load configuration with exception: {}.", ExceptionUtils.getMessage(e));
+        }
+        // Load each configuration
+        if (props == null || props.isEmpty()) {
+            logger.error("Transcoder Service load configuration <{}> with error.", CONFIG_FILE);
+        } else {
+            totalSlots = loadSlots(props, SLOTS_TOTAL, totalSlots);
+            liveSlots = loadSlots(props, SLOTS_LIVE, liveSlots);
+            imageSlots = loadSlots(props, SLOTS_IMAGE, imageSlots);
+            backgroundSlots = loadSlots(props, SLOTS_BACKGROUND, backgroundSlots);
+
+            String cacheDirectory = ConfigUtils.loadConfiguration(props, CACHE_DIRECTORY);
+            if (StringUtils.isNotBlank(cacheDirectory)) {
+                this.cacheDirectory = new File(cacheDirectory);
+                logger.debug("Transcoder Service configuration <{}> loaded.", CACHE_DIRECTORY);
+            } else {
+                logger.debug("Transcoder Service load default <{}>.", CACHE_DIRECTORY);
+            }
+
+            String segmentTime = ConfigUtils.loadConfiguration(props, SEGMENT_TIME);
+            if (StringUtils.isNotBlank(segmentTime)) {
+                try {
+                    this.segmentTime = Math.max(1, Integer.parseInt(segmentTime));
+                    logger.debug("Transcoder Service configuration <{}> loaded.", SEGMENT_TIME);
+                } catch (NumberFormatException e) {
+                    logger.error("Transcoder Service configuration <{}> is not valid.", SEGMENT_TIME);
+                }
+            } else {
+                logger.debug("Transcoder Service load default <{}>.", SEGMENT_TIME);
+            }
+
+            String cacheSize = ConfigUtils.loadConfiguration(props, CACHE_SIZE);
+            if (StringUtils.isNotBlank(cacheSize)) {
+                try {
+                    this.cacheSize = Long.parseLong(cacheSize);
+                    logger.debug("Transcoder Service configuration <{}> loaded.", CACHE_SIZE);
+                } catch (NumberFormatException e) {
+                    logger.error("Transcoder Service configuration <{}> is not valid.", CACHE_SIZE);
+                }
+            } else {
+                logger.debug("Transcoder Service load default <{}>.", CACHE_SIZE);
             }
         }
+        // Configure Scheduler
+        TranscodeScheduler.getInstance().configure(totalSlots, liveSlots, imageSlots, backgroundSlots);
+
+        // Create Temp Directory if not exist, stale temp files are removed but the cache is kept
         try {
             FileUtils.forceMkdir(tempDirectory);
+            this.deleteTempFiles();
         } catch (IOException e) {
             logger.warn("Can not create temp directory: {}.", tempDirectory.getAbsolutePath());
         }
+        // Load Transcoded Cache
+        try {
+            FileUtils.forceMkdir(cacheDirectory);
+            TranscodedCache.getInstance().init(cacheDirectory, cacheSize * 1024 * 1024);
+            SegmentedOutputCache.getInstance().init(new File(cacheDirectory, "segments"));
+        } catch (IOException e) {
+            logger.warn("Can not create cache directory: {}.", cacheDirectory.getAbsolutePath());
+        }
     }
 
     /**
@@ -84,16 +183,91 @@ public class TranscoderServiceImpl implements TranscoderService {
     @SuppressWarnings("unused")
     public void destroy() {
         logger.debug("Chii2 Transcoder Core Service destroy.");
+        // Shutdown Broadcaster
+        TranscodedBroadcaster.getInstance().shutdown();
         // Shutdown Cache
+        SegmentedOutputCache.getInstance().shutdown();
         TranscodedCache.getInstance().shutdown();
         // Delete tmp files
-        if (tempDirectory.exists()) {
-            try {
-                FileUtils.forceDelete(tempDirectory);
-            } catch (IOException e) {
-                logger.warn("Can not delete temp directory: {}.", tempDirectory.getAbsolutePath());
+        this.deleteTempFiles();
+    }
+
+    @Override
+    public boolean isVideoTranscodingAvailable(String client, Movie movie) {
+        // Joining a running transcoding does not need a new slot
+        if (TranscodedBroadcaster.getInstance().getReaderCount(movie.getId(), client) > 0 ||
+                TranscodeScheduler.getInstance().isAvailable(JobClass.LIVE_VIDEO)) {
+            return true;
+        }
+        // Neither does serving from the cache
+        List<TranscoderProcess> processes = createTranscodedProcesses(client, movie);
+        if (processes == null) {
+            return false;
+        }
+        for (TranscoderProcess process : processes) {
+            if (!(process instanceof CachedTranscoderProcess)) {
+                return false;
             }
         }
+        return true;
+    }
+
+    @Override
+    public boolean isTimeSeekSupported(String client, Movie movie) {
+        if (!PROFILE_XBOX.equals(client) || movie.getFiles() == null || movie.getFiles().isEmpty()) {
+            return false;
+        }
+        // Segments are located by time, every file needs a duration
+        for (MovieFile movieFile : movie.getFiles()) {
+            if (movieFile.getDuration() <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getTimeSeekStart(String client, Movie movie, long startTime) {
+        long fileStart = 0;
+        long offset = Math.max(0, startTime);
+        List<? extends MovieFile> files = movie.getFiles();
+        for (int i = 0; i < files.size() - 1 && offset >= files.get(i).getDuration(); i++) {
+            offset = offset - files.get(i).getDuration();
+            fileStart = fileStart + files.get(i).getDuration();
+        }
+        long segmentLength = segmentTime * 1000L;
+        return fileStart + (offset / segmentLength) * segmentLength;
+    }
+
+    @Override
+    public InputStream getTimeSeekStream(String client, Movie movie, long startTime) {
+        if (!isTimeSeekSupported(client, movie)) {
+            return null;
+        }
+        // Locate the file and the segment
+        int fileIndex = 0;
+        long offset = Math.max(0, startTime);
+        List<? extends MovieFile> files = movie.getFiles();
+        while (fileIndex < files.size() - 1 && offset >= files.get(fileIndex).getDuration()) {
+            offset = offset - files.get(fileIndex).getDuration();
+            fileIndex++;
+        }
+        int segment = (int) (offset / (segmentTime * 1000L));
+        logger.debug("Time seek into movie {} at {} ms, file {} segment {}.", new Object[]{movie.getId(), startTime, fileIndex, segment});
+        return new SegmentInputStream(getSegmentedOutputs(client, movie), fileIndex, segment);
+    }
+
+    @Override
+    public String getTimeSeekMIME(String client, Movie movie) {
+        if (PROFILE_XBOX.equals(client)) {
+            return "video/mpeg";
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isImageTranscodingAvailable() {
+        return TranscodeScheduler.getInstance().isAvailable(JobClass.IMAGE);
     }
 
     @Override
@@ -265,71 +439,112 @@ public class TranscoderServiceImpl implements TranscoderService {
 
     @Override
     public List<TranscoderProcess> getTranscodedProcesses(String client, Movie movie) {
-        return null;
-//        // Fields
-//        String container = movie.getFormat();
-//        String videoFormat = movie.getVideoFormat();
-//        String videoFormatProfile = movie.getVideoFormatProfile();
-//        int videoFormatVersion = movie.getVideoFormatVersion();
-//        String videoCodec = movie.getVideoCodec();
-//        long videoBitRate = movie.getVideoBitRate();
-//        int videoWidth = movie.getVideoWidth();
-//        int videoHeight = movie.getVideoHeight();
-//        float fps = movie.getVideoFps();
-//        String audioFormat = movie.getAudioFormat();
-//        String audioFormatProfile = movie.getAudioFormatProfile();
-//        int audioFormatVersion = movie.getAudioFormatVersion();
-//        String audioCodec = movie.getAudioCodec();
-//        int audioChannels = movie.getAudioChannels();
-//        // Script File
-//        List<File> inputFiles = new ArrayList<File>();
-//        for (MovieFile movieFile : movie.getFiles()) {
-//            inputFiles.add(movieFile.getFile());
-//        }
-//        File scriptFile = new File(tempDirectory, UUID.randomUUID().toString() + ".script");
-//        File outputFile = null;
-//        ScriptTemplate scriptTemplate = null;
-//        // Conditions
-//        if (client.equals(PROFILE_XBOX)) {
-//            if (VideoCodec.match(videoFormat, videoFormatProfile, videoFormatVersion, videoCodec, VideoCodec.MPEG4_P2) &&
-//                    videoBitRate <= 5000000 && videoWidth <= 1280 && videoHeight <= 720 && fps <= 30) {
-//                if (AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.AC3) && audioChannels <= 6) {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".avi");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new AudioCopyConfig());
-//                    scriptTemplate.setContainer("AVI");
-//                } else if (AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.MP3)
-//                        || AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.MP3X)) {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".avi");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new AudioCopyConfig());
-//                    scriptTemplate.setContainer("AVI");
-//                } else if (AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.AAC_LC) && audioChannels <= 2) {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".mp4");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new AudioCopyConfig());
-//                    scriptTemplate.setContainer("MP4");
-//                } else {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".mp4");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new FaacConfig());
-//                    scriptTemplate.setContainer("MP4");
-//                }
-//            } else if (VideoCodec.match(videoFormat, videoFormatProfile, videoFormatVersion, videoCodec, VideoCodec.MPEG4_P10) &&
-//                    videoBitRate <= 10000000 && videoWidth <= 1920 && videoHeight <= 1080 && fps <= 30) {
-//                if (AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.AAC_LC) && audioChannels <= 2) {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".mp4");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new AudioCopyConfig());
-//                    scriptTemplate.setContainer("MP4");
-//                } else {
-//                    outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".mp4");
-//                    scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, new VideoCopyConfig(), new FaacConfig());
-//                    scriptTemplate.setContainer("MP4");
-//                }
-//            } else {
-//                outputFile = new File(tempDirectory, UUID.randomUUID().toString() + ".mp4");
-//                scriptTemplate = new ScriptTemplate(inputFiles, outputFile, scriptFile, getX264Fast(), new FaacConfig());
-//                scriptTemplate.setContainer("MP4");
-//            }
-//        }
-//
-//        return new AViDemuxProcess(scriptTemplate);
+        List<TranscoderProcess> processes = this.createTranscodedProcesses(client, movie);
+        if (processes == null || processes.isEmpty()) {
+            return null;
+        }
+        // Clients playing the same movie with the same profile share one running encode
+        return TranscodedBroadcaster.getInstance().attach(movie.getId(), client, processes);
+    }
+
+    /**
+     * Create FFmpeg Transcoder Processes for movie, one for each movie file
+     *
+     * @param client Client
+     * @param movie  Movie
+     * @return Transcoder Processes, null if client not supported
+     */
+    private List<TranscoderProcess> createTranscodedProcesses(String client, Movie movie) {
+        if (!client.equals(PROFILE_XBOX)) {
+            return null;
+        }
+        List<TranscoderProcess> processes = new ArrayList<TranscoderProcess>();
+        for (MovieFile movieFile : movie.getFiles()) {
+            String requestId = UUID.randomUUID().toString();
+            // The output file is set once the cache key is known
+            FFmpegConverterParameter parameter = createXboxParameter(movie, movieFile.getAbsolutePath(), false);
+            // Readers stream the output while it is written
+            parameter.setFragmented(true);
+            // Reuse a finished output of the same source and parameters
+            String cacheKey = TranscodedCache.createKey(new File(movieFile.getAbsolutePath()), client, parameter.getParameters());
+            File cachedFile = TranscodedCache.getInstance().lookup(cacheKey);
+            if (cachedFile != null) {
+                processes.add(new CachedTranscoderProcess(requestId, cachedFile));
+            } else {
+                parameter.setOutputFile(new File(cacheDirectory, requestId + ".mp4"));
+                processes.add(new FFmpegProcess(requestId, parameter, cacheKey));
+            }
+        }
+        return processes;
+    }
+
+    /**
+     * Create FFmpeg parameters for XBox360, output not set
+     *
+     * @param movie     Movie
+     * @param input     Input File Path
+     * @param segmented Segmented output, video is always encoded so segments start with a key frame
+     * @return FFmpeg Parameter
+     */
+    private FFmpegConverterParameter createXboxParameter(Movie movie, String input, boolean segmented) {
+        // Fields
+        String videoFormat = movie.getVideoFormat();
+        String videoFormatProfile = movie.getVideoFormatProfile();
+        int videoFormatVersion = movie.getVideoFormatVersion();
+        String videoCodec = movie.getVideoCodec();
+        long videoBitRate = movie.getVideoBitRate();
+        int videoWidth = movie.getVideoWidth();
+        int videoHeight = movie.getVideoHeight();
+        float fps = movie.getVideoFps();
+        String audioFormat = movie.getAudioFormat();
+        String audioFormatProfile = movie.getAudioFormatProfile();
+        int audioFormatVersion = movie.getAudioFormatVersion();
+        String audioCodec = movie.getAudioCodec();
+        int audioChannels = movie.getAudioChannels();
+        // Video, keep MPEG4 streams the Xbox can play, otherwise H264
+        boolean videoCopy = !segmented && ((VideoCodec.match(videoFormat, videoFormatProfile, videoFormatVersion, videoCodec, VideoCodec.MPEG4_P2) &&
+                videoBitRate <= 5000000 && videoWidth <= 1280 && videoHeight <= 720 && fps <= 30) ||
+                (VideoCodec.match(videoFormat, videoFormatProfile, videoFormatVersion, videoCodec, VideoCodec.MPEG4_P10) &&
+                        videoBitRate <= 10000000 && videoWidth <= 1920 && videoHeight <= 1080 && fps <= 30));
+        // Audio, keep stereo AAC, otherwise AAC
+        boolean audioCopy = AudioCodec.match(audioFormat, audioFormatProfile, audioFormatVersion, audioCodec, AudioCodec.AAC_LC) && audioChannels <= 2;
+
+        FFmpegConverterParameter parameter = new FFmpegConverterParameter(input, null, videoCopy ? "copy" : "libx264", audioCopy ? "copy" : "libfaac");
+        if (!videoCopy) {
+            parameter.setVideoCRF(23);
+            parameter.setVideoMaxrate(10000000);
+            parameter.setVideoBufferSize(10000000);
+        }
+        if (!audioCopy) {
+            parameter.setAudioBitrate(128000);
+            parameter.setAudioChannels(2);
+        }
+        parameter.setThreads(0);
+        return parameter;
+    }
+
+    /**
+     * Get the Segmented Outputs of a movie, one for each movie file
+     *
+     * @param client Client
+     * @param movie  Movie
+     * @return Segmented Outputs
+     */
+    private List<SegmentedOutput> getSegmentedOutputs(String client, final Movie movie) {
+        List<SegmentedOutput> outputs = new ArrayList<SegmentedOutput>();
+        for (MovieFile movieFile : movie.getFiles()) {
+            final String input = movieFile.getAbsolutePath();
+            List<String> parameters = createXboxParameter(movie, input, true).getParameters();
+            parameters.add("segment=" + segmentTime);
+            String key = TranscodedCache.createKey(new File(input), client, parameters);
+            outputs.add(SegmentedOutputCache.getInstance().getOutput(key, movieFile.getDuration(), segmentTime, new SegmentParameterFactory() {
+                @Override
+                public FFmpegConverterParameter createParameter() {
+                    return createXboxParameter(movie, input, true);
+                }
+            }));
+        }
+        return outputs;
     }
 
     @Override
@@ -444,4 +659,44 @@ public class TranscoderServiceImpl implements TranscoderService {
     public void setConfigAdmin(ConfigurationAdmin configAdmin) {
         this.configAdmin = configAdmin;
     }
+
+    /**
+     * Delete temp files left by image transcoding, sub directories are kept
+     */
+    private void deleteTempFiles() {
+        File[] files = tempDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !file.delete()) {
+                    logger.warn("Can not delete temp file: {}.", file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a slot count configuration
+     *
+     * @param props        Configuration Properties
+     * @param key          Configuration Key
+     * @param defaultValue Default Slot Count
+     * @return Slot Count
+     */
+    private int loadSlots(Dictionary props, String key, int defaultValue) {
+        String value = ConfigUtils.loadConfiguration(props, key);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int slots = Integer.parseInt(value);
+                if (slots > 0) {
+                    logger.debug("Transcoder Service configuration <{}> loaded.", key);
+                    return slots;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+            logger.error("Transcoder Service configuration <{}> is not valid.", key);
+        } else {
+            logger.debug("Transcoder Service load default <{}>.", key);
+        }
+        return defaultValue;
+    }
 }
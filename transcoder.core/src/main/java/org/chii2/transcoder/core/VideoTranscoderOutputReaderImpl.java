@@ -1,7 +1,7 @@
 package org.chii2.transcoder.core;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.BackgroundTranscoderTask;
 import org.chii2.transcoder.api.core.VideoTranscoderOutputReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +16,8 @@ import java.io.InputStreamReader;
 public abstract class VideoTranscoderOutputReaderImpl implements VideoTranscoderOutputReader {
     // Transcoder Process
     private Process process;
-    // Background Transcoder Service
-    protected BackgroundTranscoderService service;
+    // Background Transcoder Task
+    protected BackgroundTranscoderTask task;
     // Logger
     private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
 
@@ -25,11 +25,11 @@ public abstract class VideoTranscoderOutputReaderImpl implements VideoTranscoder
      * Constructor
      *
      * @param process Transcoder Process
-     * @param service Background Transcoder Service
+     * @param task    Background Transcoder Task
      */
-    public VideoTranscoderOutputReaderImpl(Process process, BackgroundTranscoderService service) {
+    public VideoTranscoderOutputReaderImpl(Process process, BackgroundTranscoderTask task) {
         this.process = process;
-        this.service = service;
+        this.task = task;
     }
 
     @Override
@@ -49,10 +49,6 @@ public abstract class VideoTranscoderOutputReaderImpl implements VideoTranscoder
         } catch (IOException e) {
             logger.warn("Parse transcoder output text with error: {}", ExceptionUtils.getMessage(e));
         } finally {
-            // Call Back
-            if (this.service != null) {
-                this.service.setCurrentTaskStatus(0);
-            }
             // Close Buffer Reader
             try {
                 reader.close();
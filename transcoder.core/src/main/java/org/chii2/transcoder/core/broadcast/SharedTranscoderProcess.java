@@ -0,0 +1,137 @@
+package org.chii2.transcoder.core.broadcast;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.chii2.transcoder.core.io.TranscodedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reader side of a shared Transcoder Process
+ * Every reader has its own stream over the output file, destroy only detaches the reader.
+ */
+public class SharedTranscoderProcess implements TranscoderProcess {
+    // Reader
+    private final TranscodedBroadcaster.Reader reader;
+    // Shared Source
+    private final TranscodedBroadcaster.SharedSource source;
+    // Reader Stream
+    private InputStream stream;
+    // Detached
+    private volatile boolean detached = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Constructor
+     *
+     * @param reader Reader
+     * @param source Shared Source
+     */
+    SharedTranscoderProcess(TranscodedBroadcaster.Reader reader, TranscodedBroadcaster.SharedSource source) {
+        this.reader = reader;
+        this.source = source;
+    }
+
+    @Override
+    public void init() {
+        // Only the first reader really starts the encode
+        synchronized (source) {
+            if (!source.process.isStarted()) {
+                source.process.init();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        detach(false);
+    }
+
+    @Override
+    public void cache() {
+        detach(true);
+    }
+
+    @Override
+    public String getRequestId() {
+        return source.process.getRequestId();
+    }
+
+    @Override
+    public File getOutputFile() {
+        return source.process.getOutputFile();
+    }
+
+    @Override
+    public InputStream getOutputFileStream() {
+        if (stream == null && !detached) {
+            try {
+                stream = new TranscodedInputStream(getOutputFile(), source.process);
+            } catch (FileNotFoundException e) {
+                logger.error("Create Transcoded InputStream with error: {}", e.getMessage());
+            }
+        }
+        return stream;
+    }
+
+    @Override
+    public long getCurrentSize() {
+        return source.process.getCurrentSize();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return source.process.isStarted();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return source.process.isFinished();
+    }
+
+    @Override
+    public boolean isStopped() {
+        return detached || source.process.isStopped();
+    }
+
+    @Override
+    public void setStopped(boolean stopped) {
+        source.process.setStopped(stopped);
+    }
+
+    @Override
+    public void setFinished(boolean finished) {
+        source.process.setFinished(finished);
+    }
+
+    @Override
+    public void setStarted(boolean started) {
+        source.process.setStarted(started);
+    }
+
+    /**
+     * Close reader stream and detach from the shared process
+     *
+     * @param keep Hand over the process to the transcoded cache when the session is removed
+     */
+    private synchronized void detach(boolean keep) {
+        if (detached) {
+            return;
+        }
+        detached = true;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignore) {
+            } finally {
+                stream = null;
+            }
+        }
+        TranscodedBroadcaster.getInstance().detach(reader, source, keep);
+    }
+}
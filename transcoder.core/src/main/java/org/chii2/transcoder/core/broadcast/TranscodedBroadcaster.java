@@ -0,0 +1,272 @@
+package org.chii2.transcoder.core.broadcast;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global Broadcaster for live Transcoded Process
+ * Clients playing the same movie with the same profile share one running encode,
+ * each client reads the growing output with its own cursor.
+ * Readers are counted per session, the processes of all discs are torn down together when the last reader leaves,
+ * so a new reader never attaches to a disc whose process is already gone.
+ * A kept encode still running stays owned by its session for the idle timeout, so a client coming back
+ * attaches to it again, it is only handed over to the transcoded cache when the session is removed.
+ */
+public class TranscodedBroadcaster {
+    // Singleton
+    private static final TranscodedBroadcaster INSTANCE = new TranscodedBroadcaster();
+    // Running Sessions, keyed by movie id and client profile
+    private final Map<String, Session> sessions = new HashMap<>();
+    // Idle Timeout of a kept running session (ms)
+    private long idleTimeout = 30000;
+    // Timer removing idle sessions
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Chii2 Transcoded Broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Get Transcoded Broadcaster Instance
+     *
+     * @return Transcoded Broadcaster Instance
+     */
+    public static TranscodedBroadcaster getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Attach a new reader to the encode of movie for client.
+     * If no usable encode is running, the given processes become the shared encode.
+     *
+     * @param movieId   Movie ID
+     * @param client    Client Profile
+     * @param processes Transcoder Processes to use if no encode is running
+     * @return Reader Processes, one for each shared process
+     */
+    public synchronized List<TranscoderProcess> attach(String movieId, String client, List<TranscoderProcess> processes) {
+        String key = movieId + "/" + client;
+        Session session = sessions.get(key);
+        if (session == null || session.isBroken() || (session.readers <= 0 && !session.isRunning())) {
+            if (session != null && session.readers <= 0) {
+                remove(session);
+            }
+            session = new Session(key, processes);
+            sessions.put(key, session);
+            logger.debug("Start a new transcoded broadcast session {}.", key);
+        } else {
+            logger.debug("Attach to running transcoded broadcast session {}.", key);
+        }
+        Reader reader = new Reader(session);
+        session.readers++;
+        List<TranscoderProcess> readers = new ArrayList<>();
+        for (SharedSource source : session.sources) {
+            readers.add(new SharedTranscoderProcess(reader, source));
+        }
+        return readers;
+    }
+
+    /**
+     * Get the number of readers attached to the encode of movie for client
+     *
+     * @param movieId Movie ID
+     * @param client  Client Profile
+     * @return Reader Count
+     */
+    public synchronized int getReaderCount(String movieId, String client) {
+        Session session = sessions.get(movieId + "/" + client);
+        return session == null ? 0 : session.readers;
+    }
+
+    /**
+     * Detach a reader from a shared process
+     * The reader leaves once it detached from all processes. When the last reader leaves the session,
+     * it is removed, unless all processes were kept and one is still running, then it is removed after the idle timeout.
+     *
+     * @param reader Reader
+     * @param source Shared Source
+     * @param keep   Hand over the process to the transcoded cache instead of destroying it
+     */
+    synchronized void detach(Reader reader, SharedSource source, boolean keep) {
+        Session session = reader.session;
+        if (keep) {
+            source.keep = true;
+        }
+        reader.attached--;
+        if (reader.attached > 0) {
+            return;
+        }
+        session.readers--;
+        if (session.readers > 0) {
+            return;
+        }
+        boolean kept = true;
+        for (SharedSource shared : session.sources) {
+            kept = kept && shared.keep;
+        }
+        if (kept && session.isRunning()) {
+            // A kept running encode stays attachable, the client usually comes back for the same output
+            final Session idle = session;
+            final long generation = ++session.idleGeneration;
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire(idle, generation);
+                }
+            }, idleTimeout, TimeUnit.MILLISECONDS);
+            logger.debug("Transcoded broadcast session {} idle, last reader left.", session.key);
+        } else {
+            remove(session);
+        }
+    }
+
+    /**
+     * Set the idle timeout of a kept running session
+     *
+     * @param idleTimeout Idle Timeout (ms)
+     */
+    synchronized void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Remove a session which stayed idle since the last reader left
+     *
+     * @param session    Session
+     * @param generation Idle Generation when the last reader left
+     */
+    private synchronized void expire(Session session, long generation) {
+        if (session.readers <= 0 && session.idleGeneration == generation) {
+            remove(session);
+        }
+    }
+
+    /**
+     * Remove a session without readers, each process is handed over to the transcoded cache (if a reader kept it) or destroyed
+     *
+     * @param session Session
+     */
+    private void remove(Session session) {
+        if (session.removed) {
+            return;
+        }
+        session.removed = true;
+        for (SharedSource shared : session.sources) {
+            if (shared.keep) {
+                shared.process.cache();
+            } else {
+                shared.process.destroy();
+            }
+        }
+        if (sessions.get(session.key) == session) {
+            sessions.remove(session.key);
+        }
+        logger.debug("Transcoded broadcast session {} finished.", session.key);
+    }
+
+    /**
+     * Shutdown the broadcaster
+     * This should be called before application exit
+     */
+    public synchronized void shutdown() {
+        for (Session session : sessions.values()) {
+            session.removed = true;
+            for (SharedSource source : session.sources) {
+                source.process.destroy();
+            }
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Broadcast Session, the shared processes of one movie for one client profile
+     */
+    static class Session {
+        // Session Key
+        private final String key;
+        // Shared Sources
+        private final List<SharedSource> sources = new ArrayList<>();
+        // Attached Readers
+        private int readers;
+        // Incremented whenever the last reader leaves, a pending idle timeout only removes the session of its generation
+        private long idleGeneration;
+        // Processes handed over or destroyed
+        private boolean removed;
+
+        Session(String key, List<TranscoderProcess> processes) {
+            this.key = key;
+            for (TranscoderProcess process : processes) {
+                this.sources.add(new SharedSource(process));
+            }
+        }
+
+        /**
+         * A process stopped without finishing, new readers should not attach
+         *
+         * @return True if broken
+         */
+        boolean isBroken() {
+            for (SharedSource source : sources) {
+                if (source.process.isStarted() && source.process.isStopped() && !source.process.isFinished()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * A process is encoding
+         *
+         * @return True if running
+         */
+        boolean isRunning() {
+            for (SharedSource source : sources) {
+                if (source.process.isStarted() && !source.process.isStopped() && !source.process.isFinished()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reader, the processes handed out by one attach
+     */
+    static class Reader {
+        // Broadcast Session
+        private final Session session;
+        // Processes not detached yet
+        private int attached;
+
+        Reader(Session session) {
+            this.session = session;
+            this.attached = session.sources.size();
+        }
+    }
+
+    /**
+     * Shared Source, a real transcoder process
+     */
+    static class SharedSource {
+        // Real Process
+        final TranscoderProcess process;
+        // A reader asked to keep the output
+        boolean keep;
+
+        SharedSource(TranscoderProcess process) {
+            this.process = process;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.chii2.transcoder.core.cache;
+
+/**
+ * Transcoder Process whose finished output can be kept in the Transcoded Cache
+ */
+public interface CacheableProcess {
+
+    /**
+     * Get the cache key of the output, computed from source and parameters
+     *
+     * @return Cache Key, null if the output should not be cached
+     */
+    public String getCacheKey();
+}
@@ -0,0 +1,122 @@
+package org.chii2.transcoder.core.cache;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.chii2.transcoder.core.io.TranscodedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Transcoder Process served from a finished file in the Transcoded Cache
+ * Nothing is started, destroy never deletes the file since the cache owns it.
+ */
+public class CachedTranscoderProcess implements TranscoderProcess {
+    // Request ID
+    private String requestId;
+    // Cached File
+    private File outputFile;
+    // Output Stream
+    private InputStream stream;
+    // Started
+    private volatile boolean started = true;
+    // Finished
+    private volatile boolean finished = true;
+    // Stopped
+    private volatile boolean stopped = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Constructor
+     *
+     * @param requestId  Request ID
+     * @param outputFile Cached File
+     */
+    public CachedTranscoderProcess(String requestId, File outputFile) {
+        this.requestId = requestId;
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public void init() {
+        logger.debug("Serve request {} from transcoded file {}.", requestId, outputFile.getAbsolutePath());
+    }
+
+    @Override
+    public void destroy() {
+        if (this.stream != null) {
+            try {
+                this.stream.close();
+            } catch (IOException ignore) {
+            } finally {
+                this.stream = null;
+            }
+        }
+    }
+
+    @Override
+    public void cache() {
+        this.destroy();
+    }
+
+    @Override
+    public String getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    @Override
+    public InputStream getOutputFileStream() {
+        if (stream == null) {
+            try {
+                stream = new TranscodedInputStream(outputFile, this);
+            } catch (FileNotFoundException e) {
+                logger.error("Create Transcoded InputStream with error: {}", e.getMessage());
+            }
+        }
+        return stream;
+    }
+
+    @Override
+    public long getCurrentSize() {
+        return outputFile.length();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    @Override
+    public void setStopped(boolean stopped) {
+        this.stopped = stopped;
+    }
+
+    @Override
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
+    @Override
+    public void setStarted(boolean started) {
+        this.started = started;
+    }
+}
@@ -4,30 +4,55 @@ import org.chii2.transcoder.api.core.TranscoderProcess;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.concurrent.*;
 
 /**
  * Global Cache for Transcoded Process and Transcoded File
+ * Finished files are kept on disk, keyed by source file and transcoding parameters,
+ * and evicted least recently used first once the cache exceeds its size in bytes.
+ * Only finished files are written to the on-disk index, anything else found in the
+ * cache directory at startup is a partial output from a crash and gets deleted.
  */
 public class TranscodedCache {
     // Singleton
     private static final TranscodedCache INSTANCE = new TranscodedCache();
-    // Max File Count
-    private final static int MAX_FILE_COUNT = 100;
+    // Index File Name
+    private final static String INDEX_FILE = "cache.index";
+    // Index Charset
+    private final static Charset UTF8 = Charset.forName("UTF-8");
     // Max Process Count
     private final static int MAX_PROCESS_COUNT = 1;
     // Transcoded Process Timeout
     private final static int PROCESS_TIMEOUT = 10;
+    // Delay before an access order changed by lookups is saved (s)
+    private final static int INDEX_SAVE_DELAY = 30;
     // Transcoded Process Cache
     private Map<String, TranscoderProcess> processCache = Collections.synchronizedMap(new LinkedHashMap<String, TranscoderProcess>());
     // Transcoded Process Timer Cache
     private Map<String, ScheduledFuture> timerCache = Collections.synchronizedMap(new LinkedHashMap<String, ScheduledFuture>());
-    // Transcoded File Cache
-    private Map<String, File> fileCache = Collections.synchronizedMap(new LinkedHashMap<String, File>());
+    // Transcoded File Cache, keyed by cache key in access order
+    private final LinkedHashMap<String, CacheEntry> fileCache = new LinkedHashMap<>(16, 0.75f, true);
+    // Cache Directory
+    private File directory;
+    // Max Cache Size in bytes
+    private long maxSize = Long.MAX_VALUE;
+    // Current Cache Size in bytes
+    private long currentSize = 0;
+    // Pending delayed index save, null if the index is saved
+    private ScheduledFuture indexSaveTimer;
+    // Index snapshots taken, a snapshot is only written if no newer one was written before
+    private long indexVersion = 0;
+    // Version of the last index written, guarded by indexLock
+    private long savedVersion = 0;
+    // Lock for writing the index file, the cache itself is not locked while writing
+    private final Object indexLock = new Object();
     // Timers
     private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(MAX_PROCESS_COUNT);
     // Logger
@@ -74,25 +99,7 @@ public class TranscodedCache {
                 process.destroy();
                 // Start and Finished
                 if (process.isStarted() && process.isFinished()) {
-                    String id = process.getRequestId();
-                    if (!fileCache.containsKey(id)) {
-                        fileCache.put(id, process.getOutputFile());
-                        logger.debug("Add transcoded file {} from request {} to cache.", process.getOutputFile().getAbsolutePath(), id);
-                        // Remove old one
-                        if (fileCache.size() > MAX_FILE_COUNT) {
-                            for (Map.Entry<String, File> entry : fileCache.entrySet()) {
-                                // Remove from cache
-                                File file = fileCache.remove(entry.getKey());
-                                logger.info("Remove transcoded file {} from request {} from cache because cache limited.", file.getAbsolutePath(), entry.getKey());
-                                // Delete file
-                                logger.info("Delete transcoded file {} from request {}.", file.getAbsolutePath(), entry.getKey());
-                                this.deleteFile(entry.getValue());
-                                if (fileCache.size() <= MAX_FILE_COUNT) {
-                                    break;
-                                }
-                            }
-                        }
-                    }
+                    this.storeProcess(process);
                 }
             }
 
@@ -109,40 +116,175 @@ public class TranscodedCache {
     }
 
     /**
-     * Cache contains file for request id
+     * Load the on-disk index, delete partial files and evict down to the max size
      *
-     * @param requestId Request ID
-     * @return True if in the file cache
+     * @param directory Cache Directory
+     * @param maxSize   Max Cache Size in bytes
      */
-    public boolean containFile(String requestId) {
-        return fileCache.containsKey(requestId);
+    public synchronized void init(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.fileCache.clear();
+        this.currentSize = 0;
+        // Load index, eldest first
+        File indexFile = new File(directory, INDEX_FILE);
+        if (indexFile.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length != 3) {
+                        continue;
+                    }
+                    File file = new File(directory, fields[1]);
+                    long size = Long.parseLong(fields[2]);
+                    if (file.isFile() && file.length() == size) {
+                        fileCache.put(fields[0], new CacheEntry(file, size));
+                        currentSize = currentSize + size;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                logger.warn("Transcoded cache index {} is not valid: {}.", indexFile.getAbsolutePath(), e.getMessage());
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+        // Delete files not in the index
+        Set<String> names = new HashSet<>();
+        names.add(INDEX_FILE);
+        for (CacheEntry entry : fileCache.values()) {
+            names.add(entry.file.getName());
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !names.contains(file.getName())) {
+                    logger.info("Delete partial transcoded file {}.", file.getAbsolutePath());
+                    this.deleteFile(file);
+                }
+            }
+        }
+        this.evict(null);
+        this.saveIndex();
+        logger.info("Transcoded cache loaded {} files, {} bytes.", fileCache.size(), currentSize);
     }
 
     /**
-     * Cache contains process for request id
+     * Get the cache directory, where new transcoded files should be written
      *
-     * @param requestId Request ID
-     * @return True if in the process cache
+     * @return Cache Directory
      */
-    public boolean containProcess(String requestId) {
-        return processCache.containsKey(requestId);
+    public synchronized File getDirectory() {
+        return directory;
     }
 
     /**
-     * Retrieve File from cache
+     * Retrieve finished File from cache, the file stays in the cache
      *
-     * @param requestId Request ID
-     * @return File
+     * @param key Cache Key
+     * @return File, null if not cached
      */
-    public File retrieveFile(String requestId) {
-        File file = null;
-        if (fileCache.containsKey(requestId)) {
-            file = fileCache.remove(requestId);
-            if (file != null) {
-                logger.debug("File {} for request {} is retrieved from cache.", file.getAbsolutePath(), requestId);
+    public synchronized File lookup(String key) {
+        if (key == null) {
+            return null;
+        }
+        CacheEntry entry = fileCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.file.isFile()) {
+            // Removed behind our back, also dropped from the index at the next start
+            fileCache.remove(key);
+            currentSize = currentSize - entry.size;
+            this.scheduleIndexSave();
+            return null;
+        }
+        logger.debug("File {} for key {} is retrieved from cache.", entry.file.getAbsolutePath(), key);
+        // The access order is only kept in memory, saved later together with other lookups
+        this.scheduleIndexSave();
+        return entry.file;
+    }
+
+    /**
+     * Add a finished File to cache, the file must be in the cache directory
+     *
+     * @param key  Cache Key
+     * @param file Finished File
+     */
+    public void store(String key, File file) {
+        synchronized (this) {
+            if (key == null || file == null || directory == null || !file.isFile()) {
+                return;
+            }
+            if (!directory.equals(file.getParentFile())) {
+                logger.warn("Transcoded file {} is not in cache directory.", file.getAbsolutePath());
+                return;
+            }
+            CacheEntry old = fileCache.get(key);
+            if (old != null) {
+                if (!old.file.equals(file)) {
+                    // Same output encoded twice, keep the indexed one
+                    this.deleteFile(file);
+                }
+                return;
+            }
+            long size = file.length();
+            fileCache.put(key, new CacheEntry(file, size));
+            currentSize = currentSize + size;
+            logger.debug("Add transcoded file {} with key {} to cache.", file.getAbsolutePath(), key);
+            this.evict(key);
+        }
+        // Saved at once, a file missing from the index is deleted as partial at the next start
+        this.saveIndex();
+    }
+
+    /**
+     * Create a cache key for a transcoded output
+     * The source is identified by path, size and modified time instead of a content hash,
+     * hashing whole movie files would cost more than most transcodings.
+     *
+     * @param source     Source File
+     * @param profile    Client Profile
+     * @param parameters Transcoding Parameters, without the output file
+     * @return Cache Key, null if no digest is available
+     */
+    public static String createKey(File source, String profile, List<String> parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            sb.append(source.getAbsolutePath()).append('\n');
+            sb.append(source.length()).append('\n');
+            sb.append(source.lastModified()).append('\n');
+            sb.append(profile).append('\n');
+            for (String parameter : parameters) {
+                sb.append(parameter).append('\n');
             }
+            byte[] hash = digest.digest(sb.toString().getBytes(UTF8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : hash) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
         }
-        return file;
+    }
+
+    /**
+     * Cache contains process for request id
+     *
+     * @param requestId Request ID
+     * @return True if in the process cache
+     */
+    public boolean containProcess(String requestId) {
+        return processCache.containsKey(requestId);
     }
 
     /**
@@ -181,10 +323,8 @@ public class TranscodedCache {
             process.destroy();
         }
         processCache.clear();
-        for (File file : fileCache.values()) {
-            this.deleteFile(file);
-        }
-        fileCache.clear();
+        // Keep files for the next start, only persist the access order
+        this.saveIndex();
     }
 
     private void deleteFile(File file) {
@@ -207,27 +347,96 @@ public class TranscodedCache {
         process.destroy();
         // Finished ? add to file cache
         if (process.isStarted() && process.isFinished()) {
-            String id = process.getRequestId();
-            if (!fileCache.containsKey(id)) {
-                fileCache.put(id, process.getOutputFile());
-                logger.debug("Add transcoded file {} from request {} to cache.", process.getOutputFile().getAbsolutePath(), id);
-                // Remove old one
-                if (fileCache.size() > MAX_FILE_COUNT) {
-                    for (Map.Entry<String, File> entry : fileCache.entrySet()) {
-                        // Remove from cache
-                        File file = fileCache.remove(entry.getKey());
-                        logger.info("Remove transcoded file {} from request {} from cache because cache limited.", file.getAbsolutePath(), entry.getKey());
-                        // Delete file
-                        logger.info("Delete transcoded file {} from request {}.", file.getAbsolutePath(), entry.getKey());
-                        this.deleteFile(entry.getValue());
-                        if (fileCache.size() <= MAX_FILE_COUNT) {
-                            break;
-                        }
+            this.storeProcess(process);
+        } else {
+            this.deleteFile(process.getOutputFile());
+        }
+    }
+
+    private void storeProcess(TranscoderProcess process) {
+        if (process instanceof CacheableProcess) {
+            this.store(((CacheableProcess) process).getCacheKey(), process.getOutputFile());
+        }
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = fileCache.entrySet().iterator();
+        while (currentSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, CacheEntry> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            currentSize = currentSize - entry.getValue().size;
+            logger.info("Delete transcoded file {} from cache because cache limited.", entry.getValue().file.getAbsolutePath());
+            this.deleteFile(entry.getValue().file);
+        }
+    }
+
+    /**
+     * Save the index later, lookups change the access order on every browse and probe
+     */
+    private void scheduleIndexSave() {
+        if (indexSaveTimer == null && directory != null) {
+            try {
+                indexSaveTimer = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        saveIndex();
+                    }
+                }, INDEX_SAVE_DELAY, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down, the index was saved
+            }
+        }
+    }
+
+    /**
+     * Save the index, the file is written from a snapshot without holding the cache lock
+     */
+    private void saveIndex() {
+        File indexFile;
+        StringBuilder content = new StringBuilder();
+        long version;
+        synchronized (this) {
+            if (directory == null) {
+                return;
+            }
+            if (indexSaveTimer != null) {
+                indexSaveTimer.cancel(false);
+                indexSaveTimer = null;
+            }
+            for (Map.Entry<String, CacheEntry> entry : fileCache.entrySet()) {
+                content.append(entry.getKey()).append('\t').append(entry.getValue().file.getName()).append('\t').append(entry.getValue().size).append('\n');
+            }
+            indexFile = new File(directory, INDEX_FILE);
+            version = ++indexVersion;
+        }
+        synchronized (indexLock) {
+            if (version < savedVersion) {
+                // A newer snapshot is written already
+                return;
+            }
+            File tempFile = new File(indexFile.getParentFile(), INDEX_FILE + ".tmp");
+            Writer writer = null;
+            try {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF8));
+                writer.write(content.toString());
+                writer.close();
+                writer = null;
+                // Replace at once, a crash leaves either the old or the new index
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                savedVersion = version;
+            } catch (IOException e) {
+                logger.error("Save transcoded cache index with error: {}.", e.getMessage());
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException ignore) {
                     }
                 }
             }
-        } else {
-            this.deleteFile(process.getOutputFile());
         }
     }
 
@@ -260,4 +469,19 @@ public class TranscodedCache {
             }
         }
     }
+
+    /**
+     * Cached File and its size when added
+     */
+    private static class CacheEntry {
+        // Cached File
+        final File file;
+        // File Size
+        final long size;
+
+        CacheEntry(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
 }
@@ -54,6 +54,18 @@ public class FFmpegConverterParameter {
     private List<String> audioPresets;
     // Threads
     private int threads = -1;
+    // Input Start Time in seconds
+    private long startTime = -1;
+    // Output Duration in seconds
+    private long duration = -1;
+    // Segment Duration in seconds, segmented MPEG-TS output if > 0
+    private int segmentTime = -1;
+    // First Segment Number
+    private int segmentStartNumber = 0;
+    // Segment List (CSV), a line is appended when a segment is complete
+    private File segmentList;
+    // Fragmented MP4 output, playable while it is still written
+    private boolean fragmented = false;
 
     /**
      * Constructor
@@ -96,8 +108,17 @@ public class FFmpegConverterParameter {
         // FFmpeg
         ffmpegCommands.add("ffmpeg");
         ffmpegCommands.add("-y");
+        // Seek on input, fast and lands on the requested time
+        if (startTime > 0) {
+            ffmpegCommands.add("-ss");
+            ffmpegCommands.add(String.valueOf(startTime));
+        }
         ffmpegCommands.add("-i");
         ffmpegCommands.add(input);
+        if (duration > 0) {
+            ffmpegCommands.add("-t");
+            ffmpegCommands.add(String.valueOf(duration));
+        }
         ffmpegCommands.add("-vcodec");
         ffmpegCommands.add(videoCodec);
         if (!"copy".equalsIgnoreCase(videoCodec)) {
@@ -179,7 +200,44 @@ public class FFmpegConverterParameter {
             ffmpegCommands.add("-threads");
             ffmpegCommands.add(String.valueOf(threads));
         }
-        ffmpegCommands.add(outputFile.getAbsolutePath());
+        if (segmentTime > 0) {
+            // Key frame on every segment boundary, so segments from different runs line up
+            if (!"copy".equalsIgnoreCase(videoCodec)) {
+                ffmpegCommands.add("-force_key_frames");
+                ffmpegCommands.add("expr:gte(t,n_forced*" + segmentTime + ")");
+            }
+            // Keep timestamps of the source time line
+            if (startTime > 0) {
+                ffmpegCommands.add("-output_ts_offset");
+                ffmpegCommands.add(String.valueOf(startTime));
+            }
+            ffmpegCommands.add("-f");
+            ffmpegCommands.add("segment");
+            ffmpegCommands.add("-segment_format");
+            ffmpegCommands.add("mpegts");
+            ffmpegCommands.add("-segment_time");
+            ffmpegCommands.add(String.valueOf(segmentTime));
+            ffmpegCommands.add("-segment_start_number");
+            ffmpegCommands.add(String.valueOf(segmentStartNumber));
+            if (segmentList != null) {
+                ffmpegCommands.add("-segment_list");
+                ffmpegCommands.add(segmentList.getAbsolutePath());
+                ffmpegCommands.add("-segment_list_type");
+                ffmpegCommands.add("csv");
+            }
+        }
+        if (fragmented && segmentTime <= 0) {
+            // The movie header is written first and media follows in fragments,
+            // a plain MP4 only gets its header when the encode is finished
+            ffmpegCommands.add("-f");
+            ffmpegCommands.add("mp4");
+            ffmpegCommands.add("-movflags");
+            ffmpegCommands.add("frag_keyframe+empty_moov");
+        }
+        // Output, not set yet when the parameters only identify the output
+        if (outputFile != null) {
+            ffmpegCommands.add(outputFile.getAbsolutePath());
+        }
 
         if (pipe != null && pipe.size() > 0) {
             List<String> commands = new ArrayList<String>();
@@ -370,4 +428,52 @@ public class FFmpegConverterParameter {
     public void setThreads(int threads) {
         this.threads = threads;
     }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public int getSegmentTime() {
+        return segmentTime;
+    }
+
+    public void setSegmentTime(int segmentTime) {
+        this.segmentTime = segmentTime;
+    }
+
+    public int getSegmentStartNumber() {
+        return segmentStartNumber;
+    }
+
+    public void setSegmentStartNumber(int segmentStartNumber) {
+        this.segmentStartNumber = segmentStartNumber;
+    }
+
+    public File getSegmentList() {
+        return segmentList;
+    }
+
+    public void setSegmentList(File segmentList) {
+        this.segmentList = segmentList;
+    }
+
+    public boolean isFragmented() {
+        return fragmented;
+    }
+
+    public void setFragmented(boolean fragmented) {
+        this.fragmented = fragmented;
+    }
 }
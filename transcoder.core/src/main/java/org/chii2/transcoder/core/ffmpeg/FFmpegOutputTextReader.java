@@ -36,18 +36,27 @@ public class FFmpegOutputTextReader implements Runnable {
         try {
             while ((line = reader.readLine()) != null) {
                 // If process stopped, stop this
-                if (!this.process.stopped) {
+                if (this.process.stopped) {
                     return;
                 }
                 // Output Information
                 if (line.startsWith("frame=")) {
                     processOutput(line);
+                    this.process.getOutputProgress().signal();
                 }
             }
-            // Mark as finish
-            this.process.finished = true;
+            // Mark as finish, only a clean exit leaves a complete output
+            int exitValue = this.process.waitFor();
+            if (exitValue == 0) {
+                this.process.setFinished(true);
+            } else if (!this.process.stopped) {
+                logger.warn("FFmpeg process exit with value {}.", exitValue);
+                this.process.destroy();
+            }
         } catch (IOException e) {
             logger.debug("FFmpeg output text reading with error: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            logger.debug("FFmpeg output text reading interrupted.");
         } finally {
             try {
                 reader.close();
@@ -76,10 +85,25 @@ public class FFmpegOutputTextReader implements Runnable {
                 bitrate = bitrate.substring(0, bitrate.length() - 7);
             }
             process.size = NumberUtils.toLong(size);
-            process.duration = NumberUtils.toFloat(time);
+            process.duration = parseTime(time);
             process.bitrate = NumberUtils.toLong(bitrate);
         } catch (Exception e) {
             logger.error("FFmpeg output text parsing with error: {}", e.getMessage());
         }
     }
+
+    /**
+     * Parse ffmpeg time, either seconds or hh:mm:ss.xx
+     *
+     * @param time Time
+     * @return Time in seconds
+     */
+    private float parseTime(String time) {
+        String[] parts = StringUtils.split(time, ':');
+        float seconds = 0;
+        for (String part : parts) {
+            seconds = seconds * 60 + NumberUtils.toFloat(part);
+        }
+        return seconds;
+    }
 }
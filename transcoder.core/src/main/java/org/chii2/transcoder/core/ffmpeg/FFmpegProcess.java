@@ -2,9 +2,17 @@ package org.chii2.transcoder.core.ffmpeg;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.io.FileUtils;
 import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.chii2.transcoder.core.cache.CacheableProcess;
 import org.chii2.transcoder.core.cache.TranscodedCache;
+import org.chii2.transcoder.core.io.OutputProgress;
+import org.chii2.transcoder.core.io.OutputWatcher;
+import org.chii2.transcoder.core.io.ProgressiveProcess;
 import org.chii2.transcoder.core.io.TranscodedInputStream;
+import org.chii2.transcoder.core.scheduler.JobClass;
+import org.chii2.transcoder.core.scheduler.Ticket;
+import org.chii2.transcoder.core.scheduler.TranscodeScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,7 +22,7 @@ import java.util.List;
 /**
  * FFmpeg Process Wrapper
  */
-public class FFmpegProcess implements TranscoderProcess {
+public class FFmpegProcess implements TranscoderProcess, ProgressiveProcess, CacheableProcess {
     // Size
     public volatile long size;
     // Duration
@@ -30,12 +38,20 @@ public class FFmpegProcess implements TranscoderProcess {
 
     // Request ID
     private String requestId;
+    // Cache Key
+    private String cacheKey;
     // FFmpeg parameter
     private FFmpegConverterParameter parameter;
     // Real Thread Process
     private Process process;
     // Stream
     private TranscodedInputStream stream;
+    // Output Progress
+    private final OutputProgress progress = new OutputProgress();
+    // Scheduler Ticket
+    private volatile Ticket ticket;
+    // Max wait for a live transcoding slot (ms)
+    private final static long SLOT_TIMEOUT = 10000;
 
     // Logger
     protected Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.ffmpeg");
@@ -51,11 +67,32 @@ public class FFmpegProcess implements TranscoderProcess {
         this.parameter = parameter;
     }
 
+    /**
+     * Constructor
+     *
+     * @param requestId Request ID
+     * @param parameter FFmpeg Parameter
+     * @param cacheKey  Cache Key of the output, null to not cache it
+     */
+    public FFmpegProcess(String requestId, FFmpegConverterParameter parameter, String cacheKey) {
+        this(requestId, parameter);
+        this.cacheKey = cacheKey;
+    }
+
     @Override
     public void init() {
         try {
+            // Wait for a live transcoding slot
+            ticket = TranscodeScheduler.getInstance().acquire(JobClass.LIVE_VIDEO, SLOT_TIMEOUT, null);
+            if (ticket == null) {
+                logger.warn("FFmpeg Process can not get a transcoding slot.");
+                this.stopped = true;
+                return;
+            }
             // Parameters
             List<String> commands = parameter.getParameters();
+            // Wake up readers whenever the output file is modified
+            OutputWatcher.getInstance().register(getOutputFile(), progress);
             // Start FFmpeg
             logger.info("Starting FFmpeg process with parameters: {}", commands);
             // ffmpeg process
@@ -72,9 +109,10 @@ public class FFmpegProcess implements TranscoderProcess {
             //}
 
             // Make sure output file's size > 0
+            // Segmented output reports no size, the segment list tells readers when a segment is ready
             while ((line = reader.readLine()) != null) {
                 if (line.startsWith("frame=")) {
-                    if (processOutput(line)) {
+                    if (processOutput(line) || parameter.getSegmentTime() > 0) {
                         break;
                     }
                 }
@@ -87,8 +125,12 @@ public class FFmpegProcess implements TranscoderProcess {
         } catch (IOException e) {
             logger.error("FFmpeg Process with IO Exception: {}", e.getMessage());
             this.destroy();
+        } catch (InterruptedException e) {
+            logger.warn("FFmpeg Process interrupted while waiting for a transcoding slot.");
+            this.stopped = true;
         } finally {
             this.started = true;
+            progress.signal();
         }
     }
 
@@ -101,6 +143,17 @@ public class FFmpegProcess implements TranscoderProcess {
             logger.info("Try to stop FFmpeg Process.");
             process.destroy();
         }
+        // Free the transcoding slot
+        if (this.ticket != null) {
+            this.ticket.release();
+        }
+        // Wake up readers
+        OutputWatcher.getInstance().unregister(getOutputFile());
+        progress.signal();
+        // Partial output is useless
+        if (!this.finished) {
+            FileUtils.deleteQuietly(getOutputFile());
+        }
         // Close Stream
         if (this.stream != null) {
             try {
@@ -120,6 +173,20 @@ public class FFmpegProcess implements TranscoderProcess {
     @Override
     public void setFinished(boolean finished) {
         this.finished = finished;
+        if (finished) {
+            if (this.ticket != null) {
+                this.ticket.release();
+            }
+            OutputWatcher.getInstance().unregister(getOutputFile());
+            // Keep the output for later requests
+            TranscodedCache.getInstance().store(cacheKey, getOutputFile());
+        }
+        progress.signal();
+    }
+
+    @Override
+    public OutputProgress getOutputProgress() {
+        return progress;
     }
 
     @Override
@@ -137,6 +204,24 @@ public class FFmpegProcess implements TranscoderProcess {
         return requestId;
     }
 
+    @Override
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Wait for the ffmpeg process to exit
+     *
+     * @return Exit Value, -1 if never started
+     * @throws InterruptedException Interrupted
+     */
+    int waitFor() throws InterruptedException {
+        if (this.process == null) {
+            return -1;
+        }
+        return this.process.waitFor();
+    }
+
     /**
      * Parse ffmpeg output to make sure output file size not zero
      *
@@ -2,6 +2,9 @@ package org.chii2.transcoder.core.im4java;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.chii2.transcoder.api.core.ImageTranscoderProcess;
+import org.chii2.transcoder.core.scheduler.JobClass;
+import org.chii2.transcoder.core.scheduler.Ticket;
+import org.chii2.transcoder.core.scheduler.TranscodeScheduler;
 import org.im4java.core.ConvertCmd;
 import org.im4java.core.GMOperation;
 import org.im4java.core.IM4JavaException;
@@ -22,6 +25,8 @@ public class IM4JImageTranscoderProcess implements ImageTranscoderProcess {
     private File inputFile;
     // Buffered Image
     private File outputFile;
+    // Max wait for an image transcoding slot (ms)
+    private final static long SLOT_TIMEOUT = 30000;
     // Logger
     private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.im4java");
 
@@ -38,7 +43,14 @@ public class IM4JImageTranscoderProcess implements ImageTranscoderProcess {
 
     @Override
     public void init() {
+        Ticket ticket = null;
         try {
+            // Wait for an image transcoding slot
+            ticket = TranscodeScheduler.getInstance().acquire(JobClass.IMAGE, SLOT_TIMEOUT, null);
+            if (ticket == null) {
+                logger.warn("Image convert can not get a transcoding slot.");
+                return;
+            }
             // Use GM
             GMOperation op = new GMOperation();
             // Pipe
@@ -54,6 +66,10 @@ public class IM4JImageTranscoderProcess implements ImageTranscoderProcess {
             logger.error("Image convert with error: {}.", ExceptionUtils.getMessage(e));
         } catch (IOException e) {
             logger.error("Image convert with error: {}.", ExceptionUtils.getMessage(e));
+        } finally {
+            if (ticket != null) {
+                ticket.release();
+            }
         }
     }
 
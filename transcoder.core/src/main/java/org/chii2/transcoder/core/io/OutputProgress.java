@@ -0,0 +1,44 @@
+package org.chii2.transcoder.core.io;
+
+/**
+ * Output Progress Monitor
+ * Writers signal whenever the output file grows (or the process ends), readers wait for the next signal.
+ */
+public class OutputProgress {
+    // Signal Generation
+    private long generation = 0;
+
+    /**
+     * Get current signal generation
+     * Readers should take the generation before reading, and wait on it after reaching the end of file.
+     *
+     * @return Generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Signal all waiting readers
+     */
+    public synchronized void signal() {
+        generation++;
+        notifyAll();
+    }
+
+    /**
+     * Wait until a signal newer than generation arrives, or timeout
+     *
+     * @param generation Generation taken before reading
+     * @param timeout    Max wait time in milliseconds
+     * @throws InterruptedException Interrupted
+     */
+    public synchronized void await(long generation, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (this.generation == generation && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.chii2.transcoder.core.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Global Watcher for growing transcoded output files
+ * File system modify events (inotify on Linux) signal the Output Progress of the file,
+ * so readers wake up as soon as new bytes are written.
+ */
+public class OutputWatcher implements Runnable {
+    // Singleton
+    private static final OutputWatcher INSTANCE = new OutputWatcher();
+    // Watched Files
+    private final Map<Path, OutputProgress> files = Collections.synchronizedMap(new HashMap<Path, OutputProgress>());
+    // Watched Directories
+    private final Set<Path> directories = new HashSet<>();
+    // Watch Service
+    private WatchService watcher;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Get Output Watcher Instance
+     *
+     * @return Output Watcher Instance
+     */
+    public static OutputWatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Watch output file, and signal progress when it is modified
+     *
+     * @param file     Output File
+     * @param progress Output Progress
+     */
+    public void register(File file, OutputProgress progress) {
+        Path path = file.toPath().toAbsolutePath();
+        Path directory = path.getParent();
+        if (directory == null) {
+            return;
+        }
+        synchronized (directories) {
+            try {
+                if (watcher == null) {
+                    watcher = FileSystems.getDefault().newWatchService();
+                    Thread thread = new Thread(this, "Chii2 Transcoded Output Watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                if (!directories.contains(directory)) {
+                    directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+                    directories.add(directory);
+                }
+            } catch (IOException e) {
+                logger.warn("Can not watch transcoded output directory {}: {}.", directory, e.getMessage());
+                return;
+            }
+        }
+        files.put(path, progress);
+    }
+
+    /**
+     * Stop watching output file
+     *
+     * @param file Output File
+     */
+    public void unregister(File file) {
+        files.remove(file.toPath().toAbsolutePath());
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    // Events lost, wake up every reader
+                    synchronized (files) {
+                        for (OutputProgress progress : files.values()) {
+                            progress.signal();
+                        }
+                    }
+                    continue;
+                }
+                OutputProgress progress = files.get(directory.resolve((Path) event.context()));
+                if (progress != null) {
+                    progress.signal();
+                }
+            }
+            if (!key.reset()) {
+                synchronized (directories) {
+                    directories.remove(directory);
+                }
+            }
+        }
+    }
+}
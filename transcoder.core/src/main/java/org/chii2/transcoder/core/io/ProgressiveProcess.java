@@ -0,0 +1,13 @@
+package org.chii2.transcoder.core.io;
+
+/**
+ * Transcoder Process which signals output progress
+ */
+public interface ProgressiveProcess {
+    /**
+     * Get Output Progress, signalled whenever the output file grows or the process ends
+     *
+     * @return Output Progress
+     */
+    public OutputProgress getOutputProgress();
+}
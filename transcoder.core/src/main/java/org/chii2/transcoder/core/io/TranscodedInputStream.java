@@ -6,13 +6,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Transcoded File Input Stream
+ * Reads a file which is still being written by the transcoder process.
+ * At the end of file, the reader blocks until the process reports progress, finishes or stops.
  */
 public class TranscodedInputStream extends FileInputStream {
+    // Max wait for a progress signal, in case one is missed
+    private final static long MAX_WAIT = 1000;
+    // Poll interval when the process gives no progress signal
+    private final static long POLL_INTERVAL = 100;
     // Transcoded Process
     TranscoderProcess process;
+    // Output Progress
+    OutputProgress progress;
 
     /**
      * Constructor
@@ -24,31 +35,83 @@ public class TranscodedInputStream extends FileInputStream {
     public TranscodedInputStream(File file, TranscoderProcess process) throws FileNotFoundException {
         super(file);
         this.process = process;
+        if (process instanceof ProgressiveProcess) {
+            this.progress = ((ProgressiveProcess) process).getOutputProgress();
+        }
     }
 
-    public int available() throws IOException {
-        int av = super.available();
-        if ((av < 0) && !this.process.isFinished() && !this.process.isStopped()) {
-            return 1;
-        }
-        return av;
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
     }
 
     public int read(byte[] b, int off, int len) throws IOException {
-        int n = -1;
-        while (n == -1) {
-            n = super.read(b, off, len);
-            if (n < 0 && !this.process.isFinished() && !this.process.isStopped()) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException ignore) {
-                }
-                continue;
+        while (true) {
+            long generation = getGeneration();
+            int n = super.read(b, off, len);
+            if (n >= 0) {
+                return n;
+            }
+            if (this.process.isFinished()) {
+                // Bytes may have been written between the read and the finish
+                return super.read(b, off, len);
             }
-            if (n < 0 && (this.process.isFinished() || this.process.isStopped())) {
+            if (this.process.isStopped()) {
                 return n;
             }
+            waitForProgress(generation);
+        }
+    }
+
+    /**
+     * Transfer the remaining output to the target channel with FileChannel.transferTo,
+     * blocking at the end of file until the process writes more or ends.
+     *
+     * @param target Target Channel
+     * @return Bytes transferred
+     * @throws IOException IOException
+     */
+    public long writeTo(WritableByteChannel target) throws IOException {
+        FileChannel channel = getChannel();
+        long total = 0;
+        while (true) {
+            long generation = getGeneration();
+            long position = channel.position();
+            long count = channel.size() - position;
+            if (count > 0) {
+                long l = channel.transferTo(position, count, target);
+                channel.position(position + l);
+                total = total + l;
+                continue;
+            }
+            if (this.process.isFinished()) {
+                if (channel.size() > channel.position()) {
+                    continue;
+                }
+                return total;
+            }
+            if (this.process.isStopped()) {
+                return total;
+            }
+            waitForProgress(generation);
+        }
+    }
+
+    private long getGeneration() {
+        return this.progress == null ? 0 : this.progress.getGeneration();
+    }
+
+    private void waitForProgress(long generation) throws IOException {
+        try {
+            if (this.progress != null) {
+                this.progress.await(generation, MAX_WAIT);
+            } else {
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for transcoded output.");
         }
-        return n;
     }
 }
@@ -2,7 +2,7 @@ package org.chii2.transcoder.core.mencoder;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
-import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.BackgroundTranscoderTask;
 import org.chii2.transcoder.core.VideoTranscoderOutputReaderImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,10 +22,10 @@ public class MencoderOutputTextReader extends VideoTranscoderOutputReaderImpl {
      * Constructor
      *
      * @param process Transcoder Process
-     * @param service Background Transcoder Service
+     * @param task    Background Transcoder Task
      */
-    public MencoderOutputTextReader(Process process, BackgroundTranscoderService service) {
-        super(process, service);
+    public MencoderOutputTextReader(Process process, BackgroundTranscoderTask task) {
+        super(process, task);
     }
 
     @Override
@@ -37,7 +37,7 @@ public class MencoderOutputTextReader extends VideoTranscoderOutputReaderImpl {
         Matcher matcher = this.pattern.matcher(line);
         if (matcher.find() && matcher.groupCount() > 0) {
             // Call Back
-            this.service.setCurrentTaskStatus(NumberUtils.toInt(matcher.group("percent"), 0));
+            this.task.setStatus(NumberUtils.toInt(matcher.group("percent"), 0));
         } else {
             logger.debug("Mencoder Output: {}", line);
         }
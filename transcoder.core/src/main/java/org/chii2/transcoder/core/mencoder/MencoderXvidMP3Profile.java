@@ -1,6 +1,6 @@
 package org.chii2.transcoder.core.mencoder;
 
-import org.chii2.transcoder.api.core.BackgroundTranscoderService;
+import org.chii2.transcoder.api.core.BackgroundTranscoderTask;
 import org.chii2.transcoder.api.core.VideoTranscoderOutputReader;
 import org.chii2.transcoder.api.core.VideoTranscoderProfile;
 import org.chii2.transcoder.api.core.VideoTranscoderProfileSet;
@@ -51,8 +51,8 @@ public class MencoderXvidMP3Profile implements VideoTranscoderProfile {
     }
 
     @Override
-    public VideoTranscoderOutputReader getOutputReader(Process process, BackgroundTranscoderService service) {
-        return new MencoderOutputTextReader(process, service);
+    public VideoTranscoderOutputReader getOutputReader(Process process, BackgroundTranscoderTask task) {
+        return new MencoderOutputTextReader(process, task);
     }
 
     public List<String> getCommands() {
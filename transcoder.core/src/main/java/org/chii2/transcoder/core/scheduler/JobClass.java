@@ -0,0 +1,13 @@
+package org.chii2.transcoder.core.scheduler;
+
+/**
+ * Transcode Job Class, in priority order (highest first)
+ */
+public enum JobClass {
+    // Live video playback, a client is waiting for the stream
+    LIVE_VIDEO,
+    // Image transcoding for browsing
+    IMAGE,
+    // Background video transcoding, can be preempted by live video
+    BACKGROUND_VIDEO
+}
@@ -0,0 +1,11 @@
+package org.chii2.transcoder.core.scheduler;
+
+/**
+ * Job which can give up its slot to a higher priority job
+ */
+public interface Preemptable {
+    /**
+     * Stop the job as soon as possible, the job should release its ticket afterwards
+     */
+    public void preempt();
+}
@@ -0,0 +1,56 @@
+package org.chii2.transcoder.core.scheduler;
+
+/**
+ * Transcode Scheduler Ticket, holds one slot until released
+ */
+public class Ticket {
+    // Job Class
+    private final JobClass jobClass;
+    // Preempt Callback
+    private final Preemptable preemptable;
+    // Preempted
+    private volatile boolean preempted = false;
+    // Released
+    private boolean released = false;
+
+    Ticket(JobClass jobClass, Preemptable preemptable) {
+        this.jobClass = jobClass;
+        this.preemptable = preemptable;
+    }
+
+    /**
+     * Release the slot, can be called more than once
+     */
+    public void release() {
+        TranscodeScheduler.getInstance().release(this);
+    }
+
+    /**
+     * Whether the job was asked to give up its slot
+     *
+     * @return True if preempted
+     */
+    public boolean isPreempted() {
+        return preempted;
+    }
+
+    JobClass getJobClass() {
+        return jobClass;
+    }
+
+    Preemptable getPreemptable() {
+        return preemptable;
+    }
+
+    void setPreempted(boolean preempted) {
+        this.preempted = preempted;
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void setReleased(boolean released) {
+        this.released = released;
+    }
+}
@@ -0,0 +1,199 @@
+package org.chii2.transcoder.core.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Global Scheduler for external transcoding processes
+ * Every job class has its own slot count, and all jobs share a total slot count.
+ * Waiting jobs of a higher class go first, and live video can preempt background video.
+ */
+public class TranscodeScheduler {
+    // Singleton
+    private static final TranscodeScheduler INSTANCE = new TranscodeScheduler();
+    // Max waiting jobs per slot before the scheduler reports saturated
+    private final static int MAX_WAITING_PER_SLOT = 2;
+    // Slots per Job Class
+    private final int[] slots = new int[JobClass.values().length];
+    // Running jobs per Job Class
+    private final int[] running = new int[JobClass.values().length];
+    // Waiting jobs per Job Class
+    private final int[] waiting = new int[JobClass.values().length];
+    // Total Slots
+    private int totalSlots;
+    // Total Running
+    private int totalRunning;
+    // Running Preemptable Tickets
+    private final List<Ticket> preemptables = new ArrayList<>();
+    // Preempted Tickets not released yet
+    private int preempting;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    private TranscodeScheduler() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        configure(cores, Math.max(1, cores / 2), Math.max(1, cores / 2), Math.max(1, cores / 4));
+    }
+
+    /**
+     * Get Transcode Scheduler Instance
+     *
+     * @return Transcode Scheduler Instance
+     */
+    public static TranscodeScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Configure slot counts, running jobs are not affected
+     *
+     * @param total      Total Slots
+     * @param live       Live Video Slots
+     * @param image      Image Slots
+     * @param background Background Video Slots
+     */
+    public synchronized void configure(int total, int live, int image, int background) {
+        this.totalSlots = Math.max(1, total);
+        this.slots[JobClass.LIVE_VIDEO.ordinal()] = Math.max(1, live);
+        this.slots[JobClass.IMAGE.ordinal()] = Math.max(1, image);
+        this.slots[JobClass.BACKGROUND_VIDEO.ordinal()] = Math.max(1, background);
+        logger.debug("Transcode Scheduler slots: total {}, live {}, image {}, background {}.", new Object[]{totalSlots, live, image, background});
+        notifyAll();
+    }
+
+    /**
+     * Acquire a slot for a job, waiting up to timeout
+     *
+     * @param jobClass    Job Class
+     * @param timeout     Max wait in milliseconds, negative to wait forever
+     * @param preemptable Preempt Callback, null if the job can not be preempted
+     * @return Ticket, null if timeout
+     * @throws InterruptedException Interrupted
+     */
+    public Ticket acquire(JobClass jobClass, long timeout, Preemptable preemptable) throws InterruptedException {
+        int c = jobClass.ordinal();
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            Ticket victim = null;
+            synchronized (this) {
+                waiting[c]++;
+                try {
+                    while (!canRun(c)) {
+                        // Live video takes the slot of a background job,
+                        // one preemption per waiting live job until the victim released its slot
+                        if (jobClass == JobClass.LIVE_VIDEO && running[c] < slots[c] && preempting < waiting[c]) {
+                            victim = findVictim();
+                            if (victim != null) {
+                                break;
+                            }
+                        }
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (timeout >= 0 && remaining <= 0) {
+                            logger.info("Transcode Scheduler has no free slot for {} job.", jobClass);
+                            return null;
+                        }
+                        wait(timeout >= 0 ? remaining : 0);
+                    }
+                    if (victim == null) {
+                        return start(jobClass, preemptable);
+                    }
+                } finally {
+                    waiting[c]--;
+                    notifyAll();
+                }
+            }
+            // Preempt outside the lock, the victim releases its ticket later
+            logger.info("Preempt {} job for {} job.", victim.getJobClass(), jobClass);
+            victim.getPreemptable().preempt();
+        }
+    }
+
+    /**
+     * Whether a new job of the class would get a slot soon
+     * Callers facing users should back off when this is false
+     *
+     * @param jobClass Job Class
+     * @return True if not saturated
+     */
+    public synchronized boolean isAvailable(JobClass jobClass) {
+        int c = jobClass.ordinal();
+        if (canRun(c)) {
+            return true;
+        }
+        if (jobClass == JobClass.LIVE_VIDEO && running[c] < slots[c] && preemptables.size() > preempting) {
+            return true;
+        }
+        return waiting[c] < slots[c] * MAX_WAITING_PER_SLOT;
+    }
+
+    /**
+     * Get running job count of the class
+     *
+     * @param jobClass Job Class
+     * @return Running Count
+     */
+    public synchronized int getRunningCount(JobClass jobClass) {
+        return running[jobClass.ordinal()];
+    }
+
+    /**
+     * Get waiting job count of the class
+     *
+     * @param jobClass Job Class
+     * @return Waiting Count
+     */
+    public synchronized int getWaitingCount(JobClass jobClass) {
+        return waiting[jobClass.ordinal()];
+    }
+
+    synchronized void release(Ticket ticket) {
+        if (ticket == null || ticket.isReleased()) {
+            return;
+        }
+        ticket.setReleased(true);
+        if (ticket.isPreempted()) {
+            preempting--;
+        }
+        running[ticket.getJobClass().ordinal()]--;
+        totalRunning--;
+        preemptables.remove(ticket);
+        notifyAll();
+    }
+
+    private boolean canRun(int c) {
+        if (running[c] >= slots[c] || totalRunning >= totalSlots) {
+            return false;
+        }
+        // Higher class jobs waiting for the same total slots go first
+        for (int h = 0; h < c; h++) {
+            if (waiting[h] > 0 && running[h] < slots[h]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Ticket findVictim() {
+        for (Ticket ticket : preemptables) {
+            if (!ticket.isPreempted()) {
+                ticket.setPreempted(true);
+                preempting++;
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    private Ticket start(JobClass jobClass, Preemptable preemptable) {
+        Ticket ticket = new Ticket(jobClass, preemptable);
+        running[jobClass.ordinal()]++;
+        totalRunning++;
+        if (preemptable != null && jobClass == JobClass.BACKGROUND_VIDEO) {
+            preemptables.add(ticket);
+        }
+        return ticket;
+    }
+}
@@ -0,0 +1,107 @@
+package org.chii2.transcoder.core.segment;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Input Stream over the segments of one or more Segmented Outputs
+ * MPEG-TS segments can be concatenated as is, the stream waits for segments not ready yet.
+ * The stream is a reader of its outputs until closed, so their runs follow it and they are not evicted.
+ */
+public class SegmentInputStream extends InputStream {
+    // Segmented Outputs, one for each source file
+    private final List<SegmentedOutput> outputs;
+    // Current Output Index
+    private int outputIndex;
+    // Current Segment
+    private int segment;
+    // Current Segment Stream
+    private InputStream current;
+    // Closed
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param outputs     Segmented Outputs, one for each source file
+     * @param outputIndex First Output Index
+     * @param segment     First Segment of the first output
+     */
+    public SegmentInputStream(List<SegmentedOutput> outputs, int outputIndex, int segment) {
+        this.outputs = outputs;
+        this.outputIndex = outputIndex;
+        this.segment = segment;
+        for (SegmentedOutput output : outputs) {
+            output.attach(this);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (!closed) {
+            if (current == null && !openNext()) {
+                return -1;
+            }
+            int n = current.read(b, off, len);
+            if (n >= 0) {
+                return n;
+            }
+            current.close();
+            current = null;
+            segment++;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        } finally {
+            for (SegmentedOutput output : outputs) {
+                output.detach(this);
+            }
+        }
+    }
+
+    private boolean openNext() throws IOException {
+        while (outputIndex < outputs.size()) {
+            SegmentedOutput output = outputs.get(outputIndex);
+            if (segment >= output.getSegmentCount()) {
+                output.position(this, -1);
+                outputIndex++;
+                segment = 0;
+                continue;
+            }
+            output.position(this, segment);
+            try {
+                File file = output.await(segment);
+                if (file == null) {
+                    return false;
+                }
+                current = new BufferedInputStream(new FileInputStream(file));
+                // Keep the encode ahead of the reader
+                output.request(segment + 1);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for transcoded segment.");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package org.chii2.transcoder.core.segment;
+
+import org.chii2.transcoder.core.ffmpeg.FFmpegConverterParameter;
+
+/**
+ * Creates the codec parameters for a new encode of a Segmented Output
+ */
+public interface SegmentParameterFactory {
+
+    /**
+     * Create FFmpeg parameters with input and codecs set,
+     * time range and segment options are set by the caller.
+     *
+     * @return FFmpeg Parameter
+     */
+    public FFmpegConverterParameter createParameter();
+}
@@ -0,0 +1,404 @@
+package org.chii2.transcoder.core.segment;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.transcoder.core.ffmpeg.FFmpegConverterParameter;
+import org.chii2.transcoder.core.ffmpeg.FFmpegProcess;
+import org.chii2.transcoder.core.io.OutputProgress;
+import org.chii2.transcoder.core.io.OutputWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Segmented MPEG-TS output of one source file
+ * Segments have a fixed duration and are numbered from the start of the source,
+ * so segment n always covers [n * segmentTime, (n + 1) * segmentTime).
+ * Every encode (run) writes into its own directory and its own segment list,
+ * a run starts at the requested segment and stops at the next segment which already exists.
+ * Runs are only kept going for their readers, a run is stopped when no reader is left in its segments
+ * or its readers fell too far behind, a reader coming back starts a new run where it is.
+ */
+public class SegmentedOutput {
+    // Segments a run may lag behind a request before a new run is started there
+    private final static int MAX_GAP = 3;
+    // Segments a run may get ahead of its readers before it is stopped
+    private final static int MAX_AHEAD = 30;
+    // Failed runs in a row before giving up
+    private final static int MAX_FAILURES = 3;
+    // Max wait for a progress signal, in case one is missed
+    private final static long MAX_WAIT = 1000;
+    // Segment File Name Pattern
+    private final static String SEGMENT_PATTERN = "seg%05d.ts";
+    // Output Directory
+    private final File directory;
+    // Segment Duration in seconds
+    private final int segmentTime;
+    // Segment Count
+    private final int segmentCount;
+    // Encode Parameter Factory
+    private final SegmentParameterFactory factory;
+    // Ready Segments
+    private final Map<Integer, File> segments = new HashMap<>();
+    // Runs
+    private final List<Run> runs = new ArrayList<>();
+    // Reader Positions, the segment each reader reads next, -1 while reading another output
+    private final Map<SegmentInputStream, Integer> readers = new HashMap<>();
+    // Progress, signaled when a segment list changes
+    private final OutputProgress progress = new OutputProgress();
+    // Run Counter
+    private int runCount = 0;
+    // Failed Runs in a row
+    private int failures = 0;
+    // Closed
+    private boolean closed = false;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Constructor
+     *
+     * @param directory   Output Directory
+     * @param duration    Source Duration in milliseconds
+     * @param segmentTime Segment Duration in seconds
+     * @param factory     Encode Parameter Factory
+     */
+    public SegmentedOutput(File directory, long duration, int segmentTime, SegmentParameterFactory factory) {
+        this.directory = directory;
+        this.segmentTime = segmentTime;
+        this.segmentCount = (int) ((duration + segmentTime * 1000L - 1) / (segmentTime * 1000L));
+        this.factory = factory;
+    }
+
+    /**
+     * Get Segment Duration
+     *
+     * @return Segment Duration in seconds
+     */
+    public int getSegmentTime() {
+        return segmentTime;
+    }
+
+    /**
+     * Get Segment Count
+     *
+     * @return Segment Count
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Attach a reader, the output is not evicted while it has readers
+     *
+     * @param reader Reader
+     */
+    public synchronized void attach(SegmentInputStream reader) {
+        if (!readers.containsKey(reader)) {
+            readers.put(reader, -1);
+        }
+    }
+
+    /**
+     * Set the segment a reader reads next, runs far away from all readers are stopped
+     *
+     * @param reader  Reader
+     * @param segment Segment Number, -1 while reading another output
+     */
+    public synchronized void position(SegmentInputStream reader, int segment) {
+        if (readers.containsKey(reader)) {
+            readers.put(reader, segment);
+        }
+    }
+
+    /**
+     * Detach a reader, runs left without readers are stopped
+     *
+     * @param reader Reader
+     */
+    public synchronized void detach(SegmentInputStream reader) {
+        if (readers.remove(reader) != null) {
+            refresh();
+        }
+    }
+
+    /**
+     * Get the number of attached readers
+     *
+     * @return Reader Count
+     */
+    public synchronized int getReaderCount() {
+        return readers.size();
+    }
+
+    /**
+     * Get a ready segment
+     *
+     * @param segment Segment Number
+     * @return Segment File, null if not ready
+     */
+    public synchronized File getSegment(int segment) {
+        refresh();
+        return segments.get(segment);
+    }
+
+    /**
+     * Make sure a run is producing the segment
+     *
+     * @param segment Segment Number
+     * @return False if the segment can not be produced
+     */
+    public synchronized boolean request(int segment) {
+        refresh();
+        if (segments.containsKey(segment)) {
+            return true;
+        }
+        if (closed || failures >= MAX_FAILURES || segment < 0 || segment >= segmentCount) {
+            return false;
+        }
+        for (Run run : runs) {
+            if (run.covers(segment)) {
+                return true;
+            }
+        }
+        start(segment);
+        return true;
+    }
+
+    /**
+     * Wait until the segment is ready, starting a run if needed
+     *
+     * @param segment Segment Number
+     * @return Segment File, null if the segment can not be produced
+     * @throws InterruptedException Interrupted
+     */
+    public File await(int segment) throws InterruptedException {
+        while (true) {
+            long generation = progress.getGeneration();
+            File file = getSegment(segment);
+            if (file != null) {
+                return file;
+            }
+            if (!request(segment)) {
+                return null;
+            }
+            progress.await(generation, MAX_WAIT);
+        }
+    }
+
+    /**
+     * Stop all runs and delete the segments
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Run run : runs) {
+            run.stop();
+        }
+        runs.clear();
+        segments.clear();
+        progress.signal();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private void start(int segment) {
+        // Stop at the next ready segment or the next run
+        int end = segmentCount;
+        for (Integer ready : segments.keySet()) {
+            if (ready > segment && ready < end) {
+                end = ready;
+            }
+        }
+        for (Run run : runs) {
+            if (run.start > segment && run.start < end) {
+                end = run.start;
+            }
+        }
+        File runDirectory = new File(directory, "run" + (runCount++));
+        try {
+            FileUtils.forceMkdir(runDirectory);
+        } catch (IOException e) {
+            logger.error("Can not create segment directory {}.", runDirectory.getAbsolutePath());
+            failures++;
+            return;
+        }
+        File list = new File(runDirectory, "segments.csv");
+        FFmpegConverterParameter parameter = factory.createParameter();
+        parameter.setStartTime((long) segment * segmentTime);
+        parameter.setDuration((long) (end - segment) * segmentTime);
+        parameter.setSegmentTime(segmentTime);
+        parameter.setSegmentStartNumber(segment);
+        parameter.setSegmentList(list);
+        parameter.setOutputFile(new File(runDirectory, SEGMENT_PATTERN));
+        final Run run = new Run(segment, end, list, new FFmpegProcess(UUID.randomUUID().toString(), parameter));
+        runs.add(run);
+        OutputWatcher.getInstance().register(list, progress);
+        logger.info("Start segmented transcoding of segments {} to {} in {}.", new Object[]{segment, end - 1, runDirectory.getAbsolutePath()});
+        // Init waits for a slot and the first frame, then the run is watched until it ends,
+        // readers blocked on a slow client do not check it
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                run.process.init();
+                progress.signal();
+                synchronized (SegmentedOutput.this) {
+                    // Stopped while waiting for a slot, init started the encode anyway
+                    if (run.stopped) {
+                        run.process.destroy();
+                        return;
+                    }
+                }
+                try {
+                    while (true) {
+                        long generation = progress.getGeneration();
+                        synchronized (SegmentedOutput.this) {
+                            refresh();
+                            if (!runs.contains(run)) {
+                                return;
+                            }
+                        }
+                        progress.await(generation, MAX_WAIT);
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }, "Chii2 Segmented Transcoding " + runDirectory.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void refresh() {
+        Iterator<Run> iterator = runs.iterator();
+        while (iterator.hasNext()) {
+            Run run = iterator.next();
+            run.load(segments);
+            boolean alive = !run.process.isStarted() || (!run.process.isStopped() && !run.process.isFinished());
+            if (alive && run.next() < run.end && segments.containsKey(run.next())) {
+                // Another run already has what comes next
+                run.stop();
+                alive = false;
+            }
+            if (alive && !isRead(run)) {
+                logger.info("Stop segmented transcoding of segments {} to {}, no reader left.", run.start, run.end - 1);
+                run.stop();
+                alive = false;
+            }
+            if (!alive) {
+                run.load(segments);
+                if (run.process.isStopped() && !run.process.isFinished() && !run.stopped) {
+                    failures++;
+                    logger.warn("Segmented transcoding of segments {} to {} failed.", run.start, run.end - 1);
+                } else if (run.produced >= run.start) {
+                    // Only failures in a row give up, a transient one is forgotten
+                    failures = 0;
+                }
+                OutputWatcher.getInstance().unregister(run.list);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether a reader is in the segments of the run and not too far behind it
+     * A reader may still be on the segment before a run started for its read ahead.
+     *
+     * @param run Run
+     * @return True if read
+     */
+    private boolean isRead(Run run) {
+        for (int position : readers.values()) {
+            if (position >= run.start - 1 && position < run.end && run.next() - position <= MAX_AHEAD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One encode producing segments [start, end)
+     */
+    private class Run {
+        // First Segment
+        final int start;
+        // Segment after the last one
+        final int end;
+        // Segment List
+        final File list;
+        // FFmpeg Process
+        final FFmpegProcess process;
+        // Last Produced Segment
+        int produced;
+        // Segment List Last Modified
+        long modified = 0;
+        // Stopped by us
+        boolean stopped = false;
+
+        Run(int start, int end, File list, FFmpegProcess process) {
+            this.start = start;
+            this.end = end;
+            this.list = list;
+            this.process = process;
+            this.produced = start - 1;
+        }
+
+        int next() {
+            return produced + 1;
+        }
+
+        boolean covers(int segment) {
+            return !stopped && segment >= start && segment < end && segment - next() <= MAX_GAP;
+        }
+
+        void stop() {
+            stopped = true;
+            process.destroy();
+        }
+
+        void load(Map<Integer, File> segments) {
+            long lastModified = list.lastModified();
+            if (lastModified == 0 || lastModified == modified) {
+                return;
+            }
+            modified = lastModified;
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new FileReader(list));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comma = line.indexOf(',');
+                    String name = comma > 0 ? line.substring(0, comma) : line;
+                    int number = parseNumber(name);
+                    if (number >= 0) {
+                        if (!segments.containsKey(number)) {
+                            segments.put(number, new File(list.getParentFile(), name));
+                        }
+                        produced = Math.max(produced, number);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Read segment list {} with error: {}.", list.getAbsolutePath(), e.getMessage());
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+
+        private int parseNumber(String name) {
+            if (!name.startsWith("seg") || !name.endsWith(".ts")) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(name.substring(3, name.length() - 3));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.chii2.transcoder.core.segment;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global Cache for Segmented Outputs
+ * Seeks into the same source reuse the segments already produced,
+ * the least recently used output without readers is closed and deleted when the cache is full.
+ */
+public class SegmentedOutputCache {
+    // Singleton
+    private static final SegmentedOutputCache INSTANCE = new SegmentedOutputCache();
+    // Max Output Count
+    private final static int MAX_OUTPUT_COUNT = 16;
+    // Outputs in access order
+    private final LinkedHashMap<String, SegmentedOutput> outputs = new LinkedHashMap<>(16, 0.75f, true);
+    // Root Directory
+    private File directory;
+    // Logger
+    private Logger logger = LoggerFactory.getLogger("org.chii2.transcoder.core");
+
+    /**
+     * Get Segmented Output Cache Instance
+     *
+     * @return Segmented Output Cache Instance
+     */
+    public static SegmentedOutputCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the root directory, segments left from the last run are deleted
+     *
+     * @param directory Root Directory
+     */
+    public synchronized void init(File directory) {
+        this.directory = directory;
+        try {
+            if (directory.exists()) {
+                FileUtils.cleanDirectory(directory);
+            } else {
+                FileUtils.forceMkdir(directory);
+            }
+        } catch (IOException e) {
+            logger.warn("Can not clean segment directory: {}.", directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Get or create the Segmented Output for a key
+     *
+     * @param key         Key of source and parameters
+     * @param duration    Source Duration in milliseconds
+     * @param segmentTime Segment Duration in seconds
+     * @param factory     Encode Parameter Factory
+     * @return Segmented Output
+     */
+    public synchronized SegmentedOutput getOutput(String key, long duration, int segmentTime, SegmentParameterFactory factory) {
+        SegmentedOutput output = outputs.get(key);
+        if (output == null) {
+            output = new SegmentedOutput(new File(directory, key), duration, segmentTime, factory);
+            outputs.put(key, output);
+            logger.debug("Create segmented output {}.", key);
+            // Remove old one, outputs still read are kept even if the cache is over its limit
+            Iterator<Map.Entry<String, SegmentedOutput>> iterator = outputs.entrySet().iterator();
+            while (outputs.size() > MAX_OUTPUT_COUNT && iterator.hasNext()) {
+                Map.Entry<String, SegmentedOutput> entry = iterator.next();
+                if (entry.getValue() == output || entry.getValue().getReaderCount() > 0) {
+                    continue;
+                }
+                iterator.remove();
+                entry.getValue().close();
+                logger.info("Remove segmented output {} because cache limited.", entry.getKey());
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Shutdown the cache
+     * This should be called before application exit
+     */
+    public synchronized void shutdown() {
+        List<SegmentedOutput> closing = new ArrayList<>(outputs.values());
+        outputs.clear();
+        for (SegmentedOutput output : closing) {
+            output.close();
+        }
+    }
+}
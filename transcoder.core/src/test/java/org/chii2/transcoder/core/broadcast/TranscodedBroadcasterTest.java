@@ -0,0 +1,162 @@
+package org.chii2.transcoder.core.broadcast;
+
+import org.chii2.transcoder.api.core.TranscoderProcess;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test for Transcoded Broadcaster
+ */
+public class TranscodedBroadcasterTest {
+
+    @Test
+    public void MultiDiscTest() {
+        TranscodedBroadcaster broadcaster = TranscodedBroadcaster.getInstance();
+        FakeProcess cd1 = new FakeProcess();
+        FakeProcess cd2 = new FakeProcess();
+        List<TranscoderProcess> first = broadcaster.attach("movie", "client", Arrays.<TranscoderProcess>asList(cd1, cd2));
+        first.get(0).init();
+        // First client is done with CD1 and plays CD2, the CD1 encode keeps running for others
+        first.get(0).cache();
+        first.get(1).init();
+        assert !cd1.cached && !cd1.destroyed;
+        assert broadcaster.getReaderCount("movie", "client") == 1;
+
+        // Second client joins and starts with CD1
+        List<TranscoderProcess> second = broadcaster.attach("movie", "client", Arrays.<TranscoderProcess>asList(new FakeProcess(), new FakeProcess()));
+        assert broadcaster.getReaderCount("movie", "client") == 2;
+        second.get(0).init();
+        assert !second.get(0).isStopped();
+        first.get(1).destroy();
+        assert !cd1.destroyed && !cd2.destroyed;
+
+        // Last reader leaves, all discs are torn down together
+        second.get(0).destroy();
+        second.get(1).destroy();
+        assert cd1.cached && !cd1.destroyed;
+        assert cd2.destroyed;
+        assert broadcaster.getReaderCount("movie", "client") == 0;
+
+        // Next client starts a new encode
+        FakeProcess next = new FakeProcess();
+        List<TranscoderProcess> third = broadcaster.attach("movie", "client", Arrays.<TranscoderProcess>asList(next, new FakeProcess()));
+        third.get(0).init();
+        assert next.started;
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void IdleSessionTest() throws InterruptedException {
+        TranscodedBroadcaster broadcaster = TranscodedBroadcaster.getInstance();
+        broadcaster.setIdleTimeout(300);
+        try {
+            FakeProcess process = new FakeProcess();
+            List<TranscoderProcess> first = broadcaster.attach("idle", "client", Arrays.<TranscoderProcess>asList(process));
+            first.get(0).init();
+            // Kept while encoding, the session still owns the process
+            first.get(0).cache();
+            assert !process.cached && !process.destroyed;
+
+            // The client comes back within the idle timeout
+            Thread.sleep(100);
+            List<TranscoderProcess> second = broadcaster.attach("idle", "client", Arrays.<TranscoderProcess>asList(new FakeProcess()));
+            second.get(0).init();
+            assert broadcaster.getReaderCount("idle", "client") == 1;
+            Thread.sleep(400);
+            assert !process.cached;
+            second.get(0).cache();
+
+            // Handed over to the cache once idle
+            Thread.sleep(600);
+            assert process.cached && !process.destroyed;
+            FakeProcess next = new FakeProcess();
+            List<TranscoderProcess> third = broadcaster.attach("idle", "client", Arrays.<TranscoderProcess>asList(next));
+            third.get(0).init();
+            assert next.started;
+        } finally {
+            broadcaster.setIdleTimeout(30000);
+            broadcaster.shutdown();
+        }
+    }
+
+    /**
+     * Fake Transcoder Process, encoding from init until stopped
+     */
+    private static class FakeProcess implements TranscoderProcess {
+        private boolean started;
+        private boolean stopped;
+        private boolean finished;
+        private boolean cached;
+        private boolean destroyed;
+
+        @Override
+        public void init() {
+            started = true;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+            stopped = true;
+        }
+
+        @Override
+        public void cache() {
+            cached = true;
+        }
+
+        @Override
+        public String getRequestId() {
+            return "request";
+        }
+
+        @Override
+        public File getOutputFile() {
+            return null;
+        }
+
+        @Override
+        public InputStream getOutputFileStream() {
+            return null;
+        }
+
+        @Override
+        public long getCurrentSize() {
+            return 0;
+        }
+
+        @Override
+        public boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public void setStopped(boolean stopped) {
+            this.stopped = stopped;
+        }
+
+        @Override
+        public void setFinished(boolean finished) {
+            this.finished = finished;
+        }
+
+        @Override
+        public void setStarted(boolean started) {
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.chii2.transcoder.core.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test for Transcoded Cache
+ */
+public class TranscodedCacheTest {
+
+    @Test
+    public void LookupTest() throws IOException {
+        File directory = new File(FileUtils.getTempDirectory(), "chii2-transcoded-cache-test");
+        FileUtils.deleteQuietly(directory);
+        FileUtils.forceMkdir(directory);
+        try {
+            TranscodedCache cache = TranscodedCache.getInstance();
+            cache.init(directory, 100);
+            File index = new File(directory, "cache.index");
+            File a = createFile(directory, "a.ts");
+            File b = createFile(directory, "b.ts");
+            cache.store("a", a);
+            cache.store("b", b);
+            String saved = FileUtils.readFileToString(index);
+            assert saved.startsWith("a\t");
+
+            // Lookups do not write the index
+            assert a.equals(cache.lookup("a"));
+            assert saved.equals(FileUtils.readFileToString(index));
+
+            // But the access order decides what is evicted
+            File c = createFile(directory, "c.ts");
+            cache.store("c", c);
+            assert cache.lookup("b") == null;
+            assert !b.exists();
+            saved = FileUtils.readFileToString(index);
+            assert saved.startsWith("a\t") && saved.contains("\nc\t") && !saved.contains("b.ts");
+
+            // Loaded again as saved
+            cache.init(directory, 100);
+            assert a.equals(cache.lookup("a"));
+            assert c.equals(cache.lookup("c"));
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private File createFile(File directory, String name) throws IOException {
+        File file = new File(directory, name);
+        FileUtils.writeByteArrayToFile(file, new byte[40]);
+        return file;
+    }
+}
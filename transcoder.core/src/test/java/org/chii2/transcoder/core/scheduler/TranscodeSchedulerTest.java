@@ -0,0 +1,130 @@
+package org.chii2.transcoder.core.scheduler;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test for Transcode Scheduler
+ */
+public class TranscodeSchedulerTest {
+
+    @Test
+    public void SlotLimitTest() throws InterruptedException {
+        TranscodeScheduler scheduler = TranscodeScheduler.getInstance();
+        try {
+            scheduler.configure(2, 1, 1, 1);
+            Ticket live = scheduler.acquire(JobClass.LIVE_VIDEO, 0, null);
+            assert live != null;
+            // Class slots are full
+            assert scheduler.acquire(JobClass.LIVE_VIDEO, 50, null) == null;
+            Ticket image = scheduler.acquire(JobClass.IMAGE, 0, null);
+            assert image != null;
+            // Total slots are full
+            assert scheduler.acquire(JobClass.BACKGROUND_VIDEO, 50, null) == null;
+            assert scheduler.getRunningCount(JobClass.LIVE_VIDEO) == 1;
+            image.release();
+            // Released twice is released once
+            image.release();
+            Ticket background = scheduler.acquire(JobClass.BACKGROUND_VIDEO, 0, null);
+            assert background != null;
+            assert scheduler.getRunningCount(JobClass.IMAGE) == 0;
+            live.release();
+            background.release();
+            assert scheduler.getRunningCount(JobClass.LIVE_VIDEO) == 0;
+            assert scheduler.getRunningCount(JobClass.BACKGROUND_VIDEO) == 0;
+        } finally {
+            restore();
+        }
+    }
+
+    @Test
+    public void PriorityTest() throws InterruptedException {
+        TranscodeScheduler scheduler = TranscodeScheduler.getInstance();
+        try {
+            scheduler.configure(1, 1, 1, 1);
+            Ticket image = scheduler.acquire(JobClass.IMAGE, 0, null);
+            AtomicReference<Ticket> background = acquireLater(JobClass.BACKGROUND_VIDEO, null);
+            waitFor(JobClass.BACKGROUND_VIDEO);
+            AtomicReference<Ticket> live = acquireLater(JobClass.LIVE_VIDEO, null);
+            waitFor(JobClass.LIVE_VIDEO);
+
+            // The live job waited less but goes first
+            image.release();
+            Thread.sleep(200);
+            assert live.get() != null;
+            assert background.get() == null;
+            live.get().release();
+            Thread.sleep(200);
+            assert background.get() != null;
+            background.get().release();
+        } finally {
+            restore();
+        }
+    }
+
+    @Test
+    public void PreemptTest() throws InterruptedException {
+        TranscodeScheduler scheduler = TranscodeScheduler.getInstance();
+        try {
+            scheduler.configure(2, 2, 1, 2);
+            final AtomicInteger preempted = new AtomicInteger();
+            Preemptable preemptable = new Preemptable() {
+                @Override
+                public void preempt() {
+                    preempted.incrementAndGet();
+                }
+            };
+            Ticket first = scheduler.acquire(JobClass.BACKGROUND_VIDEO, 0, preemptable);
+            Ticket second = scheduler.acquire(JobClass.BACKGROUND_VIDEO, 0, preemptable);
+            assert scheduler.isAvailable(JobClass.LIVE_VIDEO);
+
+            // One live job preempts exactly one background job, and waits for it to give up its slot
+            AtomicReference<Ticket> live = acquireLater(JobClass.LIVE_VIDEO, null);
+            Thread.sleep(300);
+            assert preempted.get() == 1;
+            assert live.get() == null;
+            assert first.isPreempted() != second.isPreempted();
+            Ticket victim = first.isPreempted() ? first : second;
+            Ticket survivor = first.isPreempted() ? second : first;
+            victim.release();
+            Thread.sleep(200);
+            assert live.get() != null;
+            assert preempted.get() == 1;
+            assert !survivor.isPreempted();
+            live.get().release();
+            survivor.release();
+        } finally {
+            restore();
+        }
+    }
+
+    private void restore() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        TranscodeScheduler.getInstance().configure(cores, Math.max(1, cores / 2), Math.max(1, cores / 2), Math.max(1, cores / 4));
+    }
+
+    private AtomicReference<Ticket> acquireLater(final JobClass jobClass, final Preemptable preemptable) {
+        final AtomicReference<Ticket> ticket = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ticket.set(TranscodeScheduler.getInstance().acquire(jobClass, 5000, preemptable));
+                } catch (InterruptedException ignore) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return ticket;
+    }
+
+    private void waitFor(JobClass jobClass) throws InterruptedException {
+        for (int i = 0; i < 100 && TranscodeScheduler.getInstance().getWaitingCount(jobClass) == 0; i++) {
+            Thread.sleep(10);
+        }
+        assert TranscodeScheduler.getInstance().getWaitingCount(jobClass) > 0;
+    }
+}
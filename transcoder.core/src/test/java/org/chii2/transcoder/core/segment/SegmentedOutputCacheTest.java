@@ -0,0 +1,45 @@
+package org.chii2.transcoder.core.segment;
+
+import org.apache.commons.io.FileUtils;
+import org.chii2.transcoder.core.ffmpeg.FFmpegConverterParameter;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Test for Segmented Output Cache
+ */
+public class SegmentedOutputCacheTest {
+
+    @Test
+    public void EvictionTest() throws IOException {
+        File directory = new File(FileUtils.getTempDirectory(), "chii2-segmented-cache-test");
+        SegmentedOutputCache cache = SegmentedOutputCache.getInstance();
+        cache.init(directory);
+        SegmentParameterFactory factory = new SegmentParameterFactory() {
+            @Override
+            public FFmpegConverterParameter createParameter() {
+                return null;
+            }
+        };
+        try {
+            SegmentedOutput read = cache.getOutput("read", 60000, 10, factory);
+            SegmentedOutput unread = cache.getOutput("unread", 60000, 10, factory);
+            SegmentInputStream reader = new SegmentInputStream(Collections.singletonList(read), 0, 0);
+            assert read.getReaderCount() == 1;
+            for (int i = 0; i < 20; i++) {
+                cache.getOutput("other" + i, 60000, 10, factory);
+            }
+            // The least recently used output is evicted, unless it is still read
+            assert cache.getOutput("read", 60000, 10, factory) == read;
+            assert cache.getOutput("unread", 60000, 10, factory) != unread;
+            reader.close();
+            assert read.getReaderCount() == 0;
+        } finally {
+            cache.shutdown();
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+}